@@ -210,7 +210,9 @@ public class HttpWebConnection implements WebConnection {
                 // Calling code may catch the StackOverflowError, but due to the leak, the httpClient_ may
                 // come out of connections and throw a ConnectionPoolTimeoutException.
                 // => best solution, discard the HttpClient instance.
-                httpClientBuilder_.remove(Thread.currentThread());
+                synchronized (httpClientBuilder_) {
+                    httpClientBuilder_.remove(Thread.currentThread());
+                }
                 throw e;
             }
 
@@ -538,7 +540,10 @@ public class HttpWebConnection implements WebConnection {
      */
     protected HttpClientBuilder getHttpClientBuilder() {
         final Thread currentThread = Thread.currentThread();
-        HttpClientBuilder builder = httpClientBuilder_.get(currentThread);
+        HttpClientBuilder builder;
+        synchronized (httpClientBuilder_) {
+            builder = httpClientBuilder_.get(currentThread);
+        }
         if (builder == null) {
             builder = createHttpClientBuilder();
 
@@ -551,7 +556,9 @@ public class HttpWebConnection implements WebConnection {
 
             builder.setDefaultCookieStore(new HtmlUnitCookieStore(webClient_.getCookieManager()));
             builder.setUserAgent(webClient_.getBrowserVersion().getUserAgent());
-            httpClientBuilder_.put(currentThread, builder);
+            synchronized (httpClientBuilder_) {
+                httpClientBuilder_.put(currentThread, builder);
+            }
         }
 
         return builder;
@@ -1112,7 +1119,9 @@ public class HttpWebConnection implements WebConnection {
      */
     @Override
     public void close() {
-        httpClientBuilder_.clear();
+        synchronized (httpClientBuilder_) {
+            httpClientBuilder_.clear();
+        }
 
         if (connectionManager_ != null) {
             connectionManager_.shutdown();
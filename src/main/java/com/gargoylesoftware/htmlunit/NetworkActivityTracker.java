@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2002-2020 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * <p><span style="color:red">Experimental API: May be changed in next release
+ * and may not yet work perfectly!</span></p>
+ *
+ * <p>Keeps track of the requests in flight of a {@link WebClient}: the pages loaded into windows and frames,
+ * the scripts, style sheets and images of the pages and the <tt>XMLHttpRequest</tt>s. The requests are
+ * counted for the requesting window and all its parent windows; this way the count of a top level window
+ * includes the requests of its frames.</p>
+ *
+ * <p>Only the requests made by {@link WebClient#loadWebResponse(WebRequest, WebWindow)} are tracked.</p>
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ * @see WebClient#getNetworkActivityTracker()
+ */
+public class NetworkActivityTracker {
+
+    /** The activity of the whole client. */
+    private final Activity clientActivity_ = new Activity();
+    private final Map<WebWindow, Activity> windowActivities_ = new WeakHashMap<>();
+
+    /**
+     * Called before a request is made.
+     * @param window the window the request is made for, may be {@code null}
+     */
+    void requestStarted(final WebWindow window) {
+        synchronized (this) {
+            clientActivity_.started();
+            for (final Activity activity : getActivities(window)) {
+                activity.started();
+            }
+        }
+    }
+
+    /**
+     * Called after a request is done, also if it failed.
+     * @param window the window the request was made for, may be {@code null}
+     */
+    void requestFinished(final WebWindow window) {
+        final List<CompletableFuture<Void>> idleFutures = new ArrayList<>();
+        synchronized (this) {
+            clientActivity_.finished(idleFutures);
+            for (final Activity activity : getActivities(window)) {
+                activity.finished(idleFutures);
+            }
+        }
+        // complete outside of the lock, the dependent actions run in this thread
+        for (final CompletableFuture<Void> future : idleFutures) {
+            future.complete(null);
+        }
+    }
+
+    /**
+     * Returns the number of requests in flight.
+     * @return the number of requests
+     */
+    public synchronized int getInFlightRequestCount() {
+        return clientActivity_.inFlight_;
+    }
+
+    /**
+     * Returns the number of requests in flight for the given window and its frames.
+     * @param window the window
+     * @return the number of requests
+     */
+    public synchronized int getInFlightRequestCount(final WebWindow window) {
+        return getActivity(window).inFlight_;
+    }
+
+    /**
+     * Returns the number of requests started since the client was created.
+     * @return the number of requests
+     */
+    public synchronized long getStartedRequestCount() {
+        return clientActivity_.startedCount_;
+    }
+
+    /**
+     * Returns a future completed as soon as there are no requests in flight for the given
+     * window and its frames. The future is completed by the thread finishing the last request.
+     * @param window the window or {@code null} to wait for all requests of the client
+     * @return the future
+     */
+    public synchronized CompletableFuture<Void> whenNetworkIdle(final WebWindow window) {
+        return getActivity(window).whenIdle();
+    }
+
+    /**
+     * Returns a future completed as soon as there were no requests in flight for the given window
+     * and its frames for the given time; a new request restarts the quiet period.
+     * The quiet period is measured by a timer shared by all clients.
+     * @param window the window or {@code null} to wait for all requests of the client
+     * @param quietPeriod the time without requests
+     * @return the future
+     */
+    public CompletableFuture<Void> whenNetworkIdleFor(final WebWindow window, final Duration quietPeriod) {
+        WebAssert.notNull("quietPeriod", quietPeriod);
+        return whenNetworkIdle(window).thenCompose(v -> whenStillIdleAfter(window, quietPeriod));
+    }
+
+    private CompletableFuture<Void> whenStillIdleAfter(final WebWindow window, final Duration quietPeriod) {
+        final long started;
+        synchronized (this) {
+            started = getActivity(window).startedCount_;
+        }
+        final CompletableFuture<Void> timer = new CompletableFuture<>();
+        WebClient.IdleTimer.SCHEDULER.schedule(() -> timer.complete(null),
+                quietPeriod.toMillis(), TimeUnit.MILLISECONDS);
+
+        final Function<Void, CompletableFuture<Void>> check = v -> {
+            synchronized (this) {
+                final Activity activity = getActivity(window);
+                if (started == activity.startedCount_ && activity.inFlight_ == 0) {
+                    return CompletableFuture.completedFuture(null);
+                }
+            }
+            return whenNetworkIdleFor(window, quietPeriod);
+        };
+        return timer.thenCompose(check);
+    }
+
+    private Activity getActivity(final WebWindow window) {
+        if (window == null) {
+            return clientActivity_;
+        }
+        return windowActivities_.computeIfAbsent(window, w -> new Activity());
+    }
+
+    /**
+     * Returns the activities of the given window and all its parent windows.
+     */
+    private List<Activity> getActivities(final WebWindow window) {
+        final List<Activity> activities = new ArrayList<>();
+        WebWindow current = window;
+        while (current != null) {
+            activities.add(getActivity(current));
+            final WebWindow parent = current.getParentWindow();
+            if (parent == current) {
+                break;
+            }
+            current = parent;
+        }
+        return activities;
+    }
+
+    /**
+     * The counters of a window or of the whole client.
+     */
+    private static final class Activity {
+        private int inFlight_;
+        private long startedCount_;
+        private final List<CompletableFuture<Void>> idleFutures_ = new ArrayList<>();
+
+        void started() {
+            inFlight_++;
+            startedCount_++;
+        }
+
+        void finished(final List<CompletableFuture<Void>> idleFutures) {
+            inFlight_--;
+            if (inFlight_ == 0) {
+                idleFutures.addAll(idleFutures_);
+                idleFutures_.clear();
+            }
+        }
+
+        CompletableFuture<Void> whenIdle() {
+            if (inFlight_ == 0) {
+                return CompletableFuture.completedFuture(null);
+            }
+            final CompletableFuture<Void> future = new CompletableFuture<>();
+            idleFutures_.add(future);
+            return future;
+        }
+    }
+}
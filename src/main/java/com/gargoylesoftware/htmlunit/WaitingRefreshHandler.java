@@ -20,10 +20,13 @@ import java.net.URL;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import com.gargoylesoftware.htmlunit.javascript.background.JavaScriptClock;
+
 /**
  * This refresh handler waits the specified number of seconds (or a user defined maximum)
  * before refreshing the specified page, using the specified URL. Waiting happens
- * on the current thread
+ * on the current thread. If the virtual time is enabled, the virtual clock is moved forward
+ * instead of waiting.
  *
  * If you want a refresh handler that ignores the wait time, see
  * {@link ImmediateRefreshHandler}.
@@ -70,21 +73,34 @@ public class WaitingRefreshHandler implements RefreshHandler {
         if (seconds > maxwait_ && maxwait_ > 0) {
             seconds = maxwait_;
         }
-        try {
-            Thread.sleep(seconds * 1000L);
+        final WebWindow window = page.getEnclosingWindow();
+        final JavaScriptClock clock;
+        if (window == null) {
+            clock = JavaScriptClock.SYSTEM;
+        }
+        else {
+            clock = window.getWebClient().getJavaScriptClock();
         }
-        catch (final InterruptedException e) {
-            /* This can happen when the refresh is happening from a navigation that started
-             * from a setTimeout or setInterval. The navigation will cause all threads to get
-             * interrupted, including the current thread in this case. It should be safe to
-             * ignore it since this is the thread now doing the navigation. Eventually we should
-             * refactor to force all navigation to happen back on the main thread.
-             */
-            if (LOG.isDebugEnabled()) {
-                LOG.debug("Waiting thread was interrupted. Ignoring interruption to continue navigation.");
+
+        if (clock.isVirtual()) {
+            clock.advanceBy(seconds * 1000L);
+        }
+        else {
+            try {
+                Thread.sleep(seconds * 1000L);
+            }
+            catch (final InterruptedException e) {
+                /* This can happen when the refresh is happening from a navigation that started
+                 * from a setTimeout or setInterval. The navigation will cause all threads to get
+                 * interrupted, including the current thread in this case. It should be safe to
+                 * ignore it since this is the thread now doing the navigation. Eventually we should
+                 * refactor to force all navigation to happen back on the main thread.
+                 */
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Waiting thread was interrupted. Ignoring interruption to continue navigation.");
+                }
             }
         }
-        final WebWindow window = page.getEnclosingWindow();
         if (window == null) {
             return;
         }
@@ -37,6 +37,7 @@ import java.net.URLConnection;
 import java.net.URLDecoder;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.ConcurrentModificationException;
@@ -49,6 +50,18 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 import org.apache.commons.codec.DecoderException;
 import org.apache.commons.lang3.StringUtils;
@@ -80,6 +93,7 @@ import com.gargoylesoftware.htmlunit.javascript.AbstractJavaScriptEngine;
 import com.gargoylesoftware.htmlunit.javascript.DefaultJavaScriptErrorListener;
 import com.gargoylesoftware.htmlunit.javascript.JavaScriptEngine;
 import com.gargoylesoftware.htmlunit.javascript.JavaScriptErrorListener;
+import com.gargoylesoftware.htmlunit.javascript.background.JavaScriptClock;
 import com.gargoylesoftware.htmlunit.javascript.background.JavaScriptJobManager;
 import com.gargoylesoftware.htmlunit.javascript.host.Location;
 import com.gargoylesoftware.htmlunit.javascript.host.Window;
@@ -148,6 +162,15 @@ public class WebClient implements Serializable, AutoCloseable {
     /** Like the Firefox default value for {@code network.http.redirection-limit}. */
     private static final int ALLOWED_REDIRECTIONS_SAME_URL = 20;
 
+    /** The number of threads doing background I/O, like the connections per host of the browsers. */
+    private static final int BACKGROUND_IO_THREADS = 6;
+
+    /** The number of background I/O tasks that may wait for a thread; more are done by the event loop. */
+    private static final int BACKGROUND_IO_QUEUE_CAPACITY = 256;
+
+    /** The time (in seconds) an idle background I/O thread is kept alive. */
+    private static final long BACKGROUND_IO_KEEP_ALIVE = 60;
+
     private transient WebConnection webConnection_;
     private CredentialsProvider credentialsProvider_ = new DefaultCredentialsProvider();
     private CookieManager cookieManager_ = new CookieManager();
@@ -175,6 +198,9 @@ public class WebClient implements Serializable, AutoCloseable {
     private final List<WebWindow> windows_ = Collections.synchronizedList(new ArrayList<WebWindow>()); // all windows
     private transient List<WeakReference<JavaScriptJobManager>> jobManagers_ =
             Collections.synchronizedList(new ArrayList<WeakReference<JavaScriptJobManager>>());
+    private transient JavaScriptClock virtualClock_;
+    private transient ExecutorService backgroundIoExecutor_;
+    private transient NetworkActivityTracker networkActivityTracker_ = new NetworkActivityTracker();
     private WebWindow currentWindow_;
 
     private HTMLParserListener htmlParserListener_;
@@ -412,7 +438,7 @@ public class WebClient implements Serializable, AutoCloseable {
             }
         }
         else {
-            webResponse = loadWebResponse(webRequest);
+            webResponse = loadWebResponse(webRequest, webWindow);
         }
 
         printContentIfNecessary(webResponse);
@@ -839,6 +865,19 @@ public class WebClient implements Serializable, AutoCloseable {
                 }
             }
         }
+
+        // the animation frames of the windows brought to the foreground are resumed
+        if (options_.getAnimationFrameRate() > 0) {
+            final WebWindow topWindow = currentWindow_.getTopWindow();
+            for (final WebWindow webWindow : getWebWindows()) {
+                if (webWindow.getTopWindow() == topWindow) {
+                    final Object scriptable = webWindow.getScriptableObject();
+                    if (scriptable instanceof Window) {
+                        ((Window) scriptable).scheduleAnimationFrame();
+                    }
+                }
+            }
+        }
     }
 
     /**
@@ -1356,6 +1395,42 @@ public class WebClient implements Serializable, AutoCloseable {
         }
     }
 
+    /**
+     * Loads a {@link WebResponse} from the server for the given window. Except for <tt>about:</tt>
+     * and <tt>data:</tt> urls the request is counted as in flight for the window by the
+     * {@link #getNetworkActivityTracker() network activity tracker} until the response is loaded.
+     * @param webRequest the request
+     * @param window the window the request is made for, may be {@code null}
+     * @throws IOException if an IO problem occurs
+     * @return the WebResponse
+     */
+    public WebResponse loadWebResponse(final WebRequest webRequest, final WebWindow window) throws IOException {
+        final String protocol = webRequest.getUrl().getProtocol();
+        if ("about".equals(protocol) || "data".equals(protocol)) {
+            // nothing to fetch
+            return loadWebResponse(webRequest);
+        }
+
+        networkActivityTracker_.requestStarted(window);
+        try {
+            return loadWebResponse(webRequest);
+        }
+        finally {
+            networkActivityTracker_.requestFinished(window);
+        }
+    }
+
+    /**
+     * <p><span style="color:red">Experimental API: May be changed in next release
+     * and may not yet work perfectly!</span></p>
+     *
+     * Returns the tracker of the requests in flight of this client and its windows.
+     * @return the tracker
+     */
+    public NetworkActivityTracker getNetworkActivityTracker() {
+        return networkActivityTracker_;
+    }
+
     /**
      * Loads a {@link WebResponse} from the server through the WebConnection.
      * @param webRequest the request
@@ -1953,6 +2028,19 @@ public class WebClient implements Serializable, AutoCloseable {
      */
     @Override
     public void close() {
+        // stop the background I/O first, the job managers of the windows drop the jobs waiting for it;
+        // the executor is kept to reject the requests of unload handlers
+        synchronized (this) {
+            if (backgroundIoExecutor_ == null) {
+                getBackgroundIoExecutor();
+            }
+            for (final Runnable runnable : backgroundIoExecutor_.shutdownNow()) {
+                if (runnable instanceof Future) {
+                    ((Future<?>) runnable).cancel(false);
+                }
+            }
+        }
+
         // NB: this implementation is too simple as a new TopLevelWindow may be opened by
         // some JS script while we are closing the others
         final List<TopLevelWindow> topWindows = new ArrayList<>(topLevelWindows_);
@@ -2091,6 +2179,98 @@ public class WebClient implements Serializable, AutoCloseable {
         return count;
     }
 
+    /**
+     * <p><span style="color:red">Experimental API: May be changed in next release
+     * and may not yet work perfectly!</span></p>
+     *
+     * <p>Returns a future completed as soon as there are no background JavaScript tasks anymore
+     * (see {@link #waitForBackgroundJavaScript(long)}). Unlike the <tt>waitFor...</tt> methods no thread
+     * is blocked while waiting; the future is completed by the thread finishing the last job. Therefore
+     * dependent actions doing more than a few checks should use one of the <tt>...Async</tt> methods
+     * of the future.</p>
+     *
+     * <p>Use {@link CompletableFuture#get(long, TimeUnit)} to limit the time to wait.</p>
+     *
+     * @return the future
+     */
+    public CompletableFuture<Void> whenJavaScriptIdle() {
+        final List<JavaScriptJobManager> jobManagers = getJobManagers();
+        final CompletableFuture<?>[] futures = new CompletableFuture<?>[jobManagers.size()];
+        boolean idle = true;
+        for (int i = 0; i < futures.length; i++) {
+            futures[i] = jobManagers.get(i).whenIdle();
+            idle = idle && futures[i].isDone();
+        }
+        if (idle) {
+            return CompletableFuture.completedFuture(null);
+        }
+        // the jobs may start jobs in other windows in the meantime
+        return CompletableFuture.allOf(futures).thenCompose(v -> whenJavaScriptIdle());
+    }
+
+    /**
+     * <p><span style="color:red">Experimental API: May be changed in next release
+     * and may not yet work perfectly!</span></p>
+     *
+     * <p>Returns a future completed as soon as there were no background JavaScript tasks
+     * for the given time; a page starting a new timer from time to time (e.g. to poll the server)
+     * is not idle. Like {@link #whenJavaScriptIdle()} no thread of the client is blocked while waiting;
+     * the quiet period is measured by a timer shared by all clients.</p>
+     *
+     * @param quietPeriod the time without background JavaScript tasks
+     * @return the future
+     */
+    public CompletableFuture<Void> whenIdleFor(final Duration quietPeriod) {
+        WebAssert.notNull("quietPeriod", quietPeriod);
+        return whenJavaScriptIdle().thenCompose(v -> whenStillIdleAfter(quietPeriod));
+    }
+
+    private CompletableFuture<Void> whenStillIdleAfter(final Duration quietPeriod) {
+        final long addedJobs = getAggregateAddedJobCount();
+        final CompletableFuture<Void> timer = new CompletableFuture<>();
+        IdleTimer.SCHEDULER.schedule(() -> timer.complete(null), quietPeriod.toMillis(), TimeUnit.MILLISECONDS);
+
+        final Function<Void, CompletableFuture<Void>> check = v -> {
+            if (addedJobs == getAggregateAddedJobCount() && getAggregateJobCount() == 0) {
+                return CompletableFuture.completedFuture(null);
+            }
+            return whenIdleFor(quietPeriod);
+        };
+        return timer.thenCompose(check);
+    }
+
+    /**
+     * Returns the job managers of all windows still alive.
+     * @return the job managers
+     */
+    private List<JavaScriptJobManager> getJobManagers() {
+        final List<JavaScriptJobManager> jobManagers = new ArrayList<>();
+        synchronized (jobManagers_) {
+            for (final Iterator<WeakReference<JavaScriptJobManager>> i = jobManagers_.iterator(); i.hasNext();) {
+                final JavaScriptJobManager jobManager = i.next().get();
+                if (jobManager == null) {
+                    i.remove();
+                }
+                else {
+                    jobManagers.add(jobManager);
+                }
+            }
+        }
+        return jobManagers;
+    }
+
+    /**
+     * Returns the number of the background JavaScript jobs added across all windows.
+     * @return the number of jobs added
+     */
+    private long getAggregateAddedJobCount() {
+        long count = 0;
+        for (final JavaScriptJobManager jobManager : getJobManagers()) {
+            count += jobManager.getAddedJobCount();
+        }
+        return count;
+    }
+
     /**
      * Returns the aggregate background JavaScript job count across all windows.
      * @return the aggregate background JavaScript job count across all windows
@@ -2131,6 +2311,7 @@ public class WebClient implements Serializable, AutoCloseable {
         webConnection_ = new HttpWebConnection(this);
         scriptEngine_ = new JavaScriptEngine(this);
         jobManagers_ = Collections.synchronizedList(new ArrayList<WeakReference<JavaScriptJobManager>>());
+        networkActivityTracker_ = new NetworkActivityTracker();
         loadQueue_ = new ArrayList<>();
 
         if (getBrowserVersion().hasFeature(JS_XML_SUPPORT_VIA_ACTIVEXOBJECT)) {
@@ -2138,6 +2319,22 @@ public class WebClient implements Serializable, AutoCloseable {
         }
     }
 
+    /**
+     * The timer measuring the quiet periods of {@link WebClient#whenIdleFor(Duration)}
+     * and {@link NetworkActivityTracker#whenNetworkIdleFor(WebWindow, Duration)}.
+     */
+    static final class IdleTimer {
+        static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+                final Thread thread = new Thread(runnable, "JavaScript idle timer");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+        private IdleTimer() {
+        }
+    }
+
     private static class LoadJob {
         private final WebWindow requestingWindow_;
         private final String target_;
@@ -2243,7 +2440,7 @@ public class WebClient implements Serializable, AutoCloseable {
         }
         else {
             try {
-                final WebResponse response = loadWebResponse(request);
+                final WebResponse response = loadWebResponse(request, requestingWindow);
                 loadJob = new LoadJob(request, requestingWindow, target, response);
             }
             catch (final IOException e) {
@@ -2340,6 +2537,50 @@ public class WebClient implements Serializable, AutoCloseable {
         return options_;
     }
 
+    /**
+     * Returns the clock driving the JavaScript execution of this WebClient. This is
+     * {@link JavaScriptClock#SYSTEM} as long as the virtual time is not enabled.
+     * @return the clock
+     * @see WebClientOptions#setVirtualTime(boolean)
+     */
+    public JavaScriptClock getJavaScriptClock() {
+        if (!options_.isVirtualTime()) {
+            return JavaScriptClock.SYSTEM;
+        }
+        synchronized (this) {
+            if (virtualClock_ == null) {
+                virtualClock_ = JavaScriptClock.virtual();
+            }
+            return virtualClock_;
+        }
+    }
+
+    /**
+     * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br>
+     *
+     * Returns the executor used to do blocking network I/O (like the requests of asynchronous
+     * <tt>XMLHttpRequest</tt>s) without blocking the JavaScript event loop. The number of threads and
+     * of waiting tasks is bounded, the executor rejects more tasks; the threads are created on demand
+     * and stopped when the client is closed. After that the executor rejects all tasks.
+     * @return the executor
+     */
+    public synchronized Executor getBackgroundIoExecutor() {
+        if (backgroundIoExecutor_ == null) {
+            final AtomicInteger threadNumber = new AtomicInteger(1);
+            final ThreadFactory threadFactory = runnable -> {
+                final Thread thread = new Thread(runnable, "Background I/O " + threadNumber.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            };
+            final ThreadPoolExecutor executor = new ThreadPoolExecutor(BACKGROUND_IO_THREADS, BACKGROUND_IO_THREADS,
+                    BACKGROUND_IO_KEEP_ALIVE, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(BACKGROUND_IO_QUEUE_CAPACITY), threadFactory);
+            executor.allowCoreThreadTimeOut(true);
+            backgroundIoExecutor_ = executor;
+        }
+        return backgroundIoExecutor_;
+    }
+
     /**
      * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br>
      *
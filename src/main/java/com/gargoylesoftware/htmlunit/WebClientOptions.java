@@ -66,6 +66,18 @@ public class WebClientOptions implements Serializable {
     private int webSocketMaxBinaryMessageSize_ = -1;
     private int webSocketMaxBinaryMessageBufferSize_ = -1;
 
+    private boolean virtualTime_;
+
+    private int animationFrameRate_;
+    private boolean animationFramesPausedInBackground_ = true;
+    private boolean animationFramesCoalesced_;
+
+    private boolean javaScriptResourceAccounting_;
+    private long javaScriptCpuTimeBudget_;
+    private long javaScriptAllocationBudget_;
+
+    private boolean sourcePositionsEnabled_ = true;
+
     /**
      * If set to {@code true}, the client will accept connections to any host, regardless of
      * whether they have valid certificates or not. This is especially useful when you are trying to
@@ -739,4 +751,189 @@ public class WebClientOptions implements Serializable {
     public void setWebSocketMaxBinaryMessageBufferSize(final int webSocketMaxBinaryMessageBufferSize) {
         webSocketMaxBinaryMessageBufferSize_ = webSocketMaxBinaryMessageBufferSize;
     }
+
+    /**
+     * Enables/disables the virtual time for the JavaScript execution.
+     *
+     * <p>If enabled the background JavaScript is not executed according to the system time. Instead
+     * there is a virtual clock and as soon as no job is due, the time jumps directly to the target execution
+     * time of the next job. <code>Date</code>, <code>performance.now()</code> and the
+     * {@link WaitingRefreshHandler} are using the same clock. As a consequence a page waiting some seconds
+     * before doing something is processed without delay; but a page with an endless
+     * <code>setInterval()</code> keeps the JavaScript executor busy all the time.</p>
+     *
+     * <p>This has to be set before the first page is loaded; default is {@code false}.</p>
+     *
+     * @param enabled {@code true} to enable the virtual time
+     * @see WebClient#getJavaScriptClock()
+     */
+    public void setVirtualTime(final boolean enabled) {
+        virtualTime_ = enabled;
+    }
+
+    /**
+     * Returns {@code true} if the JavaScript execution is driven by a virtual clock.
+     *
+     * @return {@code true} if the virtual time is enabled
+     */
+    public boolean isVirtualTime() {
+        return virtualTime_;
+    }
+
+    /**
+     * Sets the frame rate used to run the callbacks registered by <code>window.requestAnimationFrame()</code>.
+     *
+     * <p>If the rate is greater than zero, the callbacks are executed by a job of the window, at most once
+     * per frame; as long as a page requests new frames, there is always a pending background job.
+     * With the default of {@code 0} the callbacks are only executed if
+     * {@link com.gargoylesoftware.htmlunit.javascript.host.Window#animateAnimationsFrames()} is called.</p>
+     *
+     * @param framesPerSecond the number of frames per second, {@code 0} to disable the scheduling
+     */
+    public void setAnimationFrameRate(final int framesPerSecond) {
+        if (framesPerSecond < 0) {
+            throw new IllegalArgumentException("Frame rate must not be negative: " + framesPerSecond);
+        }
+        animationFrameRate_ = framesPerSecond;
+    }
+
+    /**
+     * Returns the frame rate used to run the animation frame callbacks.
+     *
+     * @return the number of frames per second, {@code 0} if the scheduling is disabled
+     */
+    public int getAnimationFrameRate() {
+        return animationFrameRate_;
+    }
+
+    /**
+     * Enables/disables pausing the animation frames of background windows (the windows not belonging
+     * to the top level window of {@link WebClient#getCurrentWindow()}) like the browsers do.
+     * The frames are resumed as soon as the window gets the current one; default is {@code true}.
+     *
+     * @param paused whether to pause the animation frames of background windows
+     */
+    public void setAnimationFramesPausedInBackground(final boolean paused) {
+        animationFramesPausedInBackground_ = paused;
+    }
+
+    /**
+     * Returns whether the animation frames of background windows are paused.
+     *
+     * @return {@code true} if paused
+     */
+    public boolean isAnimationFramesPausedInBackground() {
+        return animationFramesPausedInBackground_;
+    }
+
+    /**
+     * Enables/disables coalescing the animation frames: whatever the {@link #setAnimationFrameRate(int) frame rate}
+     * is, at most one frame per second is executed and all the callbacks requested in the meantime are
+     * executed together. This lets animation driven pages make progress without burning CPU;
+     * default is {@code false}.
+     *
+     * @param coalesced whether to coalesce the animation frames to one frame per second
+     */
+    public void setAnimationFramesCoalesced(final boolean coalesced) {
+        animationFramesCoalesced_ = coalesced;
+    }
+
+    /**
+     * Returns whether the animation frames are coalesced to one frame per second.
+     *
+     * @return {@code true} if coalesced
+     */
+    public boolean isAnimationFramesCoalesced() {
+        return animationFramesCoalesced_;
+    }
+
+    /**
+     * Enables/disables collecting the CPU time and memory used by the JavaScript of every window
+     * (see {@link com.gargoylesoftware.htmlunit.WebWindow#getJavaScriptResourceUsage()}).
+     * The resources are always collected if a budget is set; default is {@code false}.
+     *
+     * @param enabled whether to collect the resources used
+     */
+    public void setJavaScriptResourceAccounting(final boolean enabled) {
+        javaScriptResourceAccounting_ = enabled;
+    }
+
+    /**
+     * Returns whether the resources used by the JavaScript of every window are collected;
+     * this is the case if enabled or if a budget is set.
+     *
+     * @return whether the resources are collected
+     */
+    public boolean isJavaScriptResourceAccounting() {
+        return javaScriptResourceAccounting_ || javaScriptCpuTimeBudget_ > 0 || javaScriptAllocationBudget_ > 0;
+    }
+
+    /**
+     * Sets the CPU time the JavaScript of one window may use. If the budget is exceeded the running script
+     * is terminated, the jobs of the window are stopped and no more JavaScript is executed in the window
+     * until a new page is loaded. Unlike the {@link WebClient#setJavaScriptTimeout(long) JavaScript timeout}
+     * the budget limits the sum of all scripts, event handlers and jobs.
+     *
+     * @param budget the CPU time in milliseconds, {@code 0} for no limit
+     */
+    public void setJavaScriptCpuTimeBudget(final long budget) {
+        if (budget < 0) {
+            throw new IllegalArgumentException("Budget must not be negative: " + budget);
+        }
+        javaScriptCpuTimeBudget_ = budget;
+    }
+
+    /**
+     * Returns the CPU time the JavaScript of one window may use.
+     *
+     * @return the CPU time in milliseconds, {@code 0} for no limit
+     */
+    public long getJavaScriptCpuTimeBudget() {
+        return javaScriptCpuTimeBudget_;
+    }
+
+    /**
+     * Sets the (approximate) number of bytes the JavaScript of one window may allocate; the memory
+     * freed in the meantime is not taken into account. If the budget is exceeded the running script
+     * is terminated, the jobs of the window are stopped and no more JavaScript is executed in the window
+     * until a new page is loaded.
+     *
+     * @param budget the number of bytes, {@code 0} for no limit
+     */
+    public void setJavaScriptAllocationBudget(final long budget) {
+        if (budget < 0) {
+            throw new IllegalArgumentException("Budget must not be negative: " + budget);
+        }
+        javaScriptAllocationBudget_ = budget;
+    }
+
+    /**
+     * Returns the number of bytes the JavaScript of one window may allocate.
+     *
+     * @return the number of bytes, {@code 0} for no limit
+     */
+    public long getJavaScriptAllocationBudget() {
+        return javaScriptAllocationBudget_;
+    }
+
+    /**
+     * Enables/disables remembering the line and column numbers of the parsed elements
+     * (see {@link com.gargoylesoftware.htmlunit.html.DomNode#getStartLineNumber()}). The numbers
+     * are used for the line numbers of scripts in error messages; without them every element
+     * needs less memory. By default, this property is enabled.
+     *
+     * @param enabled whether to remember the source positions
+     */
+    public void setSourcePositionsEnabled(final boolean enabled) {
+        sourcePositionsEnabled_ = enabled;
+    }
+
+    /**
+     * Returns whether the line and column numbers of the parsed elements are remembered.
+     *
+     * @return whether to remember the source positions
+     */
+    public boolean isSourcePositionsEnabled() {
+        return sourcePositionsEnabled_;
+    }
 }
@@ -16,6 +16,7 @@ package com.gargoylesoftware.htmlunit;
 
 import java.io.Serializable;
 
+import com.gargoylesoftware.htmlunit.javascript.JavaScriptResourceUsage;
 import com.gargoylesoftware.htmlunit.javascript.background.JavaScriptJobManager;
 
 /**
@@ -116,6 +117,20 @@ public interface WebWindow extends Serializable {
      */
     JavaScriptJobManager getJobManager();
 
+    /**
+     * <p><span style="color:red">Experimental API: May be changed in next release
+     * and may not yet work perfectly!</span></p>
+     *
+     * Returns the resources used by the JavaScript of the page loaded in this window.
+     * The default implementation returns the {@link JavaScriptResourceUsage#unsupported() unsupported} usage.
+     *
+     * @return the resource usage
+     * @see WebClientOptions#setJavaScriptResourceAccounting(boolean)
+     */
+    default JavaScriptResourceUsage getJavaScriptResourceUsage() {
+        return JavaScriptResourceUsage.unsupported();
+    }
+
     /**
      * Indicates if this window is closed. No action should be performed on a closed window.
      * @return {@code true} when the window is closed
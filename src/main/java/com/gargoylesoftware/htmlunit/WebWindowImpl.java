@@ -28,6 +28,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import com.gargoylesoftware.htmlunit.html.FrameWindow;
+import com.gargoylesoftware.htmlunit.javascript.JavaScriptResourceUsage;
 import com.gargoylesoftware.htmlunit.javascript.background.BackgroundJavaScriptFactory;
 import com.gargoylesoftware.htmlunit.javascript.background.JavaScriptJobManager;
 
@@ -53,6 +54,7 @@ public abstract class WebWindowImpl implements WebWindow {
     private Page enclosedPage_;
     private transient Object scriptObject_;
     private JavaScriptJobManager jobManager_;
+    private final JavaScriptResourceUsage javaScriptResourceUsage_ = new JavaScriptResourceUsage();
     private final List<WebWindowImpl> childWindows_ = new ArrayList<>();
     private String name_ = "";
     private final History history_ = new History(this);
@@ -128,6 +130,7 @@ public abstract class WebWindowImpl implements WebWindow {
             return;
         }
         destroyChildren();
+        javaScriptResourceUsage_.reset();
         enclosedPage_ = page;
         history_.addPage(page);
         if (isJavaScriptInitializationNeeded()) {
@@ -167,6 +170,14 @@ public abstract class WebWindowImpl implements WebWindow {
         return jobManager_;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public JavaScriptResourceUsage getJavaScriptResourceUsage() {
+        return javaScriptResourceUsage_;
+    }
+
     /**
      * <p><span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span></p>
      *
@@ -46,8 +46,10 @@ import com.gargoylesoftware.htmlunit.WebRequest;
 import com.gargoylesoftware.htmlunit.WebResponse;
 import com.gargoylesoftware.htmlunit.html.HtmlPage;
 import com.gargoylesoftware.htmlunit.javascript.JavaScriptEngine;
+import com.gargoylesoftware.htmlunit.javascript.PostponedAction;
 import com.gargoylesoftware.htmlunit.javascript.background.BackgroundJavaScriptFactory;
 import com.gargoylesoftware.htmlunit.javascript.background.JavaScriptJob;
+import com.gargoylesoftware.htmlunit.javascript.background.JavaScriptJobManager;
 import com.gargoylesoftware.htmlunit.javascript.configuration.JsxClass;
 import com.gargoylesoftware.htmlunit.javascript.configuration.JsxConstructor;
 import com.gargoylesoftware.htmlunit.javascript.configuration.JsxFunction;
@@ -507,7 +509,21 @@ public class XMLHTTPRequest extends MSXMLScriptable {
             if (LOG.isDebugEnabled()) {
                 LOG.debug("Starting XMLHTTPRequest thread for asynchronous request");
             }
-            jobID_ = w.getWebWindow().getJobManager().addJob(job, page);
+            // the job is started when the script sending the request has finished
+            final JavaScriptJobManager jobManager = w.getWebWindow().getJobManager();
+            final int pendingJobId = jobManager.addPendingJob(job, page);
+            client.getJavaScriptEngine().addPostponedAction(new PostponedAction(page, "XMLHTTPRequest.send") {
+                @Override
+                public void execute() {
+                    if (pendingJobId == 0) {
+                        jobID_ = jobManager.addJob(job, page);
+                    }
+                    else {
+                        jobManager.startPendingJob(pendingJobId);
+                    }
+                }
+            });
+            jobID_ = pendingJobId;
         }
     }
 
@@ -572,7 +588,8 @@ public class XMLHTTPRequest extends MSXMLScriptable {
                 preflightRequest.setAdditionalHeader(HttpHeader.ACCESS_CONTROL_REQUEST_HEADERS, builder.toString());
 
                 // do the preflight request
-                final WebResponse preflightResponse = wc.loadWebResponse(preflightRequest);
+                final WebResponse preflightResponse =
+                        wc.loadWebResponse(preflightRequest, containingPage_.getEnclosingWindow());
                 if (!isPreflightAuthorized(preflightResponse)) {
                     setState(STATE_HEADERS_RECEIVED, context);
                     setState(STATE_LOADING, context);
@@ -585,7 +602,7 @@ public class XMLHTTPRequest extends MSXMLScriptable {
                     return;
                 }
             }
-            final WebResponse webResponse = wc.loadWebResponse(webRequest_);
+            final WebResponse webResponse = wc.loadWebResponse(webRequest_, containingPage_.getEnclosingWindow());
             if (LOG.isDebugEnabled()) {
                 LOG.debug("Web response loaded successfully.");
             }
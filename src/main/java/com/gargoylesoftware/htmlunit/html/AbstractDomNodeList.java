@@ -15,7 +15,6 @@
 package com.gargoylesoftware.htmlunit.html;
 
 import java.io.Serializable;
-import java.lang.ref.WeakReference;
 import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.List;
@@ -40,21 +39,17 @@ public abstract class AbstractDomNodeList<E extends DomNode> extends AbstractLis
     /** Element cache, used to avoid XPath expression evaluation as much as possible. */
     private List<E> cachedElements_;
 
+    /** The versions of the root node the cache was computed for. */
+    private int cachedSubtreeVersion_;
+    private int cachedAttributesVersion_;
+
     /**
      * Creates a new node list. The elements will be "calculated" using the specified XPath
      * expression applied on the specified node.
      * @param node the node to serve as root for the XPath expression
      */
     public AbstractDomNodeList(final DomNode node) {
-        if (node != null) {
-            node_ = node;
-            final DomHtmlAttributeChangeListenerImpl listener = new DomHtmlAttributeChangeListenerImpl(this);
-            node_.addDomChangeListener(listener);
-            if (node_ instanceof HtmlElement) {
-                ((HtmlElement) node_).addHtmlAttributeChangeListener(listener);
-                cachedElements_ = null;
-            }
-        }
+        node_ = node;
     }
 
     /**
@@ -81,12 +76,28 @@ public abstract class AbstractDomNodeList<E extends DomNode> extends AbstractLis
                 cachedElements_ = new ArrayList<>();
             }
             else {
+                cachedSubtreeVersion_ = node_.getSubtreeVersion();
+                cachedAttributesVersion_ = node_.getSubtreeAttributesVersion();
                 cachedElements_ = provideElements();
             }
         }
+        else if (node_ != null && isCacheOutdated()) {
+            cachedElements_ = null;
+            return getNodes();
+        }
         return cachedElements_;
     }
 
+    /**
+     * Returns whether the root node was changed since the cache was computed;
+     * attribute changes are only taken into account for html elements.
+     * @return whether the cache has to be computed again
+     */
+    private boolean isCacheOutdated() {
+        return node_.getSubtreeVersion() != cachedSubtreeVersion_
+                || (node_ instanceof HtmlElement && node_.getSubtreeAttributesVersion() != cachedAttributesVersion_);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -118,69 +129,4 @@ public abstract class AbstractDomNodeList<E extends DomNode> extends AbstractLis
     public E get(final int index) {
         return getNodes().get(index);
     }
-
-    /**
-     * DOM change listener which clears the node cache when necessary.
-     */
-    private static final class DomHtmlAttributeChangeListenerImpl
-                                    implements DomChangeListener, HtmlAttributeChangeListener {
-
-        private transient WeakReference<AbstractDomNodeList<?>> nodeList_;
-
-        private DomHtmlAttributeChangeListenerImpl(final AbstractDomNodeList<?> nodeList) {
-            super();
-
-            nodeList_ = new WeakReference<>(nodeList);
-        }
-
-        /**
-         * {@inheritDoc}
-         */
-        @Override
-        public void nodeAdded(final DomChangeEvent event) {
-            clearCache();
-        }
-
-        /**
-         * {@inheritDoc}
-         */
-        @Override
-        public void nodeDeleted(final DomChangeEvent event) {
-            clearCache();
-        }
-
-        /**
-         * {@inheritDoc}
-         */
-        @Override
-        public void attributeAdded(final HtmlAttributeChangeEvent event) {
-            clearCache();
-        }
-
-        /**
-         * {@inheritDoc}
-         */
-        @Override
-        public void attributeRemoved(final HtmlAttributeChangeEvent event) {
-            clearCache();
-        }
-
-        /**
-         * {@inheritDoc}
-         */
-        @Override
-        public void attributeReplaced(final HtmlAttributeChangeEvent event) {
-            clearCache();
-        }
-
-        private void clearCache() {
-            if (nodeList_ != null) {
-                final AbstractDomNodeList<?> nodes = nodeList_.get();
-                if (nodes != null) {
-                    nodes.cachedElements_ = null;
-                }
-            }
-        }
-    }
-
 }
@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2002-2020 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.html;
+
+/**
+ * Maintains order labels for the nodes attached to a page: the labels increase in document order,
+ * comparing the document position of two nodes is a comparison of two numbers.
+ *
+ * <p>The labels are sparse. A node inserted later gets labels between the ones of the nodes before
+ * and after it, if there is enough room. Otherwise the range around the insertion point is widened,
+ * doubling the number of nodes on each side, until its labels are sparse enough; only this range is
+ * relabeled. Removing nodes keeps the order of the remaining ones, nothing has to be done.</p>
+ *
+ * <p>Changes of the tree bypassing {@link #nodeInserted(DomNode)} invalidate all labels, the whole
+ * document is renumbered when the next comparison takes place.</p>
+ *
+ * <p>As long as nobody compares, nothing is done at all; this is the common case while parsing.</p>
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+final class DocumentOrder {
+
+    /** The distance between two labels after renumbering. */
+    static final long GAP = 1L << 16;
+
+    /** The minimal distance between two labels after relabeling a range. */
+    static final long MIN_RELABEL_GAP = GAP >> 6;
+
+    private final DomNode root_;
+    private volatile boolean valid_;
+    private int renumberCount_;
+    private int relabelCount_;
+
+    /**
+     * Creates a new instance.
+     * @param root the root of the document, the page
+     */
+    DocumentOrder(final DomNode root) {
+        root_ = root;
+    }
+
+    /**
+     * Assigns labels to the specified node and its descendants, after the node was inserted
+     * into the document.
+     * @param node the node
+     */
+    synchronized void nodeInserted(final DomNode node) {
+        if (!valid_) {
+            return;
+        }
+
+        final DomNode parent = node.getParentNode();
+        if (parent == null) {
+            valid_ = false;
+            return;
+        }
+
+        // the preceding node is the last descendant of the previous sibling or the parent
+        DomNode preceding = node.getPreviousSibling();
+        if (preceding == null) {
+            preceding = parent;
+        }
+        else {
+            for (DomNode last = preceding.getLastChild(); last != null; last = last.getLastChild()) {
+                preceding = last;
+            }
+        }
+
+        DomNode following = null;
+        for (DomNode n = node; n != null && n != root_ && following == null; n = n.getParentNode()) {
+            following = n.getNextSibling();
+        }
+
+        long count = 1;
+        for (DomNode descendant = nextInSubtree(node, node); descendant != null;
+                descendant = nextInSubtree(descendant, node)) {
+            count++;
+        }
+
+        final long from = preceding.getOrderLabel();
+        final long step;
+        if (following == null) {
+            if (from > Long.MAX_VALUE - GAP * (count + 1)) {
+                relabel(preceding, null, count);
+                return;
+            }
+            step = GAP;
+        }
+        else {
+            step = (following.getOrderLabel() - from) / (count + 1);
+            if (step < 1) {
+                relabel(preceding, following, count);
+                return;
+            }
+        }
+
+        long label = from;
+        for (DomNode n = node; n != null; n = nextInSubtree(n, node)) {
+            label += step;
+            n.setOrderLabel(label);
+        }
+    }
+
+    /**
+     * Relabels the nodes between two nodes, widening the range until the labels are sparse enough.
+     * The nodes limiting the range keep their labels.
+     * @param first the node before the range
+     * @param last the node after the range, {@code null} for the end of the document
+     * @param count the number of nodes in the range
+     */
+    private void relabel(final DomNode first, final DomNode last, final long count) {
+        DomNode before = first;
+        DomNode after = last;
+        long between = count;
+        for (int widen = 1; ; widen *= 2) {
+            final long upper = after == null ? Long.MAX_VALUE : after.getOrderLabel();
+            final long step = (upper - before.getOrderLabel()) / (between + 1);
+            if (step >= MIN_RELABEL_GAP || (before == root_ && after == null)) {
+                long label = before.getOrderLabel();
+                for (DomNode n = nextInSubtree(before, root_); n != after; n = nextInSubtree(n, root_)) {
+                    label += step;
+                    n.setOrderLabel(label);
+                }
+                relabelCount_++;
+                return;
+            }
+
+            for (int i = 0; i < widen && before != root_; i++) {
+                before = previous(before);
+                between++;
+            }
+            for (int i = 0; i < widen && after != null; i++) {
+                after = nextInSubtree(after, root_);
+                between++;
+            }
+        }
+    }
+
+    /**
+     * Invalidates all labels, after the document was changed bypassing {@link #nodeInserted(DomNode)}.
+     */
+    void invalidate() {
+        valid_ = false;
+    }
+
+    /**
+     * Compares the document position of two nodes attached to the document.
+     * @param node1 the first node
+     * @param node2 the second node
+     * @return a negative number if the first node precedes the second one, 0 if they are the same
+     *         and a positive number if the first node follows the second one
+     */
+    synchronized int compare(final DomNode node1, final DomNode node2) {
+        if (!valid_) {
+            renumber();
+        }
+        return Long.compare(node1.getOrderLabel(), node2.getOrderLabel());
+    }
+
+    /**
+     * @return how often the document was renumbered
+     */
+    synchronized int getRenumberCount() {
+        return renumberCount_;
+    }
+
+    /**
+     * @return how often a range of the document was relabeled
+     */
+    synchronized int getRelabelCount() {
+        return relabelCount_;
+    }
+
+    private void renumber() {
+        long label = 0;
+        for (DomNode n = root_; n != null; n = nextInSubtree(n, root_)) {
+            n.setOrderLabel(label);
+            label += GAP;
+        }
+        valid_ = true;
+        renumberCount_++;
+    }
+
+    /**
+     * Returns the previous node in document order.
+     * @param node the current node, not the root
+     * @return the previous node
+     */
+    private static DomNode previous(final DomNode node) {
+        DomNode previous = node.getPreviousSibling();
+        if (previous == null) {
+            return node.getParentNode();
+        }
+        for (DomNode last = previous.getLastChild(); last != null; last = last.getLastChild()) {
+            previous = last;
+        }
+        return previous;
+    }
+
+    /**
+     * Returns the next node of the subtree in document order.
+     * @param node the current node
+     * @param root the root of the subtree
+     * @return the next node or {@code null}
+     */
+    private static DomNode nextInSubtree(final DomNode node, final DomNode root) {
+        final DomNode child = node.getFirstChild();
+        if (child != null) {
+            return child;
+        }
+        for (DomNode n = node; n != root && n != null; n = n.getParentNode()) {
+            final DomNode next = n.getNextSibling();
+            if (next != null) {
+                return next;
+            }
+        }
+        return null;
+    }
+}
@@ -111,6 +111,11 @@ public class DomAttr extends DomNamespaceNode implements Attr {
     public void setValue(final String value) {
         value_ = value;
         specified_ = true;
+
+        final DomElement ownerElement = getOwnerElement();
+        if (ownerElement != null) {
+            ownerElement.notifyAttributeChanged(getName());
+        }
     }
 
     /**
@@ -20,6 +20,9 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.Serializable;
 import java.io.StringWriter;
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -43,8 +46,6 @@ import org.w3c.dom.Node;
 import org.w3c.dom.TypeInfo;
 
 import com.gargoylesoftware.css.parser.CSSException;
-import com.gargoylesoftware.css.parser.selector.Selector;
-import com.gargoylesoftware.css.parser.selector.SelectorList;
 import com.gargoylesoftware.css.parser.selector.SelectorSpecificity;
 import com.gargoylesoftware.htmlunit.BrowserVersion;
 import com.gargoylesoftware.htmlunit.Page;
@@ -56,7 +57,7 @@ import com.gargoylesoftware.htmlunit.javascript.AbstractJavaScriptEngine;
 import com.gargoylesoftware.htmlunit.javascript.HtmlUnitContextFactory;
 import com.gargoylesoftware.htmlunit.javascript.JavaScriptEngine;
 import com.gargoylesoftware.htmlunit.javascript.SimpleScriptable;
-import com.gargoylesoftware.htmlunit.javascript.host.css.CSSStyleSheet;
+import com.gargoylesoftware.htmlunit.javascript.host.css.SelectorMatcher;
 import com.gargoylesoftware.htmlunit.javascript.host.event.Event;
 import com.gargoylesoftware.htmlunit.javascript.host.event.EventTarget;
 import com.gargoylesoftware.htmlunit.javascript.host.event.MouseEvent;
@@ -86,8 +87,8 @@ public class DomElement extends DomNamespaceNode implements Element {
     /** The map holding the attributes, keyed by name. */
     private NamedAttrNodeMapImpl attributes_ = new NamedAttrNodeMapImpl(this, isAttributeCaseSensitive());
 
-    /** The map holding the namespaces, keyed by URI. */
-    private Map<String, String> namespaces_ = new HashMap<>();
+    /** The map holding the namespaces, keyed by URI; created when the first one is added. */
+    private Map<String, String> namespaces_;
 
     /** Cache for the styles. */
     private String styleString_;
@@ -112,11 +113,14 @@ public class DomElement extends DomNamespaceNode implements Element {
         super(namespaceURI, qualifiedName, page);
         if (attributes != null && !attributes.isEmpty()) {
             attributes_ = new NamedAttrNodeMapImpl(this, isAttributeCaseSensitive(), attributes);
-            for (final DomAttr entry : attributes_.values()) {
-                entry.setParentNode(this);
-                final String attrNamespaceURI = entry.getNamespaceURI();
-                if (attrNamespaceURI != null) {
-                    namespaces_.put(attrNamespaceURI, entry.getPrefix());
+            for (int i = 0; i < attributes_.size(); i++) {
+                final DomAttr entry = attributes_.getCreatedAttr(i);
+                if (entry != null) {
+                    entry.setParentNode(this);
+                    final String attrNamespaceURI = entry.getNamespaceURI();
+                    if (attrNamespaceURI != null) {
+                        addNamespace(attrNamespaceURI, entry.getPrefix());
+                    }
                 }
             }
         }
@@ -301,11 +305,11 @@ public class DomElement extends DomNamespaceNode implements Element {
      */
     protected void printOpeningTagContentAsXml(final PrintWriter printWriter) {
         printWriter.print(getTagName());
-        for (final Map.Entry<String, DomAttr> entry : attributes_.entrySet()) {
+        for (int i = 0; i < attributes_.size(); i++) {
             printWriter.print(" ");
-            printWriter.print(entry.getKey());
+            printWriter.print(attributes_.getName(i));
             printWriter.print("=\"");
-            printWriter.print(StringUtils.escapeXmlAttributeValue(entry.getValue().getNodeValue()));
+            printWriter.print(StringUtils.escapeXmlAttributeValue(attributes_.getValue(i)));
             printWriter.print("\"");
         }
     }
@@ -358,7 +362,7 @@ public class DomElement extends DomNamespaceNode implements Element {
             qualifiedName = localName;
         }
         else {
-            final String prefix = namespaces_.get(namespaceURI);
+            final String prefix = namespaces_ == null ? null : namespaces_.get(namespaceURI);
             if (prefix == null) {
                 qualifiedName = null;
             }
@@ -380,11 +384,7 @@ public class DomElement extends DomNamespaceNode implements Element {
      */
     @Override
     public String getAttribute(final String attributeName) {
-        final DomAttr attr = attributes_.get(attributeName);
-        if (attr != null) {
-            return attr.getNodeValue();
-        }
-        return ATTRIBUTE_NOT_DEFINED;
+        return attributes_.getValue(attributeName);
     }
 
     /**
@@ -394,11 +394,7 @@ public class DomElement extends DomNamespaceNode implements Element {
      * @return the value of the attribute or {@link #ATTRIBUTE_NOT_DEFINED} or {@link #ATTRIBUTE_VALUE_EMPTY}
      */
     public String getAttributeDirect(final String attributeName) {
-        final DomAttr attr = attributes_.getDirect(attributeName);
-        if (attr != null) {
-            return attr.getNodeValue();
-        }
-        return ATTRIBUTE_NOT_DEFINED;
+        return attributes_.getValueDirect(attributeName);
     }
 
     /**
@@ -407,7 +403,9 @@ public class DomElement extends DomNamespaceNode implements Element {
      */
     @Override
     public void removeAttribute(final String attributeName) {
-        attributes_.remove(attributeName);
+        if (attributes_.removeValue(attributeName)) {
+            notifyAttributeChanged(attributeName);
+        }
     }
 
     /**
@@ -444,7 +442,7 @@ public class DomElement extends DomNamespaceNode implements Element {
     public final boolean hasAttributeNS(final String namespaceURI, final String localName) {
         final String qualifiedName = getQualifiedName(namespaceURI, localName);
         if (qualifiedName != null) {
-            return attributes_.get(qualifiedName) != null;
+            return attributes_.containsKey(qualifiedName);
         }
         return false;
     }
@@ -501,13 +499,37 @@ public class DomElement extends DomNamespaceNode implements Element {
     protected void setAttributeNS(final String namespaceURI, final String qualifiedName,
             final String attributeValue, final boolean notifyAttributeChangeListeners,
             final boolean notifyMutationObservers) {
-        final String value = attributeValue;
-        final DomAttr newAttr = new DomAttr(getPage(), namespaceURI, qualifiedName, value, true);
-        newAttr.setParentNode(this);
-        attributes_.put(qualifiedName, newAttr);
+        if (namespaceURI == null) {
+            attributes_.putValue(qualifiedName, attributeValue);
+        }
+        else {
+            final DomAttr newAttr = new DomAttr(getPage(), namespaceURI, qualifiedName, attributeValue, true);
+            newAttr.setParentNode(this);
+            attributes_.putAttr(qualifiedName, newAttr);
+            addNamespace(namespaceURI, newAttr.getPrefix());
+        }
+        notifyAttributeChanged(qualifiedName);
+    }
 
-        if (namespaceURI != null) {
-            namespaces_.put(namespaceURI, newAttr.getPrefix());
+    private void addNamespace(final String namespaceURI, final String prefix) {
+        if (namespaces_ == null) {
+            namespaces_ = new HashMap<>();
+        }
+        namespaces_.put(namespaceURI, prefix);
+    }
+
+    /**
+     * Updates the attributes version of the subtrees containing this element after an attribute
+     * has changed, and notifies the page if it was the <tt>class</tt> attribute.
+     * @param attributeName the name of the changed attribute
+     */
+    void notifyAttributeChanged(final String attributeName) {
+        subtreeAttributesChanged();
+        if ("class".equalsIgnoreCase(attributeName)) {
+            final HtmlPage htmlPage = getHtmlPageOrNull();
+            if (htmlPage != null) {
+                htmlPage.notifyClassAttributeChanged(this);
+            }
         }
     }
 
@@ -655,7 +677,8 @@ public class DomElement extends DomNamespaceNode implements Element {
      */
     @Override
     public Attr setAttributeNode(final Attr attribute) {
-        attributes_.setNamedItem(attribute);
+        // notifies this element about the change
+        attributes_.setNamedItemDirect(attribute);
         return null;
     }
 
@@ -683,8 +706,10 @@ public class DomElement extends DomNamespaceNode implements Element {
     @Override
     public DomNode cloneNode(final boolean deep) {
         final DomElement clone = (DomElement) super.cloneNode(deep);
-        clone.attributes_ = new NamedAttrNodeMapImpl(clone, isAttributeCaseSensitive());
-        clone.attributes_.putAll(attributes_);
+        clone.attributes_ = new NamedAttrNodeMapImpl(clone, attributes_);
+        if (namespaces_ != null) {
+            clone.namespaces_ = new HashMap<>(namespaces_);
+        }
         return clone;
     }
 
@@ -1530,13 +1555,9 @@ public class DomElement extends DomNamespaceNode implements Element {
     public boolean matches(final String selectorString) {
         try {
             final BrowserVersion browserVersion = getPage().getWebClient().getBrowserVersion();
-            final SelectorList selectorList = getSelectorList(selectorString, browserVersion);
-
-            if (selectorList != null) {
-                for (Selector selector : selectorList) {
-                    if (CSSStyleSheet.selects(browserVersion, selector, this, null, true)) {
-                        return true;
-                    }
+            for (final SelectorMatcher matcher : getSelectorMatchers(selectorString, browserVersion)) {
+                if (matcher.matches(browserVersion, this, null, null, true)) {
+                    return true;
                 }
             }
             return false;
@@ -1557,14 +1578,18 @@ public class DomElement extends DomNamespaceNode implements Element {
 
 /**
  * The {@link NamedNodeMap} to store the node attributes.
+ *
+ * <p>The attributes are kept in one flat array of names and values, in insertion order. A value is
+ * stored as plain string until its {@link DomAttr} is asked for, then the attribute node replaces the
+ * string; this way reading attribute values never allocates anything.</p>
  */
 class NamedAttrNodeMapImpl implements Map<String, DomAttr>, NamedNodeMap, Serializable {
     protected static final NamedAttrNodeMapImpl EMPTY_MAP = new NamedAttrNodeMapImpl();
-    private static final DomAttr[] EMPTY_ARRAY = new DomAttr[0];
+    private static final Object[] EMPTY_ARRAY = new Object[0];
 
-    private final Map<String, DomAttr> map_ = new LinkedHashMap<>();
-    private boolean dirty_ = false;
-    private DomAttr[] attrPositions_ = EMPTY_ARRAY;
+    /** The names at even positions, the values (a string or the {@link DomAttr}) at the odd ones. */
+    private Object[] entries_ = EMPTY_ARRAY;
+    private int size_;
     private final DomElement domNode_;
     private final boolean caseSensitive_;
 
@@ -1583,10 +1608,49 @@ class NamedAttrNodeMapImpl implements Map<String, DomAttr>, NamedNodeMap, Serial
         caseSensitive_ = caseSensitive;
     }
 
+    /**
+     * Creates a new map holding the specified attributes; attributes without namespace are
+     * stored as plain values, their nodes are not kept.
+     * @param domNode the element
+     * @param caseSensitive whether the names are case sensitive
+     * @param attributes the attributes
+     */
     NamedAttrNodeMapImpl(final DomElement domNode, final boolean caseSensitive,
             final Map<String, DomAttr> attributes) {
         this(domNode, caseSensitive);
-        putAll(attributes);
+        entries_ = new Object[attributes.size() * 2];
+        for (final Map.Entry<String, DomAttr> entry : attributes.entrySet()) {
+            final String name = fixName(entry.getKey());
+            final DomAttr attr = entry.getValue();
+            set(name, isPlain(name, attr) ? attr.getValue() : attr);
+        }
+    }
+
+    /**
+     * Creates a copy of the specified map for another element.
+     * @param domNode the element
+     * @param attributes the map to copy
+     */
+    NamedAttrNodeMapImpl(final DomElement domNode, final NamedAttrNodeMapImpl attributes) {
+        this(domNode, attributes.caseSensitive_);
+        size_ = attributes.size_;
+        entries_ = Arrays.copyOf(attributes.entries_, size_ * 2);
+        for (int i = 1; i < entries_.length; i += 2) {
+            if (entries_[i] instanceof DomAttr) {
+                final DomAttr attr = (DomAttr) entries_[i];
+                if (isPlain((String) entries_[i - 1], attr)) {
+                    entries_[i] = attr.getValue();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns whether the attribute node carries nothing but its value, so that it can be created
+     * again when needed.
+     */
+    private static boolean isPlain(final String name, final DomAttr attr) {
+        return attr.getSpecified() && attr.getNamespaceURI() == null && name.equals(attr.getName());
     }
 
     /**
@@ -1628,14 +1692,10 @@ class NamedAttrNodeMapImpl implements Map<String, DomAttr>, NamedNodeMap, Serial
      */
     @Override
     public Node item(final int index) {
-        if (index < 0 || index >= map_.size()) {
+        if (index < 0 || index >= size_) {
             return null;
         }
-        if (dirty_) {
-            attrPositions_ = map_.values().toArray(attrPositions_);
-            dirty_ = false;
-        }
-        return attrPositions_[index];
+        return getAttr(index);
     }
 
     /**
@@ -1679,8 +1739,59 @@ class NamedAttrNodeMapImpl implements Map<String, DomAttr>, NamedNodeMap, Serial
     @Override
     public DomAttr put(final String key, final DomAttr value) {
         final String name = fixName(key);
-        dirty_ = true;
-        return map_.put(name, value);
+        final int index = indexOf(name);
+        final DomAttr previous = index == -1 ? null : getAttr(index);
+        set(name, value);
+        attributeChanged(name);
+        return previous;
+    }
+
+    /**
+     * Sets the attribute node like {@link #setNamedItem(Node)}, without creating the node of the replaced
+     * attribute to return it.
+     * @param node the attribute node
+     */
+    void setNamedItemDirect(final Node node) {
+        putDirect(node.getLocalName(), (DomAttr) node);
+    }
+
+    /**
+     * Sets the attribute node like {@link #put(String, DomAttr)}, without creating the node of the replaced
+     * attribute to return it.
+     * @param key the name of the attribute
+     * @param value the attribute node
+     */
+    private void putDirect(final String key, final DomAttr value) {
+        final String name = fixName(key);
+        set(name, value);
+        attributeChanged(name);
+    }
+
+    /**
+     * Sets the attribute node without notifying the element, for the element itself.
+     * @param key the name of the attribute
+     * @param value the attribute node
+     */
+    void putAttr(final String key, final DomAttr value) {
+        set(fixName(key), value);
+    }
+
+    /**
+     * Sets the value of the attribute without namespace; the attribute node is created only if
+     * the name differs from the key used in this map.
+     * @param qualifiedName the name of the attribute
+     * @param value the value
+     */
+    void putValue(final String qualifiedName, final String value) {
+        final String name = fixName(qualifiedName);
+        if (name.equals(qualifiedName)) {
+            set(name, value != null && value.isEmpty() ? DomElement.ATTRIBUTE_VALUE_EMPTY : value);
+        }
+        else {
+            final DomAttr attr = new DomAttr(domNode_.getPage(), null, qualifiedName, value, true);
+            attr.setParentNode(domNode_);
+            set(name, attr);
+        }
     }
 
     /**
@@ -1690,19 +1801,54 @@ class NamedAttrNodeMapImpl implements Map<String, DomAttr>, NamedNodeMap, Serial
     public DomAttr remove(final Object key) {
         if (key instanceof String) {
             final String name = fixName((String) key);
-            dirty_ = true;
-            return map_.remove(name);
+            final int index = indexOf(name);
+            if (index != -1) {
+                final DomAttr attr = getAttr(index);
+                removeAt(index);
+                attributeChanged(name);
+                return attr;
+            }
         }
         return null;
     }
 
+    /**
+     * Removes the attribute without creating its node.
+     * @param key the name of the attribute
+     * @return whether the attribute was there
+     */
+    boolean removeValue(final String key) {
+        final int index = indexOf(fixName(key));
+        if (index == -1) {
+            return false;
+        }
+        removeAt(index);
+        return true;
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public void clear() {
-        dirty_ = true;
-        map_.clear();
+        final Object[] entries = entries_;
+        final int size = size_;
+        entries_ = EMPTY_ARRAY;
+        size_ = 0;
+        for (int i = 0; i < size; i++) {
+            attributeChanged((String) entries[i * 2]);
+        }
+    }
+
+    /**
+     * Tells the element about a change made through the {@link Map} or {@link NamedNodeMap} methods;
+     * the element itself uses the methods not notifying it and does it on its own.
+     * @param name the name of the changed attribute
+     */
+    private void attributeChanged(final String name) {
+        if (domNode_ != null) {
+            domNode_.notifyAttributeChanged(name);
+        }
     }
 
     /**
@@ -1712,7 +1858,7 @@ class NamedAttrNodeMapImpl implements Map<String, DomAttr>, NamedNodeMap, Serial
     public void putAll(final Map<? extends String, ? extends DomAttr> t) {
         // add one after the other to save the positions
         for (final Map.Entry<? extends String, ? extends DomAttr> entry : t.entrySet()) {
-            put(entry.getKey(), entry.getValue());
+            putDirect(entry.getKey(), entry.getValue());
         }
     }
 
@@ -1722,8 +1868,7 @@ class NamedAttrNodeMapImpl implements Map<String, DomAttr>, NamedNodeMap, Serial
     @Override
     public boolean containsKey(final Object key) {
         if (key instanceof String) {
-            final String name = fixName((String) key);
-            return map_.containsKey(name);
+            return indexOf(fixName((String) key)) != -1;
         }
         return false;
     }
@@ -1734,8 +1879,10 @@ class NamedAttrNodeMapImpl implements Map<String, DomAttr>, NamedNodeMap, Serial
     @Override
     public DomAttr get(final Object key) {
         if (key instanceof String) {
-            final String name = fixName((String) key);
-            return map_.get(name);
+            final int index = indexOf(fixName((String) key));
+            if (index != -1) {
+                return getAttr(index);
+            }
         }
         return null;
     }
@@ -1745,7 +1892,114 @@ class NamedAttrNodeMapImpl implements Map<String, DomAttr>, NamedNodeMap, Serial
      * @param key the key
      */
     protected DomAttr getDirect(final String key) {
-        return map_.get(key);
+        final int index = indexOf(key);
+        if (index == -1) {
+            return null;
+        }
+        return getAttr(index);
+    }
+
+    /**
+     * Returns the value of the attribute, without creating its node.
+     * @param key the name of the attribute
+     * @return the value or {@link DomElement#ATTRIBUTE_NOT_DEFINED}
+     */
+    String getValue(final String key) {
+        return getValueDirect(fixName(key));
+    }
+
+    /**
+     * Returns the value of the attribute, without creating its node; the name is used as is.
+     * @param key the name of the attribute
+     * @return the value or {@link DomElement#ATTRIBUTE_NOT_DEFINED}
+     */
+    String getValueDirect(final String key) {
+        final int index = indexOf(key);
+        if (index == -1) {
+            return DomElement.ATTRIBUTE_NOT_DEFINED;
+        }
+        return getValue(index);
+    }
+
+    /**
+     * Returns the name of the attribute at the specified position.
+     * @param index the position
+     * @return the name
+     */
+    String getName(final int index) {
+        return (String) entries_[index * 2];
+    }
+
+    /**
+     * Returns the value of the attribute at the specified position, without creating its node.
+     * @param index the position
+     * @return the value
+     */
+    String getValue(final int index) {
+        final Object value = entries_[index * 2 + 1];
+        if (value instanceof DomAttr) {
+            return ((DomAttr) value).getValue();
+        }
+        return (String) value;
+    }
+
+    /**
+     * Returns the node of the attribute at the specified position, if it was already created.
+     * @param index the position
+     * @return the node or {@code null}
+     */
+    DomAttr getCreatedAttr(final int index) {
+        final Object value = entries_[index * 2 + 1];
+        if (value instanceof DomAttr) {
+            return (DomAttr) value;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the node of the attribute at the specified position, creating it if needed.
+     * @param index the position
+     * @return the node
+     */
+    private DomAttr getAttr(final int index) {
+        final Object value = entries_[index * 2 + 1];
+        if (value instanceof DomAttr) {
+            return (DomAttr) value;
+        }
+        final DomAttr attr = new DomAttr(domNode_.getPage(), null, getName(index), (String) value, true);
+        attr.setParentNode(domNode_);
+        entries_[index * 2 + 1] = attr;
+        return attr;
+    }
+
+    private int indexOf(final String name) {
+        for (int i = 0; i < size_; i++) {
+            if (name.equals(entries_[i * 2])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void set(final String name, final Object value) {
+        final int index = indexOf(name);
+        if (index != -1) {
+            entries_[index * 2 + 1] = value;
+            return;
+        }
+        if (entries_.length == size_ * 2) {
+            entries_ = Arrays.copyOf(entries_, size_ * 2 + 2);
+        }
+        entries_[size_ * 2] = name;
+        entries_[size_ * 2 + 1] = value;
+        size_++;
+    }
+
+    private void removeAt(final int index) {
+        size_--;
+        System.arraycopy(entries_, index * 2 + 2, entries_, index * 2, (size_ - index) * 2);
+        entries_[size_ * 2] = null;
+        entries_[size_ * 2 + 1] = null;
     }
 
     /**
@@ -1753,7 +2007,16 @@ class NamedAttrNodeMapImpl implements Map<String, DomAttr>, NamedNodeMap, Serial
      */
     @Override
     public boolean containsValue(final Object value) {
-        return map_.containsValue(value);
+        if (!(value instanceof DomAttr)) {
+            return false;
+        }
+        // only attribute nodes already created can be contained
+        for (int i = 0; i < size_; i++) {
+            if (entries_[i * 2 + 1] == value) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
@@ -1761,7 +2024,22 @@ class NamedAttrNodeMapImpl implements Map<String, DomAttr>, NamedNodeMap, Serial
      */
     @Override
     public Set<Map.Entry<String, DomAttr>> entrySet() {
-        return map_.entrySet();
+        return new AbstractSet<Map.Entry<String, DomAttr>>() {
+            @Override
+            public Iterator<Map.Entry<String, DomAttr>> iterator() {
+                return new AttributesIterator<Map.Entry<String, DomAttr>>() {
+                    @Override
+                    Map.Entry<String, DomAttr> get(final int index) {
+                        return new AttributeEntry(getName(index));
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size_;
+            }
+        };
     }
 
     /**
@@ -1769,7 +2047,7 @@ class NamedAttrNodeMapImpl implements Map<String, DomAttr>, NamedNodeMap, Serial
      */
     @Override
     public boolean isEmpty() {
-        return map_.isEmpty();
+        return size_ == 0;
     }
 
     /**
@@ -1777,7 +2055,22 @@ class NamedAttrNodeMapImpl implements Map<String, DomAttr>, NamedNodeMap, Serial
      */
     @Override
     public Set<String> keySet() {
-        return map_.keySet();
+        return new AbstractSet<String>() {
+            @Override
+            public Iterator<String> iterator() {
+                return new AttributesIterator<String>() {
+                    @Override
+                    String get(final int index) {
+                        return getName(index);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size_;
+            }
+        };
     }
 
     /**
@@ -1785,7 +2078,7 @@ class NamedAttrNodeMapImpl implements Map<String, DomAttr>, NamedNodeMap, Serial
      */
     @Override
     public int size() {
-        return map_.size();
+        return size_;
     }
 
     /**
@@ -1793,6 +2086,84 @@ class NamedAttrNodeMapImpl implements Map<String, DomAttr>, NamedNodeMap, Serial
      */
     @Override
     public Collection<DomAttr> values() {
-        return map_.values();
+        return new AbstractCollection<DomAttr>() {
+            @Override
+            public Iterator<DomAttr> iterator() {
+                return new AttributesIterator<DomAttr>() {
+                    @Override
+                    DomAttr get(final int index) {
+                        return getAttr(index);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size_;
+            }
+        };
+    }
+
+    /**
+     * Iterates over the attributes, supports removing.
+     * @param <T> the type of the elements returned
+     */
+    private abstract class AttributesIterator<T> implements Iterator<T> {
+        private int next_;
+        private int current_ = -1;
+
+        abstract T get(int index);
+
+        @Override
+        public boolean hasNext() {
+            return next_ < size_;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            current_ = next_++;
+            return get(current_);
+        }
+
+        @Override
+        public void remove() {
+            if (current_ == -1) {
+                throw new IllegalStateException();
+            }
+            final String name = getName(current_);
+            removeAt(current_);
+            next_ = current_;
+            current_ = -1;
+            attributeChanged(name);
+        }
+    }
+
+    /**
+     * An entry of the {@link #entrySet()}, the attribute node is created only when asked for.
+     */
+    private final class AttributeEntry implements Map.Entry<String, DomAttr> {
+        private final String name_;
+
+        AttributeEntry(final String name) {
+            name_ = name;
+        }
+
+        @Override
+        public String getKey() {
+            return name_;
+        }
+
+        @Override
+        public DomAttr getValue() {
+            return getDirect(name_);
+        }
+
+        @Override
+        public DomAttr setValue(final DomAttr value) {
+            return put(name_, value);
+        }
     }
 }
@@ -16,23 +16,25 @@ package com.gargoylesoftware.htmlunit.html;
 
 import static com.gargoylesoftware.htmlunit.BrowserVersionFeatures.DOM_NORMALIZE_REMOVE_CHILDREN;
 import static com.gargoylesoftware.htmlunit.BrowserVersionFeatures.QUERYSELECTORALL_NOT_IN_QUIRKS;
+import static com.gargoylesoftware.htmlunit.BrowserVersionFeatures.QUERYSELECTOR_CSS3_PSEUDO_REQUIRE_ATTACHED_NODE;
 import static com.gargoylesoftware.htmlunit.BrowserVersionFeatures.XPATH_ATTRIBUTE_CASE_SENSITIVE;
 import static com.gargoylesoftware.htmlunit.BrowserVersionFeatures.XPATH_SELECTION_NAMESPACES;
 
 import java.io.IOException;
-import java.io.ObjectInputStream;
 import java.io.PrintWriter;
 import java.io.Serializable;
 import java.io.StringWriter;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 import org.apache.xml.utils.PrefixResolver;
 import org.w3c.dom.DOMException;
@@ -46,7 +48,6 @@ import com.gargoylesoftware.css.parser.CSSException;
 import com.gargoylesoftware.css.parser.CSSOMParser;
 import com.gargoylesoftware.css.parser.CSSParseException;
 import com.gargoylesoftware.css.parser.javacc.CSS3Parser;
-import com.gargoylesoftware.css.parser.selector.Selector;
 import com.gargoylesoftware.css.parser.selector.SelectorList;
 import com.gargoylesoftware.htmlunit.BrowserVersion;
 import com.gargoylesoftware.htmlunit.BrowserVersionFeatures;
@@ -58,12 +59,15 @@ import com.gargoylesoftware.htmlunit.WebClient;
 import com.gargoylesoftware.htmlunit.html.HtmlElement.DisplayStyle;
 import com.gargoylesoftware.htmlunit.html.xpath.XPathHelper;
 import com.gargoylesoftware.htmlunit.javascript.SimpleScriptable;
+import com.gargoylesoftware.htmlunit.javascript.host.css.AncestorFilter;
 import com.gargoylesoftware.htmlunit.javascript.host.css.CSSStyleDeclaration;
 import com.gargoylesoftware.htmlunit.javascript.host.css.CSSStyleSheet;
+import com.gargoylesoftware.htmlunit.javascript.host.css.SelectorMatcher;
 import com.gargoylesoftware.htmlunit.javascript.host.css.StyleAttributes;
 import com.gargoylesoftware.htmlunit.javascript.host.event.Event;
 import com.gargoylesoftware.htmlunit.javascript.host.html.HTMLDocument;
 import com.gargoylesoftware.htmlunit.javascript.host.html.HTMLElement;
+import com.gargoylesoftware.htmlunit.util.LruCache;
 import com.gargoylesoftware.htmlunit.xml.XmlPage;
 
 import net.sourceforge.htmlunit.corejs.javascript.Context;
@@ -119,6 +123,13 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
     /** The name of the "element" property. Used when watching property change events. */
     public static final String PROPERTY_ELEMENT = "element";
 
+    /**
+     * Cache of the parsed and validated selectors used by {@link #querySelectorAll(String)},
+     * {@link #querySelector(String)} and {@link DomElement#matches(String)}; weighted by the selector length.
+     */
+    private static final LruCache<SelectorCacheKey, ParsedSelectors> SELECTORS =
+            new LruCache<>(256 * 1024, (key, parsed) -> key.selectors_.length());
+
     /** The owning page of this node. */
     private SgmlPage page_;
 
@@ -145,104 +156,182 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
      */
     private Object scriptObject_;
 
-    /** The ready state is is an IE-only value that is available to a large number of elements. */
-    private String readyState_;
+    /** Flag of {@link #locationFlags_}: the start tag was parsed, the node was created by the parser. */
+    private static final byte START_TAG_PARSED = 1;
 
-    /**
-     * The line number in the source page where the DOM node starts.
-     */
-    private int startLineNumber_ = -1;
+    /** Flag of {@link #locationFlags_}: the end tag was parsed. */
+    private static final byte END_TAG_PARSED = 2;
 
-    /**
-     * The column number in the source page where the DOM node starts.
-     */
-    private int startColumnNumber_ = -1;
+    /** Flag of {@link #locationFlags_}: the start location was set. */
+    private static final byte START_LOCATION = 4;
 
-    /**
-     * The line number in the source page where the DOM node ends.
-     */
-    private int endLineNumber_ = -1;
+    /** Flag of {@link #locationFlags_}: the end location was set. */
+    private static final byte END_LOCATION = 8;
 
-    /**
-     * The column number in the source page where the DOM node ends.
-     */
-    private int endColumnNumber_ = -1;
+    /** Whether the start and end tags were parsed and whether their locations were set. */
+    private byte locationFlags_;
+
+    /** The line (upper half) and column (lower half) in the source page where this node starts. */
+    private long startLocation_;
+
+    /** The line (upper half) and column (lower half) in the source page where this node ends. */
+    private long endLocation_;
+
+    /** Allocates the {@link #rareData_} without locking this node. */
+    private static final AtomicReferenceFieldUpdater<DomNode, RareData> RARE_DATA_UPDATER
+            = AtomicReferenceFieldUpdater.newUpdater(DomNode.class, RareData.class, "rareData_");
+
+    /** The rarely used parts of this node, allocated lazily. */
+    private volatile RareData rareData_;
 
     private boolean attachedToPage_;
 
-    private transient Object listeners_lock_ = new Object();
+    /** The index within the children of the parent, valid if {@link #childIndexesValid_} of the parent is set. */
+    private int siblingIndex_;
+
+    /** Whether the {@link #siblingIndex_}es of the children are valid. */
+    private boolean childIndexesValid_;
 
-    /** The listeners which are to be notified of characterData change. */
-    private Collection<CharacterDataChangeListener> characterDataListeners_;
-    private List<CharacterDataChangeListener> characterDataListenersList_;
+    /** The label of the {@link DocumentOrder} of the page. */
+    private long orderLabel_;
 
-    private Collection<DomChangeListener> domListeners_;
-    private List<DomChangeListener> domListenersList_;
-    private Map<String, Object> userData_;
+    /** Incremented whenever nodes are added to or removed from this subtree. */
+    private int subtreeVersion_;
+
+    /** Incremented whenever an attribute of an element of this subtree changes. */
+    private int subtreeAttributesVersion_;
 
     /**
      * Creates a new instance.
      * @param page the page which contains this node
      */
     protected DomNode(final SgmlPage page) {
-        readyState_ = READY_STATE_LOADING;
         page_ = page;
     }
 
+    /**
+     * Returns the rarely used parts of this node, allocating them if needed.
+     * @return the rare data
+     */
+    RareData getRareData() {
+        final RareData rareData = rareData_;
+        if (rareData != null) {
+            return rareData;
+        }
+        RARE_DATA_UPDATER.compareAndSet(this, null, new RareData());
+        return rareData_;
+    }
+
+    /**
+     * Returns the rarely used parts of this node, if already allocated.
+     * @return the rare data or {@code null}
+     */
+    RareData getRareDataOrNull() {
+        return rareData_;
+    }
+
     /**
      * Sets the line and column numbers in the source page where the DOM node starts.
+     * This marks the start tag as parsed too.
      *
      * @param startLineNumber the line number where the DOM node starts
      * @param startColumnNumber the column number where the DOM node starts
      */
     public void setStartLocation(final int startLineNumber, final int startColumnNumber) {
-        startLineNumber_ = startLineNumber;
-        startColumnNumber_ = startColumnNumber;
+        startLocation_ = packLocation(startLineNumber, startColumnNumber);
+        locationFlags_ |= START_TAG_PARSED | START_LOCATION;
     }
 
     /**
      * Sets the line and column numbers in the source page where the DOM node ends.
+     * This marks the end tag as parsed too.
      *
      * @param endLineNumber the line number where the DOM node ends
      * @param endColumnNumber the column number where the DOM node ends
      */
     public void setEndLocation(final int endLineNumber, final int endColumnNumber) {
-        endLineNumber_ = endLineNumber;
-        endColumnNumber_ = endColumnNumber;
+        endLocation_ = packLocation(endLineNumber, endColumnNumber);
+        locationFlags_ |= END_TAG_PARSED | END_LOCATION;
+    }
+
+    private static long packLocation(final int lineNumber, final int columnNumber) {
+        return ((long) lineNumber << 32) | (columnNumber & 0xFFFFFFFFL);
+    }
+
+    /**
+     * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br>
+     *
+     * Marks the start tag as parsed, that is the node as created by the parser, without a location;
+     * see {@link com.gargoylesoftware.htmlunit.WebClientOptions#setSourcePositionsEnabled(boolean)}.
+     */
+    public void setStartTagParsed() {
+        locationFlags_ |= START_TAG_PARSED;
+    }
+
+    /**
+     * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br>
+     *
+     * Marks the end tag as parsed without a location;
+     * see {@link com.gargoylesoftware.htmlunit.WebClientOptions#setSourcePositionsEnabled(boolean)}.
+     */
+    public void setEndTagParsed() {
+        locationFlags_ |= END_TAG_PARSED;
+    }
+
+    /**
+     * Returns whether this node was created by the parser, with or without a location.
+     * @return whether the start tag was parsed
+     */
+    boolean isCreatedByParser() {
+        return (locationFlags_ & START_TAG_PARSED) != 0;
     }
 
     /**
      * Returns the line number in the source page where the DOM node starts.
-     * @return the line number in the source page where the DOM node starts
+     * @return the line number in the source page where the DOM node starts,
+     * -1 if not available (for instance for nodes dynamically added or if the source positions are disabled)
      */
     public int getStartLineNumber() {
-        return startLineNumber_;
+        if ((locationFlags_ & START_LOCATION) == 0) {
+            return -1;
+        }
+        return (int) (startLocation_ >>> 32);
     }
 
     /**
      * Returns the column number in the source page where the DOM node starts.
-     * @return the column number in the source page where the DOM node starts
+     * @return the column number in the source page where the DOM node starts,
+     * -1 if not available (for instance for nodes dynamically added or if the source positions are disabled)
      */
     public int getStartColumnNumber() {
-        return startColumnNumber_;
+        if ((locationFlags_ & START_LOCATION) == 0) {
+            return -1;
+        }
+        return (int) startLocation_;
     }
 
     /**
      * Returns the line number in the source page where the DOM node ends.
-     * @return 0 if no information on the line number is available (for instance for nodes dynamically added),
-     * -1 if the end tag has not yet been parsed (during page loading)
+     * @return -1 if no information on the line number is available (for instance for nodes dynamically added,
+     * if the source positions are disabled or if the end tag has not yet been parsed during page loading)
      */
     public int getEndLineNumber() {
-        return endLineNumber_;
+        if ((locationFlags_ & END_LOCATION) == 0) {
+            return -1;
+        }
+        return (int) (endLocation_ >>> 32);
     }
 
     /**
      * Returns the column number in the source page where the DOM node ends.
-     * @return 0 if no information on the line number is available (for instance for nodes dynamically added),
-     * -1 if the end tag has not yet been parsed (during page loading)
+     * @return -1 if no information on the column number is available (for instance for nodes dynamically added,
+     * if the source positions are disabled or if the end tag has not yet been parsed during page loading)
      */
     public int getEndColumnNumber() {
-        return endColumnNumber_;
+        if ((locationFlags_ & END_LOCATION) == 0) {
+            return -1;
+        }
+        return (int) endLocation_;
     }
 
     /**
@@ -317,11 +406,83 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
      * @return this node's index within its parent's child nodes (zero-based)
      */
     public int getIndex() {
-        int index = 0;
-        for (DomNode n = previousSibling_; n != null && n.nextSibling_ != null; n = n.previousSibling_) {
-            index++;
+        final DomNode parent = parent_;
+        if (parent == null) {
+            int index = 0;
+            for (DomNode n = previousSibling_; n != null && n.nextSibling_ != null; n = n.previousSibling_) {
+                index++;
+            }
+            return index;
+        }
+
+        // the indexes are renumbered lazily after insertions or removals before the end
+        if (!parent.childIndexesValid_) {
+            int index = 0;
+            for (DomNode child = parent.firstChild_; child != null; child = child.nextSibling_) {
+                child.siblingIndex_ = index++;
+            }
+            parent.childIndexesValid_ = true;
+        }
+        return siblingIndex_;
+    }
+
+    /**
+     * @return the label of the {@link DocumentOrder} of the page
+     */
+    long getOrderLabel() {
+        return orderLabel_;
+    }
+
+    /**
+     * @param orderLabel the label of the {@link DocumentOrder} of the page
+     */
+    void setOrderLabel(final long orderLabel) {
+        orderLabel_ = orderLabel;
+    }
+
+    /**
+     * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br>
+     *
+     * Returns the version of this subtree; it changes whenever nodes are added to or removed from
+     * this node or one of its descendants. Live collections compare it to the version they were
+     * computed for instead of listening for changes.
+     * @return the version of this subtree
+     */
+    public int getSubtreeVersion() {
+        return subtreeVersion_;
+    }
+
+    /**
+     * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br>
+     *
+     * Returns the attributes version of this subtree; it changes whenever an attribute of this node
+     * or one of its descendants is added, changed or removed.
+     * @return the attributes version of this subtree
+     */
+    public int getSubtreeAttributesVersion() {
+        return subtreeAttributesVersion_;
+    }
+
+    /**
+     * Increments the version of this subtree and of all the subtrees containing it.
+     * @return the root of the tree
+     */
+    private DomNode subtreeChanged() {
+        DomNode root = this;
+        for (DomNode node = this; node != null; node = node.parent_) {
+            node.subtreeVersion_++;
+            root = node;
+        }
+        return root;
+    }
+
+    /**
+     * Increments the attributes version of this subtree and of all the subtrees containing it.
+     */
+    void subtreeAttributesChanged() {
+        for (DomNode node = this; node != null; node = node.parent_) {
+            node.subtreeAttributesVersion_++;
         }
-        return index;
     }
 
     /**
@@ -386,6 +547,25 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
     /** @param previous set the previousSibling field value */
     protected void setPreviousSibling(final DomNode previous) {
         previousSibling_ = previous;
+        invalidateOrder();
+    }
+
+    /**
+     * Invalidates the sibling indexes and the document order after a change of the tree
+     * bypassing the usual methods.
+     */
+    private void invalidateOrder() {
+        if (parent_ != null) {
+            parent_.childIndexesValid_ = false;
+            parent_.subtreeChanged();
+        }
+        final HtmlPage htmlPage = getHtmlPageOrNull();
+        if (htmlPage != null) {
+            final DocumentOrder documentOrder = htmlPage.getDocumentOrderIfCreated();
+            if (documentOrder != null) {
+                documentOrder.invalidate();
+            }
+        }
     }
 
     /**
@@ -395,6 +575,7 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
      */
     public void setNextSibling(final DomNode next) {
         nextSibling_ = next;
+        invalidateOrder();
     }
 
     /**
@@ -513,6 +694,21 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
             return 0; // strange, no constant available?
         }
 
+        final DocumentOrder documentOrder = getDocumentOrder(other);
+        if (documentOrder != null) {
+            final DomNode otherNode = (DomNode) other;
+            if (documentOrder.compare(this, otherNode) < 0) {
+                if (isAncestorOf(otherNode)) {
+                    return DOCUMENT_POSITION_CONTAINED_BY | DOCUMENT_POSITION_FOLLOWING;
+                }
+                return DOCUMENT_POSITION_FOLLOWING;
+            }
+            if (otherNode.isAncestorOf(this)) {
+                return DOCUMENT_POSITION_CONTAINS | DOCUMENT_POSITION_PRECEDING;
+            }
+            return DOCUMENT_POSITION_PRECEDING;
+        }
+
         // get ancestors of both
         final List<Node> myAncestors = getAncestors();
         final List<Node> otherAncestors = ((DomNode) other).getAncestors();
@@ -554,6 +750,45 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
         return DOCUMENT_POSITION_PRECEDING;
     }
 
+    /**
+     * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br>
+     *
+     * Compares the document order of this node and the specified one. For nodes attached to the same
+     * {@link HtmlPage} this is a comparison of their order labels, amortized O(1).
+     * @param other the other node
+     * @return a negative number if this node precedes the other one, 0 if they are the same
+     *         and a positive number if this node follows the other one
+     */
+    public int compareDocumentOrder(final DomNode other) {
+        if (other == this) {
+            return 0;
+        }
+
+        final DocumentOrder documentOrder = getDocumentOrder(other);
+        if (documentOrder != null) {
+            return documentOrder.compare(this, other);
+        }
+
+        final short relation = compareDocumentPosition(other);
+        if ((relation & DOCUMENT_POSITION_CONTAINS) != 0 || (relation & DOCUMENT_POSITION_PRECEDING) != 0) {
+            return 1;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the {@link DocumentOrder} if this node and the other one are attached to the same page.
+     */
+    private DocumentOrder getDocumentOrder(final Node other) {
+        if (other instanceof DomNode && isAttachedToPage() && ((DomNode) other).isAttachedToPage()) {
+            final HtmlPage htmlPage = getHtmlPageOrNull();
+            if (htmlPage != null && htmlPage == ((DomNode) other).getPage()) {
+                return htmlPage.getDocumentOrder();
+            }
+        }
+        return null;
+    }
+
     /**
      * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br>
      *
@@ -672,11 +907,16 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
      */
     @Override
     public Object getUserData(final String key) {
-        Object value = null;
-        if (userData_ != null) {
-            value = userData_.get(key);
+        final RareData rareData = rareData_;
+        if (rareData == null) {
+            return null;
+        }
+        synchronized (rareData) {
+            if (rareData.userData_ == null) {
+                return null;
+            }
+            return rareData.userData_.get(key);
         }
-        return value;
     }
 
     /**
@@ -684,10 +924,13 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
      */
     @Override
     public Object setUserData(final String key, final Object data, final UserDataHandler handler) {
-        if (userData_ == null) {
-            userData_ = new HashMap<>();
+        final RareData rareData = getRareData();
+        synchronized (rareData) {
+            if (rareData.userData_ == null) {
+                rareData.userData_ = new HashMap<>();
+            }
+            return rareData.userData_.put(key, data);
         }
-        return userData_.put(key, data);
     }
 
     /**
@@ -901,6 +1144,11 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
         newnode.scriptObject_ = null;
         newnode.firstChild_ = null;
         newnode.attachedToPage_ = false;
+        newnode.childIndexesValid_ = false;
+        final RareData rareData = rareData_;
+        if (rareData != null) {
+            newnode.rareData_ = rareData.copy();
+        }
 
         // if deep, clone the children too.
         if (deep) {
@@ -997,6 +1245,8 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
         if (firstChild_ == null) {
             firstChild_ = node;
             firstChild_.previousSibling_ = node;
+            node.siblingIndex_ = 0;
+            childIndexesValid_ = true;
         }
         else {
             final DomNode last = getLastChild();
@@ -1004,8 +1254,10 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
             node.previousSibling_ = last;
             node.nextSibling_ = null; // safety first
             firstChild_.previousSibling_ = node; // new last node
+            node.siblingIndex_ = last.siblingIndex_ + 1;
         }
         node.parent_ = this;
+        subtreeChanged();
     }
 
     /**
@@ -1076,6 +1328,8 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
         node.nextSibling_ = this;
         previousSibling_ = node;
         node.parent_ = parent_;
+        parent_.childIndexesValid_ = false;
+        parent_.subtreeChanged();
     }
 
     private void fireAddition(final DomNode domNode) {
@@ -1083,6 +1337,14 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
         domNode.attachedToPage_ = isAttachedToPage();
 
         if (isAttachedToPage()) {
+            final HtmlPage htmlPage = getHtmlPageOrNull();
+            if (htmlPage != null) {
+                final DocumentOrder documentOrder = htmlPage.getDocumentOrderIfCreated();
+                if (documentOrder != null) {
+                    documentOrder.nodeInserted(domNode);
+                }
+            }
+
             // trigger events
             final Page page = getPage();
             if (null != page && page.isHtmlPage()) {
@@ -1111,7 +1373,7 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
      * parsed but not the body and end tag.
      */
     private boolean isBodyParsed() {
-        return getStartLineNumber() != -1 && getEndLineNumber() == -1;
+        return (locationFlags_ & START_TAG_PARSED) != 0 && (locationFlags_ & END_TAG_PARSED) == 0;
     }
 
     /**
@@ -1176,6 +1438,15 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
      * Cuts off all relationships this node has with siblings and parents.
      */
     protected void basicRemove() {
+        if (parent_ != null && nextSibling_ != null) {
+            // removing the last child keeps the indexes of the others
+            parent_.childIndexesValid_ = false;
+        }
+        // the removed subtree changes too, it is no longer attached
+        final DomNode root = subtreeChanged();
+        if (root != this && root instanceof HtmlPage) {
+            ((HtmlPage) root).nodeRemoved(this);
+        }
         if (parent_ != null && parent_.firstChild_ == this) {
             parent_.firstChild_ = nextSibling_;
         }
@@ -1262,6 +1533,14 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
             destination.basicAppend(child);
         }
         basicRemove();
+
+        final HtmlPage htmlPage = getHtmlPageOrNull();
+        if (htmlPage != null) {
+            final DocumentOrder documentOrder = htmlPage.getDocumentOrderIfCreated();
+            if (documentOrder != null) {
+                documentOrder.invalidate();
+            }
+        }
     }
 
     /**
@@ -1520,7 +1799,11 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
      * @return this node's ready state
      */
     public String getReadyState() {
-        return readyState_;
+        final RareData rareData = rareData_;
+        if (rareData == null || rareData.readyState_ == null) {
+            return READY_STATE_LOADING;
+        }
+        return rareData.readyState_;
     }
 
     /**
@@ -1528,7 +1811,7 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
      * @param state this node's ready state
      */
     public void setReadyState(final String state) {
-        readyState_ = state;
+        getRareData().readyState_ = state;
     }
 
     /**
@@ -1695,12 +1978,13 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
     public void addDomChangeListener(final DomChangeListener listener) {
         WebAssert.notNull("listener", listener);
 
-        synchronized (listeners_lock_) {
-            if (domListeners_ == null) {
-                domListeners_ = new LinkedHashSet<>();
+        final RareData rareData = getRareData();
+        synchronized (rareData) {
+            if (rareData.domListeners_ == null) {
+                rareData.domListeners_ = new LinkedHashSet<>();
             }
-            domListeners_.add(listener);
-            domListenersList_ = null;
+            rareData.domListeners_.add(listener);
+            rareData.domListenersList_ = null;
         }
     }
 
@@ -1714,10 +1998,13 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
     public void removeDomChangeListener(final DomChangeListener listener) {
         WebAssert.notNull("listener", listener);
 
-        synchronized (listeners_lock_) {
-            if (domListeners_ != null) {
-                domListeners_.remove(listener);
-                domListenersList_ = null;
+        final RareData rareData = rareData_;
+        if (rareData != null) {
+            synchronized (rareData) {
+                if (rareData.domListeners_ != null) {
+                    rareData.domListeners_.remove(listener);
+                    rareData.domListenersList_ = null;
+                }
             }
         }
     }
@@ -1752,12 +2039,13 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
     public void addCharacterDataChangeListener(final CharacterDataChangeListener listener) {
         WebAssert.notNull("listener", listener);
 
-        synchronized (listeners_lock_) {
-            if (characterDataListeners_ == null) {
-                characterDataListeners_ = new LinkedHashSet<>();
+        final RareData rareData = getRareData();
+        synchronized (rareData) {
+            if (rareData.characterDataListeners_ == null) {
+                rareData.characterDataListeners_ = new LinkedHashSet<>();
             }
-            characterDataListeners_.add(listener);
-            characterDataListenersList_ = null;
+            rareData.characterDataListeners_.add(listener);
+            rareData.characterDataListenersList_ = null;
         }
     }
 
@@ -1771,10 +2059,13 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
     public void removeCharacterDataChangeListener(final CharacterDataChangeListener listener) {
         WebAssert.notNull("listener", listener);
 
-        synchronized (listeners_lock_) {
-            if (characterDataListeners_ != null) {
-                characterDataListeners_.remove(listener);
-                characterDataListenersList_ = null;
+        final RareData rareData = rareData_;
+        if (rareData != null) {
+            synchronized (rareData) {
+                if (rareData.characterDataListeners_ != null) {
+                    rareData.characterDataListeners_.remove(listener);
+                    rareData.characterDataListenersList_ = null;
+                }
             }
         }
     }
@@ -1819,26 +2110,34 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
     }
 
     private List<DomChangeListener> safeGetDomListeners() {
-        synchronized (listeners_lock_) {
-            if (domListeners_ == null) {
+        final RareData rareData = rareData_;
+        if (rareData == null) {
+            return null;
+        }
+        synchronized (rareData) {
+            if (rareData.domListeners_ == null) {
                 return null;
             }
-            if (domListenersList_ == null) {
-                domListenersList_ = new ArrayList<>(domListeners_);
+            if (rareData.domListenersList_ == null) {
+                rareData.domListenersList_ = new ArrayList<>(rareData.domListeners_);
             }
-            return domListenersList_;
+            return rareData.domListenersList_;
         }
     }
 
     private List<CharacterDataChangeListener> safeGetCharacterDataListeners() {
-        synchronized (listeners_lock_) {
-            if (characterDataListeners_ == null) {
+        final RareData rareData = rareData_;
+        if (rareData == null) {
+            return null;
+        }
+        synchronized (rareData) {
+            if (rareData.characterDataListeners_ == null) {
                 return null;
             }
-            if (characterDataListenersList_ == null) {
-                characterDataListenersList_ = new ArrayList<>(characterDataListeners_);
+            if (rareData.characterDataListenersList_ == null) {
+                rareData.characterDataListenersList_ = new ArrayList<>(rareData.characterDataListeners_);
             }
-            return characterDataListenersList_;
+            return rareData.characterDataListenersList_;
         }
     }
 
@@ -1849,28 +2148,174 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
      * @return list of all found nodes
      */
     public DomNodeList<DomNode> querySelectorAll(final String selectors) {
+        final List<DomNode> elements = new ArrayList<>();
+        final Iterator<DomElement> iterator = querySelectorIterator(selectors, true);
+        while (iterator.hasNext()) {
+            elements.add(iterator.next());
+        }
+        return new StaticDomNodeList(elements);
+    }
+
+    /**
+     * Returns an iterator over the element nodes from descendants of the starting element node that match
+     * any selector within the supplied selector strings, in document order. The selectors are parsed at once,
+     * but the descendants are only matched while iterating; the iteration reflects the changes made to the
+     * subtree in the meantime.
+     * @param selectors one or more CSS selectors separated by commas
+     * @return the iterator
+     */
+    public Iterator<DomElement> querySelectorIterator(final String selectors) {
+        return querySelectorIterator(selectors, false);
+    }
+
+    /**
+     * Returns an iterator over the element nodes from descendants matching the selectors.
+     * @param selectors one or more CSS selectors separated by commas
+     * @param indexed whether the candidates may be taken from the class name or tag name index of the page;
+     *        in this case the iteration does not reflect later changes
+     * @return the iterator
+     */
+    private Iterator<DomElement> querySelectorIterator(final String selectors, final boolean indexed) {
         try {
             final BrowserVersion browserVersion = getPage().getWebClient().getBrowserVersion();
-            final SelectorList selectorList = getSelectorList(selectors, browserVersion);
-
-            final List<DomNode> elements = new ArrayList<>();
-            if (selectorList != null) {
-                for (final DomElement child : getDomElementDescendants()) {
-                    for (Selector selector : selectorList) {
-                        if (CSSStyleSheet.selects(browserVersion, selector, child, null, true)) {
-                            elements.add(child);
-                            break;
-                        }
-                    }
+            final List<SelectorMatcher> matchers = getSelectorMatchers(selectors, browserVersion);
+            if (indexed) {
+                final List<DomElement> candidates = getIndexedCandidates(matchers);
+                if (candidates != null) {
+                    return new SelectorMatchIterator(matchers, browserVersion, candidates.iterator(), false);
                 }
             }
-            return new StaticDomNodeList(elements);
+            return new SelectorMatchIterator(matchers, browserVersion,
+                    new DescendantElementsIterator<>(DomElement.class), true);
         }
         catch (final IOException e) {
             throw new CSSException("Error parsing CSS selectors from '" + selectors + "': " + e.getMessage());
         }
     }
 
+    /**
+     * Returns the candidates for a single selector whose selected elements need a class name or a tag name,
+     * from the indexes of the page.
+     * @param matchers the matchers
+     * @return the candidates in document order or {@code null} if no index can be used
+     */
+    private List<DomElement> getIndexedCandidates(final List<SelectorMatcher> matchers) {
+        final HtmlPage htmlPage = getHtmlPageOrNull();
+        if (htmlPage == null || matchers.size() != 1) {
+            return null;
+        }
+
+        final SelectorMatcher matcher = matchers.get(0);
+        if (matcher.getSubjectClassName() != null) {
+            final List<DomElement> candidates =
+                    htmlPage.getIndexedElementsByClassName(this, matcher.getSubjectClassName());
+            if (candidates != null) {
+                return candidates;
+            }
+        }
+        if (matcher.getSubjectTagName() != null) {
+            return htmlPage.getIndexedElementsByTagName(this, matcher.getSubjectTagName());
+        }
+        return null;
+    }
+
+    /**
+     * Iterates over the descendants matching any of the {@link SelectorMatcher}s, in document order.
+     * If a selector requires specific ancestors, a stack of {@link AncestorFilter}s is maintained
+     * while walking down the tree; not for candidates from an index, they are too sparse.
+     */
+    private final class SelectorMatchIterator implements Iterator<DomElement> {
+        private final List<SelectorMatcher> matchers_;
+        private final BrowserVersion browserVersion_;
+        private final Iterator<DomElement> descendants_;
+        private final List<DomNode> ancestors_;
+        private final List<AncestorFilter> ancestorFilters_;
+        private DomElement next_;
+
+        SelectorMatchIterator(final List<SelectorMatcher> matchers, final BrowserVersion browserVersion,
+                final Iterator<DomElement> descendants, final boolean walking) {
+            matchers_ = matchers;
+            browserVersion_ = browserVersion;
+            descendants_ = descendants;
+
+            boolean useAncestorFilter = false;
+            for (final SelectorMatcher matcher : matchers) {
+                useAncestorFilter |= matcher.usesAncestorFilter();
+            }
+            if (useAncestorFilter && walking) {
+                ancestors_ = new ArrayList<>();
+                ancestorFilters_ = new ArrayList<>();
+                ancestors_.add(DomNode.this);
+                ancestorFilters_.add(AncestorFilter.of(DomNode.this));
+            }
+            else {
+                ancestors_ = null;
+                ancestorFilters_ = null;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next_ == null) {
+                while (descendants_.hasNext()) {
+                    final DomElement element = descendants_.next();
+                    if (selects(element)) {
+                        next_ = element;
+                        break;
+                    }
+                }
+            }
+            return next_ != null;
+        }
+
+        @Override
+        public DomElement next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final DomElement element = next_;
+            next_ = null;
+            return element;
+        }
+
+        private boolean selects(final DomElement element) {
+            final AncestorFilter ancestorFilter = ancestors_ == null ? null : getAncestorFilter(element);
+            for (final SelectorMatcher matcher : matchers_) {
+                if (matcher.matches(browserVersion_, element, ancestorFilter, null, true)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Returns the filter of the ancestors of the specified element, the next one in document order;
+         * pushes the filter for the descendants of the element.
+         */
+        private AncestorFilter getAncestorFilter(final DomElement element) {
+            final DomNode parent = element.getParentNode();
+            int top = ancestors_.size() - 1;
+            while (top >= 0 && ancestors_.get(top) != parent) {
+                ancestors_.remove(top);
+                ancestorFilters_.remove(top);
+                top--;
+            }
+            if (top < 0) {
+                // the tree was changed while iterating
+                ancestors_.add(parent);
+                ancestorFilters_.add(AncestorFilter.of(parent));
+                top = 0;
+            }
+
+            final AncestorFilter ancestorFilter = ancestorFilters_.get(top);
+            if (element.getFirstChild() != null) {
+                ancestors_.add(element);
+                ancestorFilters_.add(ancestorFilter.with(element));
+            }
+            return ancestorFilter;
+        }
+    }
+
     /**
      * Returns the {@link SelectorList}.
      * @param selectors the selectors
@@ -1880,6 +2325,57 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
      */
     protected SelectorList getSelectorList(final String selectors, final BrowserVersion browserVersion)
             throws IOException {
+        final ParsedSelectors parsed = getParsedSelectors(selectors, browserVersion);
+        if (parsed == null) {
+            return null;
+        }
+        return parsed.selectorList_;
+    }
+
+    /**
+     * Returns the compiled {@link SelectorMatcher}s of the selectors.
+     * @param selectors the selectors
+     * @param browserVersion the {@link BrowserVersion}
+     * @return the matchers, one for every selector of the list
+     * @throws IOException if an error occurs
+     */
+    protected List<SelectorMatcher> getSelectorMatchers(final String selectors, final BrowserVersion browserVersion)
+            throws IOException {
+        final ParsedSelectors parsed = getParsedSelectors(selectors, browserVersion);
+        if (parsed == null) {
+            return Collections.emptyList();
+        }
+        return parsed.matchers_;
+    }
+
+    private ParsedSelectors getParsedSelectors(final String selectors, final BrowserVersion browserVersion)
+            throws IOException {
+        int documentMode = 9;
+        if (browserVersion.hasFeature(QUERYSELECTORALL_NOT_IN_QUIRKS)) {
+            final Object sobj = getPage().getScriptableObject();
+            if (sobj instanceof HTMLDocument) {
+                documentMode = ((HTMLDocument) sobj).getDocumentMode();
+            }
+        }
+
+        // the validation of css3 pseudo classes depends on the node in this case
+        if (browserVersion.hasFeature(QUERYSELECTOR_CSS3_PSEUDO_REQUIRE_ATTACHED_NODE)
+                && !isAttachedToPage() && !hasChildNodes()) {
+            return parseSelectors(selectors, documentMode);
+        }
+
+        final SelectorCacheKey key = new SelectorCacheKey(selectors, browserVersion, documentMode);
+        ParsedSelectors parsed = SELECTORS.get(key);
+        if (parsed == null) {
+            parsed = parseSelectors(selectors, documentMode);
+            if (parsed != null) {
+                SELECTORS.put(key, parsed);
+            }
+        }
+        return parsed;
+    }
+
+    private ParsedSelectors parseSelectors(final String selectors, final int documentMode) throws IOException {
         final CSSOMParser parser = new CSSOMParser(new CSS3Parser());
         final CheckErrorHandler errorHandler = new CheckErrorHandler();
         parser.setErrorHandler(errorHandler);
@@ -1890,18 +2386,11 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
             throw new CSSException("Invalid selectors: " + selectors);
         }
 
-        if (selectorList != null) {
-            int documentMode = 9;
-            if (browserVersion.hasFeature(QUERYSELECTORALL_NOT_IN_QUIRKS)) {
-                final Object sobj = getPage().getScriptableObject();
-                if (sobj instanceof HTMLDocument) {
-                    documentMode = ((HTMLDocument) sobj).getDocumentMode();
-                }
-            }
-            CSSStyleSheet.validateSelectors(selectorList, documentMode, this);
-
+        if (selectorList == null) {
+            return null;
         }
-        return selectorList;
+        CSSStyleSheet.validateSelectors(selectorList, documentMode, this);
+        return new ParsedSelectors(selectorList);
     }
 
     /**
@@ -1912,9 +2401,9 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
      */
     @SuppressWarnings("unchecked")
     public <N extends DomNode> N querySelector(final String selectors) {
-        final DomNodeList<DomNode> list = querySelectorAll(selectors);
-        if (!list.isEmpty()) {
-            return (N) list.get(0);
+        final Iterator<DomElement> iterator = querySelectorIterator(selectors);
+        if (iterator.hasNext()) {
+            return (N) iterator.next();
         }
         return null;
     }
@@ -1953,6 +2442,51 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
         return getPage().getWebClient().getBrowserVersion().hasFeature(feature);
     }
 
+    /**
+     * The parsed and validated selectors together with the compiled matchers.
+     */
+    private static final class ParsedSelectors {
+        private final SelectorList selectorList_;
+        private final List<SelectorMatcher> matchers_;
+
+        ParsedSelectors(final SelectorList selectorList) {
+            selectorList_ = selectorList;
+            matchers_ = Collections.unmodifiableList(SelectorMatcher.compile(selectorList));
+        }
+    }
+
+    /**
+     * The key of the {@link #SELECTORS} cache; the validation of the selectors depends on
+     * the browser version and the document mode.
+     */
+    private static final class SelectorCacheKey {
+        private final String selectors_;
+        private final BrowserVersion browserVersion_;
+        private final int documentMode_;
+
+        SelectorCacheKey(final String selectors, final BrowserVersion browserVersion, final int documentMode) {
+            selectors_ = selectors;
+            browserVersion_ = browserVersion;
+            documentMode_ = documentMode;
+        }
+
+        @Override
+        public int hashCode() {
+            return (selectors_.hashCode() * 31 + System.identityHashCode(browserVersion_)) * 31 + documentMode_;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof SelectorCacheKey)) {
+                return false;
+            }
+            final SelectorCacheKey other = (SelectorCacheKey) obj;
+            return browserVersion_ == other.browserVersion_
+                    && documentMode_ == other.documentMode_
+                    && selectors_.equals(other.selectors_);
+        }
+    }
+
     private static final class CheckErrorHandler implements CSSErrorHandler {
         private boolean errorDetected_;
 
@@ -2018,8 +2552,86 @@ public abstract class DomNode implements Cloneable, Serializable, Node {
         return (DomElement) node;
     }
 
-    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
-        in.defaultReadObject();
-        listeners_lock_ = new Object();
+    /**
+     * The rarely used parts of a node: the ready state, the listeners and the user data.
+     * Most nodes never need them, they are allocated on first use. The listeners are changed
+     * synchronized on this and called on copies.
+     */
+    static final class RareData implements Serializable {
+        /** The ready state is an IE-only value that is available to a large number of elements. */
+        private String readyState_;
+
+        /** The listeners which are to be notified of characterData change. */
+        private Collection<CharacterDataChangeListener> characterDataListeners_;
+        private List<CharacterDataChangeListener> characterDataListenersList_;
+
+        private Collection<DomChangeListener> domListeners_;
+        private List<DomChangeListener> domListenersList_;
+
+        /** The listeners of an {@link HtmlElement} which are to be notified of attribute changes. */
+        private Collection<HtmlAttributeChangeListener> attributeListeners_;
+        private List<HtmlAttributeChangeListener> attributeListenersList_;
+
+        private Map<String, Object> userData_;
+
+        /**
+         * Returns a copy of the listeners of an {@link HtmlElement} which are to be notified of attribute
+         * changes; the listeners are called without holding a lock, they may add or remove listeners.
+         * @return the listeners or {@code null}
+         */
+        synchronized List<HtmlAttributeChangeListener> getAttributeListeners() {
+            if (attributeListeners_ == null) {
+                return null;
+            }
+            if (attributeListenersList_ == null) {
+                attributeListenersList_ = new ArrayList<>(attributeListeners_);
+            }
+            return attributeListenersList_;
+        }
+
+        /**
+         * Adds a listener of an {@link HtmlElement} which is to be notified of attribute changes.
+         * @param listener the listener
+         */
+        synchronized void addAttributeListener(final HtmlAttributeChangeListener listener) {
+            if (attributeListeners_ == null) {
+                attributeListeners_ = new LinkedHashSet<>();
+            }
+            attributeListeners_.add(listener);
+            attributeListenersList_ = null;
+        }
+
+        /**
+         * Removes a listener of an {@link HtmlElement} which is to be notified of attribute changes.
+         * @param listener the listener
+         */
+        synchronized void removeAttributeListener(final HtmlAttributeChangeListener listener) {
+            if (attributeListeners_ != null) {
+                attributeListeners_.remove(listener);
+                attributeListenersList_ = null;
+            }
+        }
+
+        /**
+         * Returns a copy for a cloned node; the listeners and the user data are copied too.
+         * @return the copy
+         */
+        synchronized RareData copy() {
+            final RareData copy = new RareData();
+            copy.readyState_ = readyState_;
+            if (characterDataListeners_ != null) {
+                copy.characterDataListeners_ = new LinkedHashSet<>(characterDataListeners_);
+            }
+            if (domListeners_ != null) {
+                copy.domListeners_ = new LinkedHashSet<>(domListeners_);
+            }
+            if (attributeListeners_ != null) {
+                copy.attributeListeners_ = new LinkedHashSet<>(attributeListeners_);
+            }
+            if (userData_ != null) {
+                copy.userData_ = new HashMap<>(userData_);
+            }
+            return copy;
+        }
     }
 }
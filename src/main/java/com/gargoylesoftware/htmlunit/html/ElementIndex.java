@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2002-2020 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.html;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * An index from keys (like class names or tag names) to the elements of a page.
+ *
+ * <p>The keys of every indexed element are remembered, this way an element is removed correctly
+ * even if the attribute its keys were computed from has already changed. The elements of a key are
+ * sorted in document order only when asked for, the sorted list is kept until the key changes.</p>
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+final class ElementIndex {
+
+    private static final String[] NO_KEYS = new String[0];
+
+    private final Function<DomElement, String[]> keyFunction_;
+    private final Comparator<DomElement> comparator_;
+    private final Map<String, Set<DomElement>> elements_ = new HashMap<>();
+    private final Map<DomElement, String[]> keys_ = new IdentityHashMap<>();
+    private final Map<String, List<DomElement>> sortedElements_ = new HashMap<>();
+
+    /**
+     * Creates a new index.
+     * @param keyFunction computes the keys of an element
+     * @param comparator the comparator for the document order
+     */
+    ElementIndex(final Function<DomElement, String[]> keyFunction, final Comparator<DomElement> comparator) {
+        keyFunction_ = keyFunction;
+        comparator_ = comparator;
+    }
+
+    /**
+     * Adds the element or updates its keys if already indexed.
+     * @param element the element
+     * @param recurse whether to add the descendant elements too
+     */
+    synchronized void add(final DomElement element, final boolean recurse) {
+        remove(element, false);
+
+        final String[] keys = keyFunction_.apply(element);
+        if (keys.length > 0) {
+            keys_.put(element, keys);
+            for (final String key : keys) {
+                Set<DomElement> elements = elements_.get(key);
+                if (elements == null) {
+                    elements = new LinkedHashSet<>();
+                    elements_.put(key, elements);
+                }
+                elements.add(element);
+                sortedElements_.remove(key);
+            }
+        }
+
+        if (recurse) {
+            for (final DomElement child : element.getChildElements()) {
+                add(child, true);
+            }
+        }
+    }
+
+    /**
+     * Removes the element.
+     * @param element the element
+     * @param recurse whether to remove the descendant elements too
+     */
+    synchronized void remove(final DomElement element, final boolean recurse) {
+        final String[] keys = keys_.remove(element);
+        if (keys != null) {
+            for (final String key : keys) {
+                final Set<DomElement> elements = elements_.get(key);
+                if (elements != null) {
+                    elements.remove(element);
+                    if (elements.isEmpty()) {
+                        elements_.remove(key);
+                    }
+                }
+                sortedElements_.remove(key);
+            }
+        }
+
+        if (recurse) {
+            for (final DomElement child : element.getChildElements()) {
+                remove(child, true);
+            }
+        }
+    }
+
+    /**
+     * Returns the elements of the specified key.
+     * @param key the key
+     * @return the elements in document order, an unmodifiable list that is not changed afterwards
+     */
+    synchronized List<DomElement> get(final String key) {
+        List<DomElement> sorted = sortedElements_.get(key);
+        if (sorted == null) {
+            final Set<DomElement> elements = elements_.get(key);
+            if (elements == null) {
+                return Collections.emptyList();
+            }
+            final List<DomElement> list = new ArrayList<>(elements);
+            Collections.sort(list, comparator_);
+            sorted = Collections.unmodifiableList(list);
+            sortedElements_.put(key, sorted);
+        }
+        return sorted;
+    }
+
+    /**
+     * Returns the tag name of the element, as used by the tag name index.
+     * @param element the element
+     * @return the lower case local name
+     */
+    static String[] tagNameKeys(final DomElement element) {
+        return new String[] {element.getLowercaseName()};
+    }
+
+    /**
+     * Returns the class names of the element, as used by the class name index; the <tt>class</tt>
+     * attribute is split at every whitespace character.
+     * @param element the element
+     * @return the class names
+     */
+    static String[] classNameKeys(final DomElement element) {
+        final String classes = element.getAttributeDirect("class");
+        final int length = classes.length();
+        if (length == 0) {
+            return NO_KEYS;
+        }
+
+        final Set<String> keys = new LinkedHashSet<>();
+        int start = -1;
+        for (int i = 0; i <= length; i++) {
+            if (i == length || Character.isWhitespace(classes.charAt(i))) {
+                if (start != -1) {
+                    keys.add(classes.substring(start, i));
+                    start = -1;
+                }
+            }
+            else if (start == -1) {
+                start = i;
+            }
+        }
+        return keys.toArray(new String[keys.size()]);
+    }
+
+    /**
+     * Returns whether the specified class name can be looked up in the class name index,
+     * that is, if it is not empty and contains no whitespace.
+     * @param className the class name
+     * @return whether the class name is a single token
+     */
+    static boolean isClassNameKey(final String className) {
+        if (className.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < className.length(); i++) {
+            if (Character.isWhitespace(className.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2002-2020 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.html;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A map from attribute values (the ids or the names) to the elements of a page having them.
+ *
+ * <p>Almost every value belongs to exactly one element, in this case the element itself is stored
+ * as value of the map. Only for duplicates a list is created, which is sorted in document order
+ * when asked for.</p>
+ *
+ * <p>The map is synchronized: a page may be accessed by the JavaScript threads and by the threads of
+ * the code using HtmlUnit, also if JavaScript is disabled.</p>
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+class ElementMap implements Serializable {
+
+    private static final Comparator<DomElement> DOCUMENT_POSITION_COMPARATOR
+            = new HtmlPage.DocumentPositionComparator();
+
+    /** The values are {@link DomElement}s or {@link Elements}. */
+    private final Map<String, Object> map_ = new HashMap<>();
+
+    /**
+     * Adds the element for the specified key, if not already there.
+     * @param key the key
+     * @param element the element
+     */
+    synchronized void add(final String key, final DomElement element) {
+        final Object value = map_.get(key);
+        if (value == null) {
+            map_.put(key, element);
+        }
+        else if (value instanceof Elements) {
+            ((Elements) value).add(element);
+        }
+        else if (value != element) {
+            final Elements elements = new Elements();
+            elements.add((DomElement) value);
+            elements.add(element);
+            map_.put(key, elements);
+        }
+    }
+
+    /**
+     * Removes the element for the specified key.
+     * @param key the key
+     * @param element the element
+     */
+    synchronized void remove(final String key, final DomElement element) {
+        final Object value = map_.get(key);
+        if (value == element) {
+            map_.remove(key);
+        }
+        else if (value instanceof Elements) {
+            final Elements elements = (Elements) value;
+            elements.remove(element);
+            if (elements.size() == 1) {
+                map_.put(key, elements.get(0));
+            }
+        }
+    }
+
+    /**
+     * Returns the first element in document order for the specified key.
+     * @param key the key
+     * @return the element or {@code null}
+     */
+    synchronized DomElement getFirst(final String key) {
+        final Object value = map_.get(key);
+        if (value instanceof Elements) {
+            return ((Elements) value).get(0);
+        }
+        return (DomElement) value;
+    }
+
+    /**
+     * Returns the elements for the specified key.
+     * @param key the key
+     * @return a new list of the elements in document order
+     */
+    synchronized List<DomElement> get(final String key) {
+        final Object value = map_.get(key);
+        if (value == null) {
+            return new ArrayList<>(0);
+        }
+        if (value instanceof Elements) {
+            return ((Elements) value).toList();
+        }
+        final List<DomElement> list = new ArrayList<>(1);
+        list.add((DomElement) value);
+        return list;
+    }
+
+    /**
+     * The elements sharing a key, sorted lazily.
+     */
+    private static final class Elements implements Serializable {
+        private final List<DomElement> elements_ = new ArrayList<>(2);
+        private boolean sorted_;
+
+        void add(final DomElement element) {
+            for (final DomElement e : elements_) {
+                if (e == element) {
+                    return;
+                }
+            }
+            elements_.add(element);
+            sorted_ = false;
+        }
+
+        void remove(final DomElement element) {
+            for (int i = 0; i < elements_.size(); i++) {
+                if (elements_.get(i) == element) {
+                    elements_.remove(i);
+                    return;
+                }
+            }
+        }
+
+        int size() {
+            return elements_.size();
+        }
+
+        DomElement get(final int index) {
+            if (!sorted_) {
+                Collections.sort(elements_, DOCUMENT_POSITION_COMPARATOR);
+                sorted_ = true;
+            }
+            return elements_.get(index);
+        }
+
+        List<DomElement> toList() {
+            get(0);
+            return new ArrayList<>(elements_);
+        }
+    }
+}
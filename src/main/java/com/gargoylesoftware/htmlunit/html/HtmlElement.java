@@ -21,8 +21,6 @@ import static com.gargoylesoftware.htmlunit.BrowserVersionFeatures.KEYBOARD_EVEN
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -137,9 +135,6 @@ public abstract class HtmlElement extends DomElement {
      */
     public static final Short TAB_INDEX_OUT_OF_BOUNDS = new Short(Short.MIN_VALUE);
 
-    /** The listeners which are to be notified of attribute changes. */
-    private Collection<HtmlAttributeChangeListener> attributeListeners_;
-
     /** The owning form for lost form children. */
     private HtmlForm owningForm_;
 
@@ -172,7 +167,6 @@ public abstract class HtmlElement extends DomElement {
     protected HtmlElement(final String namespaceURI, final String qualifiedName, final SgmlPage page,
             final Map<String, DomAttr> attributes) {
         super(namespaceURI, qualifiedName, page, attributes);
-        attributeListeners_ = new LinkedHashSet<>();
     }
 
     /**
@@ -193,7 +187,8 @@ public abstract class HtmlElement extends DomElement {
         final String oldAttributeValue = getAttribute(qualifiedName);
         final HtmlPage htmlPage = (HtmlPage) getPage();
         final boolean mappedElement = isAttachedToPage()
-                    && HtmlPage.isMappedElement(htmlPage, qualifiedName);
+                    && HtmlPage.isMappedElement(htmlPage, qualifiedName)
+                    && isChanged(oldAttributeValue, attributeValue);
         if (mappedElement) {
             // cast is save here because isMappedElement checks for HtmlPage
             htmlPage.removeMappedElement(this);
@@ -226,21 +221,18 @@ public abstract class HtmlElement extends DomElement {
      */
     protected static void notifyAttributeChangeListeners(final HtmlAttributeChangeEvent event,
             final HtmlElement element, final String oldAttributeValue, final boolean notifyMutationObservers) {
-        final Collection<HtmlAttributeChangeListener> listeners = element.attributeListeners_;
-        if (ATTRIBUTE_NOT_DEFINED == oldAttributeValue) {
-            synchronized (listeners) {
-                for (final HtmlAttributeChangeListener listener : listeners) {
-                    if (notifyMutationObservers || !(listener instanceof MutationObserver)) {
-                        listener.attributeAdded(event);
-                    }
-                }
-            }
-        }
-        else {
-            synchronized (listeners) {
+        final RareData rareData = element.getRareDataOrNull();
+        if (rareData != null) {
+            final List<HtmlAttributeChangeListener> listeners = rareData.getAttributeListeners();
+            if (listeners != null) {
                 for (final HtmlAttributeChangeListener listener : listeners) {
                     if (notifyMutationObservers || !(listener instanceof MutationObserver)) {
-                        listener.attributeReplaced(event);
+                        if (ATTRIBUTE_NOT_DEFINED == oldAttributeValue) {
+                            listener.attributeAdded(event);
+                        }
+                        else {
+                            listener.attributeReplaced(event);
+                        }
                     }
                 }
             }
@@ -251,6 +243,17 @@ public abstract class HtmlElement extends DomElement {
         }
     }
 
+    /**
+     * Returns whether setting the new value changes the attribute; the id and name maps of the page
+     * are only updated in this case.
+     * @param oldAttributeValue the old value or {@link #ATTRIBUTE_NOT_DEFINED}
+     * @param newAttributeValue the new value
+     * @return whether the value changes
+     */
+    private static boolean isChanged(final String oldAttributeValue, final String newAttributeValue) {
+        return oldAttributeValue == ATTRIBUTE_NOT_DEFINED || !oldAttributeValue.equals(newAttributeValue);
+    }
+
     private void fireAttributeChangeImpl(final HtmlAttributeChangeEvent event,
             final HtmlPage htmlPage, final boolean mappedElement, final String oldAttributeValue) {
         if (mappedElement) {
@@ -282,7 +285,8 @@ public abstract class HtmlElement extends DomElement {
         final String oldAttributeValue = getAttribute(qualifiedName);
         final HtmlPage htmlPage = (HtmlPage) getPage();
         final boolean mappedElement = isAttachedToPage()
-                    && HtmlPage.isMappedElement(htmlPage, qualifiedName);
+                    && HtmlPage.isMappedElement(htmlPage, qualifiedName)
+                    && isChanged(oldAttributeValue, attribute.getValue());
         if (mappedElement) {
             // cast is save here because isMappedElement checks for HtmlPage
             htmlPage.removeMappedElement(this);
@@ -316,14 +320,19 @@ public abstract class HtmlElement extends DomElement {
         }
 
         final HtmlPage htmlPage = getHtmlPageOrNull();
-        if (htmlPage != null) {
+        // only the id and name are mapped
+        final boolean mappedElement = htmlPage != null
+                && HtmlPage.isMappedElement(htmlPage, attributeName.toLowerCase(Locale.ROOT));
+        if (mappedElement) {
             htmlPage.removeMappedElement(this);
         }
 
         super.removeAttribute(attributeName);
 
         if (htmlPage != null) {
-            htmlPage.addMappedElement(this);
+            if (mappedElement) {
+                htmlPage.addMappedElement(this);
+            }
 
             final HtmlAttributeChangeEvent event = new HtmlAttributeChangeEvent(this, attributeName, value);
             fireHtmlAttributeRemoved(event);
@@ -379,9 +388,13 @@ public abstract class HtmlElement extends DomElement {
      * @see #addHtmlAttributeChangeListener(HtmlAttributeChangeListener)
      */
     protected void fireHtmlAttributeRemoved(final HtmlAttributeChangeEvent event) {
-        synchronized (attributeListeners_) {
-            for (final HtmlAttributeChangeListener listener : attributeListeners_) {
-                listener.attributeRemoved(event);
+        final RareData rareData = getRareDataOrNull();
+        if (rareData != null) {
+            final List<HtmlAttributeChangeListener> listeners = rareData.getAttributeListeners();
+            if (listeners != null) {
+                for (final HtmlAttributeChangeListener listener : listeners) {
+                    listener.attributeRemoved(event);
+                }
             }
         }
         final DomNode parentNode = getParentNode();
@@ -976,9 +989,7 @@ public abstract class HtmlElement extends DomElement {
      */
     public void addHtmlAttributeChangeListener(final HtmlAttributeChangeListener listener) {
         WebAssert.notNull("listener", listener);
-        synchronized (attributeListeners_) {
-            attributeListeners_.add(listener);
-        }
+        getRareData().addAttributeListener(listener);
     }
 
     /**
@@ -991,8 +1002,9 @@ public abstract class HtmlElement extends DomElement {
      */
     public void removeHtmlAttributeChangeListener(final HtmlAttributeChangeListener listener) {
         WebAssert.notNull("listener", listener);
-        synchronized (attributeListeners_) {
-            attributeListeners_.remove(listener);
+        final RareData rareData = getRareDataOrNull();
+        if (rareData != null) {
+            rareData.removeAttributeListener(listener);
         }
     }
 
@@ -1375,15 +1387,4 @@ public abstract class HtmlElement extends DomElement {
             }
         }
     }
-
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    public DomNode cloneNode(final boolean deep) {
-        final HtmlElement newnode = (HtmlElement) super.cloneNode(deep);
-        newnode.attributeListeners_ = new LinkedHashSet<>(attributeListeners_);
-
-        return newnode;
-    }
 }
@@ -533,7 +533,7 @@ public class HtmlImage extends HtmlElement {
                                                                     browser.getAcceptEncodingHeader());
                     request.setCharset(page.getCharset());
                     request.setAdditionalHeader(HttpHeader.REFERER, page.getUrl().toExternalForm());
-                    imageWebResponse_ = webClient.loadWebResponse(request);
+                    imageWebResponse_ = webClient.loadWebResponse(request, page.getEnclosingWindow());
                 }
             }
 
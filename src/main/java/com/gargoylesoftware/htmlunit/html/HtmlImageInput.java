@@ -231,7 +231,7 @@ public class HtmlImageInput extends HtmlInput {
                                                                 browser.getAcceptEncodingHeader());
                 request.setCharset(page.getCharset());
                 request.setAdditionalHeader(HttpHeader.REFERER, page.getUrl().toExternalForm());
-                imageWebResponse_ = webClient.loadWebResponse(request);
+                imageWebResponse_ = webClient.loadWebResponse(request, page.getEnclosingWindow());
             }
 
             if (imageData_ != null) {
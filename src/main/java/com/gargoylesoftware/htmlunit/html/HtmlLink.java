@@ -199,7 +199,7 @@ public class HtmlLink extends HtmlElement {
                 request = getWebRequest();
             }
             try {
-                cachedWebResponse_ = webclient.loadWebResponse(request);
+                cachedWebResponse_ = webclient.loadWebResponse(request, getPage().getEnclosingWindow());
                 final int statusCode = cachedWebResponse_.getStatusCode();
                 final boolean successful = statusCode >= HttpStatus.SC_OK
                                                 && statusCode < HttpStatus.SC_MULTIPLE_CHOICES;
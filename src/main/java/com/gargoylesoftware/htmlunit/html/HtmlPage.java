@@ -152,10 +152,13 @@ public class HtmlPage extends SgmlPage {
     private transient Charset originalCharset_;
     private transient Object lock_ = new Object(); // used for synchronization
 
-    private Map<String, SortedSet<DomElement>> idMap_
-            = Collections.synchronizedMap(new HashMap<String, SortedSet<DomElement>>());
-    private Map<String, SortedSet<DomElement>> nameMap_
-            = Collections.synchronizedMap(new HashMap<String, SortedSet<DomElement>>());
+    private ElementMap idMap_;
+    private ElementMap nameMap_;
+    private transient volatile DocumentOrder documentOrder_;
+    private transient DomNode lastRemovedNode_;
+    private transient int lastRemovalVersion_;
+    private transient volatile ElementIndex classNameIndex_;
+    private transient volatile ElementIndex tagNameIndex_;
 
     private SortedSet<BaseFrameElement> frameElements_ = new TreeSet<>(documentPositionComparator);
     private int parserCount_;
@@ -179,15 +182,7 @@ public class HtmlPage extends SgmlPage {
     static class DocumentPositionComparator implements Comparator<DomElement>, Serializable {
         @Override
         public int compare(final DomElement elt1, final DomElement elt2) {
-            final short relation = elt1.compareDocumentPosition(elt2);
-            if (relation == 0) {
-                return 0; // same node
-            }
-            if ((relation & DOCUMENT_POSITION_CONTAINS) != 0 || (relation & DOCUMENT_POSITION_PRECEDING) != 0) {
-                return 1;
-            }
-
-            return -1;
+            return elt1.compareDocumentOrder(elt2);
         }
     }
 
@@ -200,6 +195,16 @@ public class HtmlPage extends SgmlPage {
      */
     public HtmlPage(final WebResponse webResponse, final WebWindow webWindow) {
         super(webResponse, webWindow);
+        initElementMaps();
+    }
+
+    /**
+     * Creates the id and name maps; they are synchronized whether JavaScript is enabled or not
+     * (see {@link ElementMap}).
+     */
+    private void initElementMaps() {
+        idMap_ = new ElementMap();
+        nameMap_ = new ElementMap();
     }
 
     /**
@@ -599,11 +604,7 @@ public class HtmlPage extends SgmlPage {
      */
     @Override
     public DomElement getElementById(final String elementId) {
-        final SortedSet<DomElement> elements = idMap_.get(elementId);
-        if (elements != null) {
-            return elements.first();
-        }
-        return null;
+        return idMap_.getFirst(elementId);
     }
 
     /**
@@ -1033,7 +1034,7 @@ public class HtmlPage extends SgmlPage {
         // our cache is a bit strange;
         // loadWebResponse check the cache for the web response
         // AND also fixes the request url for the following cache lookups
-        final WebResponse response = client.loadWebResponse(request);
+        final WebResponse response = client.loadWebResponse(request, getEnclosingWindow());
 
         // now we can look into the cache with the fixed request for
         // a cached script
@@ -1652,11 +1653,7 @@ public class HtmlPage extends SgmlPage {
      * @return the elements with the specified name attribute
      */
     public List<DomElement> getElementsById(final String elementId) {
-        final SortedSet<DomElement> elements = idMap_.get(elementId);
-        if (elements != null) {
-            return new ArrayList<>(elements);
-        }
-        return Collections.emptyList();
+        return idMap_.get(elementId);
     }
 
     /**
@@ -1670,9 +1667,9 @@ public class HtmlPage extends SgmlPage {
      */
     @SuppressWarnings("unchecked")
     public <E extends DomElement> E getElementByName(final String name) throws ElementNotFoundException {
-        final SortedSet<DomElement> elements = nameMap_.get(name);
-        if (elements != null) {
-            return (E) elements.first();
+        final DomElement element = nameMap_.getFirst(name);
+        if (element != null) {
+            return (E) element;
         }
         throw new ElementNotFoundException("*", "name", name);
     }
@@ -1686,11 +1683,7 @@ public class HtmlPage extends SgmlPage {
      * @return the elements with the specified name attribute
      */
     public List<DomElement> getElementsByName(final String name) {
-        final SortedSet<DomElement> elements = nameMap_.get(name);
-        if (elements != null) {
-            return new ArrayList<>(elements);
-        }
-        return Collections.emptyList();
+        return nameMap_.get(name);
     }
 
     /**
@@ -1701,17 +1694,10 @@ public class HtmlPage extends SgmlPage {
      * @return the elements with the specified string for their name or ID
      */
     public List<DomElement> getElementsByIdAndOrName(final String idAndOrName) {
-        final Collection<DomElement> list1 = idMap_.get(idAndOrName);
-        final Collection<DomElement> list2 = nameMap_.get(idAndOrName);
-        final List<DomElement> list = new ArrayList<>();
-        if (list1 != null) {
-            list.addAll(list1);
-        }
-        if (list2 != null) {
-            for (final DomElement elt : list2) {
-                if (!list.contains(elt)) {
-                    list.add(elt);
-                }
+        final List<DomElement> list = idMap_.get(idAndOrName);
+        for (final DomElement elt : nameMap_.get(idAndOrName)) {
+            if (!list.contains(elt)) {
+                list.add(elt);
             }
         }
         return list;
@@ -1764,6 +1750,9 @@ public class HtmlPage extends SgmlPage {
                 calculateBase();
             }
         }
+        else if (node instanceof DomElement) {
+            removeIndexedElement((DomElement) node, true);
+        }
     }
 
     /**
@@ -1783,23 +1772,24 @@ public class HtmlPage extends SgmlPage {
         if (isAncestorOf(element)) {
             addElement(idMap_, element, "id", recurse);
             addElement(nameMap_, element, "name", recurse);
+
+            final ElementIndex classNameIndex = classNameIndex_;
+            if (classNameIndex != null) {
+                classNameIndex.add(element, recurse);
+            }
+            final ElementIndex tagNameIndex = tagNameIndex_;
+            if (tagNameIndex != null) {
+                tagNameIndex.add(element, recurse);
+            }
         }
     }
 
-    private void addElement(final Map<String, SortedSet<DomElement>> map, final DomElement element,
+    private void addElement(final ElementMap map, final DomElement element,
             final String attribute, final boolean recurse) {
         final String value = getAttributeValue(element, attribute);
 
         if (DomElement.ATTRIBUTE_NOT_DEFINED != value) {
-            SortedSet<DomElement> elements = map.get(value);
-            if (elements == null) {
-                elements = new TreeSet<>(documentPositionComparator);
-                elements.add(element);
-                map.put(value, elements);
-            }
-            else if (!elements.contains(element)) {
-                elements.add(element);
-            }
+            map.add(value, element);
         }
         if (recurse) {
             for (final DomElement child : element.getChildElements()) {
@@ -1852,19 +1842,175 @@ public class HtmlPage extends SgmlPage {
         if (descendant || isAncestorOf(element)) {
             removeElement(idMap_, element, "id", recurse);
             removeElement(nameMap_, element, "name", recurse);
+            removeIndexedElement(element, recurse);
+        }
+    }
+
+    private void removeIndexedElement(final DomElement element, final boolean recurse) {
+        final ElementIndex classNameIndex = classNameIndex_;
+        if (classNameIndex != null) {
+            classNameIndex.remove(element, recurse);
         }
+        final ElementIndex tagNameIndex = tagNameIndex_;
+        if (tagNameIndex != null) {
+            tagNameIndex.remove(element, recurse);
+        }
+    }
+
+    /**
+     * Returns the order labels of the nodes of this page.
+     * @return the document order
+     */
+    DocumentOrder getDocumentOrder() {
+        DocumentOrder documentOrder = documentOrder_;
+        if (documentOrder == null) {
+            synchronized (lock_) {
+                documentOrder = documentOrder_;
+                if (documentOrder == null) {
+                    documentOrder = new DocumentOrder(this);
+                    documentOrder_ = documentOrder;
+                }
+            }
+        }
+        return documentOrder;
+    }
+
+    /**
+     * Returns the order labels of the nodes of this page, if somebody compared nodes already.
+     * Does not lock, this is called for every change of the tree.
+     * @return the document order or {@code null}
+     */
+    DocumentOrder getDocumentOrderIfCreated() {
+        return documentOrder_;
+    }
+
+    /**
+     * Remembers the node removed from the tree of this page, as long as this is the last change.
+     * @param node the removed node
+     */
+    void nodeRemoved(final DomNode node) {
+        lastRemovedNode_ = node;
+        lastRemovalVersion_ = getSubtreeVersion();
     }
 
-    private void removeElement(final Map<String, SortedSet<DomElement>> map, final DomElement element,
+    /**
+     * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br>
+     *
+     * Returns the node removed by the last change of the tree of this page. Live collections use it
+     * to drop the removed elements instead of computing all elements again.
+     * @return the removed node or {@code null} if the tree was changed otherwise since
+     */
+    public DomNode getLastRemovedNode() {
+        if (lastRemovedNode_ != null && lastRemovalVersion_ != getSubtreeVersion()) {
+            lastRemovedNode_ = null;
+        }
+        return lastRemovedNode_;
+    }
+
+    /**
+     * Updates the class name index, if already in use, after the <tt>class</tt> attribute
+     * of the specified element has changed.
+     * @param element the element
+     */
+    void notifyClassAttributeChanged(final DomElement element) {
+        final ElementIndex classNameIndex = classNameIndex_;
+        if (classNameIndex != null && isAncestorOf(element)) {
+            classNameIndex.add(element, false);
+        }
+    }
+
+    /**
+     * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br>
+     *
+     * Returns the descendant elements of the specified node having the specified class name, in document order.
+     * The class name index of this page is built at the first call and maintained from then on; until then
+     * adding and removing elements costs nothing more.
+     * @param root the node whose descendants are wanted
+     * @param className the class name, without whitespace
+     * @return the elements or {@code null} if the index is not used for the root (only the page itself
+     *         and the document element are supported) or the class name
+     */
+    public List<DomElement> getIndexedElementsByClassName(final DomNode root, final String className) {
+        if (!isIndexRoot(root) || !ElementIndex.isClassNameKey(className)) {
+            return null;
+        }
+        ElementIndex classNameIndex = classNameIndex_;
+        if (classNameIndex == null) {
+            synchronized (lock_) {
+                classNameIndex = classNameIndex_;
+                if (classNameIndex == null) {
+                    classNameIndex = new ElementIndex(ElementIndex::classNameKeys, documentPositionComparator);
+                    buildIndex(classNameIndex);
+                    classNameIndex_ = classNameIndex;
+                }
+            }
+        }
+        return getIndexedDescendants(root, classNameIndex.get(className));
+    }
+
+    /**
+     * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br>
+     *
+     * Returns the descendant elements of the specified node having the specified local name, in document order.
+     * The tag name index of this page is built at the first call and maintained from then on.
+     * @param root the node whose descendants are wanted
+     * @param lowercaseName the lower case local name
+     * @return the elements or {@code null} if the index is not used for the root (only the page itself
+     *         and the document element are supported)
+     */
+    public List<DomElement> getIndexedElementsByTagName(final DomNode root, final String lowercaseName) {
+        if (!isIndexRoot(root)) {
+            return null;
+        }
+        ElementIndex tagNameIndex = tagNameIndex_;
+        if (tagNameIndex == null) {
+            synchronized (lock_) {
+                tagNameIndex = tagNameIndex_;
+                if (tagNameIndex == null) {
+                    tagNameIndex = new ElementIndex(ElementIndex::tagNameKeys, documentPositionComparator);
+                    buildIndex(tagNameIndex);
+                    tagNameIndex_ = tagNameIndex;
+                }
+            }
+        }
+        return getIndexedDescendants(root, tagNameIndex.get(lowercaseName));
+    }
+
+    private void buildIndex(final ElementIndex index) {
+        for (DomNode child = getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child instanceof DomElement) {
+                index.add((DomElement) child, true);
+            }
+        }
+    }
+
+    /**
+     * For a smaller subtree than the document element, walking it is usually cheaper
+     * than filtering the indexed elements of the whole page.
+     */
+    private boolean isIndexRoot(final DomNode root) {
+        return root == this || root == getDocumentElement();
+    }
+
+    private List<DomElement> getIndexedDescendants(final DomNode root, final List<DomElement> elements) {
+        if (root == this) {
+            return elements;
+        }
+        final List<DomElement> descendants = new ArrayList<>();
+        for (final DomElement element : elements) {
+            if (element != root && root.isAncestorOf(element)) {
+                descendants.add(element);
+            }
+        }
+        return descendants;
+    }
+
+    private void removeElement(final ElementMap map, final DomElement element,
             final String attribute, final boolean recurse) {
         final String value = getAttributeValue(element, attribute);
 
         if (DomElement.ATTRIBUTE_NOT_DEFINED != value) {
-            final SortedSet<DomElement> elements = map.remove(value);
-            if (elements != null && (elements.size() != 1 || !elements.contains(element))) {
-                elements.remove(element);
-                map.put(value, elements);
-            }
+            map.remove(value, element);
         }
         if (recurse) {
             for (final DomElement child : element.getChildElements()) {
@@ -1965,8 +2111,11 @@ public class HtmlPage extends SgmlPage {
         final HtmlPage result = (HtmlPage) super.clone();
         result.elementWithFocus_ = null;
 
-        result.idMap_ = Collections.synchronizedMap(new HashMap<String, SortedSet<DomElement>>());
-        result.nameMap_ = Collections.synchronizedMap(new HashMap<String, SortedSet<DomElement>>());
+        result.initElementMaps();
+        result.documentOrder_ = null;
+        result.lastRemovedNode_ = null;
+        result.classNameIndex_ = null;
+        result.tagNameIndex_ = null;
 
         return result;
     }
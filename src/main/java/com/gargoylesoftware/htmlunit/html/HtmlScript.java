@@ -227,7 +227,7 @@ public class HtmlScript extends HtmlElement implements ScriptElement {
                 final Window window = getPage().getEnclosingWindow().getScriptableObject();
                 if (window != null) {
                     jsDoc = window.getDocument();
-                    ((HTMLDocument) jsDoc).setExecutingDynamicExternalPosponed(getStartLineNumber() == -1
+                    ((HTMLDocument) jsDoc).setExecutingDynamicExternalPosponed(!isCreatedByParser()
                             && getSrcAttribute() != ATTRIBUTE_NOT_DEFINED);
                 }
                 try {
@@ -82,7 +82,7 @@ public final class ScriptElementSupport {
             public void execute() {
                 final HTMLDocument jsDoc = (HTMLDocument)
                         ((Window) element.getPage().getEnclosingWindow().getScriptableObject()).getDocument();
-                jsDoc.setExecutingDynamicExternalPosponed(element.getStartLineNumber() == -1
+                jsDoc.setExecutingDynamicExternalPosponed(!element.isCreatedByParser()
                         && ((ScriptElement) element).getSrcAttribute() != ATTRIBUTE_NOT_DEFINED);
 
                 try {
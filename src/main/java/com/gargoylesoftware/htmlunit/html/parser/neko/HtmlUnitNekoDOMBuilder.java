@@ -182,6 +182,12 @@ final class HtmlUnitNekoDOMBuilder extends AbstractSAXParser
     private HtmlForm formWaitingForLostChildren_;
     private boolean insideSvg_;
 
+    /**
+     * Whether to remember the source positions,
+     * see {@link com.gargoylesoftware.htmlunit.WebClientOptions#isSourcePositionsEnabled()}.
+     */
+    private final boolean sourcePositions_;
+
     private static final String FEATURE_AUGMENTATIONS = "http://cyberneko.org/html/features/augmentations";
     private static final String FEATURE_PARSE_NOSCRIPT
         = "http://cyberneko.org/html/features/parse-noscript-content";
@@ -225,6 +231,7 @@ final class HtmlUnitNekoDOMBuilder extends AbstractSAXParser
         }
 
         final WebClient webClient = page_.getWebClient();
+        sourcePositions_ = webClient.getOptions().isSourcePositionsEnabled();
         final HTMLParserListener listener = webClient.getHTMLParserListener();
         final boolean reportErrors = listener != null;
         if (reportErrors) {
@@ -355,7 +362,12 @@ final class HtmlUnitNekoDOMBuilder extends AbstractSAXParser
             namespaceURI = Html.SVG_NAMESPACE;
         }
         final DomElement newElement = factory.createElementNS(page_, namespaceURI, qName, atts, true);
-        newElement.setStartLocation(locator_.getLineNumber(), locator_.getColumnNumber());
+        if (sourcePositions_) {
+            newElement.setStartLocation(locator_.getLineNumber(), locator_.getColumnNumber());
+        }
+        else {
+            newElement.setStartTagParsed();
+        }
 
         // parse can't replace everything as it does not buffer elements while parsing
         addNodeToRightParent(currentNode_, newElement);
@@ -544,7 +556,12 @@ final class HtmlUnitNekoDOMBuilder extends AbstractSAXParser
         }
 
         final DomNode previousNode = stack_.pop(); //remove currentElement from stack
-        previousNode.setEndLocation(locator_.getLineNumber(), locator_.getColumnNumber());
+        if (sourcePositions_) {
+            previousNode.setEndLocation(locator_.getLineNumber(), locator_.getColumnNumber());
+        }
+        else {
+            previousNode.setEndTagParsed();
+        }
 
         // special handling for form lost children (malformed HTML code where </form> is synthesized)
         if (previousNode instanceof HtmlForm && lastTagWasSynthesized_) {
@@ -637,7 +654,12 @@ final class HtmlUnitNekoDOMBuilder extends AbstractSAXParser
     public void endDocument() throws SAXException {
         handleCharacters();
         final DomNode currentPage = page_;
-        currentPage.setEndLocation(locator_.getLineNumber(), locator_.getColumnNumber());
+        if (sourcePositions_) {
+            currentPage.setEndLocation(locator_.getLineNumber(), locator_.getColumnNumber());
+        }
+        else {
+            currentPage.setEndTagParsed();
+        }
     }
 
     /** {@inheritDoc} */
@@ -0,0 +1,29 @@
+/*
+ * Copyright (c) 2002-2020 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.javascript;
+
+/**
+ * An error that is thrown when the JavaScript of a window exceeds the CPU time or memory budget.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ * @see JavaScriptResourceUsage
+ */
+public class BudgetExceededError extends Error {
+
+    BudgetExceededError(final JavaScriptResourceUsage usage) {
+        super("Javascript execution exceeds the budget (CPU time: " + usage.getCpuTime()
+                + "ms, allocated: " + usage.getAllocatedBytes() + " bytes)");
+    }
+}
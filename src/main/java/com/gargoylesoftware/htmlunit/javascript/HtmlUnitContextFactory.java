@@ -28,6 +28,7 @@ import com.gargoylesoftware.htmlunit.BrowserVersion;
 import com.gargoylesoftware.htmlunit.ScriptException;
 import com.gargoylesoftware.htmlunit.ScriptPreProcessor;
 import com.gargoylesoftware.htmlunit.WebClient;
+import com.gargoylesoftware.htmlunit.WebClientOptions;
 import com.gargoylesoftware.htmlunit.html.HtmlElement;
 import com.gargoylesoftware.htmlunit.html.HtmlPage;
 import com.gargoylesoftware.htmlunit.javascript.regexp.HtmlUnitRegExpProxy;
@@ -142,6 +143,11 @@ public class HtmlUnitContextFactory extends ContextFactory {
     private class TimeoutContext extends Context {
         private long startTime_;
 
+        private JavaScriptResourceUsage resourceUsage_;
+        private long cpuTimeStart_;
+        private long allocatedBytesStart_;
+        private boolean interruptible_;
+
         protected TimeoutContext(final ContextFactory factory) {
             super(factory);
         }
@@ -150,6 +156,47 @@ public class HtmlUnitContextFactory extends ContextFactory {
             startTime_ = System.currentTimeMillis();
         }
 
+        void startResourceAccounting(final JavaScriptResourceUsage usage) {
+            resourceUsage_ = usage;
+            cpuTimeStart_ = JavaScriptResourceUsage.currentThreadCpuTime();
+            allocatedBytesStart_ = JavaScriptResourceUsage.currentThreadAllocatedBytes();
+        }
+
+        boolean stopResourceAccounting() {
+            final JavaScriptResourceUsage usage = resourceUsage_;
+            if (usage == null) {
+                return false;
+            }
+            resourceUsage_ = null;
+            usage.add(JavaScriptResourceUsage.currentThreadCpuTime() - cpuTimeStart_,
+                    JavaScriptResourceUsage.currentThreadAllocatedBytes() - allocatedBytesStart_);
+            return usage.checkBudgets(webClient_.getOptions(), 0, 0);
+        }
+
+        public void terminateScriptIfBudgetExceeded() {
+            final JavaScriptResourceUsage usage = resourceUsage_;
+            if (usage == null) {
+                return;
+            }
+            final WebClientOptions options = webClient_.getOptions();
+            if (options.getJavaScriptCpuTimeBudget() > 0 || options.getJavaScriptAllocationBudget() > 0) {
+                final long cpuTime = JavaScriptResourceUsage.currentThreadCpuTime() - cpuTimeStart_;
+                final long allocatedBytes =
+                        JavaScriptResourceUsage.currentThreadAllocatedBytes() - allocatedBytesStart_;
+                if (usage.checkBudgets(options, cpuTime, allocatedBytes)) {
+                    // like the timeout, an Error can't be caught by the script
+                    throw new BudgetExceededError(usage);
+                }
+            }
+        }
+
+        public void terminateScriptIfInterrupted() {
+            if (interruptible_ && Thread.currentThread().isInterrupted()) {
+                // like the timeout, an Error can't be caught by the script
+                throw new ScriptInterruptedError();
+            }
+        }
+
         public void terminateScriptIfNecessary() {
             if (timeout_ > 0) {
                 final long currentTime = System.currentTimeMillis();
@@ -325,6 +372,43 @@ public class HtmlUnitContextFactory extends ContextFactory {
     protected void observeInstructionCount(final Context cx, final int instructionCount) {
         final TimeoutContext tcx = (TimeoutContext) cx;
         tcx.terminateScriptIfNecessary();
+        tcx.terminateScriptIfBudgetExceeded();
+        tcx.terminateScriptIfInterrupted();
+    }
+
+    /**
+     * Sets whether the scripts executed in the given context are stopped when the thread is interrupted.
+     * This is the case for the scripts of a worker, its thread is interrupted when the worker is terminated.
+     * @param cx the context
+     * @param interruptible whether the scripts are stopped
+     */
+    void setInterruptible(final Context cx, final boolean interruptible) {
+        if (cx instanceof TimeoutContext) {
+            ((TimeoutContext) cx).interruptible_ = interruptible;
+        }
+    }
+
+    /**
+     * Starts collecting the resources used by the scripts executed in the given context.
+     * @param cx the context
+     * @param usage the usage to add the resources to
+     */
+    void startResourceAccounting(final Context cx, final JavaScriptResourceUsage usage) {
+        if (cx instanceof TimeoutContext) {
+            ((TimeoutContext) cx).startResourceAccounting(usage);
+        }
+    }
+
+    /**
+     * Stops collecting the resources used by the scripts executed in the given context.
+     * @param cx the context
+     * @return whether a budget is exceeded
+     */
+    boolean stopResourceAccounting(final Context cx) {
+        if (cx instanceof TimeoutContext) {
+            return ((TimeoutContext) cx).stopResourceAccounting();
+        }
+        return false;
     }
 
     /**
@@ -337,6 +421,12 @@ public class HtmlUnitContextFactory extends ContextFactory {
 
         final TimeoutContext tcx = (TimeoutContext) cx;
         tcx.startClock();
+
+        // the context may be reused by many calls (see DefaultJavaScriptExecutor), the debugger
+        // may have been changed in the meantime
+        if (cx.getDebugger() != debugger_) {
+            cx.setDebugger(debugger_, null);
+        }
         return super.doTopCall(callable, cx, scope, thisObj, args);
     }
 
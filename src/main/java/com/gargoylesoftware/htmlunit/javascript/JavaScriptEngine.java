@@ -77,6 +77,7 @@ import net.sourceforge.htmlunit.corejs.javascript.ScriptRuntime;
 import net.sourceforge.htmlunit.corejs.javascript.Scriptable;
 import net.sourceforge.htmlunit.corejs.javascript.ScriptableObject;
 import net.sourceforge.htmlunit.corejs.javascript.UniqueTag;
+import net.sourceforge.htmlunit.corejs.javascript.debug.Debugger;
 
 /**
  * A wrapper for the <a href="http://www.mozilla.org/rhino">Rhino JavaScript engine</a>
@@ -115,6 +116,9 @@ public class JavaScriptEngine implements AbstractJavaScriptEngine<Script> {
     /** The JavaScriptExecutor corresponding to all windows of this Web client */
     private transient JavaScriptExecutor javaScriptExecutor_;
 
+    private transient JavaScriptProfiler profiler_;
+    private transient Debugger debuggerBeforeProfiling_;
+
     /**
      * Key used to place the scope in which the execution of some JavaScript code
      * started as thread local attribute in current context.
@@ -159,6 +163,43 @@ public class JavaScriptEngine implements AbstractJavaScriptEngine<Script> {
         return contextFactory_;
     }
 
+    /**
+     * Starts profiling the JavaScript code executed by this engine; the profiler replaces the current
+     * debugger of the {@link HtmlUnitContextFactory} until {@link #stopProfiling()} is called.
+     * If profiling is already active the current profiler is returned.
+     * @return the profiler collecting the data
+     */
+    public synchronized JavaScriptProfiler startProfiling() {
+        if (profiler_ == null) {
+            debuggerBeforeProfiling_ = contextFactory_.getDebugger();
+            profiler_ = new JavaScriptProfiler();
+            contextFactory_.setDebugger(profiler_);
+        }
+        return profiler_;
+    }
+
+    /**
+     * Stops profiling and restores the debugger that was active before {@link #startProfiling()}.
+     * @return the profiler containing the collected data or {@code null} if profiling was not active
+     */
+    public synchronized JavaScriptProfiler stopProfiling() {
+        final JavaScriptProfiler profiler = profiler_;
+        if (profiler != null) {
+            contextFactory_.setDebugger(debuggerBeforeProfiling_);
+            debuggerBeforeProfiling_ = null;
+            profiler_ = null;
+        }
+        return profiler;
+    }
+
+    /**
+     * Returns the active profiler.
+     * @return the profiler or {@code null} if profiling is not active
+     */
+    public synchronized JavaScriptProfiler getProfiler() {
+        return profiler_;
+    }
+
     /**
      * Performs initialization for the given webWindow.
      * @param webWindow the web window to initialize for
@@ -462,6 +503,7 @@ public class JavaScriptEngine implements AbstractJavaScriptEngine<Script> {
         deleteProperties(window, "isXMLName");
 
         NativeFunctionToStringFunction.installFix(window, webClient.getBrowserVersion());
+        VirtualTimeDateFunction.install(window, webClient.getJavaScriptClock());
 
         datePrototype.defineFunctionProperties(new String[] {"toLocaleDateString", "toLocaleTimeString"},
                 DateCustom.class, ScriptableObject.DONTENUM);
@@ -815,6 +857,30 @@ public class JavaScriptEngine implements AbstractJavaScriptEngine<Script> {
         return getContextFactory().callSecured(action, page);
     }
 
+    /**
+     * Runs the given action for a web worker. Workers have their own global scope and thread;
+     * therefore the page is not locked, postponed actions are not processed and errors
+     * don't trigger the <tt>onerror</tt> handler of the window.
+     * @param page the page that created the worker
+     * @param workerScope the global scope of the worker
+     * @param action the action to run
+     * @return the result of the action
+     */
+    public Object callInWorker(final HtmlPage page, final Scriptable workerScope, final ContextAction<Object> action) {
+        final ContextAction<Object> workerAction = new HtmlUnitContextAction(workerScope, page, false) {
+            @Override
+            public Object doRun(final Context cx) {
+                return action.run(cx);
+            }
+
+            @Override
+            protected String getSourceCode(final Context cx) {
+                return null;
+            }
+        };
+        return getContextFactory().callSecured(workerAction, page);
+    }
+
     private static Scriptable getScope(final HtmlPage page, final DomNode node) {
         if (node != null) {
             return node.getScriptableObject();
@@ -840,14 +906,65 @@ public class JavaScriptEngine implements AbstractJavaScriptEngine<Script> {
     private abstract class HtmlUnitContextAction implements ContextAction<Object> {
         private final Scriptable scope_;
         private final HtmlPage page_;
+        private final boolean lockPage_;
 
         HtmlUnitContextAction(final Scriptable scope, final HtmlPage page) {
+            this(scope, page, true);
+        }
+
+        HtmlUnitContextAction(final Scriptable scope, final HtmlPage page, final boolean lockPage) {
             scope_ = scope;
             page_ = page;
+            lockPage_ = lockPage;
         }
 
         @Override
         public final Object run(final Context cx) {
+            final JavaScriptResourceUsage usage = getResourceUsage();
+            if (usage == null) {
+                return runAction(cx);
+            }
+            if (usage.isBudgetExceeded()) {
+                // the JavaScript of the window was stopped
+                return null;
+            }
+
+            contextFactory_.startResourceAccounting(cx, usage);
+            try {
+                return runAction(cx);
+            }
+            finally {
+                if (contextFactory_.stopResourceAccounting(cx)) {
+                    if (LOG.isWarnEnabled()) {
+                        LOG.warn("JavaScript budget exceeded, stopping the jobs of " + page_.getEnclosingWindow());
+                    }
+                    page_.getEnclosingWindow().getJobManager().removeAllJobs();
+                }
+            }
+        }
+
+        /**
+         * Returns the usage to add the resources used by this action to.
+         * @return the usage or {@code null} if the resources are not collected (also if the window does not
+         *         support it) or if this action is executed by another one (the outermost action does the
+         *         accounting)
+         */
+        private JavaScriptResourceUsage getResourceUsage() {
+            if (Boolean.TRUE.equals(javaScriptRunning_.get())) {
+                return null;
+            }
+            final WebClient webClient = getWebClient();
+            if (webClient == null || !webClient.getOptions().isJavaScriptResourceAccounting()) {
+                return null;
+            }
+            final JavaScriptResourceUsage usage = page_.getEnclosingWindow().getJavaScriptResourceUsage();
+            if (!usage.isSupported()) {
+                return null;
+            }
+            return usage;
+        }
+
+        private Object runAction(final Context cx) {
             final Boolean javaScriptAlreadyRunning = javaScriptRunning_.get();
             javaScriptRunning_.set(Boolean.TRUE);
 
@@ -864,11 +981,26 @@ public class JavaScriptEngine implements AbstractJavaScriptEngine<Script> {
                 stack.push(scope_);
                 try {
                     cx.putThreadLocal(KEY_STARTING_PAGE, page_);
-                    synchronized (page_) { // 2 scripts can't be executed in parallel for one page
+                    if (!lockPage_) {
+                        // a worker running in its own thread
                         if (page_ != page_.getEnclosingWindow().getEnclosedPage()) {
                             return null; // page has been unloaded
                         }
-                        response = doRun(cx);
+                        contextFactory_.setInterruptible(cx, true);
+                        try {
+                            response = doRun(cx);
+                        }
+                        finally {
+                            contextFactory_.setInterruptible(cx, false);
+                        }
+                    }
+                    else {
+                        synchronized (page_) { // 2 scripts can't be executed in parallel for one page
+                            if (page_ != page_.getEnclosingWindow().getEnclosedPage()) {
+                                return null; // page has been unloaded
+                            }
+                            response = doRun(cx);
+                        }
                     }
                 }
                 finally {
@@ -877,13 +1009,17 @@ public class JavaScriptEngine implements AbstractJavaScriptEngine<Script> {
 
                 // doProcessPostponedActions is synchronized
                 // moved out of the sync block to avoid deadlocks
-                if (!holdPostponedActions_) {
+                if (!lockPage_) {
+                    // only the actions of the worker thread, the page may be loading in the meantime
+                    executePostponedActions();
+                }
+                else if (!holdPostponedActions_) {
                     doProcessPostponedActions();
                 }
                 return response;
             }
             catch (final Exception e) {
-                handleJavaScriptException(new ScriptException(page_, e, getSourceCode(cx)), true);
+                handleJavaScriptException(new ScriptException(page_, e, getSourceCode(cx)), lockPage_);
                 return null;
             }
             catch (final TimeoutError e) {
@@ -894,6 +1030,14 @@ public class JavaScriptEngine implements AbstractJavaScriptEngine<Script> {
                 LOG.info("Caught script timeout error", e);
                 return null;
             }
+            catch (final BudgetExceededError e) {
+                LOG.info("Caught script budget exceeded error", e);
+                return null;
+            }
+            catch (final ScriptInterruptedError e) {
+                LOG.info("Caught script interrupted error", e);
+                return null;
+            }
             finally {
                 javaScriptRunning_.set(javaScriptAlreadyRunning);
             }
@@ -923,6 +1067,13 @@ public class JavaScriptEngine implements AbstractJavaScriptEngine<Script> {
             throw new RuntimeException(e);
         }
 
+        executePostponedActions();
+    }
+
+    /**
+     * Executes the postponed actions added by the current thread.
+     */
+    private void executePostponedActions() {
         final List<PostponedAction> actions = postponedActions_.get();
         if (actions != null) {
             postponedActions_.set(null);
@@ -0,0 +1,373 @@
+/*
+ * Copyright (c) 2002-2020 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.javascript;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.commons.lang3.StringUtils;
+
+import net.sourceforge.htmlunit.corejs.javascript.Context;
+import net.sourceforge.htmlunit.corejs.javascript.Scriptable;
+import net.sourceforge.htmlunit.corejs.javascript.debug.DebugFrame;
+import net.sourceforge.htmlunit.corejs.javascript.debug.DebuggableScript;
+
+/**
+ * <p>
+ * A {@link net.sourceforge.htmlunit.corejs.javascript.debug.Debugger} that measures where the time is spent
+ * when executing JavaScript. Every function or script entered is timed; the times are aggregated per function
+ * (identified by source name, function name and first line) and per call path.
+ * </p>
+ *
+ * <p>
+ * The results are available as summary ({@link #getEntries()}) or in the collapsed stack format
+ * ({@link #writeCollapsedStacks(Writer)}) used by flame graph tools. The profiler is usually
+ * installed using {@link JavaScriptEngine#startProfiling()}; as all other debuggers it is only used
+ * for contexts created after the installation.
+ * </p>
+ *
+ * <p>
+ * The overhead is one {@link System#nanoTime()} call on every function entry and exit; the recursive
+ * invocations of a function are only counted once for the total time.
+ * </p>
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ * @see JavaScriptEngine#startProfiling()
+ */
+public class JavaScriptProfiler extends DebuggerAdapter {
+
+    private final Map<DebuggableScript, ProfiledFunction> functions_ =
+            Collections.synchronizedMap(new WeakHashMap<>());
+    private final ConcurrentMap<String, ProfiledFunction> functionsByKey_ = new ConcurrentHashMap<>();
+    private final CallNode root_ = new CallNode(null);
+    private final ThreadLocal<Deque<ProfilerFrame>> stacks_ = ThreadLocal.withInitial(ArrayDeque::new);
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DebugFrame getFrame(final Context cx, final DebuggableScript functionOrScript) {
+        ProfiledFunction function = functions_.get(functionOrScript);
+        if (function == null) {
+            final ProfiledFunction newFunction = new ProfiledFunction(functionOrScript);
+            function = functionsByKey_.computeIfAbsent(newFunction.getKey(), key -> newFunction);
+            functions_.put(functionOrScript, function);
+        }
+        return new ProfilerFrame(function);
+    }
+
+    /**
+     * Returns the profile of all functions called so far, the function with the most self time first.
+     * @return the entries
+     */
+    public List<Entry> getEntries() {
+        final List<Entry> entries = new ArrayList<>();
+        for (final ProfiledFunction function : functionsByKey_.values()) {
+            if (function.calls_.sum() > 0) {
+                entries.add(new Entry(function));
+            }
+        }
+        entries.sort((e1, e2) -> Long.compare(e2.getSelfTime(), e1.getSelfTime()));
+        return entries;
+    }
+
+    /**
+     * Writes the self time (in microseconds) of every call path in the collapsed stack format,
+     * one line per path like <code>[script] page.html:3;foo page.html:7;bar lib.js:12 1234</code>.
+     * @param writer the writer to write to
+     * @throws IOException in case of error
+     */
+    public void writeCollapsedStacks(final Writer writer) throws IOException {
+        try {
+            root_.writeCollapsed(writer, "");
+        }
+        catch (final UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Returns the self time of every call path in the collapsed stack format.
+     * @return the collapsed stacks
+     * @see #writeCollapsedStacks(Writer)
+     */
+    public String getCollapsedStacks() {
+        final StringWriter writer = new StringWriter();
+        try {
+            writeCollapsedStacks(writer);
+        }
+        catch (final IOException e) {
+            // not possible for a StringWriter
+            throw new UncheckedIOException(e);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Discards all data collected so far.
+     */
+    public void reset() {
+        for (final ProfiledFunction function : functionsByKey_.values()) {
+            function.calls_.reset();
+            function.totalTime_.reset();
+            function.selfTime_.reset();
+        }
+        root_.children_.clear();
+    }
+
+    /**
+     * A profiled function or script.
+     */
+    private static final class ProfiledFunction {
+        private final String sourceName_;
+        private final String functionName_;
+        private final int lineNumber_;
+        private final String key_;
+        private final String label_;
+
+        private final LongAdder calls_ = new LongAdder();
+        private final LongAdder totalTime_ = new LongAdder();
+        private final LongAdder selfTime_ = new LongAdder();
+
+        ProfiledFunction(final DebuggableScript script) {
+            sourceName_ = StringUtils.defaultString(script.getSourceName(), "unknown");
+            if (script.isFunction()) {
+                functionName_ = StringUtils.defaultIfEmpty(script.getFunctionName(), "[anonymous]");
+            }
+            else {
+                functionName_ = "[script]";
+            }
+
+            int line = -1;
+            final int[] lines = script.getLineNumbers();
+            if (lines != null) {
+                for (final int l : lines) {
+                    if (line == -1 || l < line) {
+                        line = l;
+                    }
+                }
+            }
+            lineNumber_ = line;
+
+            // only the file name is interesting the rest of the url is mostly noise;
+            // the collapsed format uses ';' as separator
+            final String file = StringUtils.substringBefore(
+                    StringUtils.substringAfterLast("/" + sourceName_, "/"), " ");
+            label_ = (functionName_ + " " + file + ":" + lineNumber_).replace(';', ',');
+            key_ = sourceName_ + "#" + functionName_ + "#" + lineNumber_;
+        }
+
+        String getKey() {
+            return key_;
+        }
+
+        String getLabel() {
+            return label_;
+        }
+    }
+
+    /**
+     * A node in the call tree.
+     */
+    private static final class CallNode {
+        private final ProfiledFunction function_;
+        private final ConcurrentMap<ProfiledFunction, CallNode> children_ = new ConcurrentHashMap<>();
+        private final LongAdder selfTime_ = new LongAdder();
+
+        CallNode(final ProfiledFunction function) {
+            function_ = function;
+        }
+
+        CallNode child(final ProfiledFunction function) {
+            CallNode child = children_.get(function);
+            if (child == null) {
+                child = children_.computeIfAbsent(function, CallNode::new);
+            }
+            return child;
+        }
+
+        void writeCollapsed(final Writer writer, final String prefix) {
+            children_.values().forEach(child -> {
+                final String path = prefix + child.function_.getLabel();
+                final long micros = child.selfTime_.sum() / 1000;
+                try {
+                    if (micros > 0) {
+                        writer.write(path);
+                        writer.write(' ');
+                        writer.write(Long.toString(micros));
+                        writer.write('\n');
+                    }
+                }
+                catch (final IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                child.writeCollapsed(writer, path + ";");
+            });
+        }
+    }
+
+    /**
+     * The frame for one invocation of a function.
+     */
+    private final class ProfilerFrame extends DebugFrameAdapter {
+        private final ProfiledFunction function_;
+        private CallNode node_;
+        private Map<ProfiledFunction, int[]> active_;
+        private long start_;
+        private long childTime_;
+
+        ProfilerFrame(final ProfiledFunction function) {
+            function_ = function;
+        }
+
+        @Override
+        public void onEnter(final Context cx, final Scriptable activation,
+                final Scriptable thisObj, final Object[] args) {
+            final Deque<ProfilerFrame> stack = stacks_.get();
+            final ProfilerFrame parent = stack.peek();
+            if (parent == null) {
+                node_ = root_.child(function_);
+                active_ = new HashMap<>();
+            }
+            else {
+                node_ = parent.node_.child(function_);
+                active_ = parent.active_;
+            }
+            final int[] depth = active_.computeIfAbsent(function_, f -> new int[1]);
+            depth[0]++;
+
+            stack.push(this);
+            start_ = System.nanoTime();
+        }
+
+        @Override
+        public void onExit(final Context cx, final boolean byThrow, final Object resultOrException) {
+            final long time = System.nanoTime() - start_;
+            final Deque<ProfilerFrame> stack = stacks_.get();
+            if (stack.peek() != this && !stack.contains(this)) {
+                return;
+            }
+            // frames left without exit notification
+            while (stack.peek() != this) {
+                stack.pop().leave(0);
+            }
+            stack.pop();
+            leave(time);
+
+            final ProfilerFrame parent = stack.peek();
+            if (parent != null) {
+                parent.childTime_ += time;
+            }
+        }
+
+        private void leave(final long time) {
+            final long self = Math.max(0, time - childTime_);
+            node_.selfTime_.add(self);
+            function_.selfTime_.add(self);
+            function_.calls_.increment();
+
+            final int[] depth = active_.get(function_);
+            depth[0]--;
+            if (depth[0] == 0) {
+                function_.totalTime_.add(time);
+            }
+        }
+    }
+
+    /**
+     * The profile of one function or script.
+     */
+    public static final class Entry {
+        private final String sourceName_;
+        private final String functionName_;
+        private final int lineNumber_;
+        private final long callCount_;
+        private final long totalTime_;
+        private final long selfTime_;
+
+        Entry(final ProfiledFunction function) {
+            sourceName_ = function.sourceName_;
+            functionName_ = function.functionName_;
+            lineNumber_ = function.lineNumber_;
+            callCount_ = function.calls_.sum();
+            totalTime_ = function.totalTime_.sum();
+            selfTime_ = function.selfTime_.sum();
+        }
+
+        /**
+         * @return the name of the source
+         */
+        public String getSourceName() {
+            return sourceName_;
+        }
+
+        /**
+         * @return the name of the function, <code>[anonymous]</code> or <code>[script]</code>
+         */
+        public String getFunctionName() {
+            return functionName_;
+        }
+
+        /**
+         * @return the first line of the function, -1 if not known
+         */
+        public int getLineNumber() {
+            return lineNumber_;
+        }
+
+        /**
+         * @return the number of invocations
+         */
+        public long getCallCount() {
+            return callCount_;
+        }
+
+        /**
+         * @return the time spent in this function including the called functions, in nanoseconds
+         */
+        public long getTotalTime() {
+            return totalTime_;
+        }
+
+        /**
+         * @return the time spent in this function excluding the called functions, in nanoseconds
+         */
+        public long getSelfTime() {
+            return selfTime_;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            return functionName_ + " (" + sourceName_ + ":" + lineNumber_ + ") calls: " + callCount_
+                    + ", total: " + totalTime_ / 1000 + "us, self: " + selfTime_ / 1000 + "us";
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2002-2020 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.javascript;
+
+import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import com.gargoylesoftware.htmlunit.WebClientOptions;
+
+/**
+ * <p><span style="color:red">Experimental API: May be changed in next release
+ * and may not yet work perfectly!</span></p>
+ *
+ * <p>The resources used by the JavaScript of a {@link com.gargoylesoftware.htmlunit.WebWindow}: the CPU time
+ * spent in the scripts, event handlers and jobs and the memory allocated meanwhile. The allocated memory
+ * is a sample of the bytes allocated by the executing thread; it includes the objects created by HtmlUnit
+ * on behalf of the scripts and the garbage, not only the memory still in use.</p>
+ *
+ * <p>The usage is only collected if enabled by {@link WebClientOptions#setJavaScriptResourceAccounting(boolean)}
+ * or if a budget is configured; the counters are reset when a new page is loaded into the window.
+ * If the CPU time of the threads is not available, the elapsed time is used; if the allocated memory
+ * is not available, it stays {@code 0}.</p>
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public class JavaScriptResourceUsage implements Serializable {
+
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+    private static final JavaScriptResourceUsage UNSUPPORTED = new JavaScriptResourceUsage(false);
+
+    private final boolean supported_;
+    private long cpuTime_;
+    private long allocatedBytes_;
+    private boolean budgetExceeded_;
+
+    /**
+     * Creates a new usage.
+     */
+    public JavaScriptResourceUsage() {
+        this(true);
+    }
+
+    private JavaScriptResourceUsage(final boolean supported) {
+        supported_ = supported;
+    }
+
+    /**
+     * Returns the usage of windows not collecting the resources used; it stays empty
+     * and never exceeds a budget.
+     * @return the usage
+     */
+    public static JavaScriptResourceUsage unsupported() {
+        return UNSUPPORTED;
+    }
+
+    /**
+     * Returns whether the resources are collected by this usage.
+     * @return {@code false} for the {@link #unsupported()} usage
+     */
+    public boolean isSupported() {
+        return supported_;
+    }
+
+    /**
+     * Returns the CPU time used by the JavaScript of the window.
+     * @return the time in milliseconds
+     */
+    public synchronized long getCpuTime() {
+        return cpuTime_ / 1_000_000;
+    }
+
+    /**
+     * Returns the approximate number of bytes allocated by the JavaScript of the window.
+     * @return the number of bytes
+     */
+    public synchronized long getAllocatedBytes() {
+        return allocatedBytes_;
+    }
+
+    /**
+     * Returns whether a budget was exceeded; in this case the jobs of the window were stopped
+     * and no more JavaScript is executed in the window until a new page is loaded.
+     * @return whether a budget was exceeded
+     */
+    public synchronized boolean isBudgetExceeded() {
+        return budgetExceeded_;
+    }
+
+    /**
+     * Resets the counters.
+     */
+    public synchronized void reset() {
+        cpuTime_ = 0;
+        allocatedBytes_ = 0;
+        budgetExceeded_ = false;
+    }
+
+    /**
+     * Adds the resources used by one execution.
+     * @param cpuTime the CPU time in nanoseconds
+     * @param allocatedBytes the number of bytes allocated
+     */
+    synchronized void add(final long cpuTime, final long allocatedBytes) {
+        if (!supported_) {
+            return;
+        }
+        cpuTime_ += cpuTime;
+        allocatedBytes_ += allocatedBytes;
+    }
+
+    /**
+     * Checks the usage including the resources used by the running execution against the budgets
+     * of the options; marks the usage as exceeded if a budget is exceeded.
+     * @param options the options defining the budgets
+     * @param runningCpuTime the CPU time in nanoseconds used by the running execution
+     * @param runningAllocatedBytes the number of bytes allocated by the running execution
+     * @return whether a budget is exceeded
+     */
+    synchronized boolean checkBudgets(final WebClientOptions options,
+            final long runningCpuTime, final long runningAllocatedBytes) {
+        if (!supported_) {
+            return false;
+        }
+        final long cpuTimeBudget = options.getJavaScriptCpuTimeBudget();
+        if (cpuTimeBudget > 0 && (cpuTime_ + runningCpuTime) / 1_000_000 > cpuTimeBudget) {
+            budgetExceeded_ = true;
+        }
+        final long allocationBudget = options.getJavaScriptAllocationBudget();
+        if (allocationBudget > 0 && allocatedBytes_ + runningAllocatedBytes > allocationBudget) {
+            budgetExceeded_ = true;
+        }
+        return budgetExceeded_;
+    }
+
+    /**
+     * Returns the CPU time of the current thread.
+     * @return the time in nanoseconds
+     */
+    static long currentThreadCpuTime() {
+        if (THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported() && THREAD_MX_BEAN.isThreadCpuTimeEnabled()) {
+            return THREAD_MX_BEAN.getCurrentThreadCpuTime();
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * Returns the number of bytes allocated by the current thread.
+     * @return the number of bytes or {@code 0} if not available
+     */
+    static long currentThreadAllocatedBytes() {
+        if (THREAD_MX_BEAN instanceof com.sun.management.ThreadMXBean) {
+            final com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) THREAD_MX_BEAN;
+            if (bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled()) {
+                return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2002-2020 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.javascript;
+
+import com.gargoylesoftware.htmlunit.javascript.background.JavaScriptClock;
+
+import net.sourceforge.htmlunit.corejs.javascript.BaseFunction;
+import net.sourceforge.htmlunit.corejs.javascript.Context;
+import net.sourceforge.htmlunit.corejs.javascript.Function;
+import net.sourceforge.htmlunit.corejs.javascript.Scriptable;
+import net.sourceforge.htmlunit.corejs.javascript.ScriptableObject;
+
+/**
+ * Replacement (in fact a wrapper) for Rhino's native Date constructor using a {@link JavaScriptClock}
+ * for <code>new Date()</code>, <code>Date()</code> and <code>Date.now()</code>. Rhino always uses the
+ * system time for this.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+class VirtualTimeDateFunction extends FunctionWrapper {
+
+    private final JavaScriptClock clock_;
+    private final NowFunction now_;
+
+    /**
+     * Install the wrapper in place of the native Date constructor if the clock is a virtual one.
+     * @param window the scope
+     * @param clock the clock
+     */
+    static void install(final Scriptable window, final JavaScriptClock clock) {
+        if (!clock.isVirtual()) {
+            return;
+        }
+        final Function originalDate = (Function) ScriptableObject.getProperty(window, "Date");
+        final VirtualTimeDateFunction newDate = new VirtualTimeDateFunction(originalDate, clock);
+        ScriptableObject.putProperty(window, "Date", newDate);
+
+        final Scriptable datePrototype = ScriptableObject.getClassPrototype(window, "Date");
+        ScriptableObject.putProperty(datePrototype, "constructor", newDate);
+    }
+
+    VirtualTimeDateFunction(final Function wrapped, final JavaScriptClock clock) {
+        super(wrapped);
+        clock_ = clock;
+        now_ = new NowFunction(clock);
+        now_.setParentScope(wrapped.getParentScope());
+        now_.setPrototype(ScriptableObject.getFunctionPrototype(wrapped.getParentScope()));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Scriptable construct(final Context cx, final Scriptable scope, final Object[] args) {
+        if (args.length == 0) {
+            return super.construct(cx, scope, new Object[] {(double) clock_.currentTimeMillis()});
+        }
+        return super.construct(cx, scope, args);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object call(final Context cx, final Scriptable scope, final Scriptable thisObj, final Object[] args) {
+        // Date() ignores the arguments and returns the current time as string
+        final Scriptable date = construct(cx, scope, new Object[0]);
+        return ScriptableObject.callMethod(cx, date, "toString", new Object[0]);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object get(final String name, final Scriptable start) {
+        if ("now".equals(name)) {
+            return now_;
+        }
+        return super.get(name, start);
+    }
+
+    /**
+     * The replacement for <code>Date.now()</code>.
+     */
+    private static final class NowFunction extends BaseFunction {
+        private final JavaScriptClock clock_;
+
+        NowFunction(final JavaScriptClock clock) {
+            clock_ = clock;
+        }
+
+        @Override
+        public Object call(final Context cx, final Scriptable scope, final Scriptable thisObj, final Object[] args) {
+            return (double) clock_.currentTimeMillis();
+        }
+
+        @Override
+        public String getFunctionName() {
+            return "now";
+        }
+    }
+}
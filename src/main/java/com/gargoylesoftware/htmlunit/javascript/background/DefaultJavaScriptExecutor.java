@@ -17,16 +17,25 @@ package com.gargoylesoftware.htmlunit.javascript.background;
 import java.lang.ref.WeakReference;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import com.gargoylesoftware.htmlunit.WebClient;
 import com.gargoylesoftware.htmlunit.WebWindow;
+import com.gargoylesoftware.htmlunit.javascript.AbstractJavaScriptEngine;
+import com.gargoylesoftware.htmlunit.javascript.JavaScriptEngine;
+
+import net.sourceforge.htmlunit.corejs.javascript.Context;
 
 /**
  * An event loop to execute all the JavaScript jobs.
+ * The event loop thread sleeps until the earliest job is due; the job managers wake it
+ * up if a new job is added.
  *
  * @author Amit Manjhi
  * @author Kostadin Chikov
@@ -41,6 +50,16 @@ public class DefaultJavaScriptExecutor implements JavaScriptExecutor {
 
     private transient Thread eventLoopThread_;
 
+    /**
+     * The event loop is woken up at least this often (in milliseconds) to check if the
+     * web client is still alive.
+     */
+    private static final long MAX_WAIT_TIME = 1000;
+
+    private final transient ReentrantLock lock_ = new ReentrantLock();
+    private final transient Condition jobAddedCondition_ = lock_.newCondition();
+    private transient boolean jobAdded_;
+
     /** Logging support. */
     private static final Log LOG = LogFactory.getLog(DefaultJavaScriptExecutor.class);
 
@@ -127,32 +146,19 @@ public class DefaultJavaScriptExecutor implements JavaScriptExecutor {
     /** Runs the eventLoop. */
     @Override
     public void run() {
-        final boolean trace = LOG.isTraceEnabled();
-        // this has to be a multiple of 10ms
-        // otherwise the VM has to fight with the OS to get such small periods
-        final long sleepInterval = 10;
-        while (!shutdown_.get() && !Thread.currentThread().isInterrupted() && webClient_.get() != null) {
-            final JavaScriptJobManager jobManager = getJobManagerWithEarliestJob();
-
-            if (jobManager != null) {
-                final JavaScriptJob earliestJob = jobManager.getEarliestJob();
-                if (earliestJob != null) {
-                    final long waitTime = earliestJob.getTargetExecutionTime() - System.currentTimeMillis();
-
-                    // do we have to execute the earliest job
-                    if (waitTime < 1) {
-                        // execute the earliest job
-                        if (trace) {
-                            LOG.trace("started executing job at " + System.currentTimeMillis());
-                        }
-                        jobManager.runSingleJob(earliestJob);
-                        if (trace) {
-                            LOG.trace("stopped executing job at " + System.currentTimeMillis());
-                        }
-
-                        // job is done, have a look for another one
-                        continue;
-                    }
+        while (!shutdown_.get() && !Thread.currentThread().isInterrupted()) {
+            long waitTime;
+            // all the jobs due now share one context
+            final boolean entered = getTimeToEarliestJob() == 0 && enterJavaScriptContext();
+            try {
+                do {
+                    waitTime = runEarliestJobIfDue();
+                }
+                while (waitTime == 0 && !shutdown_.get() && !Thread.currentThread().isInterrupted());
+            }
+            finally {
+                if (entered) {
+                    Context.exit();
                 }
             }
 
@@ -161,13 +167,163 @@ public class DefaultJavaScriptExecutor implements JavaScriptExecutor {
                 break;
             }
 
-            // nothing to do, let's sleep a bit
-            try {
-                Thread.sleep(sleepInterval);
+            // nothing to do, wait until the earliest job is due or a new job was added
+            if (waitTime < 0) {
+                awaitJobs(MAX_WAIT_TIME);
+            }
+            else {
+                awaitJobs(Math.min(waitTime, MAX_WAIT_TIME));
+            }
+        }
+    }
+
+    /**
+     * Enters a JavaScript context for the current thread; the due jobs executed until the context is exited
+     * share this context instead of setting up a new one for every job. The context must not be kept while
+     * the thread waits for new jobs, it references the web client.
+     * @return whether a context was entered and has to be exited using {@link Context#exit()}
+     */
+    protected boolean enterJavaScriptContext() {
+        final WebClient webClient = webClient_.get();
+        if (webClient == null) {
+            return false;
+        }
+        final AbstractJavaScriptEngine<?> engine = webClient.getJavaScriptEngine();
+        if (!(engine instanceof JavaScriptEngine)) {
+            return false;
+        }
+        ((JavaScriptEngine) engine).getContextFactory().enterContext();
+        return true;
+    }
+
+    /**
+     * Executes the earliest job of all the job managers if it is due. If the clock is a virtual one
+     * it is moved forward to the target execution time of the earliest job, the job is always due;
+     * except if some pending jobs are still waiting for their (real time) work to be done.
+     * @return {@code 0} if a job was executed, the time (in milliseconds) until the earliest job is due
+     *         or {@code -1} if there is no job at all
+     */
+    protected long runEarliestJobIfDue() {
+        final JavaScriptClock clock = getClock();
+        if (clock == null) {
+            return -1;
+        }
+        final JavaScriptJobManager jobManager = getJobManagerWithEarliestJob();
+        if (jobManager == null) {
+            return -1;
+        }
+        final JavaScriptJob earliestJob = jobManager.getEarliestJob();
+        if (earliestJob == null) {
+            return -1;
+        }
+
+        final long waitTime = earliestJob.getTargetExecutionTime() - clock.currentTimeMillis();
+        if (waitTime > 0) {
+            if (!clock.isVirtual()) {
+                return waitTime;
             }
-            catch (final InterruptedException e) {
-                Thread.currentThread().interrupt();
+            if (hasPendingJobs()) {
+                // the time must not pass before e.g. the response of a request is there
+                return -1;
             }
+            // nothing is due, no need to wait for the time to pass
+            clock.advanceTo(earliestJob.getTargetExecutionTime());
+        }
+
+        final boolean trace = LOG.isTraceEnabled();
+        if (trace) {
+            LOG.trace("started executing job at " + clock.currentTimeMillis());
+        }
+        jobManager.runSingleJob(earliestJob);
+        if (trace) {
+            LOG.trace("stopped executing job at " + clock.currentTimeMillis());
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the time until the earliest job of all the job managers is due.
+     * @return the time in milliseconds, {@code 0} if the job is due or the clock is a virtual one
+     *         and {@code -1} if there is no job at all
+     */
+    protected long getTimeToEarliestJob() {
+        final JavaScriptClock clock = getClock();
+        if (clock == null) {
+            return -1;
+        }
+        final JavaScriptJobManager jobManager = getJobManagerWithEarliestJob();
+        if (jobManager == null) {
+            return -1;
+        }
+        final JavaScriptJob earliestJob = jobManager.getEarliestJob();
+        if (earliestJob == null) {
+            return -1;
+        }
+        final long waitTime = Math.max(0, earliestJob.getTargetExecutionTime() - clock.currentTimeMillis());
+        if (clock.isVirtual()) {
+            return waitTime > 0 && hasPendingJobs() ? -1 : 0;
+        }
+        return waitTime;
+    }
+
+    /**
+     * Returns whether one of the job managers has jobs waiting for work done outside of the event loop.
+     * @return whether there are pending jobs
+     * @see JavaScriptJobManager#addPendingJob(JavaScriptJob, com.gargoylesoftware.htmlunit.Page)
+     */
+    private boolean hasPendingJobs() {
+        synchronized (jobManagerList_) {
+            for (WeakReference<JavaScriptJobManager> weakReference : jobManagerList_) {
+                final JavaScriptJobManager jobManager = weakReference.get();
+                if (jobManager != null && jobManager.getPendingJobCount() > 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private JavaScriptClock getClock() {
+        final WebClient webClient = webClient_.get();
+        if (webClient == null) {
+            return null;
+        }
+        return webClient.getJavaScriptClock();
+    }
+
+    /**
+     * Blocks until the given time has passed or a job was added.
+     * @param waitTime the time to wait at most
+     */
+    private void awaitJobs(final long waitTime) {
+        lock_.lock();
+        try {
+            long nanos = TimeUnit.MILLISECONDS.toNanos(waitTime);
+            while (!jobAdded_ && nanos > 0) {
+                nanos = jobAddedCondition_.awaitNanos(nanos);
+            }
+            jobAdded_ = false;
+        }
+        catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        finally {
+            lock_.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void jobAdded(final JavaScriptJobManager jobManager, final JavaScriptJob job) {
+        lock_.lock();
+        try {
+            jobAdded_ = true;
+            jobAddedCondition_.signal();
+        }
+        finally {
+            lock_.unlock();
         }
     }
 
@@ -180,7 +336,10 @@ public class DefaultJavaScriptExecutor implements JavaScriptExecutor {
         final JavaScriptJobManager jobManager = newWindow.getJobManager();
         if (jobManager != null) {
             updateJobMangerList(jobManager);
+            jobManager.setExecutor(this);
             startThreadIfNeeded();
+            // the manager may already have some jobs
+            jobAdded(jobManager, null);
         }
     }
 
@@ -212,6 +371,12 @@ public class DefaultJavaScriptExecutor implements JavaScriptExecutor {
 
         webClient_.clear();
         synchronized (jobManagerList_) {
+            for (final WeakReference<JavaScriptJobManager> weakReference : jobManagerList_) {
+                final JavaScriptJobManager jobManager = weakReference.get();
+                if (jobManager != null) {
+                    jobManager.setExecutor(null);
+                }
+            }
             jobManagerList_.clear();
         }
     }
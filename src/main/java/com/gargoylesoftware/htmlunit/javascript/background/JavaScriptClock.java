@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2002-2020 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.javascript.background;
+
+import java.io.Serializable;
+
+/**
+ * The source of the time used for scheduling the {@link JavaScriptJob}s and for the
+ * time visible to JavaScript (<code>Date.now()</code>, <code>performance.now()</code>).
+ *
+ * <p>The {@link #SYSTEM} clock simply follows the system time. A {@link #virtual() virtual} clock only moves
+ * forward when it is explicitly advanced - the event loop does this as soon as there is no job due anymore,
+ * jumping directly to the target execution time of the next job. This way timer driven pages are executed
+ * without waiting for the real time to pass.</p>
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ * @see com.gargoylesoftware.htmlunit.WebClientOptions#setVirtualTime(boolean)
+ */
+public abstract class JavaScriptClock implements Serializable {
+
+    /** The clock following the system time. */
+    public static final JavaScriptClock SYSTEM = new SystemClock();
+
+    /**
+     * Creates a new virtual clock starting at the current system time.
+     * @return the new clock
+     */
+    public static JavaScriptClock virtual() {
+        return new VirtualClock(System.currentTimeMillis());
+    }
+
+    /**
+     * Returns the current time in milliseconds since the epoch.
+     * @return the time
+     */
+    public abstract long currentTimeMillis();
+
+    /**
+     * Returns the current time in milliseconds with sub millisecond precision relative to an arbitrary
+     * origin; to be used for <code>performance.now()</code> and the animation frame timestamps.
+     * @return the time
+     */
+    public abstract double highResolutionTime();
+
+    /**
+     * @return whether this is a virtual clock
+     */
+    public boolean isVirtual() {
+        return false;
+    }
+
+    /**
+     * Moves a virtual clock forward to the given time; the clock never goes backwards.
+     * Does nothing for the {@link #SYSTEM} clock.
+     * @param millis the new time in milliseconds since the epoch
+     */
+    public void advanceTo(final long millis) {
+        // real time can't be changed
+    }
+
+    /**
+     * Moves a virtual clock forward by the given amount of time.
+     * Does nothing for the {@link #SYSTEM} clock.
+     * @param millis the time to add
+     */
+    public void advanceBy(final long millis) {
+        // real time can't be changed
+    }
+
+    /**
+     * The clock based on the system time.
+     */
+    private static final class SystemClock extends JavaScriptClock {
+
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+
+        @Override
+        public double highResolutionTime() {
+            return System.nanoTime() / 1_000_000d;
+        }
+
+        private Object readResolve() {
+            return SYSTEM;
+        }
+    }
+
+    /**
+     * The virtual clock.
+     */
+    private static final class VirtualClock extends JavaScriptClock {
+        private final long origin_;
+        private long now_;
+
+        VirtualClock(final long start) {
+            origin_ = start;
+            now_ = start;
+        }
+
+        @Override
+        public synchronized long currentTimeMillis() {
+            return now_;
+        }
+
+        @Override
+        public synchronized double highResolutionTime() {
+            return now_ - origin_;
+        }
+
+        @Override
+        public boolean isVirtual() {
+            return true;
+        }
+
+        @Override
+        public synchronized void advanceTo(final long millis) {
+            if (millis > now_) {
+                now_ = millis;
+            }
+        }
+
+        @Override
+        public synchronized void advanceBy(final long millis) {
+            if (millis > 0) {
+                now_ += millis;
+            }
+        }
+    }
+}
@@ -35,4 +35,14 @@ public interface JavaScriptExecutor extends Runnable {
      * Notes that this thread has been shutdown.
      */
     void shutdown();
+
+    /**
+     * Informs the event loop about a new job of the given job manager; the job might
+     * have to be executed before the one the event loop is waiting for.
+     * @param jobManager the job manager
+     * @param job the new job
+     */
+    default void jobAdded(final JavaScriptJobManager jobManager, final JavaScriptJob job) {
+        // nothing
+    }
 }
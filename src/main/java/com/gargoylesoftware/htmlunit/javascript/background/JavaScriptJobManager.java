@@ -15,6 +15,8 @@
 package com.gargoylesoftware.htmlunit.javascript.background;
 
 import java.io.Serializable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
 
 import com.gargoylesoftware.htmlunit.Page;
 
@@ -64,6 +66,58 @@ public interface JavaScriptJobManager extends Serializable {
      */
     int addJob(JavaScriptJob job, Page page);
 
+    /**
+     * Adds a job which has to wait for some work done outside of the event loop (like network I/O)
+     * before it can be executed. The job counts as active job, but it is not executed
+     * before {@link #startPendingJob(int)} was called. If the specified page is not currently loaded
+     * in the window which owns this job manager, the operation fails and this method returns <tt>0</tt>.
+     * The default implementation does not support pending jobs and always returns <tt>0</tt>.
+     * @param job the job to add to the job manager
+     * @param page the page which is trying to add the job
+     * @return the ID assigned to the job
+     */
+    default int addPendingJob(final JavaScriptJob job, final Page page) {
+        return 0;
+    }
+
+    /**
+     * Schedules a job added by {@link #addPendingJob(JavaScriptJob, Page)} for immediate execution;
+     * does nothing if the job was removed in the meantime.
+     * @param id the ID of the job
+     */
+    default void startPendingJob(final int id) {
+        // nothing
+    }
+
+    /**
+     * Registers the work a pending job is waiting for, like a request done in the background. The work is
+     * cancelled if the job is removed before it was started, this includes removing all jobs when the page
+     * is left. The default implementation does nothing.
+     * @param id the ID of the pending job
+     * @param work the work
+     */
+    default void setPendingJobWork(final int id, final Future<?> work) {
+        // nothing
+    }
+
+    /**
+     * Waits until the work registered by {@link #setPendingJobWork(int, Future)} so far is done; used to keep
+     * the order of the requests of a page if a synchronous request follows requests done in the background.
+     * The default implementation does nothing.
+     * @param timeoutMillis the maximum time to wait, zero or less to wait without limit
+     */
+    default void awaitPendingJobWork(final long timeoutMillis) {
+        // nothing
+    }
+
+    /**
+     * Returns the number of jobs added by {@link #addPendingJob(JavaScriptJob, Page)} that are not yet started.
+     * @return the number of pending jobs
+     */
+    default int getPendingJobCount() {
+        return 0;
+    }
+
     /**
      * Removes the specified job from the execution queue. This doesn't interrupt the job if it is currently running.
      * @param id the ID of the job to be removed from the execution queue
@@ -118,6 +172,30 @@ public interface JavaScriptJobManager extends Serializable {
      */
     int waitForJobsStartingBefore(long delayMillis, JavaScriptJobFilter filter);
 
+    /**
+     * Returns a future completed as soon as there are no active jobs anymore. The future is completed
+     * by the thread finishing or removing the last job; no thread is blocked while waiting.
+     * The default implementation waits for the jobs using {@link #waitForJobs(long)} in a thread
+     * of the common pool.
+     * @return the future
+     */
+    default CompletableFuture<Void> whenIdle() {
+        if (getJobCount() == 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return CompletableFuture.runAsync(() -> waitForJobs(Long.MAX_VALUE));
+    }
+
+    /**
+     * Returns the number of jobs added to this manager since it was created; a changed value
+     * shows that jobs were executed in the meantime even if there are no active jobs now.
+     * The default implementation always returns <tt>0</tt>.
+     * @return the number of jobs added
+     */
+    default long getAddedJobCount() {
+        return 0;
+    }
+
     /**
      * Shuts down this job manager and stops all of its jobs.
      */
@@ -143,6 +221,16 @@ public interface JavaScriptJobManager extends Serializable {
      */
     boolean runSingleJob(JavaScriptJob job);
 
+    /**
+     * Sets the event loop executing the jobs of this manager. The executor has to be informed
+     * about every job added using {@link JavaScriptExecutor#jobAdded(JavaScriptJobManager, JavaScriptJob)}.
+     * The default implementation does nothing; in this case the executor has to poll.
+     * @param executor the executor, may be {@code null}
+     */
+    default void setExecutor(final JavaScriptExecutor executor) {
+        // nothing
+    }
+
     /**
      * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br>
      *
@@ -18,7 +18,15 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
-import java.util.PriorityQueue;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.logging.Log;
@@ -50,14 +58,28 @@ class JavaScriptJobManagerImpl implements JavaScriptJobManager {
 
     /**
      * Queue of jobs that are scheduled to run. This is a priority queue, sorted
-     * by closest target execution time.
+     * by closest target execution time and indexed by the job id.
      */
-    private transient PriorityQueue<JavaScriptJob> scheduledJobsQ_ = new PriorityQueue<>();
-
-    private transient ArrayList<Integer> cancelledJobs_ = new ArrayList<>();
+    private transient JavaScriptJobQueue scheduledJobsQ_ = new JavaScriptJobQueue();
 
     private transient JavaScriptJob currentlyRunningJob_;
 
+    /** Whether the currently running job was removed; a periodic job is not scheduled again. */
+    private transient boolean currentlyRunningJobCancelled_;
+
+    /** The jobs waiting for some work done outside of the event loop; not yet scheduled. */
+    private transient Map<Integer, JavaScriptJob> pendingJobs_ = new HashMap<>();
+
+    /** The work the pending jobs are waiting for, cancelled if the job is removed. */
+    private transient Map<Integer, Future<?>> pendingWork_ = new HashMap<>();
+
+    private transient volatile JavaScriptExecutor executor_;
+
+    /** The futures returned by {@link #whenIdle()}, completed when the last job is gone. */
+    private transient List<CompletableFuture<Void>> idleFutures_ = new ArrayList<>();
+
+    private transient long addedJobCount_;
+
     /** A counter used to generate the IDs assigned to {@link JavaScriptJob}s. */
     private static final AtomicInteger NEXT_JOB_ID_ = new AtomicInteger(1);
 
@@ -76,14 +98,14 @@ class JavaScriptJobManagerImpl implements JavaScriptJobManager {
     /** {@inheritDoc} */
     @Override
     public synchronized int getJobCount() {
-        return scheduledJobsQ_.size() + (currentlyRunningJob_ != null ? 1 : 0);
+        return scheduledJobsQ_.size() + pendingJobs_.size() + (currentlyRunningJob_ != null ? 1 : 0);
     }
 
     /** {@inheritDoc} */
     @Override
     public synchronized int getJobCount(final JavaScriptJobFilter filter) {
         if (filter == null) {
-            return scheduledJobsQ_.size() + (currentlyRunningJob_ != null ? 1 : 0);
+            return getJobCount();
         }
 
         int count = 0;
@@ -95,32 +117,151 @@ class JavaScriptJobManagerImpl implements JavaScriptJobManager {
                 count++;
             }
         }
+        for (JavaScriptJob job : pendingJobs_.values()) {
+            if (filter.passes(job)) {
+                count++;
+            }
+        }
         return count;
     }
 
     /** {@inheritDoc} */
     @Override
-    public int addJob(final JavaScriptJob job, final Page page) {
+    public synchronized int getPendingJobCount() {
+        return pendingJobs_.size();
+    }
+
+    /**
+     * Returns whether the page may add jobs; this is not the case if the window has been garbage collected
+     * or the page is no longer contained by our owner window.
+     * @param page the page
+     * @return the window or {@code null} if the page can't add jobs
+     */
+    private WebWindow getWindowAcceptingJobs(final Page page) {
         final WebWindow w = getWindow();
         if (w == null) {
             /*
              * The window to which this job manager belongs has been garbage
              * collected. Don't spawn any more jobs for it.
              */
-            return 0;
+            return null;
         }
         if (w.getEnclosedPage() != page) {
             /*
              * The page requesting the addition of the job is no longer contained by
              * our owner window. Don't let it spawn any more jobs.
              */
+            return null;
+        }
+        return w;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int addPendingJob(final JavaScriptJob job, final Page page) {
+        if (getWindowAcceptingJobs(page) == null) {
+            return 0;
+        }
+        final int id = NEXT_JOB_ID_.getAndIncrement();
+        job.setId(Integer.valueOf(id));
+
+        synchronized (this) {
+            pendingJobs_.put(job.getId(), job);
+            addedJobCount_++;
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("pending job added: " + job.toString());
+            }
+            notify();
+        }
+        return id;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void startPendingJob(final int id) {
+        synchronized (this) {
+            final JavaScriptJob job = pendingJobs_.remove(Integer.valueOf(id));
+            pendingWork_.remove(Integer.valueOf(id));
+            if (job == null) {
+                // removed in the meantime
+                return;
+            }
+            job.setTargetExecutionTime(getClock().currentTimeMillis());
+            scheduledJobsQ_.add(job);
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("pending job started: " + job.toString());
+            }
+            notify();
+        }
+
+        final JavaScriptExecutor executor = executor_;
+        if (executor != null) {
+            executor.jobAdded(this, null);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized void setPendingJobWork(final int id, final Future<?> work) {
+        final Integer jobId = Integer.valueOf(id);
+        if (pendingJobs_.containsKey(jobId)) {
+            pendingWork_.put(jobId, work);
+        }
+        else {
+            // removed in the meantime or already started
+            work.cancel(true);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void awaitPendingJobWork(final long timeoutMillis) {
+        final List<Future<?>> works;
+        synchronized (this) {
+            works = new ArrayList<>(pendingWork_.values());
+        }
+        final long end = System.currentTimeMillis() + timeoutMillis;
+        for (final Future<?> work : works) {
+            try {
+                if (timeoutMillis <= 0) {
+                    work.get();
+                }
+                else {
+                    work.get(Math.max(0, end - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                }
+            }
+            catch (final CancellationException | ExecutionException e) {
+                // done anyway
+            }
+            catch (final TimeoutException e) {
+                return;
+            }
+            catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int addJob(final JavaScriptJob job, final Page page) {
+        final WebWindow w = getWindowAcceptingJobs(page);
+        if (w == null) {
             return 0;
         }
         final int id = NEXT_JOB_ID_.getAndIncrement();
         job.setId(Integer.valueOf(id));
 
+        final JavaScriptClock clock = getClock();
+        if (clock.isVirtual() && job instanceof BasicJavaScriptJob) {
+            // the job was created with the system time, the clock might be already far ahead
+            job.setTargetExecutionTime(clock.currentTimeMillis() + ((BasicJavaScriptJob) job).getInitialDelay());
+        }
+
         synchronized (this) {
             scheduledJobsQ_.add(job);
+            addedJobCount_++;
 
             if (LOG.isDebugEnabled()) {
                 LOG.debug("job added to queue");
@@ -133,49 +274,67 @@ class JavaScriptJobManagerImpl implements JavaScriptJobManager {
             notify();
         }
 
+        final JavaScriptExecutor executor = executor_;
+        if (executor != null) {
+            executor.jobAdded(this, job);
+        }
         return id;
     }
 
     /** {@inheritDoc} */
     @Override
-    public synchronized void removeJob(final int id) {
-        for (final JavaScriptJob job : scheduledJobsQ_) {
-            final int jobId = job.getId().intValue();
-            if (jobId == id) {
-                scheduledJobsQ_.remove(job);
-                break;
-            }
+    public void removeJob(final int id) {
+        synchronized (this) {
+            cancel(id);
+            notify();
         }
-        cancelledJobs_.add(Integer.valueOf(id));
-        notify();
+        completeIdleFutures();
     }
 
     /** {@inheritDoc} */
     @Override
-    public synchronized void stopJob(final int id) {
-        for (final JavaScriptJob job : scheduledJobsQ_) {
-            final int jobId = job.getId().intValue();
-            if (jobId == id) {
-                scheduledJobsQ_.remove(job);
-                // TODO: should we try to interrupt the job if it is running?
-                break;
-            }
+    public void stopJob(final int id) {
+        synchronized (this) {
+            // TODO: should we try to interrupt the job if it is running?
+            cancel(id);
+            notify();
+        }
+        completeIdleFutures();
+    }
+
+    private void cancel(final int id) {
+        final Integer jobId = Integer.valueOf(id);
+        scheduledJobsQ_.remove(jobId);
+        pendingJobs_.remove(jobId);
+        final Future<?> work = pendingWork_.remove(jobId);
+        if (work != null) {
+            work.cancel(true);
+        }
+        if (currentlyRunningJob_ != null && jobId.equals(currentlyRunningJob_.getId())) {
+            currentlyRunningJobCancelled_ = true;
         }
-        cancelledJobs_.add(Integer.valueOf(id));
-        notify();
     }
 
     /** {@inheritDoc} */
     @Override
-    public synchronized void removeAllJobs() {
-        if (currentlyRunningJob_ != null) {
-            cancelledJobs_.add(currentlyRunningJob_.getId());
+    public void removeAllJobs() {
+        synchronized (this) {
+            if (currentlyRunningJob_ != null) {
+                currentlyRunningJobCancelled_ = true;
+            }
+            scheduledJobsQ_.clear();
+            clearPendingJobs();
+            notify();
         }
-        for (final JavaScriptJob job : scheduledJobsQ_) {
-            cancelledJobs_.add(job.getId());
+        completeIdleFutures();
+    }
+
+    private void clearPendingJobs() {
+        pendingJobs_.clear();
+        for (final Future<?> work : pendingWork_.values()) {
+            work.cancel(true);
         }
-        scheduledJobsQ_.clear();
-        notify();
+        pendingWork_.clear();
     }
 
     /** {@inheritDoc} */
@@ -186,6 +345,7 @@ class JavaScriptJobManagerImpl implements JavaScriptJobManager {
             LOG.debug("Waiting for all jobs to finish (will wait max " + timeoutMillis + " millis).");
         }
         if (timeoutMillis > 0) {
+            // the timeout is always real time
             long now = System.currentTimeMillis();
             final long end = now + timeoutMillis;
 
@@ -221,7 +381,7 @@ class JavaScriptJobManagerImpl implements JavaScriptJobManager {
     public int waitForJobsStartingBefore(final long delayMillis, final JavaScriptJobFilter filter) {
         final boolean debug = LOG.isDebugEnabled();
 
-        final long latestExecutionTime = System.currentTimeMillis() + delayMillis;
+        final long latestExecutionTime = getClock().currentTimeMillis() + delayMillis;
         if (debug) {
             LOG.debug("Waiting for all jobs that have execution time before "
                   + delayMillis + " (" + latestExecutionTime + ") to finish");
@@ -229,15 +389,7 @@ class JavaScriptJobManagerImpl implements JavaScriptJobManager {
 
         final long interval = Math.max(40, delayMillis);
         synchronized (this) {
-            JavaScriptJob earliestJob = getEarliestJob(filter);
-            boolean pending = earliestJob != null && earliestJob.getTargetExecutionTime() < latestExecutionTime;
-            pending = pending
-                    || (
-                            currentlyRunningJob_ != null
-                            && (filter == null || filter.passes(currentlyRunningJob_))
-                            && currentlyRunningJob_.getTargetExecutionTime() < latestExecutionTime
-                       );
-
+            boolean pending = hasJobsStartingBefore(latestExecutionTime, filter);
             while (pending) {
                 try {
                     wait(interval);
@@ -246,14 +398,7 @@ class JavaScriptJobManagerImpl implements JavaScriptJobManager {
                     LOG.error("InterruptedException while in waitForJobsStartingBefore", e);
                 }
 
-                earliestJob = getEarliestJob(filter);
-                pending = earliestJob != null && earliestJob.getTargetExecutionTime() < latestExecutionTime;
-                pending = pending
-                        || (
-                                currentlyRunningJob_ != null
-                                && (filter == null || filter.passes(currentlyRunningJob_))
-                                && currentlyRunningJob_.getTargetExecutionTime() < latestExecutionTime
-                           );
+                pending = hasJobsStartingBefore(latestExecutionTime, filter);
             }
         }
 
@@ -265,11 +410,81 @@ class JavaScriptJobManagerImpl implements JavaScriptJobManager {
         return jobs;
     }
 
+    private boolean hasJobsStartingBefore(final long latestExecutionTime, final JavaScriptJobFilter filter) {
+        final JavaScriptJob earliestJob = getEarliestJob(filter);
+        if (earliestJob != null && earliestJob.getTargetExecutionTime() < latestExecutionTime) {
+            return true;
+        }
+        if (currentlyRunningJob_ != null
+                && (filter == null || filter.passes(currentlyRunningJob_))
+                && currentlyRunningJob_.getTargetExecutionTime() < latestExecutionTime) {
+            return true;
+        }
+        for (final JavaScriptJob job : pendingJobs_.values()) {
+            if ((filter == null || filter.passes(job)) && job.getTargetExecutionTime() < latestExecutionTime) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void shutdown() {
+        synchronized (this) {
+            scheduledJobsQ_.clear();
+            clearPendingJobs();
+            notify();
+        }
+        completeIdleFutures();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized CompletableFuture<Void> whenIdle() {
+        if (getJobCount() == 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        idleFutures_.add(future);
+        // futures cancelled or completed by the caller are not kept until the jobs are done
+        future.whenComplete((result, e) -> removeIdleFuture(future));
+        return future;
+    }
+
+    private synchronized void removeIdleFuture(final CompletableFuture<Void> future) {
+        idleFutures_.remove(future);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized long getAddedJobCount() {
+        return addedJobCount_;
+    }
+
+    /**
+     * Completes the futures returned by {@link #whenIdle()} if there are no active jobs anymore.
+     * Must not be called while holding the lock; the dependent actions of the futures run in
+     * the calling thread.
+     */
+    private void completeIdleFutures() {
+        final List<CompletableFuture<Void>> futures;
+        synchronized (this) {
+            if (idleFutures_.isEmpty() || getJobCount() > 0) {
+                return;
+            }
+            futures = new ArrayList<>(idleFutures_);
+            idleFutures_.clear();
+        }
+        for (final CompletableFuture<Void> future : futures) {
+            future.complete(null);
+        }
+    }
+
     /** {@inheritDoc} */
     @Override
-    public synchronized void shutdown() {
-        scheduledJobsQ_.clear();
-        notify();
+    public void setExecutor(final JavaScriptExecutor executor) {
+        executor_ = executor;
     }
 
     /**
@@ -283,6 +498,18 @@ class JavaScriptJobManagerImpl implements JavaScriptJobManager {
         return window_.get();
     }
 
+    /**
+     * Returns the clock of the web client of our window.
+     * @return the clock
+     */
+    private JavaScriptClock getClock() {
+        final WebWindow window = getWindow();
+        if (window == null || window.getWebClient() == null) {
+            return JavaScriptClock.SYSTEM;
+        }
+        return window.getWebClient().getJavaScriptClock();
+    }
+
     /**
      * Utility method to print current queue.
      */
@@ -322,10 +549,17 @@ class JavaScriptJobManagerImpl implements JavaScriptJobManager {
         }
         status.append("  number of jobs on the queue: " + scheduledJobsQ_.size());
         status.append(lineSeparator);
+        for (final JavaScriptJob job : pendingJobs_.values()) {
+            if (filter == null || filter.passes(job)) {
+                status.append("  pending job: ").append(job.toString());
+                status.append("      job id: " + job.getId());
+                status.append(lineSeparator);
+            }
+        }
         int count = 1;
+        final long now = getClock().currentTimeMillis();
         for (final JavaScriptJob job : scheduledJobsQ_) {
             if (filter == null || filter.passes(job)) {
-                final long now = System.currentTimeMillis();
                 final long execTime = job.getTargetExecutionTime();
                 status.append("  " + count);
                 status.append(")  Job target execution time: " + execTime);
@@ -352,7 +586,7 @@ class JavaScriptJobManagerImpl implements JavaScriptJobManager {
      * {@inheritDoc}
      */
     @Override
-    public JavaScriptJob getEarliestJob() {
+    public synchronized JavaScriptJob getEarliestJob() {
         return scheduledJobsQ_.peek();
     }
 
@@ -365,12 +599,14 @@ class JavaScriptJobManagerImpl implements JavaScriptJobManager {
             return scheduledJobsQ_.peek();
         }
 
+        // the queue is not sorted, only the head is the earliest job
+        JavaScriptJob earliestJob = null;
         for (JavaScriptJob job : scheduledJobsQ_) {
-            if (filter.passes(job)) {
-                return job;
+            if (filter.passes(job) && (earliestJob == null || earliestJob.compareTo(job) > 0)) {
+                earliestJob = job;
             }
         }
-        return null;
+        return earliestJob;
     }
 
     /**
@@ -384,14 +620,17 @@ class JavaScriptJobManagerImpl implements JavaScriptJobManager {
             return false;
         }
 
-        final long currentTime = System.currentTimeMillis();
+        final long currentTime = getClock().currentTimeMillis();
         if (job.getTargetExecutionTime() > currentTime) {
             return false;
         }
         synchronized (this) {
-            if (scheduledJobsQ_.remove(job)) {
-                currentlyRunningJob_ = job;
+            if (!scheduledJobsQ_.remove(job)) {
+                // removed in the meantime
+                return false;
             }
+            currentlyRunningJob_ = job;
+            currentlyRunningJobCancelled_ = false;
             // no need to notify if processing is started
         }
 
@@ -407,7 +646,7 @@ class JavaScriptJobManagerImpl implements JavaScriptJobManager {
 
             // queue
             synchronized (this) {
-                if (!cancelledJobs_.contains(job.getId())) {
+                if (!currentlyRunningJobCancelled_) {
                     if (debug) {
                         LOG.debug("Reschedulling job " + job);
                     }
@@ -433,6 +672,7 @@ class JavaScriptJobManagerImpl implements JavaScriptJobManager {
                 }
                 notify();
             }
+            completeIdleFutures();
         }
         if (debug) {
             final String periodicJob = isPeriodicJob ? "interval " : "";
@@ -451,8 +691,10 @@ class JavaScriptJobManagerImpl implements JavaScriptJobManager {
         in.defaultReadObject();
 
         // we do not store the jobs (at the moment)
-        scheduledJobsQ_ = new PriorityQueue<>();
-        cancelledJobs_ = new ArrayList<>();
+        scheduledJobsQ_ = new JavaScriptJobQueue();
+        pendingJobs_ = new HashMap<>();
+        pendingWork_ = new HashMap<>();
+        idleFutures_ = new ArrayList<>();
         currentlyRunningJob_ = null;
     }
 }
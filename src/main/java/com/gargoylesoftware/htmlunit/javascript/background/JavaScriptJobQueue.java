@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2002-2020 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.javascript.background;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * The queue of the scheduled {@link JavaScriptJob}s of a {@link JavaScriptJobManagerImpl}.
+ * This is a binary heap ordered like the jobs compare to each other (target execution time),
+ * jobs with the same execution time are ordered by id. In addition the position of every job
+ * is indexed by the job id; this allows to remove a job in O(log n) instead of the linear
+ * search required by a {@link java.util.PriorityQueue}.
+ *
+ * <p>The jobs must have an id when added; this class is not thread safe.</p>
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+final class JavaScriptJobQueue implements Iterable<JavaScriptJob> {
+
+    private JavaScriptJob[] heap_ = new JavaScriptJob[16];
+    private int size_;
+    private final Map<Integer, Integer> positions_ = new HashMap<>();
+
+    /**
+     * Adds a job; a job with the same id is replaced.
+     * @param job the job
+     */
+    void add(final JavaScriptJob job) {
+        remove(job.getId());
+
+        if (size_ == heap_.length) {
+            heap_ = Arrays.copyOf(heap_, size_ * 2);
+        }
+        final int pos = size_;
+        size_++;
+        heap_[pos] = job;
+        positions_.put(job.getId(), pos);
+        siftUp(pos);
+    }
+
+    /**
+     * Returns the earliest job.
+     * @return the job or {@code null} if the queue is empty
+     */
+    JavaScriptJob peek() {
+        if (size_ == 0) {
+            return null;
+        }
+        return heap_[0];
+    }
+
+    /**
+     * Returns the job with the given id.
+     * @param id the id of the job
+     * @return the job or {@code null} if there is no such job
+     */
+    JavaScriptJob get(final Integer id) {
+        final Integer pos = positions_.get(id);
+        if (pos == null) {
+            return null;
+        }
+        return heap_[pos.intValue()];
+    }
+
+    /**
+     * Returns whether the given job is part of this queue.
+     * @param job the job
+     * @return {@code true} if the job was found
+     */
+    boolean contains(final JavaScriptJob job) {
+        return get(job.getId()) == job;
+    }
+
+    /**
+     * Removes the job with the given id.
+     * @param id the id of the job
+     * @return the removed job or {@code null} if there is no such job
+     */
+    JavaScriptJob remove(final Integer id) {
+        final Integer pos = positions_.remove(id);
+        if (pos == null) {
+            return null;
+        }
+
+        final int index = pos.intValue();
+        final JavaScriptJob removed = heap_[index];
+        size_--;
+        final JavaScriptJob last = heap_[size_];
+        heap_[size_] = null;
+        if (index != size_) {
+            heap_[index] = last;
+            positions_.put(last.getId(), index);
+            siftDown(index);
+            if (heap_[index] == last) {
+                siftUp(index);
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Removes the given job.
+     * @param job the job
+     * @return {@code true} if the job was found
+     */
+    boolean remove(final JavaScriptJob job) {
+        if (!contains(job)) {
+            return false;
+        }
+        remove(job.getId());
+        return true;
+    }
+
+    /**
+     * @return the number of jobs
+     */
+    int size() {
+        return size_;
+    }
+
+    /**
+     * @return whether there are no jobs
+     */
+    boolean isEmpty() {
+        return size_ == 0;
+    }
+
+    /**
+     * Removes all jobs.
+     */
+    void clear() {
+        Arrays.fill(heap_, 0, size_, null);
+        size_ = 0;
+        positions_.clear();
+    }
+
+    /**
+     * Returns an iterator over the jobs; the jobs are not returned in any particular order.
+     * The queue must not be modified while iterating.
+     * @return the iterator
+     */
+    @Override
+    public Iterator<JavaScriptJob> iterator() {
+        return new Iterator<JavaScriptJob>() {
+            private int next_;
+
+            @Override
+            public boolean hasNext() {
+                return next_ < size_;
+            }
+
+            @Override
+            public JavaScriptJob next() {
+                if (next_ >= size_) {
+                    throw new NoSuchElementException();
+                }
+                return heap_[next_++];
+            }
+        };
+    }
+
+    private static int compare(final JavaScriptJob job1, final JavaScriptJob job2) {
+        final int result = job1.compareTo(job2);
+        if (result != 0) {
+            return result;
+        }
+        return job1.getId().compareTo(job2.getId());
+    }
+
+    private void siftUp(final int start) {
+        int pos = start;
+        final JavaScriptJob job = heap_[pos];
+        while (pos > 0) {
+            final int parent = (pos - 1) >>> 1;
+            final JavaScriptJob parentJob = heap_[parent];
+            if (compare(job, parentJob) >= 0) {
+                break;
+            }
+            heap_[pos] = parentJob;
+            positions_.put(parentJob.getId(), pos);
+            pos = parent;
+        }
+        heap_[pos] = job;
+        positions_.put(job.getId(), pos);
+    }
+
+    private void siftDown(final int start) {
+        int pos = start;
+        final JavaScriptJob job = heap_[pos];
+        final int half = size_ >>> 1;
+        while (pos < half) {
+            int child = (pos << 1) + 1;
+            final int right = child + 1;
+            if (right < size_ && compare(heap_[right], heap_[child]) < 0) {
+                child = right;
+            }
+            final JavaScriptJob childJob = heap_[child];
+            if (compare(job, childJob) <= 0) {
+                break;
+            }
+            heap_[pos] = childJob;
+            positions_.put(childJob.getId(), pos);
+            pos = child;
+        }
+        heap_[pos] = job;
+        positions_.put(job.getId(), pos);
+    }
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2002-2020 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.javascript.background;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.gargoylesoftware.htmlunit.WebClient;
+
+import net.sourceforge.htmlunit.corejs.javascript.Context;
+
+/**
+ * <p>A pool of threads executing the JavaScript jobs of many {@link WebClient}s. Every
+ * {@link DefaultJavaScriptExecutor} uses its own thread, which sleeps most of the time;
+ * this does not scale if there are thousands of clients.</p>
+ *
+ * <p>The event loops created by {@link #createExecutor(WebClient)} don't have a thread. They are
+ * scheduled on the pool if a job is due and run the due jobs; the jobs of one client are still
+ * executed one after the other like with the {@link DefaultJavaScriptExecutor}. To avoid that a
+ * busy client blocks a thread for a long time, the event loop gives the thread back after
+ * a time slice.</p>
+ *
+ * <p>To use it, the {@link BackgroundJavaScriptFactory} has to create the executors:</p>
+ * <pre>
+ * final SharedJavaScriptExecutor sharedExecutor = new SharedJavaScriptExecutor(8);
+ * BackgroundJavaScriptFactory.setFactory(new BackgroundJavaScriptFactory() {
+ *     &#64;Override
+ *     public JavaScriptExecutor createJavaScriptExecutor(final WebClient webClient) {
+ *         return sharedExecutor.createExecutor(webClient);
+ *     }
+ * });
+ * </pre>
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public class SharedJavaScriptExecutor {
+
+    /** Logging support. */
+    private static final Log LOG = LogFactory.getLog(SharedJavaScriptExecutor.class);
+
+    /** The maximum time (in milliseconds) one event loop runs jobs before the thread is given back. */
+    private static final long TIME_SLICE = 100;
+
+    private static final AtomicInteger POOL_NUMBER = new AtomicInteger(1);
+
+    private final ScheduledThreadPoolExecutor pool_;
+
+    /**
+     * Creates a new instance using daemon threads.
+     * @param threads the number of threads
+     */
+    public SharedJavaScriptExecutor(final int threads) {
+        this(threads, new DaemonThreadFactory());
+    }
+
+    /**
+     * Creates a new instance.
+     * @param threads the number of threads
+     * @param threadFactory the factory for the threads of the pool
+     */
+    public SharedJavaScriptExecutor(final int threads, final ThreadFactory threadFactory) {
+        pool_ = new ScheduledThreadPoolExecutor(threads, threadFactory);
+        pool_.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Creates the event loop for the given client; the returned executor is usually returned
+     * by {@link BackgroundJavaScriptFactory#createJavaScriptExecutor(WebClient)}.
+     * @param webClient the client
+     * @return the event loop
+     */
+    public JavaScriptExecutor createExecutor(final WebClient webClient) {
+        return new PooledJavaScriptExecutor(webClient);
+    }
+
+    /**
+     * Returns the number of threads of the pool.
+     * @return the number of threads
+     */
+    public int getThreadCount() {
+        return pool_.getCorePoolSize();
+    }
+
+    /**
+     * Stops all the threads; the event loops created by this instance are no longer
+     * executing jobs.
+     */
+    public void shutdown() {
+        pool_.shutdownNow();
+    }
+
+    /**
+     * The event loop of one client.
+     */
+    private final class PooledJavaScriptExecutor extends DefaultJavaScriptExecutor {
+        private Thread runner_;
+        private ScheduledFuture<?> scheduled_;
+        private long scheduledTime_;
+        private boolean stopped_;
+
+        PooledJavaScriptExecutor(final WebClient webClient) {
+            super(webClient);
+        }
+
+        /**
+         * {@inheritDoc}
+         * There is no thread; instead the event loop is scheduled on the pool.
+         */
+        @Override
+        protected void startThreadIfNeeded() {
+            // nothing
+        }
+
+        /**
+         * Runs the due jobs; called by the pool.
+         */
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (runner_ != null || stopped_) {
+                    return;
+                }
+                runner_ = Thread.currentThread();
+                scheduled_ = null;
+            }
+
+            try {
+                final long end = System.currentTimeMillis() + TIME_SLICE;
+                long waitTime = 0;
+                final boolean entered = enterJavaScriptContext();
+                try {
+                    while (waitTime == 0 && !isStopped() && System.currentTimeMillis() < end) {
+                        waitTime = runEarliestJobIfDue();
+                    }
+                }
+                finally {
+                    if (entered) {
+                        Context.exit();
+                    }
+                }
+            }
+            catch (final RuntimeException e) {
+                LOG.error("Event loop failed with unexpected RuntimeException: " + e.getMessage(), e);
+            }
+            finally {
+                synchronized (this) {
+                    runner_ = null;
+                    notifyAll();
+                }
+            }
+            schedule();
+        }
+
+        private synchronized boolean isStopped() {
+            return stopped_;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void jobAdded(final JavaScriptJobManager jobManager, final JavaScriptJob job) {
+            schedule();
+        }
+
+        /**
+         * Schedules the event loop on the pool for the earliest job.
+         */
+        private void schedule() {
+            final long delay = getTimeToEarliestJob();
+            synchronized (this) {
+                if (stopped_ || runner_ != null || delay < 0) {
+                    // a running event loop schedules itself when done
+                    return;
+                }
+
+                final long time = System.currentTimeMillis() + delay;
+                if (scheduled_ != null) {
+                    if (!scheduled_.isDone() && scheduledTime_ <= time) {
+                        return;
+                    }
+                    scheduled_.cancel(false);
+                }
+                if (pool_.isShutdown()) {
+                    return;
+                }
+                scheduledTime_ = time;
+                scheduled_ = pool_.schedule(this, delay, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void shutdown() {
+            synchronized (this) {
+                stopped_ = true;
+                if (scheduled_ != null) {
+                    scheduled_.cancel(false);
+                    scheduled_ = null;
+                }
+
+                if (runner_ != null && runner_ != Thread.currentThread()) {
+                    runner_.interrupt();
+                    final long end = System.currentTimeMillis() + 10_000;
+                    long wait = end - System.currentTimeMillis();
+                    while (runner_ != null && wait > 0) {
+                        try {
+                            wait(wait);
+                        }
+                        catch (final InterruptedException e) {
+                            LOG.warn("InterruptedException while waiting for the event loop to finish", e);
+                            Thread.currentThread().interrupt();
+                            break;
+                        }
+                        wait = end - System.currentTimeMillis();
+                    }
+                    if (runner_ != null && LOG.isWarnEnabled()) {
+                        LOG.warn("Event loop still running in " + runner_.getName());
+                    }
+                }
+            }
+            super.shutdown();
+        }
+    }
+
+    /**
+     * Creates daemon threads.
+     */
+    private static final class DaemonThreadFactory implements ThreadFactory {
+        private final int poolNumber_ = POOL_NUMBER.getAndIncrement();
+        private final AtomicInteger threadNumber_ = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable,
+                    "JS executor pool " + poolNumber_ + " thread " + threadNumber_.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
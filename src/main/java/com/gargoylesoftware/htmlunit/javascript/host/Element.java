@@ -29,7 +29,9 @@ import static com.gargoylesoftware.htmlunit.javascript.configuration.SupportedBr
 import static com.gargoylesoftware.htmlunit.javascript.configuration.SupportedBrowser.IE;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
@@ -47,6 +49,7 @@ import com.gargoylesoftware.htmlunit.html.DomNode;
 import com.gargoylesoftware.htmlunit.html.DomText;
 import com.gargoylesoftware.htmlunit.html.HtmlElement;
 import com.gargoylesoftware.htmlunit.html.HtmlElement.DisplayStyle;
+import com.gargoylesoftware.htmlunit.html.HtmlPage;
 import com.gargoylesoftware.htmlunit.javascript.NamedNodeMap;
 import com.gargoylesoftware.htmlunit.javascript.configuration.JsxClass;
 import com.gargoylesoftware.htmlunit.javascript.configuration.JsxConstructor;
@@ -128,10 +131,10 @@ public class Element extends Node {
          * Should be called only on construction.
          */
         final DomElement htmlElt = (DomElement) domNode;
-        for (final DomAttr attr : htmlElt.getAttributesMap().values()) {
-            final String eventName = attr.getName().toLowerCase(Locale.ROOT);
+        for (final String name : htmlElt.getAttributesMap().keySet()) {
+            final String eventName = name.toLowerCase(Locale.ROOT);
             if (eventName.startsWith("on")) {
-                createEventHandler(eventName.substring(2), attr.getValue());
+                createEventHandler(eventName.substring(2), htmlElt.getAttributeDirect(name));
             }
         }
     }
@@ -238,6 +241,20 @@ public class Element extends Node {
         }
         else {
             collection = new HTMLCollection(node, false) {
+                @Override
+                protected Iterable<DomNode> getCandidates() {
+                    // start from the tag name index of the page instead of walking all descendants
+                    final DomNode root = getDomNodeOrNull();
+                    final HtmlPage page = root.getHtmlPageOrNull();
+                    if (page != null && tagNameLC.indexOf(':') == -1) {
+                        final List<DomElement> elements = page.getIndexedElementsByTagName(root, tagNameLC);
+                        if (elements != null) {
+                            return Collections.<DomNode>unmodifiableList(elements);
+                        }
+                    }
+                    return super.getCandidates();
+                }
+
                 @Override
                 protected boolean isMatching(final DomNode nodeToMatch) {
                     return tagNameLC.equalsIgnoreCase(nodeToMatch.getNodeName());
@@ -647,8 +664,30 @@ public class Element extends Node {
     public HTMLCollection getElementsByClassName(final String className) {
         final DomElement elt = getDomNodeOrDie();
         final String[] classNames = CLASS_NAMES_SPLIT_PATTERN.split(className, 0);
+        String indexClassName = null;
+        for (final String aClassName : classNames) {
+            if (!aClassName.isEmpty()) {
+                indexClassName = aClassName;
+                break;
+            }
+        }
+        final String candidatesClassName = indexClassName;
 
         final HTMLCollection collection = new HTMLCollection(elt, true) {
+            @Override
+            protected Iterable<DomNode> getCandidates() {
+                // start from the class name index of the page instead of walking all descendants
+                final DomNode root = getDomNodeOrNull();
+                final HtmlPage page = root.getHtmlPageOrNull();
+                if (page != null && candidatesClassName != null) {
+                    final List<DomElement> elements = page.getIndexedElementsByClassName(root, candidatesClassName);
+                    if (elements != null) {
+                        return Collections.<DomNode>unmodifiableList(elements);
+                    }
+                }
+                return super.getCandidates();
+            }
+
             @Override
             protected boolean isMatching(final DomNode node) {
                 if (!(node instanceof HtmlElement)) {
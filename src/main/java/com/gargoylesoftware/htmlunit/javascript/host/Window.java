@@ -63,6 +63,7 @@ import com.gargoylesoftware.htmlunit.StorageHolder.Type;
 import com.gargoylesoftware.htmlunit.TopLevelWindow;
 import com.gargoylesoftware.htmlunit.WebAssert;
 import com.gargoylesoftware.htmlunit.WebClient;
+import com.gargoylesoftware.htmlunit.WebClientOptions;
 import com.gargoylesoftware.htmlunit.WebWindow;
 import com.gargoylesoftware.htmlunit.WebWindowNotFoundException;
 import com.gargoylesoftware.htmlunit.html.BaseFrameElement;
@@ -100,6 +101,7 @@ import com.gargoylesoftware.htmlunit.javascript.configuration.JsxFunction;
 import com.gargoylesoftware.htmlunit.javascript.configuration.JsxGetter;
 import com.gargoylesoftware.htmlunit.javascript.configuration.JsxSetter;
 import com.gargoylesoftware.htmlunit.javascript.host.crypto.Crypto;
+import com.gargoylesoftware.htmlunit.javascript.host.css.AncestorFilter;
 import com.gargoylesoftware.htmlunit.javascript.host.css.CSS2Properties;
 import com.gargoylesoftware.htmlunit.javascript.host.css.CSSStyleSheet;
 import com.gargoylesoftware.htmlunit.javascript.host.css.MediaQueryList;
@@ -183,6 +185,9 @@ public class Window extends EventTarget implements Function, AutoCloseable {
      */
     private static final int MIN_TIMER_DELAY = 1;
 
+    /** Marks the animation frame job as being added to the job manager. */
+    private static final int ANIMATION_FRAME_JOB_ADDING = -1;
+
     private Document document_;
     private DocumentProxy documentProxy_;
     private Navigator navigator_;
@@ -208,6 +213,12 @@ public class Window extends EventTarget implements Function, AutoCloseable {
     private final EnumMap<Type, Storage> storages_ = new EnumMap<>(Type.class);
 
     private final transient List<AnimationFrame> animationFrames_ = new ArrayList<>();
+    /** The ids start with 1 and are never reused, like the ones of the browsers. */
+    private transient int animationFrameCounter_;
+    /** The id of the job running the next frame, 0 if none, {@link #ANIMATION_FRAME_JOB_ADDING} while added. */
+    private transient int animationFrameJobId_;
+    private transient int animationFrameSchedulings_;
+    private transient long lastAnimationFrameTime_;
 
     private static final class AnimationFrame {
         private long id_;
@@ -865,20 +876,95 @@ public class Window extends EventTarget implements Function, AutoCloseable {
      * @return the number of pending animation callbacks
      */
     public int animateAnimationsFrames() {
-        final List<AnimationFrame> animationFrames = new ArrayList<>(animationFrames_);
-        animationFrames_.clear();
+        final List<AnimationFrame> animationFrames;
+        synchronized (animationFrames_) {
+            animationFrames = new ArrayList<>(animationFrames_);
+            animationFrames_.clear();
+        }
 
-        final double now = System.nanoTime() / 1_000_000d;
+        final WebWindow ww = getWindow().getWebWindow();
+        final double now = ww.getWebClient().getJavaScriptClock().highResolutionTime();
         final Object[] args = new Object[] {now};
 
-        final WebWindow ww = getWindow().getWebWindow();
         final JavaScriptEngine jsEngine = (JavaScriptEngine) ww.getWebClient().getJavaScriptEngine();
 
         for (AnimationFrame animationFrame : animationFrames) {
             jsEngine.callFunction((HtmlPage) ww.getEnclosedPage(),
                         animationFrame.callback_, this, getParentScope(), args);
         }
-        return animationFrames_.size();
+        synchronized (animationFrames_) {
+            return animationFrames_.size();
+        }
+    }
+
+    /**
+     * Schedules the job running the next animation frame if the frames are scheduled
+     * (see {@link com.gargoylesoftware.htmlunit.WebClientOptions#setAnimationFrameRate(int)}),
+     * there are callbacks waiting and the window is not paused. Called by the {@link WebClient}
+     * when a window becomes the current one.
+     */
+    public void scheduleAnimationFrame() {
+        final WebWindow webWindow = getWebWindow();
+        final WebClient webClient = webWindow.getWebClient();
+        final WebClientOptions options = webClient.getOptions();
+        final int frameRate = options.getAnimationFrameRate();
+        if (frameRate <= 0) {
+            return;
+        }
+
+        final long delay;
+        final int scheduling;
+        synchronized (animationFrames_) {
+            if (animationFrames_.isEmpty() || animationFrameJobId_ != 0 || isAnimationFramePaused()) {
+                return;
+            }
+
+            long interval = 1000 / frameRate;
+            if (options.isAnimationFramesCoalesced()) {
+                interval = 1000;
+            }
+            final long now = webClient.getJavaScriptClock().currentTimeMillis();
+            // a delay of zero would give the frame the priority of a XMLHttpRequest
+            delay = Math.max(1, lastAnimationFrameTime_ + interval - now);
+            animationFrameJobId_ = ANIMATION_FRAME_JOB_ADDING;
+            scheduling = ++animationFrameSchedulings_;
+        }
+
+        // the job manager is not called while holding the lock
+        final JavaScriptJob job = BackgroundJavaScriptFactory.theFactory()
+                .createJavaScriptJob((int) delay, null, this::runAnimationFrame);
+        final int jobId = webWindow.getJobManager().addJob(job, (Page) getDomNodeOrNull());
+        synchronized (animationFrames_) {
+            if (animationFrameJobId_ == ANIMATION_FRAME_JOB_ADDING && animationFrameSchedulings_ == scheduling) {
+                animationFrameJobId_ = jobId;
+                return;
+            }
+        }
+        // all frames were canceled or the job did already run in the meantime
+        webWindow.getJobManager().removeJob(jobId);
+    }
+
+    private void runAnimationFrame() {
+        synchronized (animationFrames_) {
+            animationFrameJobId_ = 0;
+            if (isAnimationFramePaused()) {
+                // resumed by the WebClient when the window gets the current one
+                return;
+            }
+            lastAnimationFrameTime_ = getWebWindow().getWebClient().getJavaScriptClock().currentTimeMillis();
+        }
+        animateAnimationsFrames();
+        scheduleAnimationFrame();
+    }
+
+    private boolean isAnimationFramePaused() {
+        final WebWindow webWindow = getWebWindow();
+        final WebClient webClient = webWindow.getWebClient();
+        if (!webClient.getOptions().isAnimationFramesPausedInBackground()) {
+            return false;
+        }
+        final WebWindow currentWindow = webClient.getCurrentWindow();
+        return currentWindow == null || currentWindow.getTopWindow() != webWindow.getTopWindow();
     }
 
     /**
@@ -890,9 +976,13 @@ public class Window extends EventTarget implements Function, AutoCloseable {
     @JsxFunction
     public int requestAnimationFrame(final Object callback) {
         if (callback instanceof Function) {
-            final int id = animationFrames_.size();
-            final AnimationFrame animationFrame = new AnimationFrame(id, (Function) callback);
-            animationFrames_.add(animationFrame);
+            final int id;
+            synchronized (animationFrames_) {
+                id = ++animationFrameCounter_;
+                final AnimationFrame animationFrame = new AnimationFrame(id, (Function) callback);
+                animationFrames_.add(animationFrame);
+            }
+            scheduleAnimationFrame();
             return id;
         }
         return -1;
@@ -907,12 +997,25 @@ public class Window extends EventTarget implements Function, AutoCloseable {
     public void cancelAnimationFrame(final Object requestId) {
         final int id = (int) Context.toNumber(requestId);
 
-        final Iterator<AnimationFrame> frames = animationFrames_.iterator();
-        while (frames.hasNext()) {
-            final Window.AnimationFrame animationFrame = frames.next();
-            if (animationFrame.id_ == id) {
-                frames.remove();
+        final int jobId;
+        synchronized (animationFrames_) {
+            final Iterator<AnimationFrame> frames = animationFrames_.iterator();
+            while (frames.hasNext()) {
+                final Window.AnimationFrame animationFrame = frames.next();
+                if (animationFrame.id_ == id) {
+                    frames.remove();
+                }
             }
+
+            if (!animationFrames_.isEmpty() || animationFrameJobId_ == 0) {
+                return;
+            }
+            jobId = animationFrameJobId_;
+            animationFrameJobId_ = 0;
+        }
+
+        if (jobId != ANIMATION_FRAME_JOB_ADDING) {
+            getWebWindow().getJobManager().removeJob(jobId);
         }
     }
 
@@ -1866,13 +1969,18 @@ public class Window extends EventTarget implements Function, AutoCloseable {
         if (ownerDocument instanceof HTMLDocument) {
             final StyleSheetList sheets = ((HTMLDocument) ownerDocument).getStyleSheets();
             final boolean trace = LOG.isTraceEnabled();
+            AncestorFilter ancestorFilter = null;
             for (int i = 0; i < sheets.getLength(); i++) {
                 final CSSStyleSheet sheet = (CSSStyleSheet) sheets.item(i);
                 if (sheet.isActive() && sheet.isEnabled()) {
                     if (trace) {
                         LOG.trace("modifyIfNecessary: " + sheet + ", " + style + ", " + e);
                     }
-                    sheet.modifyIfNecessary(style, e, normalizedPseudo);
+                    if (ancestorFilter == null) {
+                        // shared by all sheets
+                        ancestorFilter = AncestorFilter.of(e.getDomNodeOrDie().getParentNode());
+                    }
+                    sheet.modifyIfNecessary(style, e, normalizedPseudo, ancestorFilter);
                 }
             }
 
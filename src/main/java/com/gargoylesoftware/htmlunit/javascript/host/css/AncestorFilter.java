@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2002-2020 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.javascript.host.css;
+
+import static com.gargoylesoftware.htmlunit.html.DomElement.ATTRIBUTE_NOT_DEFINED;
+
+import com.gargoylesoftware.htmlunit.html.DomElement;
+import com.gargoylesoftware.htmlunit.html.DomNode;
+
+/**
+ * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br>
+ *
+ * A bloom filter of the tag names, ids and classes of a chain of elements, usually the ancestors
+ * of the element to match. A {@link SelectorMatcher} uses it to reject selectors requiring
+ * an ancestor that is not there without walking up the tree; false positives are possible,
+ * false negatives are not.
+ *
+ * <p>Filters are immutable, {@link #with(DomElement)} creates a new one; this way a tree walk can keep
+ * a stack of filters, one for every level.</p>
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public final class AncestorFilter {
+
+    /** The number of bits, must be a power of 2. */
+    private static final int SIZE = 512;
+    private static final int MASK = SIZE - 1;
+
+    private static final int TAG_SALT = 0x1b873593;
+    private static final int ID_SALT = 0x5bd1e995;
+    private static final int CLASS_SALT = 0x27d4eb2f;
+
+    private final long[] bits_;
+
+    private AncestorFilter(final long[] bits) {
+        bits_ = bits;
+    }
+
+    /**
+     * Creates a filter of the specified node and all its ancestor elements.
+     * @param node the node, may be {@code null}
+     * @return the filter
+     */
+    public static AncestorFilter of(final DomNode node) {
+        final AncestorFilter filter = new AncestorFilter(new long[SIZE / 64]);
+        for (DomNode n = node; n != null; n = n.getParentNode()) {
+            if (n instanceof DomElement) {
+                filter.add((DomElement) n);
+            }
+        }
+        return filter;
+    }
+
+    /**
+     * Returns a new filter containing the elements of this one and the specified element.
+     * @param element the element to add
+     * @return the new filter
+     */
+    public AncestorFilter with(final DomElement element) {
+        final AncestorFilter filter = new AncestorFilter(bits_.clone());
+        filter.add(element);
+        return filter;
+    }
+
+    /**
+     * Returns whether all the keys may be contained.
+     * @param keys the keys, see {@link #tagKey(String)}, {@link #idKey(String)} and {@link #classKey(String)}
+     * @return {@code false} if at least one key is not contained
+     */
+    boolean mayContainAll(final int[] keys) {
+        for (final int key : keys) {
+            if (!isSet(key) || !isSet(key >>> 16)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void add(final DomElement element) {
+        addKey(tagKey(element.getLowercaseName()));
+
+        final String id = element.getId();
+        if (ATTRIBUTE_NOT_DEFINED != id && !id.isEmpty()) {
+            addKey(idKey(id));
+        }
+
+        final String classes = element.getAttributeDirect("class");
+        final int length = classes.length();
+        int start = -1;
+        for (int i = 0; i <= length; i++) {
+            if (i == length || Character.isWhitespace(classes.charAt(i))) {
+                if (start != -1) {
+                    addKey(classKey(classes.substring(start, i)));
+                    start = -1;
+                }
+            }
+            else if (start == -1) {
+                start = i;
+            }
+        }
+    }
+
+    private void addKey(final int key) {
+        set(key);
+        set(key >>> 16);
+    }
+
+    private boolean isSet(final int hash) {
+        final int bit = hash & MASK;
+        return (bits_[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    private void set(final int hash) {
+        final int bit = hash & MASK;
+        bits_[bit >>> 6] |= 1L << bit;
+    }
+
+    /**
+     * @param lowercaseName the lower case tag name
+     * @return the key of the tag name
+     */
+    static int tagKey(final String lowercaseName) {
+        return mix(lowercaseName.hashCode() ^ TAG_SALT);
+    }
+
+    /**
+     * @param id the id
+     * @return the key of the id
+     */
+    static int idKey(final String id) {
+        return mix(id.hashCode() ^ ID_SALT);
+    }
+
+    /**
+     * @param className the class name
+     * @return the key of the class name
+     */
+    static int classKey(final String className) {
+        return mix(className.hashCode() ^ CLASS_SALT);
+    }
+
+    /**
+     * The finalizer of MurmurHash3, spreads the bits of the string hashes.
+     */
+    private static int mix(final int hash) {
+        int h = hash;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
@@ -35,6 +35,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -137,7 +138,8 @@ public class CSSStyleSheet extends StyleSheet {
     private static final Log LOG = LogFactory.getLog(CSSStyleSheet.class);
     private static final Pattern NTH_NUMERIC = Pattern.compile("\\d+");
     private static final Pattern NTH_COMPLEX = Pattern.compile("[+-]?\\d*n\\w*([+-]\\w\\d*)?");
-    private static final Pattern UNESCAPE_SELECTOR = Pattern.compile("\\\\([\\[\\]\\.:])");
+    /** Removes the escaping backslash of selector values. */
+    static final Pattern UNESCAPE_SELECTOR = Pattern.compile("\\\\([\\[\\]\\.:])");
 
     /** The parsed stylesheet which this host object wraps. */
     private final CSSStyleSheetImpl wrapped_;
@@ -158,6 +160,9 @@ public class CSSStyleSheet extends StyleSheet {
     /** This stylesheet's URI (used to resolved contained @import rules). */
     private String uri_;
 
+    /** The compiled selectors of the rules, created on demand. */
+    private transient Map<Selector, SelectorMatcher> matchers_;
+
     private boolean enabled_ = true;
 
     private static final Set<String> CSS2_PSEUDO_CLASSES = new HashSet<>(Arrays.asList(
@@ -260,11 +265,27 @@ public class CSSStyleSheet extends StyleSheet {
      */
     public void modifyIfNecessary(final ComputedCSSStyleDeclaration style, final Element element,
             final String pseudoElement) {
+        modifyIfNecessary(style, element, pseudoElement, null);
+    }
+
+    /**
+     * Modifies the specified style object by adding any style rules which apply to the specified
+     * element.
+     *
+     * @param style the style to modify
+     * @param element the element to which style rules must apply in order for them to be added to
+     *        the specified style
+     * @param pseudoElement a string specifying the pseudo-element to match (may be {@code null})
+     * @param ancestorFilter the filter of the ancestors of the element, may be {@code null};
+     *        see {@link AncestorFilter#of(DomNode)}
+     */
+    public void modifyIfNecessary(final ComputedCSSStyleDeclaration style, final Element element,
+            final String pseudoElement, final AncestorFilter ancestorFilter) {
 
         final BrowserVersion browser = getBrowserVersion();
         final DomElement e = element.getDomNodeOrDie();
         final List<CSSStyleSheetImpl.SelectorEntry> matchingRules =
-                selects(getRuleIndex(), this, browser, e, pseudoElement, false);
+                selects(getRuleIndex(), this, browser, e, pseudoElement, ancestorFilter);
         for (CSSStyleSheetImpl.SelectorEntry entry : matchingRules) {
             final CSSStyleDeclarationImpl dec = entry.getRule().getStyle();
             style.applyStyleFromSelector(dec, entry.getSelector());
@@ -296,7 +317,7 @@ public class CSSStyleSheet extends StyleSheet {
                 // our cache is a bit strange;
                 // loadWebResponse check the cache for the web response
                 // AND also fixes the request url for the following cache lookups
-                response = client.loadWebResponse(request);
+                response = client.loadWebResponse(request, page.getEnclosingWindow());
             }
             else {
                 // Use link.
@@ -566,7 +587,7 @@ public class CSSStyleSheet extends StyleSheet {
         }
     }
 
-    private static boolean selects(final String condition, final String attribute, final char separator) {
+    static boolean selects(final String condition, final String attribute, final char separator) {
         // attribute.equals(condition)
         // || attribute.startsWith(condition + " ") || attriubte.endsWith(" " + condition)
         // || attribute.contains(" " + condition + " ");
@@ -599,7 +620,7 @@ public class CSSStyleSheet extends StyleSheet {
         return attribute.equals(condition);
     }
 
-    private static boolean selectsWhitespaceSeparated(final String condition, final String attribute) {
+    static boolean selectsWhitespaceSeparated(final String condition, final String attribute) {
         final int conditionLength = condition.length();
         if (conditionLength < 1) {
             return false;
@@ -627,14 +648,28 @@ public class CSSStyleSheet extends StyleSheet {
         return false;
     }
 
-    private static boolean selectsPseudoClass(final BrowserVersion browserVersion,
-            final Condition condition, final DomElement element, final boolean fromQuerySelectorAll) {
+    /**
+     * Returns whether the pseudo classes are not supported for the specified element
+     * (IE in document modes below 8).
+     * @param browserVersion the browser version
+     * @param element the element
+     * @return whether pseudo classes never select the element
+     */
+    static boolean isPseudoClassUnsupported(final BrowserVersion browserVersion, final DomElement element) {
         if (browserVersion.hasFeature(QUERYSELECTORALL_NOT_IN_QUIRKS)) {
             final Object sobj = element.getPage().getScriptableObject();
             if (sobj instanceof HTMLDocument && ((HTMLDocument) sobj).getDocumentMode() < 8) {
-                return false;
+                return true;
             }
         }
+        return false;
+    }
+
+    static boolean selectsPseudoClass(final BrowserVersion browserVersion,
+            final Condition condition, final DomElement element, final boolean fromQuerySelectorAll) {
+        if (isPseudoClassUnsupported(browserVersion, element)) {
+            return false;
+        }
 
         final String value = condition.getValue();
         switch (value) {
@@ -788,42 +823,52 @@ public class CSSStyleSheet extends StyleSheet {
                 }
                 else if (value.startsWith("not(")) {
                     final String selectors = value.substring(value.indexOf('(') + 1, value.length() - 1);
-                    final AtomicBoolean errorOccured = new AtomicBoolean(false);
-                    final CSSErrorHandler errorHandler = new CSSErrorHandler() {
-                        @Override
-                        public void warning(final CSSParseException exception) throws CSSException {
-                            // ignore
-                        }
+                    final SelectorList selectorList = parseNotSelectors(selectors);
+                    validateSelectors(selectorList, 9, element);
 
-                        @Override
-                        public void fatalError(final CSSParseException exception) throws CSSException {
-                            errorOccured.set(true);
-                        }
+                    return !selects(browserVersion, selectorList.get(0), element,
+                            null, fromQuerySelectorAll);
+                }
+                return false;
+        }
+    }
 
-                        @Override
-                        public void error(final CSSParseException exception) throws CSSException {
-                            errorOccured.set(true);
-                        }
-                    };
-                    final CSSOMParser parser = new CSSOMParser(new CSS3Parser());
-                    parser.setErrorHandler(errorHandler);
-                    try {
-                        final SelectorList selectorList = parser.parseSelectors(selectors);
-                        if (errorOccured.get() || selectorList == null || selectorList.size() != 1) {
-                            throw new CSSException("Invalid selectors: " + selectors);
-                        }
+    /**
+     * Parses the argument of the <tt>:not()</tt> pseudo class.
+     * @param selectors the argument
+     * @return the selector list with exactly one selector
+     * @throws CSSException if the argument is not a single valid selector
+     */
+    static SelectorList parseNotSelectors(final String selectors) throws CSSException {
+        final AtomicBoolean errorOccured = new AtomicBoolean(false);
+        final CSSErrorHandler errorHandler = new CSSErrorHandler() {
+            @Override
+            public void warning(final CSSParseException exception) throws CSSException {
+                // ignore
+            }
 
-                        validateSelectors(selectorList, 9, element);
+            @Override
+            public void fatalError(final CSSParseException exception) throws CSSException {
+                errorOccured.set(true);
+            }
 
-                        return !selects(browserVersion, selectorList.get(0), element,
-                                null, fromQuerySelectorAll);
-                    }
-                    catch (final IOException e) {
-                        throw new CSSException("Error parsing CSS selectors from '" + selectors + "': "
-                                + e.getMessage());
-                    }
-                }
-                return false;
+            @Override
+            public void error(final CSSParseException exception) throws CSSException {
+                errorOccured.set(true);
+            }
+        };
+        final CSSOMParser parser = new CSSOMParser(new CSS3Parser());
+        parser.setErrorHandler(errorHandler);
+        try {
+            final SelectorList selectorList = parser.parseSelectors(selectors);
+            if (errorOccured.get() || selectorList == null || selectorList.size() != 1) {
+                throw new CSSException("Invalid selectors: " + selectors);
+            }
+            return selectorList;
+        }
+        catch (final IOException e) {
+            throw new CSSException("Error parsing CSS selectors from '" + selectors + "': "
+                    + e.getMessage());
         }
     }
 
@@ -837,12 +882,22 @@ public class CSSStyleSheet extends StyleSheet {
     }
 
     private static boolean getNth(final String nth, final int index) {
+        final int[] ab = parseNth(nth);
+        return selectsNth(ab[0], ab[1], index);
+    }
+
+    /**
+     * Parses the argument of the <tt>nth-*()</tt> pseudo classes.
+     * @param nth the argument; <tt>odd</tt>, <tt>even</tt> or <tt>an+b</tt>
+     * @return the coefficients a and b
+     */
+    static int[] parseNth(final String nth) {
         if ("odd".equalsIgnoreCase(nth)) {
-            return index % 2 != 0;
+            return new int[] {2, 1};
         }
 
         if ("even".equalsIgnoreCase(nth)) {
-            return index % 2 == 0;
+            return new int[] {2, 0};
         }
 
         // an+b
@@ -866,6 +921,17 @@ public class CSSStyleSheet extends StyleSheet {
             value = value.substring(1);
         }
         final int b = NumberUtils.toInt(value, 0);
+        return new int[] {a, b};
+    }
+
+    /**
+     * Returns whether the (1 based) index is selected by <tt>an+b</tt>.
+     * @param a the coefficient a
+     * @param b the coefficient b
+     * @param index the index of the element
+     * @return whether the index is selected
+     */
+    static boolean selectsNth(final int a, final int b, final int index) {
         if (a == 0) {
             return index == b && b > 0;
         }
@@ -1116,6 +1182,7 @@ public class CSSStyleSheet extends StyleSheet {
 
         // reset our index also
         getWrappedSheet().resetRuleIndex();
+        matchers_ = null;
     }
 
     private int fixIndex(int index) {
@@ -1667,7 +1734,7 @@ public class CSSStyleSheet extends StyleSheet {
                             final CSSStyleSheetImpl.CSSStyleSheetRuleIndex index,
                             final SimpleScriptable scriptable,
                             final BrowserVersion browserVersion, final DomElement element,
-                            final String pseudoElement, final boolean fromQuerySelectorAll) {
+                            final String pseudoElement, final AncestorFilter ancestorFilter) {
 
         final List<CSSStyleSheetImpl.SelectorEntry> matchingRules = new ArrayList<>();
 
@@ -1679,8 +1746,8 @@ public class CSSStyleSheet extends StyleSheet {
 
             CSSStyleSheetImpl.SelectorEntry entry = iter.next();
             while (null != entry) {
-                if (CSSStyleSheet.selects(browserVersion, entry.getSelector(),
-                                            element, pseudoElement, fromQuerySelectorAll)) {
+                if (getMatcher(entry.getSelector()).matches(browserVersion, element, ancestorFilter,
+                                            pseudoElement, false)) {
                     matchingRules.add(entry);
                 }
                 entry = iter.next();
@@ -1688,10 +1755,22 @@ public class CSSStyleSheet extends StyleSheet {
 
             for (CSSStyleSheetImpl.CSSStyleSheetRuleIndex child : index.getChildren()) {
                 matchingRules.addAll(selects(child, scriptable, browserVersion,
-                                                    element, pseudoElement, fromQuerySelectorAll));
+                                                    element, pseudoElement, ancestorFilter));
             }
         }
 
         return matchingRules;
     }
+
+    private SelectorMatcher getMatcher(final Selector selector) {
+        if (matchers_ == null) {
+            matchers_ = new IdentityHashMap<>();
+        }
+        SelectorMatcher matcher = matchers_.get(selector);
+        if (matcher == null) {
+            matcher = SelectorMatcher.compile(selector);
+            matchers_.put(selector, matcher);
+        }
+        return matcher;
+    }
 }
@@ -0,0 +1,643 @@
+/*
+ * Copyright (c) 2002-2020 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.javascript.host.css;
+
+import static com.gargoylesoftware.htmlunit.html.DomElement.ATTRIBUTE_NOT_DEFINED;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.gargoylesoftware.css.parser.CSSException;
+import com.gargoylesoftware.css.parser.condition.Condition;
+import com.gargoylesoftware.css.parser.condition.Condition.ConditionType;
+import com.gargoylesoftware.css.parser.selector.ChildSelector;
+import com.gargoylesoftware.css.parser.selector.DescendantSelector;
+import com.gargoylesoftware.css.parser.selector.DirectAdjacentSelector;
+import com.gargoylesoftware.css.parser.selector.ElementSelector;
+import com.gargoylesoftware.css.parser.selector.GeneralAdjacentSelector;
+import com.gargoylesoftware.css.parser.selector.PseudoElementSelector;
+import com.gargoylesoftware.css.parser.selector.Selector;
+import com.gargoylesoftware.css.parser.selector.Selector.SelectorType;
+import com.gargoylesoftware.css.parser.selector.SelectorList;
+import com.gargoylesoftware.htmlunit.BrowserVersion;
+import com.gargoylesoftware.htmlunit.html.DomElement;
+import com.gargoylesoftware.htmlunit.html.DomNode;
+import com.gargoylesoftware.htmlunit.html.HtmlElement;
+
+/**
+ * <span style="color:red">INTERNAL API - SUBJECT TO CHANGE AT ANY TIME - USE AT YOUR OWN RISK.</span><br>
+ *
+ * A {@link Selector} compiled for matching many elements: the conditions are prepared once
+ * (unescaped values, the coefficients of the <tt>nth-*()</tt> pseudo classes, the parsed argument
+ * of <tt>:not()</tt>) instead of for every element. Like {@link CSSStyleSheet#selects(BrowserVersion,
+ * Selector, DomElement, String, boolean)} the combinators are evaluated from right to left, starting
+ * with the element itself.
+ *
+ * <p>The tag names, ids and classes the ancestors of a matching element must have are collected as well;
+ * given an {@link AncestorFilter} of the ancestors, selectors like <tt>#nav li</tt> are rejected without
+ * walking up the tree.</p>
+ *
+ * <p>Matchers are immutable and can be shared.</p>
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public final class SelectorMatcher {
+
+    private static final int[] NO_KEYS = new int[0];
+
+    private final Selector selector_;
+    private final Matcher matcher_;
+    private final int[] ancestorKeys_;
+    private final String subjectTagName_;
+    private final String subjectClassName_;
+
+    private SelectorMatcher(final Selector selector) {
+        selector_ = selector;
+        matcher_ = compileSelector(selector);
+
+        final ElementSelector subject = getSubject(selector);
+        String tagName = null;
+        String className = null;
+        if (subject != null) {
+            tagName = subject.getLocalNameLowerCase();
+            if ("*".equals(tagName)) {
+                tagName = null;
+            }
+            final List<Condition> conditions = subject.getConditions();
+            if (conditions != null) {
+                for (final Condition condition : conditions) {
+                    if (condition.getConditionType() == ConditionType.CLASS_CONDITION) {
+                        className = unescape(condition.getValue());
+                        break;
+                    }
+                }
+            }
+        }
+        subjectTagName_ = tagName;
+        subjectClassName_ = className;
+
+        final List<Integer> keys = new ArrayList<>();
+        collectAncestorKeys(selector, false, keys);
+        if (keys.isEmpty()) {
+            ancestorKeys_ = NO_KEYS;
+        }
+        else {
+            ancestorKeys_ = new int[keys.size()];
+            for (int i = 0; i < ancestorKeys_.length; i++) {
+                ancestorKeys_[i] = keys.get(i);
+            }
+        }
+    }
+
+    /**
+     * Compiles the specified selector.
+     * @param selector the selector
+     * @return the matcher
+     */
+    public static SelectorMatcher compile(final Selector selector) {
+        return new SelectorMatcher(selector);
+    }
+
+    /**
+     * Compiles all the selectors of the specified list.
+     * @param selectorList the selectors
+     * @return the matchers, in the order of the list
+     */
+    public static List<SelectorMatcher> compile(final SelectorList selectorList) {
+        final List<SelectorMatcher> matchers = new ArrayList<>(selectorList.size());
+        for (final Selector selector : selectorList) {
+            matchers.add(compile(selector));
+        }
+        return matchers;
+    }
+
+    /**
+     * @return the compiled selector
+     */
+    public Selector getSelector() {
+        return selector_;
+    }
+
+    /**
+     * Returns the tag name every element selected by the selector has, if any;
+     * the selected elements can be looked up by tag name instead of testing all of them.
+     * @return the lower case local name or {@code null}
+     */
+    public String getSubjectTagName() {
+        return subjectTagName_;
+    }
+
+    /**
+     * Returns a class name every element selected by the selector has, if any;
+     * the selected elements can be looked up by class name instead of testing all of them.
+     * @return the class name or {@code null}
+     */
+    public String getSubjectClassName() {
+        return subjectClassName_;
+    }
+
+    /**
+     * Returns whether the selector requires ancestors with specific tag names, ids or classes;
+     * only in this case an {@link AncestorFilter} makes a difference.
+     * @return whether the matcher uses an ancestor filter
+     */
+    public boolean usesAncestorFilter() {
+        return ancestorKeys_.length > 0;
+    }
+
+    /**
+     * Returns {@code true} if the selector selects the specified element.
+     *
+     * @param browserVersion the browser version
+     * @param element the element to test
+     * @param ancestorFilter the filter of the ancestors of the element, may be {@code null}
+     * @param pseudoElement the pseudo element to match, (can be {@code null})
+     * @param fromQuerySelectorAll whether this is called from {@link DomNode#querySelectorAll(String)}
+     * @return {@code true} if it does apply, {@code false} if it doesn't apply
+     */
+    public boolean matches(final BrowserVersion browserVersion, final DomElement element,
+            final AncestorFilter ancestorFilter, final String pseudoElement, final boolean fromQuerySelectorAll) {
+        if (ancestorFilter != null && !ancestorFilter.mayContainAll(ancestorKeys_)) {
+            return false;
+        }
+        return matcher_.matches(browserVersion, element, pseudoElement, fromQuerySelectorAll);
+    }
+
+    /**
+     * Collects the keys of the tag names, ids and classes the ancestors must have.
+     * @param selector the selector
+     * @param ancestor whether the rightmost element of the selector has to match an ancestor
+     * @param keys the list to add to
+     */
+    private static void collectAncestorKeys(final Selector selector, final boolean ancestor,
+            final List<Integer> keys) {
+        switch (selector.getSelectorType()) {
+            case ELEMENT_NODE_SELECTOR:
+                if (ancestor) {
+                    final ElementSelector es = (ElementSelector) selector;
+                    final String name = es.getLocalNameLowerCase();
+                    if (name != null && !"*".equals(name)) {
+                        keys.add(AncestorFilter.tagKey(name));
+                    }
+                    final List<Condition> conditions = es.getConditions();
+                    if (conditions != null) {
+                        for (final Condition condition : conditions) {
+                            switch (condition.getConditionType()) {
+                                case ID_CONDITION:
+                                    keys.add(AncestorFilter.idKey(condition.getValue()));
+                                    break;
+                                case CLASS_CONDITION:
+                                    keys.add(AncestorFilter.classKey(unescape(condition.getValue())));
+                                    break;
+                                default:
+                            }
+                        }
+                    }
+                }
+                break;
+
+            case CHILD_SELECTOR:
+                final ChildSelector cs = (ChildSelector) selector;
+                collectAncestorKeys(cs.getSimpleSelector(), ancestor, keys);
+                collectAncestorKeys(cs.getAncestorSelector(), true, keys);
+                break;
+
+            case DESCENDANT_SELECTOR:
+                final DescendantSelector ds = (DescendantSelector) selector;
+                collectAncestorKeys(ds.getSimpleSelector(), ancestor, keys);
+                // the 'ancestor' of a pseudo element is the element itself
+                final boolean pseudo = ds.getSimpleSelector().getSelectorType() == SelectorType.PSEUDO_ELEMENT_SELECTOR;
+                collectAncestorKeys(ds.getAncestorSelector(), pseudo ? ancestor : true, keys);
+                break;
+
+            case DIRECT_ADJACENT_SELECTOR:
+                final DirectAdjacentSelector das = (DirectAdjacentSelector) selector;
+                collectAncestorKeys(das.getSimpleSelector(), ancestor, keys);
+                // a sibling shares the ancestors but is no ancestor itself
+                collectAncestorKeys(das.getSelector(), false, keys);
+                break;
+
+            case GENERAL_ADJACENT_SELECTOR:
+                final GeneralAdjacentSelector gas = (GeneralAdjacentSelector) selector;
+                collectAncestorKeys(gas.getSimpleSelector(), ancestor, keys);
+                collectAncestorKeys(gas.getSelector(), false, keys);
+                break;
+
+            default:
+        }
+    }
+
+    /**
+     * Returns the element selector the selected element itself has to match, the rightmost one.
+     * @param selector the selector
+     * @return the element selector or {@code null} for a pseudo element
+     */
+    private static ElementSelector getSubject(final Selector selector) {
+        final Selector simpleSelector;
+        switch (selector.getSelectorType()) {
+            case ELEMENT_NODE_SELECTOR:
+                return (ElementSelector) selector;
+
+            case CHILD_SELECTOR:
+                simpleSelector = ((ChildSelector) selector).getSimpleSelector();
+                break;
+
+            case DESCENDANT_SELECTOR:
+                simpleSelector = ((DescendantSelector) selector).getSimpleSelector();
+                break;
+
+            case DIRECT_ADJACENT_SELECTOR:
+                simpleSelector = ((DirectAdjacentSelector) selector).getSimpleSelector();
+                break;
+
+            case GENERAL_ADJACENT_SELECTOR:
+                simpleSelector = ((GeneralAdjacentSelector) selector).getSimpleSelector();
+                break;
+
+            default:
+                return null;
+        }
+        if (simpleSelector.getSelectorType() == SelectorType.ELEMENT_NODE_SELECTOR) {
+            return (ElementSelector) simpleSelector;
+        }
+        return null;
+    }
+
+    private static String unescape(final String value) {
+        if (value.indexOf('\\') > -1) {
+            return CSSStyleSheet.UNESCAPE_SELECTOR.matcher(value).replaceAll("$1");
+        }
+        return value;
+    }
+
+    private static Matcher compileSelector(final Selector selector) {
+        switch (selector.getSelectorType()) {
+            case ELEMENT_NODE_SELECTOR:
+                final ElementSelector es = (ElementSelector) selector;
+                final List<Condition> conditions = es.getConditions();
+                final List<ConditionMatcher> conditionMatchers = new ArrayList<>();
+                if (conditions != null) {
+                    for (final Condition condition : conditions) {
+                        conditionMatchers.add(compileCondition(condition));
+                    }
+                }
+                return new ElementMatcher(es.getLocalNameLowerCase(),
+                        conditionMatchers.toArray(new ConditionMatcher[conditionMatchers.size()]));
+
+            case CHILD_SELECTOR:
+                final ChildSelector cs = (ChildSelector) selector;
+                return new ChildMatcher(compileSelector(cs.getSimpleSelector()),
+                        compileSelector(cs.getAncestorSelector()));
+
+            case DESCENDANT_SELECTOR:
+                final DescendantSelector ds = (DescendantSelector) selector;
+                return new DescendantMatcher(compileSelector(ds.getSimpleSelector()),
+                        compileSelector(ds.getAncestorSelector()),
+                        ds.getSimpleSelector().getSelectorType() == SelectorType.PSEUDO_ELEMENT_SELECTOR);
+
+            case DIRECT_ADJACENT_SELECTOR:
+                final DirectAdjacentSelector das = (DirectAdjacentSelector) selector;
+                return new DirectAdjacentMatcher(compileSelector(das.getSimpleSelector()),
+                        compileSelector(das.getSelector()));
+
+            case GENERAL_ADJACENT_SELECTOR:
+                final GeneralAdjacentSelector gas = (GeneralAdjacentSelector) selector;
+                return new GeneralAdjacentMatcher(compileSelector(gas.getSimpleSelector()),
+                        compileSelector(gas.getSelector()));
+
+            case PSEUDO_ELEMENT_SELECTOR:
+                return new PseudoElementMatcher(((PseudoElementSelector) selector).getLocalName());
+
+            default:
+                // unknown, let the interpreter report it
+                return (browserVersion, element, pseudoElement, fromQuerySelectorAll)
+                    -> CSSStyleSheet.selects(browserVersion, selector, element, pseudoElement, fromQuerySelectorAll);
+        }
+    }
+
+    private static ConditionMatcher compileCondition(final Condition condition) {
+        switch (condition.getConditionType()) {
+            case ID_CONDITION:
+                final String id = condition.getValue();
+                return (browserVersion, element, fromQuerySelectorAll) -> id.equals(element.getId());
+
+            case CLASS_CONDITION:
+                final String className = unescape(condition.getValue());
+                return (browserVersion, element, fromQuerySelectorAll)
+                    -> CSSStyleSheet.selectsWhitespaceSeparated(className, element.getAttributeDirect("class"));
+
+            case ATTRIBUTE_CONDITION:
+                final String attributeName = condition.getLocalName();
+                if (condition.getValue() == null) {
+                    return (browserVersion, element, fromQuerySelectorAll) -> element.hasAttribute(attributeName);
+                }
+                final String attributeValue = unescape(condition.getValue());
+                return (browserVersion, element, fromQuerySelectorAll) -> {
+                    final String value = element.getAttribute(attributeName);
+                    return ATTRIBUTE_NOT_DEFINED != value && value.equals(attributeValue);
+                };
+
+            case PREFIX_ATTRIBUTE_CONDITION:
+                final String prefixName = condition.getLocalName();
+                final String prefix = condition.getValue();
+                return (browserVersion, element, fromQuerySelectorAll)
+                    -> !prefix.isEmpty() && element.getAttribute(prefixName).startsWith(prefix);
+
+            case SUFFIX_ATTRIBUTE_CONDITION:
+                final String suffixName = condition.getLocalName();
+                final String suffix = condition.getValue();
+                return (browserVersion, element, fromQuerySelectorAll)
+                    -> !suffix.isEmpty() && element.getAttribute(suffixName).endsWith(suffix);
+
+            case SUBSTRING_ATTRIBUTE_CONDITION:
+                final String substringName = condition.getLocalName();
+                final String substring = condition.getValue();
+                return (browserVersion, element, fromQuerySelectorAll)
+                    -> !substring.isEmpty() && element.getAttribute(substringName).contains(substring);
+
+            case BEGIN_HYPHEN_ATTRIBUTE_CONDITION:
+                final String hyphenName = condition.getLocalName();
+                final String hyphenValue = condition.getValue();
+                return (browserVersion, element, fromQuerySelectorAll)
+                    -> CSSStyleSheet.selects(hyphenValue, element.getAttribute(hyphenName), '-');
+
+            case ONE_OF_ATTRIBUTE_CONDITION:
+                final String oneOfName = condition.getLocalName();
+                final String oneOfValue = condition.getValue();
+                return (browserVersion, element, fromQuerySelectorAll)
+                    -> CSSStyleSheet.selects(oneOfValue, element.getAttribute(oneOfName), ' ');
+
+            case PSEUDO_CLASS_CONDITION:
+                return compilePseudoClass(condition);
+
+            default:
+                // LANG_CONDITION and unknown ones
+                return (browserVersion, element, fromQuerySelectorAll)
+                    -> CSSStyleSheet.selects(browserVersion, condition, element, fromQuerySelectorAll);
+        }
+    }
+
+    private static ConditionMatcher compilePseudoClass(final Condition condition) {
+        final String value = condition.getValue();
+        if (value.startsWith("nth-child(")) {
+            return new NthMatcher(value, false, false);
+        }
+        if (value.startsWith("nth-last-child(")) {
+            return new NthMatcher(value, true, false);
+        }
+        if (value.startsWith("nth-of-type(")) {
+            return new NthMatcher(value, false, true);
+        }
+        if (value.startsWith("nth-last-of-type(")) {
+            return new NthMatcher(value, true, true);
+        }
+        if (value.startsWith("not(")) {
+            return new NotMatcher(value.substring(value.indexOf('(') + 1, value.length() - 1));
+        }
+        return (browserVersion, element, fromQuerySelectorAll)
+            -> CSSStyleSheet.selectsPseudoClass(browserVersion, condition, element, fromQuerySelectorAll);
+    }
+
+    /**
+     * A compiled selector.
+     */
+    private interface Matcher {
+        boolean matches(BrowserVersion browserVersion, DomElement element, String pseudoElement,
+                boolean fromQuerySelectorAll);
+    }
+
+    /**
+     * A compiled condition.
+     */
+    private interface ConditionMatcher {
+        boolean matches(BrowserVersion browserVersion, DomElement element, boolean fromQuerySelectorAll);
+    }
+
+    private static final class ElementMatcher implements Matcher {
+        private final String lowercaseName_;
+        private final ConditionMatcher[] conditions_;
+
+        ElementMatcher(final String lowercaseName, final ConditionMatcher[] conditions) {
+            lowercaseName_ = lowercaseName;
+            conditions_ = conditions;
+        }
+
+        @Override
+        public boolean matches(final BrowserVersion browserVersion, final DomElement element,
+                final String pseudoElement, final boolean fromQuerySelectorAll) {
+            if (lowercaseName_ != null && !lowercaseName_.equals(element.getLowercaseName())) {
+                return false;
+            }
+            for (final ConditionMatcher condition : conditions_) {
+                if (!condition.matches(browserVersion, element, fromQuerySelectorAll)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class ChildMatcher implements Matcher {
+        private final Matcher simple_;
+        private final Matcher parent_;
+
+        ChildMatcher(final Matcher simple, final Matcher parent) {
+            simple_ = simple;
+            parent_ = parent;
+        }
+
+        @Override
+        public boolean matches(final BrowserVersion browserVersion, final DomElement element,
+                final String pseudoElement, final boolean fromQuerySelectorAll) {
+            final DomNode parentNode = element.getParentNode();
+            if (parentNode == element.getPage() || !(parentNode instanceof HtmlElement)) {
+                return false;
+            }
+            return simple_.matches(browserVersion, element, pseudoElement, fromQuerySelectorAll)
+                    && parent_.matches(browserVersion, (HtmlElement) parentNode, pseudoElement, fromQuerySelectorAll);
+        }
+    }
+
+    private static final class DescendantMatcher implements Matcher {
+        private final Matcher simple_;
+        private final Matcher ancestor_;
+        private final boolean pseudoElement_;
+
+        DescendantMatcher(final Matcher simple, final Matcher ancestor, final boolean pseudoElement) {
+            simple_ = simple;
+            ancestor_ = ancestor;
+            pseudoElement_ = pseudoElement;
+        }
+
+        @Override
+        public boolean matches(final BrowserVersion browserVersion, final DomElement element,
+                final String pseudoElement, final boolean fromQuerySelectorAll) {
+            if (!simple_.matches(browserVersion, element, pseudoElement, fromQuerySelectorAll)) {
+                return false;
+            }
+            DomNode ancestor = element;
+            if (!pseudoElement_) {
+                ancestor = ancestor.getParentNode();
+            }
+            while (ancestor instanceof HtmlElement) {
+                if (ancestor_.matches(browserVersion, (HtmlElement) ancestor, pseudoElement, fromQuerySelectorAll)) {
+                    return true;
+                }
+                ancestor = ancestor.getParentNode();
+            }
+            return false;
+        }
+    }
+
+    private static final class DirectAdjacentMatcher implements Matcher {
+        private final Matcher simple_;
+        private final Matcher previous_;
+
+        DirectAdjacentMatcher(final Matcher simple, final Matcher previous) {
+            simple_ = simple;
+            previous_ = previous;
+        }
+
+        @Override
+        public boolean matches(final BrowserVersion browserVersion, final DomElement element,
+                final String pseudoElement, final boolean fromQuerySelectorAll) {
+            if (!simple_.matches(browserVersion, element, pseudoElement, fromQuerySelectorAll)) {
+                return false;
+            }
+            DomNode prev = element.getPreviousSibling();
+            while (prev != null && !(prev instanceof HtmlElement)) {
+                prev = prev.getPreviousSibling();
+            }
+            return prev != null
+                    && previous_.matches(browserVersion, (HtmlElement) prev, pseudoElement, fromQuerySelectorAll);
+        }
+    }
+
+    private static final class GeneralAdjacentMatcher implements Matcher {
+        private final Matcher simple_;
+        private final Matcher previous_;
+
+        GeneralAdjacentMatcher(final Matcher simple, final Matcher previous) {
+            simple_ = simple;
+            previous_ = previous;
+        }
+
+        @Override
+        public boolean matches(final BrowserVersion browserVersion, final DomElement element,
+                final String pseudoElement, final boolean fromQuerySelectorAll) {
+            if (!simple_.matches(browserVersion, element, pseudoElement, fromQuerySelectorAll)) {
+                return false;
+            }
+            for (DomNode prev = element.getPreviousSibling(); prev != null; prev = prev.getPreviousSibling()) {
+                if (prev instanceof HtmlElement
+                        && previous_.matches(browserVersion, (HtmlElement) prev, pseudoElement,
+                                fromQuerySelectorAll)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static final class PseudoElementMatcher implements Matcher {
+        private final String name_;
+
+        PseudoElementMatcher(final String name) {
+            name_ = name;
+        }
+
+        @Override
+        public boolean matches(final BrowserVersion browserVersion, final DomElement element,
+                final String pseudoElement, final boolean fromQuerySelectorAll) {
+            if (pseudoElement != null && pseudoElement.length() != 0 && pseudoElement.charAt(0) == ':') {
+                return name_.equals(pseudoElement.substring(1));
+            }
+            return false;
+        }
+    }
+
+    /**
+     * The <tt>nth-child()</tt>, <tt>nth-last-child()</tt>, <tt>nth-of-type()</tt>
+     * and <tt>nth-last-of-type()</tt> pseudo classes.
+     */
+    private static final class NthMatcher implements ConditionMatcher {
+        private final boolean last_;
+        private final boolean ofType_;
+        private final int factorA_;
+        private final int offsetB_;
+
+        NthMatcher(final String value, final boolean last, final boolean ofType) {
+            last_ = last;
+            ofType_ = ofType;
+            final int[] ab = CSSStyleSheet.parseNth(value.substring(value.indexOf('(') + 1, value.length() - 1));
+            factorA_ = ab[0];
+            offsetB_ = ab[1];
+        }
+
+        @Override
+        public boolean matches(final BrowserVersion browserVersion, final DomElement element,
+                final boolean fromQuerySelectorAll) {
+            if (CSSStyleSheet.isPseudoClassUnsupported(browserVersion, element)) {
+                return false;
+            }
+
+            final String type = ofType_ ? element.getNodeName() : null;
+            int index = 0;
+            for (DomNode n = element; n != null; n = last_ ? n.getNextSibling() : n.getPreviousSibling()) {
+                if (n instanceof DomElement && (type == null || n.getNodeName().equals(type))) {
+                    index++;
+                }
+            }
+            return CSSStyleSheet.selectsNth(factorA_, offsetB_, index);
+        }
+    }
+
+    /**
+     * The <tt>not()</tt> pseudo class; the argument is parsed only once.
+     */
+    private static final class NotMatcher implements ConditionMatcher {
+        private final SelectorList selectorList_;
+        private final Matcher matcher_;
+        private final CSSException exception_;
+
+        NotMatcher(final String selectors) {
+            SelectorList selectorList = null;
+            CSSException exception = null;
+            try {
+                selectorList = CSSStyleSheet.parseNotSelectors(selectors);
+            }
+            catch (final CSSException e) {
+                // reported when matching, like the interpreter does
+                exception = e;
+            }
+            selectorList_ = selectorList;
+            matcher_ = selectorList == null ? null : compileSelector(selectorList.get(0));
+            exception_ = exception;
+        }
+
+        @Override
+        public boolean matches(final BrowserVersion browserVersion, final DomElement element,
+                final boolean fromQuerySelectorAll) {
+            if (CSSStyleSheet.isPseudoClassUnsupported(browserVersion, element)) {
+                return false;
+            }
+            if (exception_ != null) {
+                throw new CSSException(exception_.getMessage());
+            }
+            CSSStyleSheet.validateSelectors(selectorList_, 9, element);
+            return !matcher_.matches(browserVersion, element, null, fromQuerySelectorAll);
+        }
+    }
+}
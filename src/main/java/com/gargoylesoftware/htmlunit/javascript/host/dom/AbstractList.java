@@ -23,11 +23,10 @@ import static com.gargoylesoftware.htmlunit.javascript.configuration.SupportedBr
 
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 import com.gargoylesoftware.htmlunit.BrowserVersion;
-import com.gargoylesoftware.htmlunit.html.DomChangeEvent;
-import com.gargoylesoftware.htmlunit.html.DomChangeListener;
 import com.gargoylesoftware.htmlunit.html.DomElement;
 import com.gargoylesoftware.htmlunit.html.DomNode;
 import com.gargoylesoftware.htmlunit.html.HtmlAttributeChangeEvent;
@@ -75,10 +74,15 @@ public class AbstractList extends SimpleScriptable implements Function {
 
     /**
      * Cache collection elements when possible, so as to avoid expensive XPath expression evaluations.
+     * The cache is valid as long as the versions of the reference node are the ones it was computed for.
      */
     private List<DomNode> cachedElements_;
+    private int cachedSubtreeVersion_;
+    private int cachedAttributesVersion_;
+    private int cachedPageVersion_;
 
     private boolean listenerRegistered_;
+    private boolean attributeChangeFiltered_;
 
     /**
      * Creates an instance.
@@ -127,8 +131,9 @@ public class AbstractList extends SimpleScriptable implements Function {
             }
         }
         attributeChangeSensitive_ = attributeChangeSensitive;
-        cachedElements_ = initialElements;
         if (initialElements != null) {
+            updateCachedVersions();
+            cachedElements_ = initialElements;
             registerListener();
         }
     }
@@ -198,9 +203,9 @@ public class AbstractList extends SimpleScriptable implements Function {
     @Override
     public final Object get(final int index, final Scriptable start) {
         final AbstractList array = (AbstractList) start;
-        final List<DomNode> elements = array.getElements();
-        if (index >= 0 && index < elements.size()) {
-            return getScriptableForElement(elements.get(index));
+        final DomNode element = array.getElement(index);
+        if (element != null) {
+            return getScriptableForElement(element);
         }
         return NOT_FOUND;
     }
@@ -221,15 +226,59 @@ public class AbstractList extends SimpleScriptable implements Function {
      * @return the list of {@link HtmlElement} contained in this collection
      */
     public List<DomNode> getElements() {
+        final List<DomNode> elements = getCachedElements();
+        if (elements instanceof MatchingElements) {
+            ((MatchingElements) elements).examineUpTo(Integer.MAX_VALUE);
+        }
+        return elements;
+    }
+
+    /**
+     * Returns the element at the specified index. If the elements are the matching candidates,
+     * the candidates are examined only up to this element, and the next call continues where
+     * this one stopped as long as the reference node was not changed.
+     * @param index the index
+     * @return the element or {@code null} if the index is invalid
+     */
+    private DomNode getElement(final int index) {
+        if (index < 0) {
+            return null;
+        }
+
+        final List<DomNode> cachedElements = getCachedElements();
+        if (cachedElements instanceof MatchingElements) {
+            return ((MatchingElements) cachedElements).find(index);
+        }
+        final List<DomNode> elements = getElements();
+        if (index < elements.size()) {
+            return elements.get(index);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the cached elements, computed again if the reference node was changed.
+     * Matching candidates may not have been examined completely.
+     * @return the elements
+     */
+    private List<DomNode> getCachedElements() {
         // a bit strange but we like to avoid sync
         List<DomNode> cachedElements = cachedElements_;
 
-        if (cachedElements == null) {
-            if (getParentScope() == null) {
-                cachedElements = new ArrayList<>();
+        if (cachedElements == null || isCacheOutdated()) {
+            final List<DomNode> remainingElements = getElementsAfterRemoval(cachedElements);
+            if (remainingElements != null) {
+                cachedElements = remainingElements;
             }
             else {
-                cachedElements = computeElements();
+                // remember the versions first, changes done while computing make the result outdated
+                updateCachedVersions();
+                if (getParentScope() == null) {
+                    cachedElements = new ArrayList<>();
+                }
+                else {
+                    cachedElements = computeElements();
+                }
             }
             cachedElements_ = cachedElements;
         }
@@ -240,17 +289,109 @@ public class AbstractList extends SimpleScriptable implements Function {
         return cachedElements;
     }
 
+    /**
+     * Returns whether the reference node was changed since the cache was computed.
+     * @return whether the cache has to be computed again
+     */
+    private boolean isCacheOutdated() {
+        final DomNode domNode = getDomNodeOrNull();
+        if (domNode == null) {
+            return false;
+        }
+        if (domNode.getSubtreeVersion() != cachedSubtreeVersion_) {
+            return true;
+        }
+        return attributeChangeSensitive_ && !attributeChangeFiltered_
+                && domNode.getSubtreeAttributesVersion() != cachedAttributesVersion_;
+    }
+
+    private void updateCachedVersions() {
+        final DomNode domNode = getDomNodeOrNull();
+        if (domNode != null) {
+            cachedSubtreeVersion_ = domNode.getSubtreeVersion();
+            cachedAttributesVersion_ = domNode.getSubtreeAttributesVersion();
+            final HtmlPage page = getHtmlPage(domNode);
+            if (page != null) {
+                cachedPageVersion_ = page.getSubtreeVersion();
+            }
+        }
+    }
+
+    /**
+     * Returns the page of the specified node, the node itself if it is the page.
+     * @param domNode the node
+     * @return the page or {@code null} if it is not an HTML page
+     */
+    private static HtmlPage getHtmlPage(final DomNode domNode) {
+        if (domNode instanceof HtmlPage) {
+            return (HtmlPage) domNode;
+        }
+        return domNode.getHtmlPageOrNull();
+    }
+
+    /**
+     * Returns the elements after the removal of a subtree of the reference node, if this removal
+     * was the only change of the page since the complete elements were computed. The removed elements
+     * are dropped, the remaining ones keep matching; this avoids examining all candidates again,
+     * e.g. for {@code while (list.length) list[0].remove()}.
+     * @param cachedElements the elements computed before
+     * @return the remaining elements or {@code null} if they have to be computed again
+     */
+    private List<DomNode> getElementsAfterRemoval(final List<DomNode> cachedElements) {
+        if (!(cachedElements instanceof MatchingElements)
+                || !((MatchingElements) cachedElements).isExaminedUnchanged()) {
+            return null;
+        }
+        final DomNode domNode = getDomNodeOrNull();
+        if (domNode == null || !domNode.isAttachedToPage()
+                || domNode.getSubtreeVersion() != cachedSubtreeVersion_ + 1
+                || domNode.getSubtreeAttributesVersion() != cachedAttributesVersion_) {
+            return null;
+        }
+        final HtmlPage page = getHtmlPage(domNode);
+        if (page == null || page.getSubtreeVersion() != cachedPageVersion_ + 1
+                || page.getLastRemovedNode() == null) {
+            return null;
+        }
+
+        // the removed elements are no longer attached, they follow each other in document order
+        final int size = cachedElements.size();
+        int from = 0;
+        while (from < size && cachedElements.get(from).isAttachedToPage()) {
+            from++;
+        }
+        updateCachedVersions();
+        if (from == size) {
+            return cachedElements;
+        }
+        int to = from + 1;
+        while (to < size && !cachedElements.get(to).isAttachedToPage()) {
+            to++;
+        }
+
+        // a new list, callers may still iterate the old one
+        final List<DomNode> elements = new ArrayList<>(size - to + from);
+        elements.addAll(cachedElements.subList(0, from));
+        elements.addAll(cachedElements.subList(to, size));
+        return new MatchingElements(elements);
+    }
+
+    /**
+     * Registers the listener for attribute changes, if this collection decides about the effect
+     * of every attribute change itself. All other changes are detected by comparing the versions
+     * of the reference node, no listener is needed.
+     */
     private void registerListener() {
         if (!listenerRegistered_) {
             final DomNode domNode = getDomNodeOrNull();
             if (domNode != null) {
-                final DomHtmlAttributeChangeListenerImpl listener = new DomHtmlAttributeChangeListenerImpl(this);
-                domNode.addDomChangeListener(listener);
-                if (attributeChangeSensitive_) {
+                attributeChangeFiltered_ = attributeChangeSensitive_ && isAttributeChangeFiltered(domNode);
+                if (attributeChangeFiltered_) {
+                    final DomHtmlAttributeChangeListenerImpl listener = new DomHtmlAttributeChangeListenerImpl(this);
                     if (domNode instanceof HtmlElement) {
                         ((HtmlElement) domNode).addHtmlAttributeChangeListener(listener);
                     }
-                    else if (domNode instanceof HtmlPage) {
+                    else {
                         ((HtmlPage) domNode).addHtmlAttributeChangeListener(listener);
                     }
                 }
@@ -259,22 +400,42 @@ public class AbstractList extends SimpleScriptable implements Function {
         }
     }
 
+    /**
+     * Returns whether {@link #getEffectOnCache(HtmlAttributeChangeEvent)} ignores some attribute changes.
+     * It is asked about a change of an attribute without name: the default implementation resets the cache
+     * for this change as for any other, an implementation deciding about each attribute does not.
+     * @param domNode the reference node
+     * @return whether this collection has to be informed about each attribute change
+     */
+    private boolean isAttributeChangeFiltered(final DomNode domNode) {
+        final DomNode element;
+        if (domNode instanceof HtmlPage) {
+            element = ((HtmlPage) domNode).getDocumentElement();
+        }
+        else {
+            element = domNode;
+        }
+        if (!(element instanceof HtmlElement)) {
+            // no listener possible, the attributes version covers all changes
+            return false;
+        }
+        final HtmlAttributeChangeEvent probe = new HtmlAttributeChangeEvent((HtmlElement) element, "", null);
+        return getEffectOnCache(probe) == EffectOnCache.NONE;
+    }
+
     /**
      * Returns the elements whose associated host objects are available through this collection.
+     * The default implementation returns the candidates matching {@link #isMatching(DomNode)}; they are
+     * examined on the first access to the list, except that an access by index examines them only up to
+     * this index.
      * @return the elements whose associated host objects are available through this collection
      */
     protected List<DomNode> computeElements() {
-        final List<DomNode> response = new ArrayList<>();
         final DomNode domNode = getDomNodeOrNull();
         if (domNode == null) {
-            return response;
+            return new ArrayList<>();
         }
-        for (final DomNode node : getCandidates()) {
-            if (node instanceof DomElement && isMatching(node)) {
-                response.add(node);
-            }
-        }
-        return response;
+        return new MatchingElements(getCandidates().iterator());
     }
 
     /**
@@ -442,7 +603,7 @@ public class AbstractList extends SimpleScriptable implements Function {
      */
     @Override
     public boolean has(final int index, final Scriptable start) {
-        return index >= 0 && index < getElements().size();
+        return getElement(index) != null;
     }
 
     /**
@@ -559,8 +720,7 @@ public class AbstractList extends SimpleScriptable implements Function {
         }
     }
 
-    private static final class DomHtmlAttributeChangeListenerImpl
-                                    implements DomChangeListener, HtmlAttributeChangeListener {
+    private static final class DomHtmlAttributeChangeListenerImpl implements HtmlAttributeChangeListener {
 
         private transient WeakReference<AbstractList> nodeList_;
 
@@ -570,22 +730,6 @@ public class AbstractList extends SimpleScriptable implements Function {
             nodeList_ = new WeakReference<>(nodeList);
         }
 
-        /**
-         * {@inheritDoc}
-         */
-        @Override
-        public void nodeAdded(final DomChangeEvent event) {
-            clearCache();
-        }
-
-        /**
-         * {@inheritDoc}
-         */
-        @Override
-        public void nodeDeleted(final DomChangeEvent event) {
-            clearCache();
-        }
-
         /**
          * {@inheritDoc}
          */
@@ -660,4 +804,99 @@ public class AbstractList extends SimpleScriptable implements Function {
         }
         return getScriptableFor(object);
     }
+
+    /**
+     * The elements computed by the default {@link AbstractList#computeElements()}: the candidates
+     * matching {@link AbstractList#isMatching(DomNode)}. They are examined only as far as
+     * {@link #find(int)} asks for, every other access examines them all first.
+     */
+    private final class MatchingElements extends java.util.AbstractList<DomNode> {
+        private final List<DomNode> elements_;
+        private Iterator<DomNode> candidates_;
+        private boolean changed_;
+
+        MatchingElements(final Iterator<DomNode> candidates) {
+            elements_ = new ArrayList<>();
+            candidates_ = candidates;
+        }
+
+        MatchingElements(final List<DomNode> elements) {
+            elements_ = elements;
+        }
+
+        /**
+         * Examines the candidates until the specified index is reached or all candidates are examined.
+         * @param index the index
+         */
+        void examineUpTo(final int index) {
+            final Iterator<DomNode> candidates = candidates_;
+            if (candidates == null) {
+                return;
+            }
+            while (elements_.size() <= index && candidates.hasNext()) {
+                final DomNode node = candidates.next();
+                if (node instanceof DomElement && isMatching(node)) {
+                    elements_.add(node);
+                }
+            }
+            if (!candidates.hasNext()) {
+                candidates_ = null;
+            }
+        }
+
+        /**
+         * Returns the element at the specified index, examining the candidates only up to it.
+         * @param index the index
+         * @return the element or {@code null} if there are not enough elements
+         */
+        DomNode find(final int index) {
+            examineUpTo(index);
+            if (index < elements_.size()) {
+                return elements_.get(index);
+            }
+            return null;
+        }
+
+        /**
+         * @return whether all candidates are examined and the list was not changed since
+         */
+        boolean isExaminedUnchanged() {
+            return candidates_ == null && !changed_;
+        }
+
+        @Override
+        public DomNode get(final int index) {
+            examineUpTo(Integer.MAX_VALUE);
+            return elements_.get(index);
+        }
+
+        @Override
+        public int size() {
+            examineUpTo(Integer.MAX_VALUE);
+            return elements_.size();
+        }
+
+        @Override
+        public DomNode set(final int index, final DomNode element) {
+            examineUpTo(Integer.MAX_VALUE);
+            changed_ = true;
+            return elements_.set(index, element);
+        }
+
+        @Override
+        public void add(final int index, final DomNode element) {
+            examineUpTo(Integer.MAX_VALUE);
+            changed_ = true;
+            modCount++;
+            elements_.add(index, element);
+        }
+
+        @Override
+        public DomNode remove(final int index) {
+            examineUpTo(Integer.MAX_VALUE);
+            changed_ = true;
+            modCount++;
+            return elements_.remove(index);
+        }
+    }
 }
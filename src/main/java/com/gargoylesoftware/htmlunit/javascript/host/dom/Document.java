@@ -768,7 +768,22 @@ public class Document extends Node {
             };
         }
         else {
+            final String tagNameLC = tagName.toLowerCase(Locale.ROOT);
             collection = new HTMLCollection(getDomNodeOrDie(), false) {
+                @Override
+                protected Iterable<DomNode> getCandidates() {
+                    // start from the tag name index of the page instead of walking all descendants
+                    final DomNode root = getDomNodeOrNull();
+                    final HtmlPage page = root.getHtmlPageOrNull();
+                    if (page != null && tagNameLC.indexOf(':') == -1) {
+                        final List<DomElement> elements = page.getIndexedElementsByTagName(root, tagNameLC);
+                        if (elements != null) {
+                            return Collections.<DomNode>unmodifiableList(elements);
+                        }
+                    }
+                    return super.getCandidates();
+                }
+
                 @Override
                 protected boolean isMatching(final DomNode node) {
                     return tagName.equalsIgnoreCase(node.getNodeName());
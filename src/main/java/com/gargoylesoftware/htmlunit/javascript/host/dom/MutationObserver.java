@@ -14,6 +14,9 @@
  */
 package com.gargoylesoftware.htmlunit.javascript.host.dom;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import com.gargoylesoftware.htmlunit.html.CharacterDataChangeEvent;
 import com.gargoylesoftware.htmlunit.html.CharacterDataChangeListener;
 import com.gargoylesoftware.htmlunit.html.HtmlAttributeChangeEvent;
@@ -57,6 +60,10 @@ public class MutationObserver extends SimpleScriptable implements HtmlAttributeC
     private boolean characterDataOldValue_;
     private boolean subtree_;
 
+    /** The records not yet delivered; all the records of one task are delivered with one call. */
+    private final List<MutationRecord> records_ = new ArrayList<>();
+    private boolean deliveryScheduled_;
+
     /**
      * Creates an instance.
      */
@@ -120,6 +127,7 @@ public class MutationObserver extends SimpleScriptable implements HtmlAttributeC
         if (characterData_) {
             node_.getDomNodeOrDie().removeCharacterDataChangeListener(this);
         }
+        records_.clear();
     }
 
     /**
@@ -128,7 +136,52 @@ public class MutationObserver extends SimpleScriptable implements HtmlAttributeC
      */
     @JsxFunction
     public NativeArray takeRecords() {
-        return new NativeArray(0);
+        final NativeArray array = new NativeArray(records_.toArray());
+        ScriptRuntime.setBuiltinProtoAndParent(array, getParentScope(), TopLevel.Builtins.Array);
+        records_.clear();
+        return array;
+    }
+
+    /**
+     * Adds the record to the queue. The first record of a task schedules the delivery
+     * of all the records, done when the current script is finished.
+     * @param mutationRecord the record
+     */
+    private void enqueueRecord(final MutationRecord mutationRecord) {
+        records_.add(mutationRecord);
+        if (deliveryScheduled_) {
+            return;
+        }
+
+        final Scriptable scope = getParentScope();
+        final Window window = getWindow();
+        final HtmlPage owningPage = (HtmlPage) window.getDocument().getPage();
+        final JavaScriptEngine jsEngine =
+                (JavaScriptEngine) window.getWebWindow().getWebClient().getJavaScriptEngine();
+        jsEngine.addPostponedAction(new PostponedAction(owningPage) {
+            @Override
+            public boolean isStillAlive() {
+                final boolean alive = super.isStillAlive();
+                if (!alive) {
+                    deliveryScheduled_ = false;
+                }
+                return alive;
+            }
+
+            @Override
+            public void execute() throws Exception {
+                // cleared before the callback runs, mutations made by the callback schedule a new delivery
+                deliveryScheduled_ = false;
+                if (records_.isEmpty()) {
+                    // taken in the meantime
+                    return;
+                }
+                final NativeArray array = takeRecords();
+                jsEngine.callFunction(owningPage, function_, scope, MutationObserver.this, new Object[] {array});
+            }
+        });
+        // only flagged once the delivery is really queued
+        deliveryScheduled_ = true;
     }
 
     /**
@@ -149,18 +202,7 @@ public class MutationObserver extends SimpleScriptable implements HtmlAttributeC
                 mutationRecord.setOldValue(event.getOldValue());
             }
 
-            final Window window = getWindow();
-            final HtmlPage owningPage = (HtmlPage) window.getDocument().getPage();
-            final JavaScriptEngine jsEngine =
-                    (JavaScriptEngine) window.getWebWindow().getWebClient().getJavaScriptEngine();
-            jsEngine.addPostponedAction(new PostponedAction(owningPage) {
-                @Override
-                public void execute() throws Exception {
-                    final NativeArray array = new NativeArray(new Object[] {mutationRecord});
-                    ScriptRuntime.setBuiltinProtoAndParent(array, scope, TopLevel.Builtins.Array);
-                    jsEngine.callFunction(owningPage, function_, scope, MutationObserver.this, new Object[] {array});
-                }
-            });
+            enqueueRecord(mutationRecord);
         }
     }
 
@@ -199,19 +241,7 @@ public class MutationObserver extends SimpleScriptable implements HtmlAttributeC
                     mutationRecord.setOldValue(event.getValue());
                 }
 
-                final Window window = getWindow();
-                final HtmlPage owningPage = (HtmlPage) window.getDocument().getPage();
-                final JavaScriptEngine jsEngine =
-                        (JavaScriptEngine) window.getWebWindow().getWebClient().getJavaScriptEngine();
-                jsEngine.addPostponedAction(new PostponedAction(owningPage) {
-                    @Override
-                    public void execute() throws Exception {
-                        final NativeArray array = new NativeArray(new Object[] {mutationRecord});
-                        ScriptRuntime.setBuiltinProtoAndParent(array, scope, TopLevel.Builtins.Array);
-                        jsEngine.callFunction(owningPage, function_, scope,
-                                                MutationObserver.this, new Object[] {array});
-                    }
-                });
+                enqueueRecord(mutationRecord);
             }
         }
     }
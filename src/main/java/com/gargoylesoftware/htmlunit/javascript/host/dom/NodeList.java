@@ -102,7 +102,7 @@ public class NodeList extends AbstractList {
     public static NodeList staticNodeList(final HtmlUnitScriptable parentScope, final List<DomNode> elements) {
         return new NodeList(parentScope) {
             @Override
-            public List<DomNode> getElements() {
+            protected List<DomNode> computeElements() {
                 return elements;
             }
         };
@@ -98,7 +98,7 @@ public class HTMLCollection extends AbstractList {
         final List<DomNode> list = Collections.emptyList();
         return new HTMLCollection(domNode, false) {
             @Override
-            public List<DomNode> getElements() {
+            protected List<DomNode> computeElements() {
                 return list;
             }
         };
@@ -132,7 +132,8 @@ public class HTMLFormElement extends HTMLElement implements Function {
 
             @Override
             protected List<DomNode> computeElements() {
-                final List<DomNode> response = super.computeElements();
+                // a copy examines all candidates, isMatching() sets the flag
+                final List<DomNode> response = new ArrayList<>(super.computeElements());
                 // it would be more performant to avoid iterating through
                 // nested forms but as it is a corner case of ill formed HTML
                 // the needed refactoring would take too much time
@@ -41,12 +41,20 @@ class LabelsHelper extends NodeList {
     }
 
     /**
-     * This is overridden instead of {@link #computeElements()} in order to prevent caching at all.
+     * This is overridden in order to prevent caching at all.
      *
      * {@inheritDoc}
      */
     @Override
     public List<DomNode> getElements() {
+        return computeElements();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected List<DomNode> computeElements() {
         final List<DomNode> response = new ArrayList<>();
         final DomElement domElement = (DomElement) getDomNodeOrDie();
         for (DomNode parent = domElement.getParentNode(); parent != null; parent = parent.getParentNode()) {
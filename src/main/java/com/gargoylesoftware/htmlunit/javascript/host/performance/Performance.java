@@ -63,7 +63,8 @@ public class Performance extends EventTarget {
     @JsxGetter
     public PerformanceTiming getTiming() {
         if (timing_ == null) {
-            final PerformanceTiming timing = new PerformanceTiming();
+            final PerformanceTiming timing = new PerformanceTiming(
+                    getWindow().getWebWindow().getWebClient().getJavaScriptClock().currentTimeMillis());
             timing.setParentScope(getParentScope());
             timing.setPrototype(getPrototype(timing.getClass()));
             timing_ = timing;
@@ -77,6 +78,6 @@ public class Performance extends EventTarget {
      */
     @JsxFunction
     public double now() {
-        return System.nanoTime() / 1_000_000d;
+        return getWindow().getWebWindow().getWebClient().getJavaScriptClock().highResolutionTime();
     }
 }
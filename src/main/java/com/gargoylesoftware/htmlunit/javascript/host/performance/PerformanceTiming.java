@@ -56,8 +56,14 @@ public class PerformanceTiming extends SimpleScriptable {
      */
     @JsxConstructor({CHROME, FF68, FF60})
     public PerformanceTiming() {
-        final long now = System.currentTimeMillis();
+        this(System.currentTimeMillis());
+    }
 
+    /**
+     * Creates an instance.
+     * @param now the current time
+     */
+    PerformanceTiming(final long now) {
         // simulate the fastest browser on earth
         domainLookupStart_ = now;
         domainLookupEnd_ = domainLookupStart_ + 1L;
@@ -21,6 +21,12 @@ import static com.gargoylesoftware.htmlunit.javascript.configuration.SupportedBr
 
 import java.io.IOException;
 import java.net.URL;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -29,11 +35,13 @@ import com.gargoylesoftware.htmlunit.BrowserVersion;
 import com.gargoylesoftware.htmlunit.WebClient;
 import com.gargoylesoftware.htmlunit.WebRequest;
 import com.gargoylesoftware.htmlunit.WebResponse;
+import com.gargoylesoftware.htmlunit.WebWindow;
 import com.gargoylesoftware.htmlunit.html.HtmlPage;
 import com.gargoylesoftware.htmlunit.javascript.HtmlUnitScriptable;
 import com.gargoylesoftware.htmlunit.javascript.JavaScriptEngine;
 import com.gargoylesoftware.htmlunit.javascript.background.BasicJavaScriptJob;
 import com.gargoylesoftware.htmlunit.javascript.background.JavaScriptJob;
+import com.gargoylesoftware.htmlunit.javascript.background.JavaScriptJobManager;
 import com.gargoylesoftware.htmlunit.javascript.configuration.AbstractJavaScriptConfiguration;
 import com.gargoylesoftware.htmlunit.javascript.configuration.ClassConfiguration;
 import com.gargoylesoftware.htmlunit.javascript.configuration.JsxClass;
@@ -54,6 +62,10 @@ import net.sourceforge.htmlunit.corejs.javascript.Undefined;
 /**
  * The scope for the execution of {@link Worker}s.
  *
+ * <p>Every worker has its own thread; the scripts and the message handlers of the worker are executed
+ * there, in parallel to the scripts of the page. The messages are copied (see {@link StructuredClone})
+ * and the messages posted by the worker are delivered as jobs of the owning window.</p>
+ *
  * @author Marc Guillemot
  */
 @JsxClass({CHROME, FF68, FF60})
@@ -61,9 +73,18 @@ import net.sourceforge.htmlunit.corejs.javascript.Undefined;
 public class DedicatedWorkerGlobalScope extends HtmlUnitScriptable {
 
     private static final Log LOG = LogFactory.getLog(DedicatedWorkerGlobalScope.class);
+
+    /** The time (in milliseconds) the thread of an idle worker is kept alive. */
+    private static final long THREAD_KEEP_ALIVE = 1000;
+
+    private static final AtomicInteger WORKER_NUMBER = new AtomicInteger(1);
+
     private final Window owningWindow_;
+    private final HtmlPage owningPage_;
     private final String origin_;
     private final Worker worker_;
+    private final ThreadPoolExecutor executor_;
+    private volatile boolean terminated_;
 
     /**
      * For prototype instantiation.
@@ -71,8 +92,10 @@ public class DedicatedWorkerGlobalScope extends HtmlUnitScriptable {
     public DedicatedWorkerGlobalScope() {
         // prototype constructor
         owningWindow_ = null;
+        owningPage_ = null;
         origin_ = null;
         worker_ = null;
+        executor_ = null;
     }
 
     /**
@@ -91,10 +114,24 @@ public class DedicatedWorkerGlobalScope extends HtmlUnitScriptable {
         setPrototype(prototype);
 
         owningWindow_ = owningWindow;
-        final URL currentURL = owningWindow.getWebWindow().getEnclosedPage().getUrl();
+        owningPage_ = (HtmlPage) owningWindow.getWebWindow().getEnclosedPage();
+        final URL currentURL = owningPage_.getUrl();
         origin_ = currentURL.getProtocol() + "://" + currentURL.getHost() + ':' + currentURL.getPort();
 
         worker_ = worker;
+
+        final String threadName = "Worker " + WORKER_NUMBER.getAndIncrement();
+        final ThreadFactory threadFactory = runnable -> {
+            final Thread thread = new Thread(runnable, threadName);
+            thread.setDaemon(true);
+            return thread;
+        };
+        executor_ = new ThreadPoolExecutor(1, 1, THREAD_KEEP_ALIVE, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), threadFactory);
+        executor_.allowCoreThreadTimeOut(true);
+
+        // the worker ends with its page, when the window loads another page or the client is closed
+        owningPage_.addAutoCloseable(this::terminate);
     }
 
     /**
@@ -112,11 +149,10 @@ public class DedicatedWorkerGlobalScope extends HtmlUnitScriptable {
      */
     @JsxFunction
     public void postMessage(final Object message) {
-        final MessageEvent event = new MessageEvent();
-        event.initMessageEvent(Event.TYPE_MESSAGE, false, false, message, origin_, "",
-                                    owningWindow_, Undefined.instance);
-        event.setParentScope(owningWindow_);
-        event.setPrototype(owningWindow_.getPrototype(event.getClass()));
+        if (terminated_) {
+            return;
+        }
+        final Object data = StructuredClone.write(message);
 
         if (LOG.isDebugEnabled()) {
             LOG.debug("[DedicatedWorker] postMessage: {}" + message);
@@ -126,6 +162,15 @@ public class DedicatedWorkerGlobalScope extends HtmlUnitScriptable {
         final ContextAction<Object> action = new ContextAction<Object>() {
             @Override
             public Object run(final Context cx) {
+                if (terminated_) {
+                    return null;
+                }
+                final MessageEvent event = new MessageEvent();
+                event.initMessageEvent(Event.TYPE_MESSAGE, false, false, StructuredClone.read(cx, owningWindow_, data),
+                        origin_, "", owningWindow_, Undefined.instance);
+                event.setParentScope(owningWindow_);
+                event.setPrototype(owningWindow_.getPrototype(event.getClass()));
+
                 worker_.getEventListenersContainer().executeCapturingListeners(event, null);
                 final Object[] args = new Object[] {event};
                 worker_.getEventListenersContainer().executeBubblingListeners(event, args);
@@ -137,32 +182,26 @@ public class DedicatedWorkerGlobalScope extends HtmlUnitScriptable {
 
         final JavaScriptJob job = new WorkerJob(cf, action, "postMessage: " + Context.toString(message));
 
-        final HtmlPage page = (HtmlPage) owningWindow_.getDocument().getPage();
-        owningWindow_.getWebWindow().getJobManager().addJob(job, page);
+        owningWindow_.getWebWindow().getJobManager().addJob(job, owningPage_);
     }
 
     void messagePosted(final Object message) {
-        final MessageEvent event = new MessageEvent();
-        event.initMessageEvent(Event.TYPE_MESSAGE, false, false, message, origin_, "",
-                                    owningWindow_, Undefined.instance);
-        event.setParentScope(owningWindow_);
-        event.setPrototype(owningWindow_.getPrototype(event.getClass()));
+        final Object data = StructuredClone.write(message);
 
-        final JavaScriptEngine jsEngine =
-                (JavaScriptEngine) owningWindow_.getWebWindow().getWebClient().getJavaScriptEngine();
         final ContextAction<Object> action = new ContextAction<Object>() {
             @Override
             public Object run(final Context cx) {
+                final MessageEvent event = new MessageEvent();
+                event.initMessageEvent(Event.TYPE_MESSAGE, false, false,
+                        StructuredClone.read(cx, DedicatedWorkerGlobalScope.this, data),
+                        origin_, "", owningWindow_, Undefined.instance);
+                event.setParentScope(owningWindow_);
+                event.setPrototype(owningWindow_.getPrototype(event.getClass()));
                 return executeEvent(cx, event);
             }
         };
 
-        final ContextFactory cf = jsEngine.getContextFactory();
-
-        final JavaScriptJob job = new WorkerJob(cf, action, "messagePosted: " + Context.toString(message));
-
-        final HtmlPage page = (HtmlPage) owningWindow_.getDocument().getPage();
-        owningWindow_.getWebWindow().getJobManager().addJob(job, page);
+        runInWorker("messagePosted: " + Context.toString(message), action);
     }
 
     private Object executeEvent(final Context cx, final MessageEvent event) {
@@ -196,35 +235,97 @@ public class DedicatedWorkerGlobalScope extends HtmlUnitScriptable {
     }
 
     void loadAndExecute(final String url, final Context context) throws IOException {
-        final HtmlPage page = (HtmlPage) owningWindow_.getDocument().getPage();
-        final URL fullUrl = page.getFullyQualifiedUrl(url);
+        if (context != null) {
+            // already running in the worker thread
+            loadAndExecuteNow(url, context);
+            return;
+        }
+
+        final ContextAction<Object> action = new ContextAction<Object>() {
+            @Override
+            public Object run(final Context cx) {
+                try {
+                    loadAndExecuteNow(url, cx);
+                }
+                catch (final IOException e) {
+                    throw Context.throwAsScriptRuntimeEx(e);
+                }
+                return null;
+            }
+        };
+
+        runInWorker("loadAndExecute " + url, action);
+    }
+
+    private void loadAndExecuteNow(final String url, final Context cx) throws IOException {
+        final URL fullUrl = owningPage_.getFullyQualifiedUrl(url);
 
         final WebClient webClient = owningWindow_.getWebWindow().getWebClient();
 
         final WebRequest webRequest = new WebRequest(fullUrl);
         final WebResponse response = webClient.loadWebResponse(webRequest);
         final String scriptCode = response.getContentAsString();
-        final JavaScriptEngine javaScriptEngine = (JavaScriptEngine) webClient.getJavaScriptEngine();
 
-        final DedicatedWorkerGlobalScope thisScope = this;
-        final ContextAction<Object> action = new ContextAction<Object>() {
+        final Script script = cx.compileString(scriptCode, fullUrl.toExternalForm(), 1, null);
+        script.exec(cx, this);
+    }
+
+    /**
+     * Runs the given action in the thread of this worker. Until the action is done, the owning window
+     * has a pending job; this way waiting for the background JavaScript includes the worker.
+     * @param description the description of the action
+     * @param action the action
+     */
+    private void runInWorker(final String description, final ContextAction<Object> action) {
+        if (terminated_) {
+            return;
+        }
+        final WebWindow webWindow = owningWindow_.getWebWindow();
+        if (webWindow.getEnclosedPage() != owningPage_) {
+            return;
+        }
+
+        final JavaScriptEngine jsEngine = (JavaScriptEngine) webWindow.getWebClient().getJavaScriptEngine();
+        final JavaScriptJobManager jobManager = webWindow.getJobManager();
+        final int pendingJobId = jobManager.addPendingJob(
+                new WorkerJob(jsEngine.getContextFactory(), null, "done: " + description), owningPage_);
+
+        final Runnable runnable = new Runnable() {
             @Override
-            public Object run(final Context cx) {
-                final Script script = javaScriptEngine.compile(page, thisScope, scriptCode,
-                        fullUrl.toExternalForm(), 1);
-                return javaScriptEngine.execute(page, thisScope, script);
+            public void run() {
+                try {
+                    if (!terminated_) {
+                        jsEngine.callInWorker(owningPage_, DedicatedWorkerGlobalScope.this, action);
+                    }
+                }
+                catch (final RuntimeException e) {
+                    LOG.error("Worker job failed with unexpected RuntimeException: " + e.getMessage(), e);
+                }
+                finally {
+                    if (pendingJobId != 0) {
+                        jobManager.startPendingJob(pendingJobId);
+                    }
+                }
             }
         };
 
-        final ContextFactory cf = javaScriptEngine.getContextFactory();
-
-        if (context != null) {
-            action.run(context);
+        try {
+            executor_.execute(runnable);
         }
-        else {
-            final JavaScriptJob job = new WorkerJob(cf, action, "loadAndExecute " + url);
+        catch (final RejectedExecutionException e) {
+            // terminated in the meantime
+            runnable.run();
+        }
+    }
 
-            owningWindow_.getWebWindow().getJobManager().addJob(job, page);
+    /**
+     * Stops the worker; the queued messages are discarded and a running script is interrupted.
+     */
+    void terminate() {
+        terminated_ = true;
+        for (final Runnable runnable : executor_.shutdownNow()) {
+            // the actions are skipped, but the pending jobs are done
+            runnable.run();
         }
     }
 }
@@ -242,7 +343,9 @@ class WorkerJob extends BasicJavaScriptJob {
 
     @Override
     public void run() {
-        contextFactory_.call(action_);
+        if (action_ != null) {
+            contextFactory_.call(action_);
+        }
     }
 
     @Override
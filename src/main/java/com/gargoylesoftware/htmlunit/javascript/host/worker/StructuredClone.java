@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2002-2020 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.javascript.host.worker;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.sourceforge.htmlunit.corejs.javascript.Context;
+import net.sourceforge.htmlunit.corejs.javascript.Function;
+import net.sourceforge.htmlunit.corejs.javascript.NativeArray;
+import net.sourceforge.htmlunit.corejs.javascript.NativeObject;
+import net.sourceforge.htmlunit.corejs.javascript.ScriptRuntime;
+import net.sourceforge.htmlunit.corejs.javascript.Scriptable;
+import net.sourceforge.htmlunit.corejs.javascript.ScriptableObject;
+import net.sourceforge.htmlunit.corejs.javascript.Undefined;
+import net.sourceforge.htmlunit.corejs.javascript.typedarrays.NativeArrayBuffer;
+
+/**
+ * The structured clone used to pass messages between a page and its {@link Worker}s.
+ * The page and the worker run in different threads and have different global scopes; therefore
+ * the message is copied into a neutral Java representation by the sender ({@link #write(Object)})
+ * and recreated in the scope of the receiver ({@link #read(Context, Scriptable, Object)}).
+ *
+ * <p>Supported are the primitive values, strings, arrays, plain objects, dates and array buffers;
+ * shared references and cycles are preserved.</p>
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+final class StructuredClone {
+
+    private StructuredClone() {
+    }
+
+    /**
+     * Copies the given value; has to be called by the thread owning the value.
+     * @param value the value
+     * @return the copy, not bound to any scope
+     */
+    static Object write(final Object value) {
+        return write(value, new IdentityHashMap<>());
+    }
+
+    private static Object write(final Object value, final Map<Object, Object> memory) {
+        if (value == null || value instanceof Undefined || value instanceof Boolean || value instanceof Number) {
+            return value;
+        }
+        if (value instanceof CharSequence) {
+            return value.toString();
+        }
+
+        final Object known = memory.get(value);
+        if (known != null) {
+            return known;
+        }
+
+        if (value instanceof NativeArray) {
+            final NativeArray array = (NativeArray) value;
+            final ArrayData data = new ArrayData();
+            memory.put(value, data);
+            final long length = array.getLength();
+            for (int i = 0; i < length; i++) {
+                data.elements_.add(write(array.get(i), memory));
+            }
+            return data;
+        }
+        if (value instanceof NativeArrayBuffer) {
+            final byte[] buffer = ((NativeArrayBuffer) value).getBuffer();
+            final ArrayBufferData data = new ArrayBufferData(buffer.clone());
+            memory.put(value, data);
+            return data;
+        }
+        if (value instanceof ScriptableObject && !(value instanceof Function)) {
+            final ScriptableObject object = (ScriptableObject) value;
+            if ("Date".equals(object.getClassName())) {
+                final double time = ScriptRuntime.toNumber(
+                        ScriptableObject.callMethod(object, "getTime", ScriptRuntime.emptyArgs));
+                final DateData data = new DateData(time);
+                memory.put(value, data);
+                return data;
+            }
+            if (object instanceof NativeObject) {
+                final ObjectData data = new ObjectData();
+                memory.put(value, data);
+                for (final Object id : object.getIds()) {
+                    final Object property;
+                    if (id instanceof Integer) {
+                        property = object.get(((Integer) id).intValue(), object);
+                    }
+                    else {
+                        property = object.get(id.toString(), object);
+                    }
+                    data.properties_.put(id, write(property, memory));
+                }
+                return data;
+            }
+        }
+
+        throw Context.reportRuntimeError("DataCloneError: " + Context.toString(value) + " could not be cloned.");
+    }
+
+    /**
+     * Creates the objects of a copy made by {@link #write(Object)} in the given scope.
+     * @param cx the context of the receiver
+     * @param scope the scope of the receiver
+     * @param data the copy
+     * @return the value
+     */
+    static Object read(final Context cx, final Scriptable scope, final Object data) {
+        return read(cx, scope, data, new IdentityHashMap<>());
+    }
+
+    private static Object read(final Context cx, final Scriptable scope, final Object data,
+            final Map<Object, Object> memory) {
+        if (!(data instanceof CloneData)) {
+            return data;
+        }
+
+        final Object known = memory.get(data);
+        if (known != null) {
+            return known;
+        }
+
+        if (data instanceof ArrayData) {
+            final List<Object> elements = ((ArrayData) data).elements_;
+            final Scriptable array = cx.newArray(scope, elements.size());
+            memory.put(data, array);
+            for (int i = 0; i < elements.size(); i++) {
+                array.put(i, array, read(cx, scope, elements.get(i), memory));
+            }
+            return array;
+        }
+        if (data instanceof ArrayBufferData) {
+            final byte[] bytes = ((ArrayBufferData) data).bytes_;
+            final Scriptable buffer = cx.newObject(scope, NativeArrayBuffer.CLASS_NAME, new Object[] {bytes.length});
+            System.arraycopy(bytes, 0, ((NativeArrayBuffer) buffer).getBuffer(), 0, bytes.length);
+            memory.put(data, buffer);
+            return buffer;
+        }
+        if (data instanceof DateData) {
+            final Scriptable date = cx.newObject(scope, "Date", new Object[] {((DateData) data).time_});
+            memory.put(data, date);
+            return date;
+        }
+
+        final Scriptable object = cx.newObject(scope);
+        memory.put(data, object);
+        for (final Map.Entry<Object, Object> entry : ((ObjectData) data).properties_.entrySet()) {
+            final Object value = read(cx, scope, entry.getValue(), memory);
+            final Object id = entry.getKey();
+            if (id instanceof Integer) {
+                object.put(((Integer) id).intValue(), object, value);
+            }
+            else {
+                object.put(id.toString(), object, value);
+            }
+        }
+        return object;
+    }
+
+    /**
+     * Marker for the copies of objects.
+     */
+    private interface CloneData {
+    }
+
+    private static final class ArrayData implements CloneData {
+        private final List<Object> elements_ = new ArrayList<>();
+    }
+
+    private static final class ObjectData implements CloneData {
+        private final Map<Object, Object> properties_ = new LinkedHashMap<>();
+    }
+
+    private static final class DateData implements CloneData {
+        private final double time_;
+
+        DateData(final double time) {
+            time_ = time;
+        }
+    }
+
+    private static final class ArrayBufferData implements CloneData {
+        private final byte[] bytes_;
+
+        ArrayBufferData(final byte[] bytes) {
+            bytes_ = bytes;
+        }
+    }
+}
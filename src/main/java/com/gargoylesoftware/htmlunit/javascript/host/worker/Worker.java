@@ -89,6 +89,14 @@ public class Worker extends EventTarget {
         workerScope_.messagePosted(message);
     }
 
+    /**
+     * Stops the worker immediately; the messages not yet processed are discarded.
+     */
+    @JsxFunction
+    public void terminate() {
+        workerScope_.terminate();
+    }
+
     /**
      * Sets the value of the onmessage event handler.
      * @param onmessage the new handler
@@ -43,6 +43,10 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map.Entry;
 import java.util.TreeMap;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -59,9 +63,12 @@ import com.gargoylesoftware.htmlunit.WebRequest.HttpHint;
 import com.gargoylesoftware.htmlunit.WebResponse;
 import com.gargoylesoftware.htmlunit.WebWindow;
 import com.gargoylesoftware.htmlunit.html.HtmlPage;
+import com.gargoylesoftware.htmlunit.javascript.AbstractJavaScriptEngine;
 import com.gargoylesoftware.htmlunit.javascript.JavaScriptEngine;
+import com.gargoylesoftware.htmlunit.javascript.PostponedAction;
 import com.gargoylesoftware.htmlunit.javascript.background.BackgroundJavaScriptFactory;
 import com.gargoylesoftware.htmlunit.javascript.background.JavaScriptJob;
+import com.gargoylesoftware.htmlunit.javascript.background.JavaScriptJobManager;
 import com.gargoylesoftware.htmlunit.javascript.configuration.JsxClass;
 import com.gargoylesoftware.htmlunit.javascript.configuration.JsxConstant;
 import com.gargoylesoftware.htmlunit.javascript.configuration.JsxConstructor;
@@ -607,6 +614,8 @@ public class XMLHttpRequest extends XMLHttpRequestEventTarget {
         final HtmlPage page = (HtmlPage) ww.getEnclosedPage();
         final boolean synchron = ajaxController.processSynchron(page, webRequest_, async_);
         if (synchron) {
+            // the requests sent before in the background reach the server first
+            ww.getJobManager().awaitPendingJobWork(client.getOptions().getTimeout());
             doSend(Context.getCurrentContext());
         }
         else {
@@ -616,7 +625,9 @@ public class XMLHttpRequest extends XMLHttpRequestEventTarget {
                 setState(OPENED, Context.getCurrentContext());
             }
 
-            // Create and start a thread in which to execute the request.
+            // The request is done by the background I/O executor, the response
+            // is processed by a job of the event loop.
+            final AtomicReference<FetchResult> fetched = new AtomicReference<>();
             final Scriptable startingScope = w;
             final ContextFactory cf = ((JavaScriptEngine) client.getJavaScriptEngine()).getContextFactory();
             final ContextAction<Object> action = new ContextAction<Object>() {
@@ -633,7 +644,15 @@ public class XMLHttpRequest extends XMLHttpRequestEventTarget {
                     stack.push(startingScope);
 
                     try {
-                        doSend(cx);
+                        final FetchResult result = fetched.get();
+                        if (result == null) {
+                            // not done in the background (no pending job support or the executor
+                            // rejected the work), the job does the request itself
+                            doSend(cx);
+                        }
+                        else {
+                            processResponse(cx, result);
+                        }
                     }
                     finally {
                         stack.pop();
@@ -651,7 +670,59 @@ public class XMLHttpRequest extends XMLHttpRequestEventTarget {
             if (LOG.isDebugEnabled()) {
                 LOG.debug("Starting XMLHttpRequest thread for asynchronous request");
             }
-            jobID_ = ww.getJobManager().addJob(job, page);
+            final JavaScriptJobManager jobManager = ww.getJobManager();
+            final AbstractJavaScriptEngine<?> jsEngine = client.getJavaScriptEngine();
+            final int pendingJobId = jobManager.addPendingJob(job, page);
+            if (pendingJobId == 0) {
+                // no support for pending jobs, the request is done by the job itself,
+                // added when the script sending the request has finished
+                jsEngine.addPostponedAction(new PostponedAction(page, "XMLHttpRequest.send") {
+                    @Override
+                    public void execute() {
+                        jobID_ = jobManager.addJob(job, page);
+                    }
+                });
+                return;
+            }
+
+            // the job is started when both the response is there and the script
+            // sending the request has finished
+            jobID_ = pendingJobId;
+            final AtomicInteger missing = new AtomicInteger(2);
+            final Runnable arrived = () -> {
+                if (missing.decrementAndGet() == 0) {
+                    jobManager.startPendingJob(pendingJobId);
+                }
+            };
+            jsEngine.addPostponedAction(new PostponedAction(page, "XMLHttpRequest.send") {
+                @Override
+                public void execute() {
+                    arrived.run();
+                }
+            });
+            final FutureTask<Void> work = new FutureTask<>(() -> {
+                try {
+                    fetched.set(fetch(client));
+                }
+                catch (final Error e) {
+                    fetched.set(FetchResult.failed(e));
+                    throw e;
+                }
+                finally {
+                    arrived.run();
+                }
+            }, null);
+            // aborting the request or leaving the page cancels the work
+            jobManager.setPendingJobWork(pendingJobId, work);
+            try {
+                client.getBackgroundIoExecutor().execute(work);
+            }
+            catch (final RejectedExecutionException e) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Background I/O executor rejected the request, using the event loop.", e);
+                }
+                arrived.run();
+            }
         }
     }
 
@@ -703,6 +774,17 @@ public class XMLHttpRequest extends XMLHttpRequestEventTarget {
      */
     private void doSend(final Context context) {
         final WebClient wc = getWindow().getWebWindow().getWebClient();
+        processResponse(context, fetch(wc));
+    }
+
+    /**
+     * Does the network I/O of the request including the preflight request; this does not touch
+     * any JavaScript state and therefore may be called from any thread.
+     * @param wc the web client
+     * @return the result
+     */
+    private FetchResult fetch(final WebClient wc) {
+        final FetchResult result = new FetchResult();
         try {
             final String originHeaderValue = webRequest_.getAdditionalHeaders().get(HttpHeader.ORIGIN);
             if (originHeaderValue != null && isPreflight()) {
@@ -731,25 +813,56 @@ public class XMLHttpRequest extends XMLHttpRequestEventTarget {
                 preflightRequest.setAdditionalHeader(HttpHeader.ACCESS_CONTROL_REQUEST_HEADERS, builder.toString());
 
                 // do the preflight request
-                final WebResponse preflightResponse = wc.loadWebResponse(preflightRequest);
+                final WebResponse preflightResponse =
+                        wc.loadWebResponse(preflightRequest, containingPage_.getEnclosingWindow());
                 if (!isPreflightAuthorized(preflightResponse)) {
-                    setState(HEADERS_RECEIVED, context);
-                    setState(LOADING, context);
-                    setState(DONE, context);
-                    if (LOG.isDebugEnabled()) {
-                        LOG.debug("No permitted request for URL " + webRequest_.getUrl());
-                    }
-                    Context.throwAsScriptRuntimeEx(
-                            new RuntimeException("No permitted \"Access-Control-Allow-Origin\" header."));
-                    return;
+                    result.preflightRejected_ = true;
+                    return result;
                 }
             }
-            final WebResponse webResponse = wc.loadWebResponse(webRequest_);
+            final WebResponse webResponse = wc.loadWebResponse(webRequest_, containingPage_.getEnclosingWindow());
             if (LOG.isDebugEnabled()) {
                 LOG.debug("Web response loaded successfully.");
             }
             // this kind of web responses using UTF-8 as default encoding
             webResponse.defaultCharsetUtf8();
+            result.webResponse_ = webResponse;
+        }
+        catch (final IOException e) {
+            result.ioException_ = e;
+        }
+        catch (final RuntimeException e) {
+            result.runtimeException_ = e;
+        }
+        return result;
+    }
+
+    /**
+     * Processes the result of {@link #fetch(WebClient)}: updates the state and fires the events.
+     * @param context the current context
+     * @param result the result of the network I/O
+     */
+    private void processResponse(final Context context, final FetchResult result) {
+        if (result.runtimeException_ != null) {
+            throw result.runtimeException_;
+        }
+        try {
+            if (result.ioException_ != null) {
+                throw result.ioException_;
+            }
+            if (result.preflightRejected_) {
+                setState(HEADERS_RECEIVED, context);
+                setState(LOADING, context);
+                setState(DONE, context);
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("No permitted request for URL " + webRequest_.getUrl());
+                }
+                Context.throwAsScriptRuntimeEx(
+                        new RuntimeException("No permitted \"Access-Control-Allow-Origin\" header."));
+                return;
+            }
+            final String originHeaderValue = webRequest_.getAdditionalHeaders().get(HttpHeader.ORIGIN);
+            final WebResponse webResponse = result.webResponse_;
 
             boolean allowOriginResponse = true;
             if (originHeaderValue != null) {
@@ -1089,4 +1202,25 @@ public class XMLHttpRequest extends XMLHttpRequestEventTarget {
             return error_;
         }
     }
+
+    /**
+     * The result of the network I/O done by {@link XMLHttpRequest#fetch(WebClient)}.
+     */
+    private static final class FetchResult {
+        private WebResponse webResponse_;
+        private boolean preflightRejected_;
+        private IOException ioException_;
+        private RuntimeException runtimeException_;
+
+        /**
+         * Creates the result of a request that failed with an error; it is processed like a network error.
+         * @param error the error
+         * @return the result
+         */
+        static FetchResult failed(final Error error) {
+            final FetchResult result = new FetchResult();
+            result.ioException_ = new IOException(error);
+            return result;
+        }
+    }
 }
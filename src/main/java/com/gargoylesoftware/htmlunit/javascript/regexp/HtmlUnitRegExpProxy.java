@@ -18,9 +18,8 @@ import static com.gargoylesoftware.htmlunit.BrowserVersionFeatures.JS_REGEXP_EMP
 import static com.gargoylesoftware.htmlunit.BrowserVersionFeatures.JS_REGEXP_GROUP0_RETURNS_WHOLE_MATCH;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.Optional;
 import java.util.regex.MatchResult;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -31,6 +30,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import com.gargoylesoftware.htmlunit.BrowserVersion;
+import com.gargoylesoftware.htmlunit.util.LruCache;
 
 import net.sourceforge.htmlunit.corejs.javascript.Context;
 import net.sourceforge.htmlunit.corejs.javascript.RegExpProxy;
@@ -52,12 +52,38 @@ import net.sourceforge.htmlunit.corejs.javascript.regexp.SubString;
 public class HtmlUnitRegExpProxy extends RegExpImpl {
 
     private static final Log LOG = LogFactory.getLog(HtmlUnitRegExpProxy.class);
-    /** Pattern cache */
-    private static final Map<String, Pattern> PATTENS = new HashMap<>();
+
+    /**
+     * Cache of the compiled patterns, keyed by the JavaScript form /source/flags
+     * (or only the source for strings used as RegExp); weighted by the pattern length.
+     */
+    private static final LruCache<String, Pattern> PATTERNS =
+            new LruCache<>(512 * 1024, (key, pattern) -> key.length() + pattern.pattern().length());
+
+    /**
+     * Cache of the JavaScript to Java conversions, keyed by the JavaScript source;
+     * weighted by the length of both.
+     */
+    private static final LruCache<String, String> CONVERSIONS =
+            new LruCache<>(512 * 1024, (key, javaRegExp) -> key.length() + javaRegExp.length());
+
+    /**
+     * Cache of the {@link SimplePattern} analysis, keyed like {@link #PATTERNS};
+     * empty if the RegExp requires a real {@link Pattern}.
+     */
+    private static final LruCache<String, Optional<SimplePattern>> SIMPLE_PATTERNS =
+            new LruCache<>(128 * 1024, (key, simple) -> key.length());
+
+    private static final String[] NO_PARENS = new String[0];
 
     private final RegExpProxy wrapped_;
     private final BrowserVersion browserVersion_;
 
+    /** The separator of the running {@link #js_split(Context, Scriptable, String, Object[])}. */
+    private NativeRegExp splitRegExp_;
+    /** The simple pattern of {@link #splitRegExp_}, {@code null} if it requires a real {@link Pattern}. */
+    private SimplePattern splitSimplePattern_;
+
     /**
      * Wraps a proxy to enhance it.
      * @param wrapped the original proxy
@@ -102,7 +128,7 @@ public class HtmlUnitRegExpProxy extends RegExpImpl {
                 try {
                     final NativeRegExp regexp = (NativeRegExp) arg0;
                     final RegExpData reData = new RegExpData(regexp);
-                    final Matcher matcher = reData.getPattern().matcher(thisString);
+                    final RegExpMatcher matcher = reData.matcher(thisString);
                     return doReplacement(thisString, replacement, matcher, reData.isGlobal());
                 }
                 catch (final PatternSyntaxException e) {
@@ -121,10 +147,10 @@ public class HtmlUnitRegExpProxy extends RegExpImpl {
                 reData = new RegExpData((NativeRegExp) arg0);
             }
             else {
-                reData = new RegExpData(Context.toString(arg0));
+                reData = RegExpData.forString(Context.toString(arg0));
             }
 
-            final Matcher matcher = reData.getPattern().matcher(thisString);
+            final RegExpMatcher matcher = reData.matcher(thisString);
 
             final boolean found = matcher.find();
             if (RA_SEARCH == actionType) {
@@ -193,7 +219,7 @@ public class HtmlUnitRegExpProxy extends RegExpImpl {
         return originalString;
     }
 
-    private String doReplacement(final String originalString, final String replacement, final Matcher matcher,
+    private String doReplacement(final String originalString, final String replacement, final RegExpMatcher matcher,
         final boolean replaceAll) {
 
         final StringBuilder sb = new StringBuilder();
@@ -306,7 +332,8 @@ public class HtmlUnitRegExpProxy extends RegExpImpl {
         }
     }
 
-    private void setProperties(final Matcher matcher, final String thisString, final int startPos, final int endPos) {
+    private void setProperties(final MatchResult matcher, final String thisString,
+            final int startPos, final int endPos) {
         // lastMatch
         final String match = matcher.group();
         if (match == null) {
@@ -386,6 +413,31 @@ public class HtmlUnitRegExpProxy extends RegExpImpl {
         }
     }
 
+    /**
+     * Analyzes a RegExp separator once before the split loop calls
+     * {@link #find_split(Context, Scriptable, String, String, Scriptable, int[], int[], boolean[], String[][])}
+     * for every match.
+     * {@inheritDoc}
+     */
+    @Override
+    public Object js_split(final Context cx, final Scriptable scope, final String target, final Object[] args) {
+        if (args.length == 0 || !(args[0] instanceof NativeRegExp)) {
+            return super.js_split(cx, scope, target, args);
+        }
+
+        final NativeRegExp previousRegExp = splitRegExp_;
+        final SimplePattern previousSimplePattern = splitSimplePattern_;
+        splitRegExp_ = (NativeRegExp) args[0];
+        splitSimplePattern_ = new RegExpData(splitRegExp_).getSimplePattern();
+        try {
+            return super.js_split(cx, scope, target, args);
+        }
+        finally {
+            splitRegExp_ = previousRegExp;
+            splitSimplePattern_ = previousSimplePattern;
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -393,6 +445,30 @@ public class HtmlUnitRegExpProxy extends RegExpImpl {
     public int find_split(final Context cx, final Scriptable scope, final String target,
             final String separator, final Scriptable re, final int[] ip, final int[] matchlen,
             final boolean[] matched, final String[][] parensp) {
+        if (re instanceof NativeRegExp) {
+            final SimplePattern simple;
+            if (re == splitRegExp_) {
+                simple = splitSimplePattern_;
+            }
+            else {
+                simple = new RegExpData((NativeRegExp) re).getSimplePattern();
+            }
+            if (simple != null) {
+                // simple patterns never match the empty string, this makes the
+                // contract of find_split easy
+                final SimplePattern.SimpleMatcher matcher = simple.matcher(target, true);
+                parensp[0] = NO_PARENS;
+                if (!matcher.find(ip[0])) {
+                    matchlen[0] = 1;
+                    matched[0] = false;
+                    return target.length();
+                }
+                matched[0] = true;
+                matchlen[0] = matcher.end() - matcher.start();
+                setProperties(matcher, target, matcher.start(), matcher.end());
+                return matcher.start();
+            }
+        }
         return wrapped_.find_split(cx, scope, target, separator, re, ip, matchlen, matched, parensp);
     }
 
@@ -413,31 +489,34 @@ public class HtmlUnitRegExpProxy extends RegExpImpl {
     }
 
     private static class RegExpData {
+        private final String key_;
+        private final String jsSource_;
+        private final String jsFlags_;
         private final boolean global_;
+        private final SimplePattern simplePattern_;
         private Pattern pattern_;
 
         RegExpData(final NativeRegExp re) {
-            final String str = re.toString(); // the form is /regex/flags
-            final String jsSource = StringUtils.substringBeforeLast(str.substring(1), "/");
-            final String jsFlags = StringUtils.substringAfterLast(str, "/");
+            this(re.toString()); // the form is /regex/flags
+        }
 
-            global_ = jsFlags.indexOf('g') != -1;
+        RegExpData(final String str) {
+            key_ = str;
+            jsSource_ = StringUtils.substringBeforeLast(str.substring(1), "/");
+            jsFlags_ = StringUtils.substringAfterLast(str, "/");
 
-            pattern_ = PATTENS.get(str);
-            if (pattern_ == null) {
-                pattern_ = Pattern.compile(jsRegExpToJavaRegExp(jsSource), getJavaFlags(jsFlags));
-                PATTENS.put(str, pattern_);
-            }
+            global_ = jsFlags_.indexOf('g') != -1;
+            simplePattern_ = SIMPLE_PATTERNS.get(key_,
+                key -> Optional.ofNullable(SimplePattern.compile(jsSource_, jsFlags_))).orElse(null);
         }
 
-        RegExpData(final String string) {
-            global_ = false;
-
-            pattern_ = PATTENS.get(string);
-            if (pattern_ == null) {
-                pattern_ = Pattern.compile(jsRegExpToJavaRegExp(string), 0);
-                PATTENS.put(string, pattern_);
-            }
+        /**
+         * Creates the data for a string used as RegExp; this is the same as a RegExp without flags.
+         * @param string the string
+         * @return the data
+         */
+        static RegExpData forString(final String string) {
+            return new RegExpData("/" + string + "/");
         }
 
         /**
@@ -460,8 +539,32 @@ public class HtmlUnitRegExpProxy extends RegExpImpl {
         }
 
         Pattern getPattern() {
+            if (pattern_ == null) {
+                pattern_ = PATTERNS.get(key_,
+                    key -> Pattern.compile(jsRegExpToJavaRegExp(jsSource_), getJavaFlags(jsFlags_)));
+            }
             return pattern_;
         }
+
+        /**
+         * @return the simple pattern or {@code null} if this RegExp requires a real {@link Pattern}
+         */
+        SimplePattern getSimplePattern() {
+            return simplePattern_;
+        }
+
+        /**
+         * Creates a matcher for the given input; uses the {@link SimplePattern} if possible.
+         * The simple pattern uses the Java definition of white spaces to behave like the {@link Pattern}.
+         * @param input the input
+         * @return the matcher
+         */
+        RegExpMatcher matcher(final String input) {
+            if (simplePattern_ != null) {
+                return simplePattern_.matcher(input, false);
+            }
+            return new JavaRegExpMatcher(getPattern().matcher(input));
+        }
     }
 
     /**
@@ -470,8 +573,91 @@ public class HtmlUnitRegExpProxy extends RegExpImpl {
      * @return the transformed expression
      */
     static String jsRegExpToJavaRegExp(final String re) {
-        final RegExpJsToJavaConverter regExpJsToJavaFSM = new RegExpJsToJavaConverter();
-        return regExpJsToJavaFSM.convert(re);
+        return CONVERSIONS.get(re, key -> {
+            final RegExpJsToJavaConverter regExpJsToJavaFSM = new RegExpJsToJavaConverter();
+            return regExpJsToJavaFSM.convert(key);
+        });
+    }
+
+    /**
+     * Returns the cache of the compiled patterns; shared by all instances.
+     * Mainly useful to inspect the statistics.
+     * @return the pattern cache
+     */
+    public static LruCache<String, Pattern> getPatternCache() {
+        return PATTERNS;
+    }
+
+    /**
+     * Returns the cache of the JavaScript to Java RegExp conversions; shared by all instances.
+     * Mainly useful to inspect the statistics.
+     * @return the conversion cache
+     */
+    public static LruCache<String, String> getConversionCache() {
+        return CONVERSIONS;
+    }
+
+    /**
+     * The part of {@link Matcher} used for match, search and replace.
+     */
+    interface RegExpMatcher extends MatchResult {
+
+        /**
+         * Finds the next match.
+         * @return whether a match was found
+         */
+        boolean find();
+    }
+
+    /**
+     * {@link RegExpMatcher} backed by a {@link Matcher}.
+     */
+    private static final class JavaRegExpMatcher implements RegExpMatcher {
+        private final Matcher matcher_;
+
+        JavaRegExpMatcher(final Matcher matcher) {
+            matcher_ = matcher;
+        }
+
+        @Override
+        public boolean find() {
+            return matcher_.find();
+        }
+
+        @Override
+        public int start() {
+            return matcher_.start();
+        }
+
+        @Override
+        public int start(final int group) {
+            return matcher_.start(group);
+        }
+
+        @Override
+        public int end() {
+            return matcher_.end();
+        }
+
+        @Override
+        public int end(final int group) {
+            return matcher_.end(group);
+        }
+
+        @Override
+        public String group() {
+            return matcher_.group();
+        }
+
+        @Override
+        public String group(final int group) {
+            return matcher_.group(group);
+        }
+
+        @Override
+        public int groupCount() {
+            return matcher_.groupCount();
+        }
     }
 
     /**
@@ -0,0 +1,429 @@
+/*
+ * Copyright (c) 2002-2020 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.javascript.regexp;
+
+/**
+ * A JavaScript RegExp simple enough to be matched without {@link java.util.regex.Pattern}.
+ * Two forms are supported:
+ * <ul>
+ *   <li>a literal string like <code>/,/</code> or <code>/\.js/</code>;
+ *   matched using {@link String#indexOf(String)}</li>
+ *   <li>a single character class, optionally followed by <code>+</code>, like <code>/\s+/</code>,
+ *   <code>/[,;]/</code> or <code>/[^a-z0-9_-]+/</code>; matched using a bitset for the ASCII chars</li>
+ * </ul>
+ * Patterns with other flags than <code>g</code> and <code>m</code> are never simple.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+final class SimplePattern {
+
+    private static final String SYNTAX_CHARS = "^$\\.*+?()[]{}|/";
+
+    /** JavaScript white spaces and line terminators outside of the ASCII range. */
+    private static final String JS_NON_ASCII_SPACES = new String(new char[] {
+        0x00A0, 0x1680, 0x2000, 0x2001, 0x2002, 0x2003, 0x2004, 0x2005, 0x2006, 0x2007, 0x2008, 0x2009,
+        0x200A, 0x2028, 0x2029, 0x202F, 0x205F, 0x3000, 0xFEFF});
+
+    private final String literal_;
+
+    private final long low_;
+    private final long high_;
+    private final String nonAscii_;
+    private final boolean space_;
+    private final boolean negated_;
+    private final boolean repeated_;
+
+    private SimplePattern(final String literal) {
+        literal_ = literal;
+        low_ = 0;
+        high_ = 0;
+        nonAscii_ = null;
+        space_ = false;
+        negated_ = false;
+        repeated_ = false;
+    }
+
+    private SimplePattern(final CharClassBuilder builder, final boolean repeated) {
+        literal_ = null;
+        low_ = builder.low_;
+        high_ = builder.high_;
+        nonAscii_ = builder.nonAscii_.toString();
+        space_ = builder.space_;
+        negated_ = builder.negated_;
+        repeated_ = repeated;
+    }
+
+    /**
+     * Analyzes the given JavaScript RegExp.
+     * @param source the source of the RegExp
+     * @param flags the flags of the RegExp
+     * @return the simple pattern or {@code null} if the RegExp is too complex
+     */
+    static SimplePattern compile(final String source, final String flags) {
+        for (int i = 0; i < flags.length(); i++) {
+            final char flag = flags.charAt(i);
+            if (flag != 'g' && flag != 'm') {
+                return null;
+            }
+        }
+
+        final int length = source.length();
+        if (length == 0) {
+            return null;
+        }
+
+        // a single char class, maybe repeated
+        final CharClassBuilder builder = new CharClassBuilder();
+        final int end = builder.parseAtom(source, 0);
+        if (end == length || (end == length - 1 && source.charAt(end) == '+')) {
+            if (!builder.literal_ || end != length) {
+                return new SimplePattern(builder, end != length);
+            }
+        }
+        else if (end < 0) {
+            return null;
+        }
+
+        // a literal
+        final StringBuilder literal = new StringBuilder(length);
+        int pos = 0;
+        while (pos < length) {
+            final char c = source.charAt(pos);
+            if (c == '\\') {
+                if (pos + 1 == length) {
+                    return null;
+                }
+                final char escaped = unescapeLiteral(source.charAt(pos + 1));
+                if (escaped == 0) {
+                    return null;
+                }
+                literal.append(escaped);
+                pos += 2;
+            }
+            else if (SYNTAX_CHARS.indexOf(c) > -1) {
+                return null;
+            }
+            else {
+                literal.append(c);
+                pos++;
+            }
+        }
+        return new SimplePattern(literal.toString());
+    }
+
+    /**
+     * Returns the char an escape sequence stands for if it is a single literal char.
+     * @param c the char following the backslash
+     * @return the char or {@code 0} if this escape is not a literal
+     */
+    static char unescapeLiteral(final char c) {
+        switch (c) {
+            case 't':
+                return '\t';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 'f':
+                return '\f';
+            case 'v':
+                return '\u000B';
+            default:
+                if (c < 128 && !Character.isLetterOrDigit(c) && c != '_') {
+                    return c;
+                }
+                return 0;
+        }
+    }
+
+    /**
+     * Creates a matcher for the given input.
+     * @param input the input
+     * @param jsSpaces if {@code true} <code>\s</code> also matches the non ASCII white spaces
+     *        like in JavaScript; otherwise only the ASCII ones like the Java RegExp
+     * @return the matcher
+     */
+    SimpleMatcher matcher(final String input, final boolean jsSpaces) {
+        return new SimpleMatcher(input, jsSpaces);
+    }
+
+    private boolean matches(final char c, final boolean jsSpaces) {
+        final boolean in;
+        if (c < 64) {
+            in = (low_ & (1L << c)) != 0;
+        }
+        else if (c < 128) {
+            in = (high_ & (1L << (c - 64))) != 0;
+        }
+        else {
+            in = nonAscii_.indexOf(c) > -1 || (space_ && jsSpaces && JS_NON_ASCII_SPACES.indexOf(c) > -1);
+        }
+        return in != negated_;
+    }
+
+    /**
+     * Matches a {@link SimplePattern} against an input string; the counterpart of
+     * {@link java.util.regex.Matcher} without groups.
+     */
+    final class SimpleMatcher implements HtmlUnitRegExpProxy.RegExpMatcher {
+        private final String input_;
+        private final boolean jsSpaces_;
+        private int start_ = -1;
+        private int end_;
+
+        SimpleMatcher(final String input, final boolean jsSpaces) {
+            input_ = input;
+            jsSpaces_ = jsSpaces;
+        }
+
+        /**
+         * Finds the next match, starting at the end of the previous one.
+         * @return whether a match was found
+         */
+        @Override
+        public boolean find() {
+            return find(start_ < 0 ? 0 : end_);
+        }
+
+        /**
+         * Finds the next match starting at the given position.
+         * @param from the start position
+         * @return whether a match was found
+         */
+        boolean find(final int from) {
+            if (literal_ != null) {
+                final int pos = input_.indexOf(literal_, from);
+                if (pos < 0) {
+                    return false;
+                }
+                start_ = pos;
+                end_ = pos + literal_.length();
+                return true;
+            }
+
+            final int length = input_.length();
+            for (int i = from; i < length; i++) {
+                if (matches(input_.charAt(i), jsSpaces_)) {
+                    int end = i + 1;
+                    if (repeated_) {
+                        while (end < length && matches(input_.charAt(end), jsSpaces_)) {
+                            end++;
+                        }
+                    }
+                    start_ = i;
+                    end_ = end;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public int start() {
+            return start_;
+        }
+
+        @Override
+        public int start(final int group) {
+            checkGroup(group);
+            return start_;
+        }
+
+        @Override
+        public int end() {
+            return end_;
+        }
+
+        @Override
+        public int end(final int group) {
+            checkGroup(group);
+            return end_;
+        }
+
+        @Override
+        public String group() {
+            return input_.substring(start_, end_);
+        }
+
+        @Override
+        public String group(final int group) {
+            checkGroup(group);
+            return group();
+        }
+
+        @Override
+        public int groupCount() {
+            return 0;
+        }
+
+        private void checkGroup(final int group) {
+            if (group != 0) {
+                throw new IndexOutOfBoundsException("No group " + group);
+            }
+        }
+    }
+
+    /**
+     * Collects the members of a single char class.
+     */
+    private static final class CharClassBuilder {
+        private long low_;
+        private long high_;
+        private final StringBuilder nonAscii_ = new StringBuilder();
+        private boolean space_;
+        private boolean negated_;
+        private boolean literal_;
+
+        /**
+         * Parses one atom - a char, an escape or a bracket expression.
+         * @return the position after the atom or -1 if the atom is not supported
+         */
+        int parseAtom(final String source, final int start) {
+            final char c = source.charAt(start);
+            if (c == '[') {
+                return parseBracket(source, start + 1);
+            }
+            if (c == '\\') {
+                if (start + 1 == source.length()) {
+                    return -1;
+                }
+                final char next = source.charAt(start + 1);
+                switch (next) {
+                    case 'S':
+                    case 'D':
+                    case 'W':
+                        negated_ = true;
+                        addClassEscape(Character.toLowerCase(next));
+                        return start + 2;
+                    default:
+                        if (addClassEscape(next)) {
+                            return start + 2;
+                        }
+                        final char escaped = unescapeLiteral(next);
+                        if (escaped == 0) {
+                            return -1;
+                        }
+                        add(escaped);
+                        literal_ = true;
+                        return start + 2;
+                }
+            }
+            if (SYNTAX_CHARS.indexOf(c) > -1) {
+                return -1;
+            }
+            add(c);
+            literal_ = true;
+            return start + 1;
+        }
+
+        private int parseBracket(final String source, final int start) {
+            final int length = source.length();
+            int pos = start;
+            if (pos < length && source.charAt(pos) == '^') {
+                negated_ = true;
+                pos++;
+            }
+            if (pos < length && source.charAt(pos) == ']') {
+                // [] and [^] have a special meaning
+                return -1;
+            }
+
+            while (pos < length) {
+                char c = source.charAt(pos);
+                if (c == ']') {
+                    return pos + 1;
+                }
+                if (c == '[') {
+                    return -1;
+                }
+                if (c == '\\') {
+                    if (pos + 1 == length) {
+                        return -1;
+                    }
+                    final char next = source.charAt(pos + 1);
+                    if (addClassEscape(next)) {
+                        pos += 2;
+                        continue;
+                    }
+                    c = unescapeLiteral(next);
+                    if (c == 0) {
+                        return -1;
+                    }
+                    pos++;
+                }
+
+                // range
+                if (pos + 2 < length && source.charAt(pos + 1) == '-' && source.charAt(pos + 2) != ']') {
+                    final char to = source.charAt(pos + 2);
+                    if (to == '\\' || to == '[' || c > to || to >= 128) {
+                        return -1;
+                    }
+                    for (char r = c; r <= to; r++) {
+                        add(r);
+                    }
+                    pos += 3;
+                }
+                else {
+                    add(c);
+                    pos++;
+                }
+            }
+            return -1;
+        }
+
+        private boolean addClassEscape(final char c) {
+            switch (c) {
+                case 's':
+                    add(' ');
+                    add('\t');
+                    add('\n');
+                    add('\u000B');
+                    add('\f');
+                    add('\r');
+                    space_ = true;
+                    return true;
+                case 'd':
+                    addRange('0', '9');
+                    return true;
+                case 'w':
+                    addRange('a', 'z');
+                    addRange('A', 'Z');
+                    addRange('0', '9');
+                    add('_');
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        private void addRange(final char from, final char to) {
+            for (char c = from; c <= to; c++) {
+                add(c);
+            }
+        }
+
+        private void add(final char c) {
+            if (c < 64) {
+                low_ |= 1L << c;
+            }
+            else if (c < 128) {
+                high_ |= 1L << (c - 64);
+            }
+            else if (nonAscii_.indexOf(Character.toString(c)) < 0) {
+                nonAscii_.append(c);
+            }
+        }
+    }
+}
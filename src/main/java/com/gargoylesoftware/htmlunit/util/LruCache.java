@@ -0,0 +1,283 @@
+/*
+ * Copyright (c) 2002-2020 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.ToIntBiFunction;
+
+/**
+ * A thread safe cache with a bounded total weight that evicts the least recently used entries.
+ *
+ * <p>The cache is split into segments, each guarded by its own lock, so that concurrent lookups of
+ * different keys rarely contend. Every segment gets an equal share of the maximum weight; the weight
+ * of an entry is computed once, when it is added.</p>
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the cached values
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public class LruCache<K, V> {
+
+    private static final int SEGMENT_COUNT = 16;
+
+    private final Segment<K, V>[] segments_;
+    private final ToIntBiFunction<K, V> weigher_;
+
+    private final AtomicLong hitCount_ = new AtomicLong();
+    private final AtomicLong missCount_ = new AtomicLong();
+    private final AtomicLong evictionCount_ = new AtomicLong();
+
+    /**
+     * Creates a new cache where every entry has the weight 1, so the maximum weight is the
+     * maximum number of entries.
+     * @param maxSize the maximum number of entries
+     */
+    public LruCache(final int maxSize) {
+        this(maxSize, (key, value) -> 1);
+    }
+
+    /**
+     * Creates a new cache.
+     * @param maxWeight the maximum total weight of all entries
+     * @param weigher computes the weight of an entry, must not return a negative value
+     */
+    @SuppressWarnings("unchecked")
+    public LruCache(final long maxWeight, final ToIntBiFunction<K, V> weigher) {
+        if (maxWeight <= 0) {
+            throw new IllegalArgumentException("maxWeight must be positive (" + maxWeight + ")");
+        }
+        weigher_ = weigher;
+
+        final int count = (int) Math.min(SEGMENT_COUNT, maxWeight);
+        final long segmentWeight = Math.max(1, maxWeight / count);
+        segments_ = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            segments_[i] = new Segment<>(segmentWeight);
+        }
+    }
+
+    /**
+     * Returns the cached value for the specified key.
+     * @param key the key
+     * @return the value or {@code null} if not cached
+     */
+    public V get(final K key) {
+        final V value = segmentFor(key).get(key);
+        if (value == null) {
+            missCount_.incrementAndGet();
+        }
+        else {
+            hitCount_.incrementAndGet();
+        }
+        return value;
+    }
+
+    /**
+     * Returns the cached value for the specified key, computing and caching it if not already present.
+     * The value is computed outside of any lock, so it may happen that two threads compute the value
+     * for the same key at the same time; the result of the last one wins.
+     * @param key the key
+     * @param loader computes the value; if it returns {@code null} nothing is cached
+     * @return the cached or the computed value
+     */
+    public V get(final K key, final Function<? super K, ? extends V> loader) {
+        V value = get(key);
+        if (value == null) {
+            value = loader.apply(key);
+            if (value != null) {
+                put(key, value);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Adds the specified entry to the cache, evicting least recently used entries if required.
+     * Entries heavier than the share of a segment are not cached at all.
+     * @param key the key
+     * @param value the value
+     */
+    public void put(final K key, final V value) {
+        final int weight = weigher_.applyAsInt(key, value);
+        evictionCount_.addAndGet(segmentFor(key).put(key, value, weight));
+    }
+
+    /**
+     * Removes the entry for the specified key.
+     * @param key the key
+     */
+    public void remove(final K key) {
+        segmentFor(key).remove(key);
+    }
+
+    /**
+     * Removes all entries; the statistics are not reset.
+     */
+    public void clear() {
+        for (final Segment<K, V> segment : segments_) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * @return the number of entries
+     */
+    public int size() {
+        int size = 0;
+        for (final Segment<K, V> segment : segments_) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * @return the total weight of all entries
+     */
+    public long getWeight() {
+        long weight = 0;
+        for (final Segment<K, V> segment : segments_) {
+            weight += segment.weight();
+        }
+        return weight;
+    }
+
+    /**
+     * @return the number of lookups that found a cached value
+     */
+    public long getHitCount() {
+        return hitCount_.get();
+    }
+
+    /**
+     * @return the number of lookups that found no cached value
+     */
+    public long getMissCount() {
+        return missCount_.get();
+    }
+
+    /**
+     * @return the number of entries evicted because the cache was full
+     */
+    public long getEvictionCount() {
+        return evictionCount_.get();
+    }
+
+    /**
+     * @return the ratio of lookups that found a cached value, {@code 1.0} if there was no lookup so far
+     */
+    public double getHitRate() {
+        final long hits = hitCount_.get();
+        final long total = hits + missCount_.get();
+        if (total == 0) {
+            return 1.0;
+        }
+        return (double) hits / total;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[size=" + size() + ", weight=" + getWeight()
+                + ", hits=" + getHitCount() + ", misses=" + getMissCount()
+                + ", evictions=" + getEvictionCount() + "]";
+    }
+
+    private Segment<K, V> segmentFor(final K key) {
+        int hash = key.hashCode();
+        // spread the bits, the low ones of string hashes are not that well distributed
+        hash ^= hash >>> 16;
+        return segments_[(hash & Integer.MAX_VALUE) % segments_.length];
+    }
+
+    /**
+     * One part of the cache, guarded by its own lock.
+     */
+    private static final class Segment<K, V> {
+        private final long maxWeight_;
+        private final LinkedHashMap<K, Entry<V>> entries_ = new LinkedHashMap<>(16, 0.75f, true);
+        private long weight_;
+
+        Segment(final long maxWeight) {
+            maxWeight_ = maxWeight;
+        }
+
+        synchronized V get(final K key) {
+            final Entry<V> entry = entries_.get(key);
+            if (entry == null) {
+                return null;
+            }
+            return entry.value_;
+        }
+
+        synchronized int put(final K key, final V value, final int weight) {
+            final Entry<V> old = entries_.remove(key);
+            if (old != null) {
+                weight_ -= old.weight_;
+            }
+            if (weight > maxWeight_) {
+                return 0;
+            }
+
+            entries_.put(key, new Entry<>(value, weight));
+            weight_ += weight;
+
+            int evicted = 0;
+            final Iterator<Map.Entry<K, Entry<V>>> iterator = entries_.entrySet().iterator();
+            while (weight_ > maxWeight_ && iterator.hasNext()) {
+                weight_ -= iterator.next().getValue().weight_;
+                iterator.remove();
+                evicted++;
+            }
+            return evicted;
+        }
+
+        synchronized void remove(final K key) {
+            final Entry<V> old = entries_.remove(key);
+            if (old != null) {
+                weight_ -= old.weight_;
+            }
+        }
+
+        synchronized void clear() {
+            entries_.clear();
+            weight_ = 0;
+        }
+
+        synchronized int size() {
+            return entries_.size();
+        }
+
+        synchronized long weight() {
+            return weight_;
+        }
+    }
+
+    private static final class Entry<V> {
+        private final V value_;
+        private final int weight_;
+
+        Entry(final V value, final int weight) {
+            value_ = value;
+            weight_ = weight;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2002-2020 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit;
+
+import java.io.IOException;
+import java.net.URL;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.gargoylesoftware.htmlunit.html.HtmlPage;
+import com.gargoylesoftware.htmlunit.util.MimeType;
+import com.gargoylesoftware.htmlunit.util.WebConnectionWrapper;
+
+/**
+ * Tests for {@link NetworkActivityTracker}.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+@RunWith(BrowserRunner.class)
+public class NetworkActivityTrackerTest extends SimpleWebTestCase {
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void asyncXMLHttpRequest() throws Exception {
+        final String html = "<html><head><script>\n"
+            + "  var xhr = new XMLHttpRequest();\n"
+            + "  xhr.open('GET', 'slow.txt', true);\n"
+            + "  xhr.send();\n"
+            + "</script></head><body></body></html>";
+
+        final WebClient client = getWebClientWithMockWebConnection();
+        final URL slowUrl = new URL(URL_FIRST, "slow.txt");
+        getMockWebConnection().setResponse(URL_FIRST, html);
+        getMockWebConnection().setResponse(slowUrl, "slow", MimeType.TEXT_PLAIN);
+
+        final CountDownLatch release = new CountDownLatch(1);
+        new WebConnectionWrapper(client) {
+            @Override
+            public WebResponse getResponse(final WebRequest request) throws IOException {
+                if (slowUrl.equals(request.getUrl())) {
+                    try {
+                        release.await(10, TimeUnit.SECONDS);
+                    }
+                    catch (final InterruptedException e) {
+                        throw new IOException(e);
+                    }
+                }
+                return super.getResponse(request);
+            }
+        };
+
+        final NetworkActivityTracker tracker = client.getNetworkActivityTracker();
+        final HtmlPage page = client.getPage(URL_FIRST);
+        final WebWindow window = page.getEnclosingWindow();
+
+        final long end = System.currentTimeMillis() + 5_000;
+        while (tracker.getInFlightRequestCount(window) == 0 && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, tracker.getInFlightRequestCount(window));
+        assertEquals(1, tracker.getInFlightRequestCount());
+
+        final CompletableFuture<Void> idle = tracker.whenNetworkIdle(window);
+        assertFalse(idle.isDone());
+
+        release.countDown();
+        idle.get(5, TimeUnit.SECONDS);
+        assertEquals(0, tracker.getInFlightRequestCount(window));
+        assertEquals(0, tracker.getInFlightRequestCount());
+        assertEquals(2L, tracker.getStartedRequestCount());
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void frameRequestsCountForTopWindow() throws Exception {
+        final String html = "<html><body>\n"
+            + "  <iframe src='frame.html'></iframe>\n"
+            + "</body></html>";
+        final String frame = "<html><body>frame</body></html>";
+
+        final WebClient client = getWebClientWithMockWebConnection();
+        getMockWebConnection().setResponse(URL_FIRST, html);
+        getMockWebConnection().setResponse(new URL(URL_FIRST, "frame.html"), frame);
+
+        final NetworkActivityTracker tracker = client.getNetworkActivityTracker();
+        final HtmlPage page = client.getPage(URL_FIRST);
+        assertEquals(2L, tracker.getStartedRequestCount());
+        assertEquals(0, tracker.getInFlightRequestCount(page.getEnclosingWindow()));
+        assertTrue(tracker.whenNetworkIdle(page.getEnclosingWindow()).isDone());
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void whenNetworkIdleFor() throws Exception {
+        final WebClient client = getWebClientWithMockWebConnection();
+        getMockWebConnection().setResponse(URL_FIRST, "<html><body></body></html>");
+        getMockWebConnection().setResponse(URL_SECOND, "<html><body></body></html>");
+
+        final NetworkActivityTracker tracker = client.getNetworkActivityTracker();
+        client.getPage(URL_FIRST);
+
+        final CompletableFuture<Void> idle = tracker.whenNetworkIdleFor(null, Duration.ofMillis(300));
+        Thread.sleep(100);
+        // a new request restarts the quiet period
+        client.getPage(URL_SECOND);
+        final long start = System.currentTimeMillis();
+
+        idle.get(5, TimeUnit.SECONDS);
+        assertTrue(System.currentTimeMillis() - start >= 150);
+    }
+}
@@ -36,6 +36,9 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
@@ -2553,4 +2556,51 @@ public class WebClientTest extends SimpleWebTestCase {
         client.getPage(URL_FIRST);
         assertEquals(new String[]{"true"}, actual);
     }
+
+    /**
+     * The background I/O executor has a bounded number of threads and waiting tasks
+     * and rejects all tasks once the client is closed.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void backgroundIoExecutorBounded() throws Exception {
+        try (WebClient client = new WebClient(getBrowserVersion())) {
+            final Executor executor = client.getBackgroundIoExecutor();
+            assertSame(executor, client.getBackgroundIoExecutor());
+
+            final CountDownLatch release = new CountDownLatch(1);
+            final Runnable blocking = () -> {
+                try {
+                    release.await();
+                }
+                catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            };
+            int accepted = 0;
+            try {
+                while (accepted < 10_000) {
+                    executor.execute(blocking);
+                    accepted++;
+                }
+                fail("RejectedExecutionException expected");
+            }
+            catch (final RejectedExecutionException e) {
+                // expected, 6 running and 256 waiting
+            }
+            finally {
+                release.countDown();
+            }
+            assertEquals(6 + 256, accepted);
+
+            client.close();
+            try {
+                client.getBackgroundIoExecutor().execute(() -> { });
+                fail("RejectedExecutionException expected");
+            }
+            catch (final RejectedExecutionException e) {
+                // expected
+            }
+        }
+    }
 }
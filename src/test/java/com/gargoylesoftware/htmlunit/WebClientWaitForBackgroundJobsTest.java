@@ -16,9 +16,12 @@ package com.gargoylesoftware.htmlunit;
 
 import java.io.IOException;
 import java.net.URL;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -599,6 +602,54 @@ public class WebClientWaitForBackgroundJobsTest extends SimpleWebTestCase {
         final HtmlPage page = (HtmlPage) client.getCurrentWindow().getEnclosedPage();
         assertEquals("page 4", page.getTitleText());
     }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void whenJavaScriptIdle() throws Exception {
+        final String html = "<html><head><script>\n"
+            + "  setTimeout(function() {\n"
+            + "    alert('first');\n"
+            + "    setTimeout(function() { alert('second'); }, 100);\n"
+            + "  }, 100);\n"
+            + "</script></head><body></body></html>";
+
+        final List<String> collectedAlerts = Collections.synchronizedList(new ArrayList<String>());
+        loadPage(html, collectedAlerts);
+
+        final CompletableFuture<Void> idle = getWebClient().whenJavaScriptIdle();
+        assertFalse(idle.isDone());
+        idle.get(10, TimeUnit.SECONDS);
+        assertEquals(new String[] {"first", "second"}, collectedAlerts);
+
+        assertTrue(getWebClient().whenJavaScriptIdle().isDone());
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void whenIdleFor() throws Exception {
+        final String html = "<html><head><script>\n"
+            + "  setTimeout(function() { alert('first'); }, 10);\n"
+            + "</script></head><body></body></html>";
+
+        final List<String> collectedAlerts = Collections.synchronizedList(new ArrayList<String>());
+        final HtmlPage page = loadPage(html, collectedAlerts);
+
+        final CompletableFuture<Void> idle = getWebClient().whenIdleFor(Duration.ofMillis(300));
+        getWebClient().whenJavaScriptIdle().get(10, TimeUnit.SECONDS);
+        Thread.sleep(100);
+        // a new job restarts the quiet period
+        page.executeJavaScript("setTimeout(function() { alert('second'); }, 10);");
+        getWebClient().whenJavaScriptIdle().get(10, TimeUnit.SECONDS);
+
+        final long start = System.currentTimeMillis();
+        idle.get(10, TimeUnit.SECONDS);
+        assertTrue(System.currentTimeMillis() - start >= 150);
+        assertEquals(new String[] {"first", "second"}, collectedAlerts);
+    }
 }
 
 /**
@@ -16,13 +16,18 @@ package com.gargoylesoftware.htmlunit.html;
 
 import static org.junit.Assert.fail;
 
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.w3c.dom.Node;
 import org.xml.sax.helpers.AttributesImpl;
 
+import com.gargoylesoftware.css.parser.CSSException;
 import com.gargoylesoftware.htmlunit.BrowserRunner;
 import com.gargoylesoftware.htmlunit.BrowserRunner.Alerts;
 import com.gargoylesoftware.htmlunit.ElementNotFoundException;
@@ -884,4 +889,377 @@ public class DomNodeTest extends SimpleWebTestCase {
         assertTrue(elem1.isDisplayed());
         assertTrue(elem2.isDisplayed());
     }
+
+    /**
+     * The parsed selectors are cached, invalid selectors are still reported every time.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void selectorListCached() throws Exception {
+        final String content = "<html><head></head><body>\n"
+            + "<div id='d1' class='foo'></div><div id='d2'></div>\n"
+            + "</body></html>";
+        final HtmlPage page = loadPage(content);
+        final DomElement body = page.getBody();
+
+        assertSame(body.getSelectorList("div.foo, #d2", getBrowserVersion()),
+                page.getSelectorList("div.foo, #d2", getBrowserVersion()));
+        assertEquals(2, page.querySelectorAll("div.foo, #d2").size());
+        assertEquals("d1", page.<DomElement>querySelector("div.foo").getId());
+        assertTrue(page.getHtmlElementById("d1").matches("div.foo"));
+        assertFalse(page.getHtmlElementById("d2").matches("div.foo"));
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                page.querySelectorAll("div[");
+                fail("CSSException expected");
+            }
+            catch (final CSSException e) {
+                // expected
+            }
+        }
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void querySelectorIterator() throws Exception {
+        final String content = "<html><head></head><body>\n"
+            + "<div id='d1' class='item'><span id='s1' class='item'></span></div>\n"
+            + "<div id='d2'></div>\n"
+            + "<p id='p1' class='item'></p>\n"
+            + "</body></html>";
+        final HtmlPage page = loadPage(content);
+
+        assertEquals("d1", page.<DomElement>querySelector(".item").getId());
+        assertEquals("s1", page.getHtmlElementById("d1").<DomElement>querySelector(".item").getId());
+        assertNull(page.querySelector(".unknown"));
+
+        final Iterator<DomElement> iterator = page.querySelectorIterator(".item");
+        assertEquals("d1", iterator.next().getId());
+
+        // the remaining part of the tree is matched while iterating
+        final DomElement added = page.createElement("div");
+        added.setAttribute("id", "d3");
+        added.setAttribute("class", "item");
+        page.getBody().appendChild(added);
+
+        assertTrue(iterator.hasNext());
+        assertEquals("s1", iterator.next().getId());
+        assertEquals("p1", iterator.next().getId());
+        assertEquals("d3", iterator.next().getId());
+        assertFalse(iterator.hasNext());
+        try {
+            iterator.next();
+            fail("NoSuchElementException expected");
+        }
+        catch (final NoSuchElementException e) {
+            // expected
+        }
+
+        try {
+            page.querySelectorIterator("div[");
+            fail("CSSException expected");
+        }
+        catch (final CSSException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Sibling indexes and the document order on a wide sibling list.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void documentOrderWideSiblingList() throws Exception {
+        final int count = 10_000;
+        final StringBuilder html = new StringBuilder("<html><body><table><tbody id='rows'>");
+        for (int i = 0; i < count; i++) {
+            html.append("<tr><td>").append(i).append("</td></tr>");
+        }
+        html.append("</tbody></table></body></html>");
+
+        final HtmlPage page = loadPage(html.toString());
+        final DomNode tbody = page.getElementById("rows");
+        final List<DomNode> rows = new ArrayList<>();
+        for (final DomNode row : tbody.getChildren()) {
+            rows.add(row);
+        }
+        assertEquals(count, rows.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, rows.get(i).getIndex());
+        }
+        for (int i = 1; i < count; i++) {
+            assertTrue(rows.get(i - 1).compareDocumentOrder(rows.get(i)) < 0);
+            assertTrue(rows.get(i).compareDocumentOrder(rows.get(i - 1).getFirstChild()) > 0);
+        }
+        assertEquals(Node.DOCUMENT_POSITION_CONTAINED_BY | Node.DOCUMENT_POSITION_FOLLOWING,
+                tbody.compareDocumentPosition(rows.get(5).getFirstChild()));
+        assertEquals(Node.DOCUMENT_POSITION_CONTAINS | Node.DOCUMENT_POSITION_PRECEDING,
+                rows.get(5).compareDocumentPosition(tbody));
+        assertEquals(Node.DOCUMENT_POSITION_PRECEDING, rows.get(5).compareDocumentPosition(rows.get(4)));
+        assertEquals(1, page.getDocumentOrder().getRenumberCount());
+
+        // insertions in the middle and at the end get labels in between, no renumbering
+        final DomNode middle = rows.get(count / 2);
+        final DomNode inserted = rows.get(0).cloneNode(true);
+        middle.insertBefore(inserted);
+        final DomNode appended = rows.get(0).cloneNode(true);
+        tbody.appendChild(appended);
+        assertTrue(rows.get(count / 2 - 1).compareDocumentOrder(inserted) < 0);
+        assertTrue(inserted.getFirstChild().compareDocumentOrder(middle) < 0);
+        assertTrue(rows.get(count - 1).compareDocumentOrder(appended) < 0);
+        assertEquals(1, page.getDocumentOrder().getRenumberCount());
+
+        assertEquals(count / 2, inserted.getIndex());
+        assertEquals(count / 2 + 1, middle.getIndex());
+        assertEquals(count + 1, appended.getIndex());
+
+        // removals keep the order
+        rows.get(0).remove();
+        assertEquals(0, rows.get(1).getIndex());
+        assertEquals(count, appended.getIndex());
+        assertTrue(rows.get(1).compareDocumentOrder(appended) < 0);
+        assertEquals(1, page.getDocumentOrder().getRenumberCount());
+
+        // repeated insertions at the same place relabel a range around it, no renumbering
+        final DomNode before = rows.get(count / 4);
+        final DomNode after = rows.get(count / 4 + 1);
+        final List<DomNode> insertedRows = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            final DomNode row = rows.get(1).cloneNode(true);
+            after.insertBefore(row);
+            insertedRows.add(row);
+        }
+        assertEquals(1, page.getDocumentOrder().getRenumberCount());
+        assertTrue(page.getDocumentOrder().getRelabelCount() > 0);
+        assertTrue(before.compareDocumentOrder(insertedRows.get(0)) < 0);
+        for (int i = 1; i < insertedRows.size(); i++) {
+            assertTrue(insertedRows.get(i - 1).getFirstChild().compareDocumentOrder(insertedRows.get(i)) < 0);
+        }
+        assertTrue(insertedRows.get(insertedRows.size() - 1).compareDocumentOrder(after) < 0);
+        for (int i = 2; i < count; i++) {
+            assertTrue(rows.get(i - 1).compareDocumentOrder(rows.get(i)) < 0);
+        }
+        assertEquals(1, page.getDocumentOrder().getRenumberCount());
+    }
+
+    /**
+     * Many insertions at the same place, each followed by a comparison, relabel small ranges
+     * and never renumber the whole document.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void documentOrderRepeatedInsertions() throws Exception {
+        final int count = 10_000;
+        final StringBuilder html = new StringBuilder("<html><body><div id='rows'>");
+        for (int i = 0; i < count; i++) {
+            html.append("<p>").append(i).append("</p>");
+        }
+        html.append("</div></body></html>");
+
+        final HtmlPage page = loadPage(html.toString());
+        final DomNode rows = page.getElementById("rows");
+        final DomNode first = rows.getFirstChild();
+        final DomNode after = first.getNextSibling();
+
+        final List<DomNode> inserted = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            final DomNode node = first.cloneNode(true);
+            after.insertBefore(node);
+            inserted.add(node);
+            assertTrue(node.compareDocumentOrder(after) < 0);
+        }
+
+        final DocumentOrder order = page.getDocumentOrder();
+        assertEquals(1, order.getRenumberCount());
+        // the relabeled ranges grow, so there are far less relabels than insertions
+        assertTrue(order.getRelabelCount() > 0);
+        assertTrue("relabels: " + order.getRelabelCount(), order.getRelabelCount() < count / 4);
+
+        assertTrue(first.compareDocumentOrder(inserted.get(0)) < 0);
+        for (int i = 1; i < count; i++) {
+            assertTrue(inserted.get(i - 1).compareDocumentOrder(inserted.get(i)) < 0);
+        }
+        assertTrue(inserted.get(count - 1).compareDocumentOrder(rows.getLastChild()) < 0);
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void subtreeVersions() throws Exception {
+        final String html = "<html><body><div id='outer'><div id='inner'></div></div><p id='other'></p></body></html>";
+        final HtmlPage page = loadPage(html);
+        final DomElement outer = page.getElementById("outer");
+        final DomElement inner = page.getElementById("inner");
+        final DomElement other = page.getElementById("other");
+
+        int pageVersion = page.getSubtreeVersion();
+        int outerVersion = outer.getSubtreeVersion();
+        final int otherVersion = other.getSubtreeVersion();
+        final DomElement span = page.createElement("span");
+        inner.appendChild(span);
+        assertTrue(page.getSubtreeVersion() != pageVersion);
+        assertTrue(outer.getSubtreeVersion() != outerVersion);
+        assertEquals(otherVersion, other.getSubtreeVersion());
+
+        // the removed subtree changes too
+        int innerVersion = inner.getSubtreeVersion();
+        outerVersion = outer.getSubtreeVersion();
+        inner.remove();
+        assertTrue(inner.getSubtreeVersion() != innerVersion);
+        assertTrue(outer.getSubtreeVersion() != outerVersion);
+
+        // changes of a detached subtree do not reach the page
+        pageVersion = page.getSubtreeVersion();
+        innerVersion = inner.getSubtreeVersion();
+        span.remove();
+        assertTrue(inner.getSubtreeVersion() != innerVersion);
+        assertEquals(pageVersion, page.getSubtreeVersion());
+
+        // attribute changes only change the attributes version
+        pageVersion = page.getSubtreeVersion();
+        final int pageAttributesVersion = page.getSubtreeAttributesVersion();
+        final int otherAttributesVersion = other.getSubtreeAttributesVersion();
+        outer.setAttribute("class", "foo");
+        assertEquals(pageVersion, page.getSubtreeVersion());
+        assertTrue(page.getSubtreeAttributesVersion() != pageAttributesVersion);
+        assertEquals(otherAttributesVersion, other.getSubtreeAttributesVersion());
+
+        final int outerAttributesVersion = outer.getSubtreeAttributesVersion();
+        outer.getAttributeNode("class").setValue("bar");
+        assertTrue(outer.getSubtreeAttributesVersion() != outerAttributesVersion);
+
+        // removing a missing attribute changes nothing
+        final DomElement xml = page.createElementNS("http://example.com", "x:item");
+        outer.appendChild(xml);
+        final int xmlAttributesVersion = xml.getSubtreeAttributesVersion();
+        xml.removeAttribute("unknown");
+        assertEquals(xmlAttributesVersion, xml.getSubtreeAttributesVersion());
+        xml.setAttribute("known", "x");
+        xml.removeAttribute("known");
+        assertTrue(xml.getSubtreeAttributesVersion() != xmlAttributesVersion);
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void sourcePositions() throws Exception {
+        final String html = "<html><body>\n<div id='d'>\n<span id='s'>x</span></div>\n</body></html>";
+
+        HtmlPage page = loadPage(html);
+        DomElement div = page.getElementById("d");
+        assertEquals(2, div.getStartLineNumber());
+        assertEquals(13, div.getStartColumnNumber());
+        assertEquals(3, div.getEndLineNumber());
+        assertEquals(28, div.getEndColumnNumber());
+        // the locations are no rare data
+        for (final DomElement element : page.getDocumentElement().getDomElementDescendants()) {
+            assertNull(element.getRareDataOrNull());
+        }
+        final DomNode clone = div.cloneNode(false);
+        assertEquals(2, clone.getStartLineNumber());
+        assertEquals(28, clone.getEndColumnNumber());
+        assertEquals(-1, page.createElement("div").getStartLineNumber());
+        assertEquals(-1, page.createElement("div").getEndLineNumber());
+
+        getWebClient().getOptions().setSourcePositionsEnabled(false);
+        page = loadPage(html);
+        div = page.getElementById("d");
+        assertEquals(-1, div.getStartLineNumber());
+        assertEquals(-1, div.getStartColumnNumber());
+        assertEquals(-1, div.getEndLineNumber());
+        assertEquals(-1, div.getEndColumnNumber());
+        assertNull(div.getRareDataOrNull());
+        assertTrue(div.isCreatedByParser());
+        assertFalse(page.createElement("div").isCreatedByParser());
+    }
+
+    /**
+     * Setting the source locations of a node allocates nothing, they are stored in the node itself.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void sourceLocationsHeap() throws Exception {
+        final HtmlPage page = loadPage("<html><body></body></html>");
+        final DomNode[] nodes = new DomNode[10_000];
+
+        // warm up both paths first
+        allocatedBytes(page, nodes, false);
+        allocatedBytes(page, nodes, true);
+
+        final long plain = allocatedBytes(page, nodes, false);
+        final long located = allocatedBytes(page, nodes, true);
+        assertTrue("located: " + located + ", plain: " + plain, located - plain < nodes.length);
+        assertEquals(7, nodes[7].getStartLineNumber());
+        assertNull(nodes[7].getRareDataOrNull());
+    }
+
+    private static long allocatedBytes(final HtmlPage page, final DomNode[] nodes, final boolean located) {
+        final com.sun.management.ThreadMXBean bean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long threadId = Thread.currentThread().getId();
+        final long start = bean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < nodes.length; i++) {
+            final DomNode node = new DomComment(page, "x");
+            if (located) {
+                node.setStartLocation(i, 1);
+                node.setEndLocation(i, 9);
+            }
+            nodes[i] = node;
+        }
+        return bean.getThreadAllocatedBytes(threadId) - start;
+    }
+
+    /**
+     * The rarely used parts of a node are allocated on first use and copied when cloning.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void rareData() throws Exception {
+        final HtmlPage page = loadPage("<html><body><div id='d'></div></body></html>");
+        final HtmlElement div = (HtmlElement) page.createElement("div");
+        assertNull(div.getRareDataOrNull());
+        assertEquals(DomNode.READY_STATE_LOADING, div.getReadyState());
+        assertNull(div.getUserData("key"));
+        assertNull(div.getRareDataOrNull());
+
+        final List<String> events = new ArrayList<>();
+        div.addHtmlAttributeChangeListener(new HtmlAttributeChangeListener() {
+            @Override
+            public void attributeAdded(final HtmlAttributeChangeEvent event) {
+                events.add("added " + event.getName());
+            }
+
+            @Override
+            public void attributeRemoved(final HtmlAttributeChangeEvent event) {
+                events.add("removed " + event.getName());
+            }
+
+            @Override
+            public void attributeReplaced(final HtmlAttributeChangeEvent event) {
+                events.add("replaced " + event.getName());
+            }
+        });
+        div.setReadyState(DomNode.READY_STATE_COMPLETE);
+        div.setUserData("key", "value", null);
+        assertNotNull(div.getRareDataOrNull());
+
+        final HtmlElement clone = (HtmlElement) div.cloneNode(false);
+        assertNotSame(div.getRareDataOrNull(), clone.getRareDataOrNull());
+        assertEquals(DomNode.READY_STATE_COMPLETE, clone.getReadyState());
+        assertEquals("value", clone.getUserData("key"));
+
+        clone.setUserData("key", "other", null);
+        assertEquals("value", div.getUserData("key"));
+
+        page.getBody().appendChild(clone);
+        clone.setAttribute("title", "a");
+        clone.setAttribute("title", "b");
+        clone.removeAttribute("title");
+        assertEquals(new String[] {"added title", "replaced title", "removed title"}, events);
+    }
 }
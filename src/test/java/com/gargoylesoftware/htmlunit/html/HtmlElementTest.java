@@ -548,6 +548,33 @@ public class HtmlElementTest extends SimpleWebTestCase {
         }
     }
 
+    /**
+     * The listeners are called on a copy, they may remove themselves while notified.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void htmlAttributeChangeListener_RemoveWhileNotified() throws Exception {
+        final HtmlPage page = loadPage("<html><body><p id='p1'></p></body></html>");
+        final HtmlElement p1 = page.getHtmlElementById("p1");
+
+        final HtmlAttributeChangeListenerTestImpl first = new HtmlAttributeChangeListenerTestImpl() {
+            @Override
+            public void attributeAdded(final HtmlAttributeChangeEvent event) {
+                super.attributeAdded(event);
+                p1.removeHtmlAttributeChangeListener(this);
+            }
+        };
+        final HtmlAttributeChangeListenerTestImpl second = new HtmlAttributeChangeListenerTestImpl();
+        p1.addHtmlAttributeChangeListener(first);
+        p1.addHtmlAttributeChangeListener(second);
+
+        p1.setAttribute("title", "a");
+        p1.setAttribute("lang", "en");
+        assertEquals(new String[] {"attributeAdded: p,title,a"}, first.getCollectedValues());
+        assertEquals(new String[] {"attributeAdded: p,title,a", "attributeAdded: p,lang,en"},
+                second.getCollectedValues());
+    }
+
     /**
      * @throws Exception if the test fails
      */
@@ -1202,4 +1229,46 @@ public class HtmlElementTest extends SimpleWebTestCase {
         assertTrue(page.getElementById("d1").isDisplayed());
         assertEquals(Boolean.parseBoolean(getExpectedAlerts()[0]), page.getElementById("d2").isDisplayed());
     }
+
+    /**
+     * Attribute values are stored as is, the attribute nodes are created only when asked for.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void attributeNodesCreatedLazily() throws Exception {
+        final String html = "<html><body><div id='d' class='' title='t'></div></body></html>";
+        final HtmlPage page = loadPage(html);
+        final HtmlElement div = page.getHtmlElementById("d");
+        final NamedAttrNodeMapImpl map = (NamedAttrNodeMapImpl) div.getAttributesMap();
+
+        assertEquals("t", div.getAttribute("TITLE"));
+        assertSame(DomElement.ATTRIBUTE_VALUE_EMPTY, div.getAttribute("class"));
+        assertSame(DomElement.ATTRIBUTE_NOT_DEFINED, div.getAttribute("lang"));
+        assertTrue(div.asXml().startsWith("<div id=\"d\" class=\"\" title=\"t\">"));
+        for (int i = 0; i < map.size(); i++) {
+            assertNull(map.getCreatedAttr(i));
+        }
+
+        final DomAttr title = div.getAttributeNode("title");
+        assertSame(title, map.getCreatedAttr(2));
+        assertSame(title, div.getAttributes().item(2));
+        assertSame(div, title.getOwnerElement());
+        title.setValue("changed");
+        assertEquals("changed", div.getAttribute("title"));
+
+        div.setAttribute("title", "again");
+        assertNull(map.getCreatedAttr(2));
+        assertEquals("again", div.getAttribute("title"));
+        assertEquals("changed", title.getValue());
+
+        final HtmlElement clone = (HtmlElement) div.cloneNode(false);
+        clone.setAttribute("id", "clone");
+        assertEquals("d", div.getId());
+
+        div.removeAttribute("id");
+        assertEquals(2, map.size());
+        assertEquals("class", map.getName(0));
+        assertEquals("again", map.getValue(1));
+        assertEquals("clone", clone.getId());
+    }
 }
@@ -1049,6 +1049,34 @@ public class HtmlPageTest extends SimpleWebTestCase {
         assertEquals(1, page.getElementsById("a").size());
     }
 
+    /**
+     * @exception Exception if the test fails
+     */
+    @Test
+    public void getElementsById_duplicatesInDocumentOrder() throws Exception {
+        final String html = "<html><body><div id='a' title='1'></div><p id='a' title='2'></p>"
+                + "<span id='a' title='3'></span></body></html>";
+        // without JavaScript the page is not synchronized
+        for (final boolean javaScript : new boolean[] {true, false}) {
+            getWebClient().getOptions().setJavaScriptEnabled(javaScript);
+            final HtmlPage page = loadPage(html);
+            assertEquals("1", page.getElementById("a").getAttribute("title"));
+
+            // moved to the front
+            final DomElement span = page.getElementsById("a").get(2);
+            page.getBody().insertBefore(span, page.getBody().getFirstChild());
+            assertEquals("3", page.getElementById("a").getAttribute("title"));
+            assertEquals(3, page.getElementsById("a").size());
+
+            span.remove();
+            page.getElementById("a").setAttribute("id", "b");
+            assertEquals("2", page.getElementById("a").getAttribute("title"));
+            assertEquals(1, page.getElementsById("a").size());
+            assertEquals("1", page.getElementById("b").getAttribute("title"));
+            assertEquals(1, page.getElementsByIdAndOrName("b").size());
+        }
+    }
+
     /**
      * @exception Exception if the test fails
      */
@@ -1944,4 +1972,94 @@ public class HtmlPageTest extends SimpleWebTestCase {
         page = loadPage(getBrowserVersion(), html, null, new URL(URL_FIRST.toString() + path));
         assertEquals(URL_FIRST.toExternalForm() + path, page.getBaseURL().toExternalForm());
     }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void classNameAndTagNameIndexes() throws Exception {
+        final String html = "<html><head></head><body>\n"
+                + "<div id='d1' class='a b'></div>\n"
+                + "<div id='d2'><span id='s1' class='a'></span></div>\n"
+                + "<p id='p1' class='b  a'></p>\n"
+                + "</body></html>";
+
+        final HtmlPage page = loadPage(html);
+        assertEquals("d1 s1 p1", ids(page.getIndexedElementsByClassName(page, "a")));
+        assertEquals("d1 d2", ids(page.getIndexedElementsByTagName(page, "div")));
+        assertNull(page.getIndexedElementsByClassName(page, "a b"));
+        assertNull(page.getIndexedElementsByTagName(page.getElementById("d2"), "span"));
+
+        // class changes
+        page.getElementById("d2").setAttribute("class", "a");
+        page.getElementById("d1").removeAttribute("class");
+        page.getElementById("p1").getAttributeNode("class").setValue("b");
+        assertEquals("d2 s1", ids(page.getIndexedElementsByClassName(page, "a")));
+        assertEquals("p1", ids(page.getIndexedElementsByClassName(page.getDocumentElement(), "b")));
+
+        // added and removed elements, in document order
+        final DomElement span = page.createElement("span");
+        span.setAttribute("class", "a");
+        span.setAttribute("id", "s2");
+        page.getElementById("d1").appendChild(span);
+        assertEquals("s2 d2 s1", ids(page.getIndexedElementsByClassName(page, "a")));
+        assertEquals("s2 s1", ids(page.getIndexedElementsByTagName(page, "span")));
+
+        page.getElementById("d2").remove();
+        assertEquals("s2", ids(page.getIndexedElementsByClassName(page, "a")));
+        assertEquals("s2", ids(page.getIndexedElementsByTagName(page, "span")));
+        assertEquals("d1", ids(page.getIndexedElementsByTagName(page, "div")));
+
+        // the collections and selectors starting from the indexes
+        assertEquals(1, page.querySelectorAll(".a").size());
+        assertEquals(0, page.querySelectorAll("div > span.b").size());
+        assertEquals(1, page.querySelectorAll("div > span").size());
+        assertEquals("1", page.executeJavaScript("document.getElementsByClassName('a').length")
+                .getJavaScriptResult().toString());
+        assertEquals("2", page.executeJavaScript("'' + (document.getElementsByTagName('DIV').length + "
+                + "document.documentElement.getElementsByTagName('p').length)").getJavaScriptResult().toString());
+    }
+
+    /**
+     * Changes made through the attributes map update the class name index.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void classNameIndexWithNamedNodeMap() throws Exception {
+        final String html = "<html><head><script>\n"
+                + "  function count() {\n"
+                + "    alert(document.getElementsByClassName('x').length + ' '\n"
+                + "        + document.querySelectorAll('.x').length);\n"
+                + "  }\n"
+                + "  function test() {\n"
+                + "    var d1 = document.getElementById('d1');\n"
+                + "    count();\n"
+                + "    var attr = document.createAttribute('class');\n"
+                + "    attr.value = 'x';\n"
+                + "    d1.attributes.setNamedItem(attr);\n"
+                + "    count();\n"
+                + "    d1.attributes.removeNamedItem('class');\n"
+                + "    count();\n"
+                + "    d1.setAttribute('id', 'd1');\n"
+                + "    alert(document.getElementById('d1') == d1);\n"
+                + "  }\n"
+                + "</script></head><body onload='test()'>\n"
+                + "<div id='d1'></div><div class='x'></div>\n"
+                + "</body></html>";
+
+        final List<String> collectedAlerts = new ArrayList<>();
+        loadPage(html, collectedAlerts);
+        assertEquals(Arrays.asList("1 1", "2 2", "1 1", "true"), collectedAlerts);
+    }
+
+    private static String ids(final List<DomElement> elements) {
+        final StringBuilder ids = new StringBuilder();
+        for (final DomElement element : elements) {
+            if (ids.length() > 0) {
+                ids.append(' ');
+            }
+            ids.append(element.getId());
+        }
+        return ids.toString();
+    }
 }
@@ -186,4 +186,26 @@ public class NamedAttrNodeMapImplTest {
         assertEquals("Key2", entry.getKey());
         assertEquals("attr2", entry.getValue().getNodeName());
     }
+
+    /**
+     * Values are compared by identity, attributes without a created node are not contained.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void containsValue() throws Exception {
+        final DomElement dom = new HtmlBreak("", null, null);
+
+        final NamedAttrNodeMapImpl map = new NamedAttrNodeMapImpl(dom, false);
+        final DomAttr attr = new DomAttr(null, null, "Key", "value", true);
+        map.put("Key", attr);
+        map.putValue("other", "x");
+
+        assertTrue(map.containsValue(attr));
+        assertFalse(map.containsValue(new DomAttr(null, null, "Key", "value", true)));
+        assertFalse(map.containsValue(new DomAttr(null, null, "other", "x", true)));
+        assertFalse(map.containsValue("value"));
+
+        final DomAttr other = map.get("other");
+        assertTrue(map.containsValue(other));
+    }
 }
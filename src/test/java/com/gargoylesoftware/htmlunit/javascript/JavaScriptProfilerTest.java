@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2002-2020 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.javascript;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.gargoylesoftware.htmlunit.BrowserRunner;
+import com.gargoylesoftware.htmlunit.SimpleWebTestCase;
+
+/**
+ * Tests for {@link JavaScriptProfiler}.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+@RunWith(BrowserRunner.class)
+public class JavaScriptProfilerTest extends SimpleWebTestCase {
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void profile() throws Exception {
+        final String html = "<html><head><script>\n"
+            + "  function fib(n) { return n < 2 ? n : fib(n - 1) + fib(n - 2); }\n"
+            + "  function run() { for (var i = 0; i < 3; i++) { fib(10); } }\n"
+            + "  run();\n"
+            + "</script></head><body></body></html>";
+
+        final JavaScriptEngine engine = (JavaScriptEngine) getWebClient().getJavaScriptEngine();
+        final JavaScriptProfiler profiler = engine.startProfiling();
+        assertSame(profiler, engine.startProfiling());
+        assertSame(profiler, engine.getProfiler());
+
+        loadPage(html);
+
+        assertSame(profiler, engine.stopProfiling());
+        assertNull(engine.getProfiler());
+        assertNull(engine.getContextFactory().getDebugger());
+
+        final Map<String, JavaScriptProfiler.Entry> entries = new HashMap<>();
+        for (final JavaScriptProfiler.Entry entry : profiler.getEntries()) {
+            entries.put(entry.getFunctionName(), entry);
+        }
+
+        final JavaScriptProfiler.Entry fib = entries.get("fib");
+        assertEquals(3 * 177L, fib.getCallCount());
+        assertEquals(2, fib.getLineNumber());
+
+        final JavaScriptProfiler.Entry run = entries.get("run");
+        assertEquals(1L, run.getCallCount());
+        assertTrue(run.getTotalTime() >= fib.getTotalTime());
+        assertTrue(fib.getTotalTime() >= fib.getSelfTime());
+
+        final String stacks = profiler.getCollapsedStacks();
+        assertTrue(stacks, stacks.contains("[script] "));
+        assertTrue(stacks, stacks.contains(";run "));
+        assertTrue(stacks, stacks.contains(";fib "));
+
+        profiler.reset();
+        assertTrue(profiler.getEntries().isEmpty());
+        assertEquals("", profiler.getCollapsedStacks());
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2002-2020 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.javascript;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.gargoylesoftware.htmlunit.BrowserRunner;
+import com.gargoylesoftware.htmlunit.SimpleWebTestCase;
+import com.gargoylesoftware.htmlunit.html.HtmlPage;
+
+/**
+ * Tests for {@link JavaScriptResourceUsage}.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+@RunWith(BrowserRunner.class)
+public class JavaScriptResourceUsageTest extends SimpleWebTestCase {
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void notCollectedByDefault() throws Exception {
+        final String html = "<html><head><script>\n"
+            + "  var a = [];\n"
+            + "  for (var i = 0; i < 10000; i++) { a.push('x' + i); }\n"
+            + "</script></head><body></body></html>";
+
+        final HtmlPage page = loadPage(html);
+        final JavaScriptResourceUsage usage = page.getEnclosingWindow().getJavaScriptResourceUsage();
+        assertEquals(0L, usage.getCpuTime());
+        assertEquals(0L, usage.getAllocatedBytes());
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void collected() throws Exception {
+        final String html = "<html><head><script>\n"
+            + "  var a = [];\n"
+            + "  for (var i = 0; i < 100000; i++) { a.push('x' + i); }\n"
+            + "</script></head><body></body></html>";
+
+        getWebClient().getOptions().setJavaScriptResourceAccounting(true);
+        final HtmlPage page = loadPage(html);
+        final JavaScriptResourceUsage usage = page.getEnclosingWindow().getJavaScriptResourceUsage();
+        assertTrue(usage.getCpuTime() > 0);
+        assertFalse(usage.isBudgetExceeded());
+
+        // a new page starts from scratch
+        final HtmlPage page2 = loadPage("<html><body></body></html>");
+        assertSame(page.getEnclosingWindow(), page2.getEnclosingWindow());
+        assertEquals(0L, usage.getCpuTime());
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void cpuTimeBudget() throws Exception {
+        final String html = "<html><head><script>\n"
+            + "  setInterval(function() {\n"
+            + "    var end = Date.now() + 20;\n"
+            + "    while (Date.now() < end) {}\n"
+            + "    alert('tick');\n"
+            + "  }, 1);\n"
+            + "</script></head><body></body></html>";
+
+        getWebClient().getOptions().setJavaScriptCpuTimeBudget(200);
+        final List<String> collectedAlerts = Collections.synchronizedList(new ArrayList<String>());
+        final HtmlPage page = loadPage(html, collectedAlerts);
+
+        assertEquals(0, getWebClient().waitForBackgroundJavaScript(10_000));
+        final JavaScriptResourceUsage usage = page.getEnclosingWindow().getJavaScriptResourceUsage();
+        assertTrue(usage.isBudgetExceeded());
+        assertTrue(collectedAlerts.size() > 0);
+        assertTrue(usage.getCpuTime() >= 200);
+
+        // no more JavaScript for this page
+        final int alerts = collectedAlerts.size();
+        page.executeJavaScript("alert('more')");
+        assertEquals(alerts, collectedAlerts.size());
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void cpuTimeBudgetEndlessLoop() throws Exception {
+        final String html = "<html><head><script>\n"
+            + "  try {\n"
+            + "    while (true) {}\n"
+            + "  } finally {\n"
+            + "    alert('finally');\n"
+            + "  }\n"
+            + "</script></head><body onload='alert(\"onload\")'></body></html>";
+
+        getWebClient().getOptions().setJavaScriptCpuTimeBudget(200);
+        final List<String> collectedAlerts = new ArrayList<>();
+        final HtmlPage page = loadPage(html, collectedAlerts);
+
+        assertTrue(page.getEnclosingWindow().getJavaScriptResourceUsage().isBudgetExceeded());
+        assertEquals(Collections.emptyList(), collectedAlerts);
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void allocationBudget() throws Exception {
+        final String html = "<html><head><script>\n"
+            + "  var a = [];\n"
+            + "  while (true) { a.push(new Array(1000).join('x')); }\n"
+            + "</script></head><body></body></html>";
+
+        if (JavaScriptResourceUsage.currentThreadAllocatedBytes() == 0) {
+            // the allocated memory is not available in this JVM
+            return;
+        }
+
+        getWebClient().getOptions().setJavaScriptAllocationBudget(10_000_000);
+        final List<String> collectedAlerts = new ArrayList<>();
+        final HtmlPage page = loadPage(html, collectedAlerts);
+
+        final JavaScriptResourceUsage usage = page.getEnclosingWindow().getJavaScriptResourceUsage();
+        assertTrue(usage.isBudgetExceeded());
+        assertTrue(usage.getAllocatedBytes() > 10_000_000);
+        assertEquals(Collections.emptyList(), collectedAlerts);
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void unsupported() throws Exception {
+        getWebClient().getOptions().setJavaScriptCpuTimeBudget(1);
+        final JavaScriptResourceUsage usage = JavaScriptResourceUsage.unsupported();
+        assertFalse(usage.isSupported());
+
+        usage.add(10_000_000_000L, 1_000);
+        assertFalse(usage.checkBudgets(getWebClient().getOptions(), 10_000_000_000L, 1_000));
+        assertEquals(0L, usage.getCpuTime());
+        assertEquals(0L, usage.getAllocatedBytes());
+        assertFalse(usage.isBudgetExceeded());
+    }
+}
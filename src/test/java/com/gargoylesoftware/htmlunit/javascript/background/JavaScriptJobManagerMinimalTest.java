@@ -15,8 +15,14 @@
 package com.gargoylesoftware.htmlunit.javascript.background;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 import org.apache.commons.lang3.mutable.MutableInt;
 import org.easymock.EasyMock;
 import org.junit.After;
@@ -27,6 +33,8 @@ import com.gargoylesoftware.htmlunit.Page;
 import com.gargoylesoftware.htmlunit.WebClient;
 import com.gargoylesoftware.htmlunit.WebWindow;
 
+import net.sourceforge.htmlunit.corejs.javascript.Context;
+
 /**
  * Minimal tests for {@link JavaScriptJobManagerImpl}. Tests which use the full HtmlUnit stack
  * go in {@link JavaScriptJobManagerTest}.
@@ -351,4 +359,39 @@ public class JavaScriptJobManagerMinimalTest {
         // the call waits until both job1 and job2 finish.
         waitForComplexJobs(WaitingMode.WAIT_STARTING_BEFORE, 0);
     }
+
+    /**
+     * The jobs due at the same time are executed using the same JavaScript context.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void dueJobsShareContext() throws Exception {
+        final List<Context> contexts = Collections.synchronizedList(new ArrayList<Context>());
+        final JavaScriptJob job1 = new BasicJavaScriptJob(50, null) {
+            @Override
+            public void run() {
+                contexts.add(Context.getCurrentContext());
+                try {
+                    // make sure the second job is due when this one is done
+                    Thread.sleep(20);
+                }
+                catch (final InterruptedException e) {
+                    // ignore
+                }
+            }
+        };
+        final JavaScriptJob job2 = new BasicJavaScriptJob(50, null) {
+            @Override
+            public void run() {
+                contexts.add(Context.getCurrentContext());
+            }
+        };
+        manager_.addJob(job1, page_);
+        manager_.addJob(job2, page_);
+        assertEquals(0, manager_.waitForJobs(1000));
+
+        assertEquals(2, contexts.size());
+        assertNotNull(contexts.get(0));
+        assertSame(contexts.get(0), contexts.get(1));
+    }
 }
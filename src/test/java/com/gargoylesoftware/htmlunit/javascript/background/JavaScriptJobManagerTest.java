@@ -17,6 +17,7 @@ package com.gargoylesoftware.htmlunit.javascript.background;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -28,6 +29,10 @@ import com.gargoylesoftware.htmlunit.TopLevelWindow;
 import com.gargoylesoftware.htmlunit.html.HtmlAnchor;
 import com.gargoylesoftware.htmlunit.html.HtmlInlineFrame;
 import com.gargoylesoftware.htmlunit.html.HtmlPage;
+import com.gargoylesoftware.htmlunit.javascript.JavaScriptEngine;
+
+import net.sourceforge.htmlunit.corejs.javascript.Context;
+import net.sourceforge.htmlunit.corejs.javascript.ContextFactory;
 
 /**
  * Tests for {@link JavaScriptJobManagerImpl} using the full HtmlUnit stack. Minimal unit tests
@@ -216,4 +221,106 @@ public class JavaScriptJobManagerTest extends SimpleWebTestCase {
 
         assertEquals("No new alerts should have happened", finalValue, collectedAlerts.size());
     }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void virtualTime() throws Exception {
+        final String content = "<html>\n"
+            + "<head>\n"
+            + "  <script>\n"
+            + "    var start = Date.now();\n"
+            + "    var startNew = new Date().getTime();\n"
+            + "    var startPerf = performance.now();\n"
+            + "    function test() {\n"
+            + "      setTimeout(function() {\n"
+            + "        alert(Date.now() - start);\n"
+            + "        alert(new Date().getTime() - startNew);\n"
+            + "        alert(Math.round(performance.now() - startPerf));\n"
+            + "        alert(new Date() instanceof Date);\n"
+            + "        alert(new Date(2000, 0, 1).getFullYear());\n"
+            + "      }, 60000);\n"
+            + "      setTimeout(function() { alert('first'); }, 30000);\n"
+            + "    }\n"
+            + "  </script>\n"
+            + "</head>\n"
+            + "<body onload='test()'>\n"
+            + "</body>\n"
+            + "</html>";
+
+        getWebClient().getOptions().setVirtualTime(true);
+        assertTrue(getWebClient().getJavaScriptClock().isVirtual());
+
+        final List<String> collectedAlerts = Collections.synchronizedList(new ArrayList<String>());
+        startTimedTest();
+        final HtmlPage page = loadPage(content, collectedAlerts);
+        final JavaScriptJobManager jobManager = page.getEnclosingWindow().getJobManager();
+        jobManager.waitForJobs(DEFAULT_WAIT_TIME);
+        assertEquals(0, jobManager.getJobCount());
+        assertEquals(new String[] {"first", "60000", "60000", "60000", "true", "2000"}, collectedAlerts);
+        assertMaxTestRunTime(DEFAULT_WAIT_TIME);
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void systemTime() throws Exception {
+        assertFalse(getWebClient().getOptions().isVirtualTime());
+        assertSame(JavaScriptClock.SYSTEM, getWebClient().getJavaScriptClock());
+    }
+
+    /**
+     * The timers due together are executed by the event loop in one JavaScript context.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void dueTimersReuseContext() throws Exception {
+        final String content = "<html>\n"
+            + "<head>\n"
+            + "  <script>\n"
+            + "    var count = 0;\n"
+            + "    function test() {\n"
+            + "      for (var i = 0; i < 20; i++) {\n"
+            + "        setTimeout(function() { count++; }, 1000);\n"
+            + "      }\n"
+            + "    }\n"
+            + "  </script>\n"
+            + "</head>\n"
+            + "<body>\n"
+            + "</body>\n"
+            + "</html>";
+
+        // with a virtual clock all the timers are due when the first one is
+        getWebClient().getOptions().setVirtualTime(true);
+        final HtmlPage page = loadPage(content);
+
+        final AtomicInteger created = new AtomicInteger();
+        final ContextFactory factory = ((JavaScriptEngine) getWebClient().getJavaScriptEngine()).getContextFactory();
+        final ContextFactory.Listener listener = new ContextFactory.Listener() {
+            @Override
+            public void contextCreated(final Context cx) {
+                created.incrementAndGet();
+            }
+
+            @Override
+            public void contextReleased(final Context cx) {
+                // nothing
+            }
+        };
+        factory.addListener(listener);
+        try {
+            page.executeJavaScript("test()");
+            final JavaScriptJobManager jobManager = page.getEnclosingWindow().getJobManager();
+            assertEquals(0, jobManager.waitForJobs(DEFAULT_WAIT_TIME));
+        }
+        finally {
+            factory.removeListener(listener);
+        }
+
+        assertEquals(20, ((Number) page.executeJavaScript("count").getJavaScriptResult()).intValue());
+        // two contexts to compile and execute test(), one for all the timers
+        assertEquals(3, created.get());
+    }
 }
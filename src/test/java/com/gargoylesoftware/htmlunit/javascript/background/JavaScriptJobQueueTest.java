@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2002-2020 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.javascript.background;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link JavaScriptJobQueue}.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public class JavaScriptJobQueueTest {
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void order() throws Exception {
+        final JavaScriptJobQueue queue = new JavaScriptJobQueue();
+        assertNull(queue.peek());
+        assertTrue(queue.isEmpty());
+
+        queue.add(job(1, 300));
+        queue.add(job(2, 100));
+        queue.add(job(3, 200));
+        queue.add(job(4, 100));
+        assertEquals(4, queue.size());
+
+        assertEquals("2 4 3 1", drain(queue));
+        assertTrue(queue.isEmpty());
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void remove() throws Exception {
+        final JavaScriptJobQueue queue = new JavaScriptJobQueue();
+        final JavaScriptJob job2 = job(2, 100);
+        queue.add(job(1, 300));
+        queue.add(job2);
+        queue.add(job(3, 200));
+        queue.add(job(4, 50));
+
+        assertSame(job2, queue.get(2));
+        assertTrue(queue.contains(job2));
+        assertSame(job2, queue.remove(Integer.valueOf(2)));
+        assertNull(queue.get(2));
+        assertFalse(queue.contains(job2));
+        assertFalse(queue.remove(job2));
+        assertNull(queue.remove(Integer.valueOf(7)));
+
+        assertEquals("4 3 1", drain(queue));
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void reschedule() throws Exception {
+        final JavaScriptJobQueue queue = new JavaScriptJobQueue();
+        final JavaScriptJob job1 = job(1, 100);
+        queue.add(job1);
+        queue.add(job(2, 200));
+
+        queue.remove(job1);
+        job1.setTargetExecutionTime(300);
+        queue.add(job1);
+        assertEquals(2, queue.size());
+
+        assertEquals("2 1", drain(queue));
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void random() throws Exception {
+        final Random random = new Random(42);
+        final JavaScriptJobQueue queue = new JavaScriptJobQueue();
+        final List<JavaScriptJob> jobs = new ArrayList<>();
+        for (int i = 1; i <= 1000; i++) {
+            final JavaScriptJob job = job(i, random.nextInt(500));
+            jobs.add(job);
+            queue.add(job);
+        }
+        for (int i = 0; i < 500; i++) {
+            final JavaScriptJob job = jobs.remove(random.nextInt(jobs.size()));
+            assertTrue(queue.remove(job));
+        }
+        assertEquals(500, queue.size());
+
+        JavaScriptJob last = null;
+        while (!queue.isEmpty()) {
+            final JavaScriptJob job = queue.peek();
+            assertSame(job, queue.remove(job.getId()));
+            if (last != null) {
+                assertTrue(last.getTargetExecutionTime() < job.getTargetExecutionTime()
+                        || (last.getTargetExecutionTime() == job.getTargetExecutionTime()
+                                && last.getId() < job.getId()));
+            }
+            last = job;
+        }
+    }
+
+    private static String drain(final JavaScriptJobQueue queue) {
+        final StringBuilder ids = new StringBuilder();
+        while (!queue.isEmpty()) {
+            final JavaScriptJob job = queue.peek();
+            queue.remove(job);
+            if (ids.length() > 0) {
+                ids.append(' ');
+            }
+            ids.append(job.getId());
+        }
+        return ids.toString();
+    }
+
+    private static JavaScriptJob job(final int id, final long target) {
+        final JavaScriptJob job = new BasicJavaScriptJob(1, null) {
+            @Override
+            public void run() {
+                // nothing
+            }
+        };
+        job.setId(Integer.valueOf(id));
+        job.setTargetExecutionTime(target);
+        return job;
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2002-2020 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.javascript.background;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gargoylesoftware.htmlunit.CollectingAlertHandler;
+import com.gargoylesoftware.htmlunit.MockWebConnection;
+import com.gargoylesoftware.htmlunit.WebClient;
+import com.gargoylesoftware.htmlunit.WebTestCase;
+import com.gargoylesoftware.htmlunit.javascript.JavaScriptEngine;
+
+/**
+ * Tests for {@link SharedJavaScriptExecutor}.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public class SharedJavaScriptExecutorTest {
+
+    private BackgroundJavaScriptFactory originalFactory_;
+    private SharedJavaScriptExecutor sharedExecutor_;
+
+    /**
+     * Installs the shared executor.
+     */
+    @Before
+    public void before() {
+        sharedExecutor_ = new SharedJavaScriptExecutor(1);
+        originalFactory_ = BackgroundJavaScriptFactory.theFactory();
+        BackgroundJavaScriptFactory.setFactory(new BackgroundJavaScriptFactory() {
+            @Override
+            public JavaScriptExecutor createJavaScriptExecutor(final WebClient webClient) {
+                return sharedExecutor_.createExecutor(webClient);
+            }
+        });
+    }
+
+    /**
+     * Restores the default factory.
+     */
+    @After
+    public void after() {
+        BackgroundJavaScriptFactory.setFactory(originalFactory_);
+        sharedExecutor_.shutdown();
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void manyClients() throws Exception {
+        final String html = "<html><head><script>\n"
+            + "  var count = 0;\n"
+            + "  var id = setInterval(function() {\n"
+            + "    if (++count == 3) {\n"
+            + "      clearInterval(id);\n"
+            + "      setTimeout(function() { alert('done'); }, 10);\n"
+            + "    }\n"
+            + "  }, 20);\n"
+            + "</script></head><body></body></html>";
+
+        final List<WebClient> clients = new ArrayList<>();
+        final List<String> collectedAlerts = Collections.synchronizedList(new ArrayList<String>());
+        try {
+            for (int i = 0; i < 5; i++) {
+                final WebClient client = new WebClient();
+                clients.add(client);
+
+                final MockWebConnection connection = new MockWebConnection();
+                connection.setResponse(WebTestCase.URL_FIRST, html);
+                client.setWebConnection(connection);
+                client.setAlertHandler(new CollectingAlertHandler(collectedAlerts));
+                client.getPage(WebTestCase.URL_FIRST);
+
+                final JavaScriptEngine engine = (JavaScriptEngine) client.getJavaScriptEngine();
+                assertTrue(engine.getJavaScriptExecutor().getClass().getName(),
+                        engine.getJavaScriptExecutor().getClass().getName().startsWith(
+                                SharedJavaScriptExecutor.class.getName()));
+            }
+
+            for (final WebClient client : clients) {
+                assertEquals(0, client.waitForBackgroundJavaScript(5_000));
+            }
+            assertEquals(Arrays.asList("done", "done", "done", "done", "done"), collectedAlerts);
+            assertEquals(1, sharedExecutor_.getThreadCount());
+        }
+        finally {
+            for (final WebClient client : clients) {
+                client.close();
+            }
+        }
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void closedClient() throws Exception {
+        final String html = "<html><head><script>\n"
+            + "  setTimeout(function() { alert('never'); }, 200);\n"
+            + "</script></head><body></body></html>";
+
+        final List<String> collectedAlerts = Collections.synchronizedList(new ArrayList<String>());
+        try (WebClient client = new WebClient()) {
+            final MockWebConnection connection = new MockWebConnection();
+            connection.setResponse(WebTestCase.URL_FIRST, html);
+            client.setWebConnection(connection);
+            client.setAlertHandler(new CollectingAlertHandler(collectedAlerts));
+            client.getPage(WebTestCase.URL_FIRST);
+        }
+
+        Thread.sleep(400);
+        assertEquals(Collections.emptyList(), collectedAlerts);
+    }
+}
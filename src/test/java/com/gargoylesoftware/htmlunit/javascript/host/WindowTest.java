@@ -41,6 +41,7 @@ import com.gargoylesoftware.htmlunit.StatusHandler;
 import com.gargoylesoftware.htmlunit.WebClient;
 import com.gargoylesoftware.htmlunit.WebConsole;
 import com.gargoylesoftware.htmlunit.WebConsole.Logger;
+import com.gargoylesoftware.htmlunit.WebRequest;
 import com.gargoylesoftware.htmlunit.WebWindow;
 import com.gargoylesoftware.htmlunit.WebWindowEvent;
 import com.gargoylesoftware.htmlunit.WebWindowListener;
@@ -1584,4 +1585,108 @@ public class WindowTest extends SimpleWebTestCase {
         final HtmlPage page = loadPageWithAlerts(html);
         assertEquals("hello", page.getTitleText());
     }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void animationFramesNotScheduledByDefault() throws Exception {
+        final String html
+            = "<html><head><script>\n"
+            + "  alert(requestAnimationFrame(function() { alert('frame'); }));\n"
+            + "</script></head><body></body></html>";
+
+        final List<String> collectedAlerts = new ArrayList<>();
+        final HtmlPage page = loadPage(html, collectedAlerts);
+        assertEquals(0, getWebClient().waitForBackgroundJavaScript(200));
+        assertEquals(Arrays.asList("1"), collectedAlerts);
+
+        assertEquals(0, ((Window) page.getEnclosingWindow().getScriptableObject()).animateAnimationsFrames());
+        assertEquals(Arrays.asList("1", "frame"), collectedAlerts);
+    }
+
+    /**
+     * The ids of the animation frames start with 1 and are not reused after the frames did run.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void animationFrameIds() throws Exception {
+        final String html
+            = "<html><head><script>\n"
+            + "  function request(name) {\n"
+            + "    return requestAnimationFrame(function() { alert(name); });\n"
+            + "  }\n"
+            + "  alert(request('a'));\n"
+            + "  alert(request('b'));\n"
+            + "</script></head><body></body></html>";
+
+        final List<String> collectedAlerts = new ArrayList<>();
+        final HtmlPage page = loadPage(html, collectedAlerts);
+        final Window window = (Window) page.getEnclosingWindow().getScriptableObject();
+        assertEquals(0, window.animateAnimationsFrames());
+        assertEquals(Arrays.asList("1", "2", "a", "b"), collectedAlerts);
+
+        collectedAlerts.clear();
+        page.executeJavaScript("var c = request('c'); alert(c); alert(request('d')); cancelAnimationFrame(c);");
+        assertEquals(0, window.animateAnimationsFrames());
+        assertEquals(Arrays.asList("3", "4", "d"), collectedAlerts);
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void animationFramesScheduled() throws Exception {
+        final String html
+            = "<html><head><script>\n"
+            + "  var count = 0;\n"
+            + "  var last = -1;\n"
+            + "  function frame(timestamp) {\n"
+            + "    alert('frame ' + (timestamp > last));\n"
+            + "    last = timestamp;\n"
+            + "    if (++count < 3) {\n"
+            + "      requestAnimationFrame(frame);\n"
+            + "    }\n"
+            + "  }\n"
+            + "  requestAnimationFrame(frame);\n"
+            + "  var id = requestAnimationFrame(function() { alert('canceled'); });\n"
+            + "  cancelAnimationFrame(id);\n"
+            + "</script></head><body></body></html>";
+
+        getWebClient().getOptions().setAnimationFrameRate(60);
+        final List<String> collectedAlerts = new ArrayList<>();
+        loadPage(html, collectedAlerts);
+        assertEquals(0, getWebClient().waitForBackgroundJavaScript(1000));
+        assertEquals(Arrays.asList("frame true", "frame true", "frame true"), collectedAlerts);
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void animationFramesPausedInBackground() throws Exception {
+        final String html
+            = "<html><head><script>\n"
+            + "  requestAnimationFrame(function() { alert('frame'); });\n"
+            + "</script></head><body></body></html>";
+
+        final WebClient client = getWebClientWithMockWebConnection();
+        client.getOptions().setAnimationFrameRate(60);
+        final List<String> collectedAlerts = new ArrayList<>();
+        client.setAlertHandler(new CollectingAlertHandler(collectedAlerts));
+        getMockWebConnection().setResponse(URL_FIRST, html);
+        getMockWebConnection().setResponse(URL_SECOND, "<html><body></body></html>");
+
+        // the page is loaded in a window not running in the foreground
+        final WebWindow window = client.getCurrentWindow();
+        client.getPage(window, new WebRequest(URL_SECOND));
+        client.setCurrentWindow(client.openWindow(null, "other"));
+        client.getPage(window, new WebRequest(URL_FIRST));
+        assertEquals(0, client.waitForBackgroundJavaScript(200));
+        assertEquals(Collections.emptyList(), collectedAlerts);
+
+        client.setCurrentWindow(window);
+        assertEquals(0, client.waitForBackgroundJavaScript(1000));
+        assertEquals(Arrays.asList("frame"), collectedAlerts);
+    }
 }
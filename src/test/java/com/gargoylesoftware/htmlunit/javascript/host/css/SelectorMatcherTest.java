@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2002-2020 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.javascript.host.css;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.gargoylesoftware.css.parser.CSSOMParser;
+import com.gargoylesoftware.css.parser.javacc.CSS3Parser;
+import com.gargoylesoftware.css.parser.selector.Selector;
+import com.gargoylesoftware.css.parser.selector.SelectorList;
+import com.gargoylesoftware.htmlunit.BrowserRunner;
+import com.gargoylesoftware.htmlunit.SimpleWebTestCase;
+import com.gargoylesoftware.htmlunit.html.DomElement;
+import com.gargoylesoftware.htmlunit.html.HtmlPage;
+
+/**
+ * Tests for {@link SelectorMatcher} and {@link AncestorFilter}.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+@RunWith(BrowserRunner.class)
+public class SelectorMatcherTest extends SimpleWebTestCase {
+
+    private static final String HTML = "<html><head></head><body>\n"
+            + "<div id='nav' class='menu main'>\n"
+            + "  <ul lang='en-GB'>\n"
+            + "    <li class='item first'><a href='#a' title='one two'>a</a></li>\n"
+            + "    <li class='item'><a href='#b'>b</a></li>\n"
+            + "    <li class='item last' data-x='pre-fix'>c</li>\n"
+            + "  </ul>\n"
+            + "</div>\n"
+            + "<div id='content'>\n"
+            + "  <p>one</p><span>two</span><p class='x.y'>three</p>\n"
+            + "  <input type='checkbox' checked><input type='text' disabled>\n"
+            + "</div>\n"
+            + "</body></html>";
+
+    /**
+     * The compiled matchers select the same elements as the interpreter.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void sameAsInterpreter() throws Exception {
+        final HtmlPage page = loadPage(HTML);
+        final String[] selectors = {"li", "*", "#nav li", "div.menu > ul > li", ".main .item a",
+            "li + li", "li ~ li", "p ~ p", "span + p", "li:nth-child(2n+1)", "li:nth-child(odd)",
+            "li:nth-child(even)", "li:nth-last-child(1)", "p:nth-of-type(2)", "p:nth-last-of-type(1)",
+            "li:not(.first)", "li:not(:first-child)", "a[title~=two]", "li[data-x|=pre]",
+            "a[href^='#']", "a[href$=b]", "a[href*=a]", "a[title]", "li[class='item']",
+            ".x\\.y", ":lang(en)", "input:checked", "input:disabled", "input:enabled",
+            "li:first-child", "li:last-child", "#content :empty", "#unknown li", ".unknown p",
+            "ul li a", "body > div li", "div#content > p"};
+
+        final CSSOMParser parser = new CSSOMParser(new CSS3Parser());
+        for (final String selectorString : selectors) {
+            final SelectorList selectorList = parser.parseSelectors(selectorString);
+            for (final Selector selector : selectorList) {
+                final SelectorMatcher matcher = SelectorMatcher.compile(selector);
+                for (final DomElement element : page.getDomElementDescendants()) {
+                    final boolean expected = CSSStyleSheet.selects(getBrowserVersion(), selector, element, null, true);
+                    assertEquals(selectorString + " " + element, expected,
+                            matcher.matches(getBrowserVersion(), element, null, null, true));
+                    assertEquals(selectorString + " " + element, expected,
+                            matcher.matches(getBrowserVersion(), element,
+                                    AncestorFilter.of(element.getParentNode()), null, true));
+                }
+            }
+        }
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void ancestorFilter() throws Exception {
+        final HtmlPage page = loadPage(HTML);
+        final DomElement li = page.getElementsByTagName("li").get(0);
+
+        final AncestorFilter filter = AncestorFilter.of(li.getParentNode());
+        assertTrue(filter.mayContainAll(new int[] {AncestorFilter.tagKey("ul"), AncestorFilter.idKey("nav"),
+            AncestorFilter.classKey("menu"), AncestorFilter.classKey("main"), AncestorFilter.tagKey("body")}));
+        // the element itself is not part of the filter of its ancestors
+        assertFalse(filter.mayContainAll(new int[] {AncestorFilter.classKey("first")}));
+        assertTrue(filter.with(li).mayContainAll(new int[] {AncestorFilter.classKey("first")}));
+        assertFalse(filter.mayContainAll(new int[] {AncestorFilter.idKey("content")}));
+
+        final CSSOMParser parser = new CSSOMParser(new CSS3Parser());
+        assertTrue(SelectorMatcher.compile(parser.parseSelectors("#nav li").get(0)).usesAncestorFilter());
+        assertTrue(SelectorMatcher.compile(parser.parseSelectors("ul > li").get(0)).usesAncestorFilter());
+        assertFalse(SelectorMatcher.compile(parser.parseSelectors("li.item").get(0)).usesAncestorFilter());
+        assertFalse(SelectorMatcher.compile(parser.parseSelectors("* li").get(0)).usesAncestorFilter());
+    }
+}
@@ -418,6 +418,59 @@ public class MutationObserverTest extends WebDriverTestCase {
         loadPageWithAlerts2(html);
     }
 
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    @Alerts({"before", "callback 3 attributes ltr"})
+    public void recordsDeliveredTogether() throws Exception {
+        final String html
+            = "<html><head><script>\n"
+            + "function test() {\n"
+            + "  var div = document.getElementById('myDiv');\n"
+            + "  var observer = new MutationObserver(function(mutations) {\n"
+            + "    alert('callback ' + mutations.length + ' ' + mutations[2].type + ' ' + mutations[2].oldValue);\n"
+            + "  });\n"
+            + "  observer.observe(div, { attributes: true, attributeOldValue: true });\n"
+            + "  div.setAttribute('dir', 'rtl');\n"
+            + "  div.setAttribute('dir', 'ltr');\n"
+            + "  div.setAttribute('dir', 'rtl');\n"
+            + "  alert('before');\n"
+            + "}\n"
+            + "</script></head>\n"
+            + "<body onload='test()'>\n"
+            + "  <div id='myDiv' dir='ltr'>old</div>\n"
+            + "</body></html>";
+        loadPageWithAlerts2(html);
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    @Alerts({"0", "2", "callback 1"})
+    public void takeRecords() throws Exception {
+        final String html
+            = "<html><head><script>\n"
+            + "function test() {\n"
+            + "  var div = document.getElementById('myDiv');\n"
+            + "  var observer = new MutationObserver(function(mutations) {\n"
+            + "    alert('callback ' + mutations.length);\n"
+            + "  });\n"
+            + "  observer.observe(div, { attributes: true });\n"
+            + "  alert(observer.takeRecords().length);\n"
+            + "  div.setAttribute('dir', 'rtl');\n"
+            + "  div.setAttribute('dir', 'ltr');\n"
+            + "  alert(observer.takeRecords().length);\n"
+            + "  div.setAttribute('dir', 'rtl');\n"
+            + "}\n"
+            + "</script></head>\n"
+            + "<body onload='test()'>\n"
+            + "  <div id='myDiv' dir='ltr'>old</div>\n"
+            + "</body></html>";
+        loadPageWithAlerts2(html);
+    }
+
     /**
      * @throws Exception if the test fails
      */
@@ -825,6 +825,198 @@ public class HTMLCollectionTest extends WebDriverTestCase {
         item("'1.1'");
     }
 
+    /**
+     * Live collections are computed again after changes of their subtree only.
+     * @throws Exception if the test fails
+     */
+    @Test
+    @Alerts({"1", "2", "1", "0", "2", "1", "1", "0"})
+    public void liveAfterChanges() throws Exception {
+        final String html
+            = "<html><head><script>\n"
+            + "  function test() {\n"
+            + "    var outer = document.getElementById('outer');\n"
+            + "    var inner = document.getElementById('inner');\n"
+            + "    var divs = outer.getElementsByTagName('div');\n"
+            + "    var foos = document.getElementsByClassName('foo');\n"
+            + "    var spans = inner.getElementsByTagName('span');\n"
+            + "    alert(divs.length);\n"
+
+            + "    inner.appendChild(document.createElement('div'));\n"
+            + "    alert(divs.length);\n"
+
+            + "    alert(foos.length);\n"
+            + "    inner.className = 'bar';\n"
+            + "    alert(foos.length);\n"
+            + "    inner.setAttribute('class', 'foo');\n"
+            + "    document.getElementById('other').className = 'foo';\n"
+            + "    alert(foos.length);\n"
+
+            + "    inner.appendChild(document.createElement('span'));\n"
+            + "    alert(spans.length);\n"
+            + "    outer.removeChild(inner);\n"
+            + "    alert(spans.length);\n"
+            + "    alert(divs.length);\n"
+            + "  }\n"
+            + "</script></head>\n"
+            + "<body onload='test()'>\n"
+            + "  <div id='outer'><div id='inner' class='foo'></div></div>\n"
+            + "  <p id='other'></p>\n"
+            + "</body></html>";
+
+        loadPageWithAlerts2(html);
+    }
+
+    /**
+     * Items are computed only up to the index asked for, the computation continues
+     * with the next access as long as the document was not changed.
+     * @throws Exception if the test fails
+     */
+    @Test
+    @Alerts({"d0", "d1", "d3", "true", "false", "null", "4", "d0", "d2", "3", "0"})
+    public void itemsComputedLazily() throws Exception {
+        final String html
+            = "<html><head><script>\n"
+            + "  function test() {\n"
+            + "    var divs = document.getElementsByTagName('div');\n"
+            + "    alert(divs[0].id);\n"
+            + "    alert(divs.item(1).id);\n"
+            + "    alert(divs[3].id);\n"
+            + "    alert(2 in divs);\n"
+            + "    alert(7 in divs);\n"
+            + "    alert(divs.item(9));\n"
+            + "    alert(divs.length);\n"
+
+            + "    document.body.removeChild(divs[1]);\n"
+            + "    alert(divs[0].id);\n"
+            + "    alert(divs[1].id);\n"
+            + "    alert(divs.length);\n"
+
+            + "    while (divs[0]) {\n"
+            + "      divs[0].parentNode.removeChild(divs[0]);\n"
+            + "    }\n"
+            + "    alert(divs.length);\n"
+            + "  }\n"
+            + "</script></head>\n"
+            + "<body onload='test()'>\n"
+            + "  <div id='d0'></div><div id='d1'></div><p></p><div id='d2'></div><div id='d3'></div>\n"
+            + "</body></html>";
+
+        loadPageWithAlerts2(html);
+    }
+
+    /**
+     * Removing the elements of a live collection one by one, reading the length every time.
+     * @throws Exception if the test fails
+     */
+    @Test
+    @Alerts({"5", "4", "d3", "2 d2", "1 d3", "0", "1"})
+    public void removeWhileLength() throws Exception {
+        final String html
+            = "<html><head><script>\n"
+            + "  function remove(node) {\n"
+            + "    if (node.remove) {\n"
+            + "      node.remove();\n"
+            + "    } else {\n"
+            + "      node.parentNode.removeChild(node);\n"
+            + "    }\n"
+            + "  }\n"
+            + "  function test() {\n"
+            + "    var divs = document.getElementsByTagName('div');\n"
+            + "    alert(divs.length);\n"
+            + "    remove(document.getElementById('s'));\n"
+            + "    alert(divs.length);\n"
+            + "    alert(divs[3].id);\n"
+            + "    remove(divs[0]);\n"
+            + "    while (divs.length) {\n"
+            + "      alert(divs.length + ' ' + divs[0].id);\n"
+            + "      remove(divs[0]);\n"
+            + "    }\n"
+            + "    alert(divs.length);\n"
+            + "    document.body.appendChild(document.createElement('div'));\n"
+            + "    alert(divs.length);\n"
+            + "  }\n"
+            + "</script></head>\n"
+            + "<body onload='test()'>\n"
+            + "  <div id='d0'><div id='d1'></div></div><p></p><div id='d2'></div>"
+            + "<div id='d3'><span id='s'><div id='d4'></div></span></div>\n"
+            + "</body></html>";
+
+        loadPageWithAlerts2(html);
+    }
+
+    /**
+     * Items computed only up to the index asked for are computed again after a change,
+     * the elements not examined yet are not taken from the old state.
+     * @throws Exception if the test fails
+     */
+    @Test
+    @Alerts({"d0", "n0", "d0", "3", "n0", "d1", "n1", "4", "d1"})
+    public void itemsComputedLazilyAfterChange() throws Exception {
+        final String html
+            = "<html><head><script>\n"
+            + "  function test() {\n"
+            + "    var divs = document.getElementsByTagName('div');\n"
+            + "    alert(divs[0].id);\n"
+
+            + "    var div = document.createElement('div');\n"
+            + "    div.id = 'n0';\n"
+            + "    document.body.insertBefore(div, divs[0]);\n"
+            + "    alert(divs.item(0).id);\n"
+            + "    alert(divs.item(1).id);\n"
+            + "    alert(divs.length);\n"
+
+            + "    alert(divs[0].id);\n"
+            + "    div = document.createElement('div');\n"
+            + "    div.id = 'n1';\n"
+            + "    document.getElementById('d1').appendChild(div);\n"
+            + "    alert(divs[2].id);\n"
+            + "    alert(divs[3].id);\n"
+            + "    alert(divs.length);\n"
+            + "    alert(divs[2].id);\n"
+            + "  }\n"
+            + "</script></head>\n"
+            + "<body onload='test()'>\n"
+            + "  <div id='d0'></div><p></p><div id='d1'></div>\n"
+            + "</body></html>";
+
+        loadPageWithAlerts2(html);
+    }
+
+    /**
+     * A collection deciding about attribute changes itself ignores the changes of other attributes.
+     * @throws Exception if the test fails
+     */
+    @Test
+    @Alerts({"1", "1", "1", "2", "1", "a2"})
+    public void attributeChangeFiltered() throws Exception {
+        final String html
+            = "<html><head><script>\n"
+            + "  function test() {\n"
+            + "    var anchors = document.anchors;\n"
+            + "    var links = document.getElementsByTagName('a');\n"
+            + "    alert(anchors.length);\n"
+
+            + "    links[0].title = 'changed';\n"
+            + "    links[1].setAttribute('href', '#other');\n"
+            + "    alert(anchors.length);\n"
+            + "    links[1].className = 'foo';\n"
+            + "    alert(anchors.length);\n"
+
+            + "    links[1].setAttribute('name', 'a2');\n"
+            + "    alert(anchors.length);\n"
+            + "    links[0].removeAttribute('name');\n"
+            + "    alert(anchors.length);\n"
+            + "    alert(anchors[0].name);\n"
+            + "  }\n"
+            + "</script></head>\n"
+            + "<body onload='test()'>\n"
+            + "  <a name='a1'>a1</a><a href='#'>a2</a>\n"
+            + "</body></html>";
+
+        loadPageWithAlerts2(html);
+    }
+
     private void namedItem(final String name) throws Exception {
         final String html
             = "<!doctype html>\n"
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2002-2020 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.javascript.host.worker;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.gargoylesoftware.htmlunit.BrowserRunner;
+import com.gargoylesoftware.htmlunit.SimpleWebTestCase;
+import com.gargoylesoftware.htmlunit.html.HtmlPage;
+import com.gargoylesoftware.htmlunit.javascript.JavaScriptEngine;
+import com.gargoylesoftware.htmlunit.javascript.PostponedAction;
+
+/**
+ * Tests for {@code Worker} using the full HtmlUnit stack.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+@RunWith(BrowserRunner.class)
+public class Worker2Test extends SimpleWebTestCase {
+
+    private static final String BUSY_WORKER_PAGE = "<html><body><script>\n"
+            + "  var myWorker = new Worker('worker.js');\n"
+            + "  myWorker.onmessage = function(e) {\n"
+            + "    alert(e.data);\n"
+            + "  };\n"
+            + "</script></body></html>\n";
+
+    /**
+     * A running worker is stopped when its window loads another page.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void stoppedWhenPageUnloaded() throws Exception {
+        final Thread workerThread = startBusyWorker();
+
+        getMockWebConnection().setResponse(URL_SECOND, "<html><body></body></html>");
+        getWebClient().getPage(URL_SECOND);
+
+        workerThread.join(DEFAULT_WAIT_TIME);
+        assertFalse(workerThread.isAlive());
+    }
+
+    /**
+     * A running worker is stopped when the client is closed.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void stoppedWhenClientClosed() throws Exception {
+        final Thread workerThread = startBusyWorker();
+
+        getWebClient().close();
+
+        workerThread.join(DEFAULT_WAIT_TIME);
+        assertFalse(workerThread.isAlive());
+    }
+
+    /**
+     * The actions postponed by a worker are executed when its script is done.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void postponedActionsOfWorker() throws Exception {
+        final HtmlPage page = loadPage("<html><body></body></html>");
+        final JavaScriptEngine engine = (JavaScriptEngine) getWebClient().getJavaScriptEngine();
+
+        final List<String> executed = Collections.synchronizedList(new ArrayList<String>());
+        final Thread thread = new Thread(() ->
+            engine.callInWorker(page, page.getEnclosingWindow().getScriptableObject(), cx -> {
+                engine.addPostponedAction(new PostponedAction(page, "worker") {
+                    @Override
+                    public void execute() throws Exception {
+                        executed.add("executed");
+                    }
+                });
+                return null;
+            }));
+        thread.start();
+        thread.join(DEFAULT_WAIT_TIME);
+
+        assertEquals(Collections.singletonList("executed"), executed);
+    }
+
+    /**
+     * Loads a page starting a worker that runs forever after its first message.
+     * @return the thread of the worker
+     * @throws Exception if the test fails
+     */
+    private Thread startBusyWorker() throws Exception {
+        final String workerJs = "postMessage('started');\n"
+                + "while (true) {}\n";
+        getMockWebConnection().setResponse(new URL(URL_FIRST, "worker.js"), workerJs);
+
+        final List<Thread> threadsBefore = getWorkerThreads();
+        final List<String> collectedAlerts = Collections.synchronizedList(new ArrayList<String>());
+        loadPage(BUSY_WORKER_PAGE, collectedAlerts);
+
+        final long maxWait = System.currentTimeMillis() + DEFAULT_WAIT_TIME;
+        while (collectedAlerts.isEmpty() && System.currentTimeMillis() < maxWait) {
+            Thread.sleep(10);
+        }
+        assertEquals(Collections.singletonList("started"), collectedAlerts);
+
+        final List<Thread> threads = getWorkerThreads();
+        threads.removeAll(threadsBefore);
+        assertEquals(1, threads.size());
+        return threads.get(0);
+    }
+
+    private static List<Thread> getWorkerThreads() {
+        final List<Thread> threads = new ArrayList<>();
+        for (final Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith("Worker ") && thread.isAlive()) {
+                threads.add(thread);
+            }
+        }
+        return threads;
+    }
+}
@@ -98,6 +98,87 @@ public class WorkerTest extends WebDriverTestCase {
         loadPageWithAlerts2(html, 2000);
     }
 
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    @Alerts({"1,2,3 1,2 false true x", "exception"})
+    public void postMessageClones() throws Exception {
+        final String html = "<html><body><script>\n"
+            + "  var msg = { list: [1, 2], nested: { s: 'x' } };\n"
+            + "  msg.self = msg;\n"
+            + "  var myWorker = new Worker('worker.js');\n"
+            + "  myWorker.onmessage = function(e) {\n"
+            + "    alert(e.data.list + ' ' + msg.list + ' ' + (e.data === msg)\n"
+            + "          + ' ' + (e.data.self === e.data) + ' ' + e.data.nested.s);\n"
+            + "    try {\n"
+            + "      myWorker.postMessage(function() {});\n"
+            + "      alert('no exception');\n"
+            + "    } catch(ex) { alert('exception'); }\n"
+            + "  };\n"
+            + "  myWorker.postMessage(msg);\n"
+            + "</script></body></html>\n";
+
+        final String workerJs = "onmessage = function(e) {\n"
+                + "  e.data.list.push(3);\n"
+                + "  postMessage(e.data);\n"
+                + "}\n";
+
+        getMockWebConnection().setResponse(new URL(URL_FIRST, "worker.js"), workerJs);
+
+        loadPageWithAlerts2(html, 2000);
+    }
+
+    /**
+     * The worker runs in parallel; the timers of the page are not blocked.
+     * @throws Exception if the test fails
+     */
+    @Test
+    @Alerts({"timer", "worker done"})
+    public void runsInParallel() throws Exception {
+        final String html = "<html><body><script>\n"
+            + "  var myWorker = new Worker('worker.js');\n"
+            + "  myWorker.onmessage = function(e) {\n"
+            + "    alert(e.data);\n"
+            + "  };\n"
+            + "  setTimeout(function() { alert('timer'); }, 50);\n"
+            + "</script></body></html>\n";
+
+        final String workerJs = "var end = new Date().getTime() + 500;\n"
+                + "while (new Date().getTime() < end) {}\n"
+                + "postMessage('worker done');\n";
+
+        getMockWebConnection().setResponse(new URL(URL_FIRST, "worker.js"), workerJs);
+
+        loadPageWithAlerts2(html, 2000);
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    @Alerts({"received 1", "done"})
+    public void terminate() throws Exception {
+        final String html = "<html><body><script>\n"
+            + "  var myWorker = new Worker('worker.js');\n"
+            + "  myWorker.onmessage = function(e) {\n"
+            + "    alert('received ' + e.data);\n"
+            + "    myWorker.terminate();\n"
+            + "    myWorker.postMessage(2);\n"
+            + "    setTimeout(function() { alert('done'); }, 200);\n"
+            + "  };\n"
+            + "  myWorker.postMessage(1);\n"
+            + "</script></body></html>\n";
+
+        final String workerJs = "onmessage = function(e) {\n"
+                + "  postMessage(e.data);\n"
+                + "}\n";
+
+        getMockWebConnection().setResponse(new URL(URL_FIRST, "worker.js"), workerJs);
+
+        loadPageWithAlerts2(html, 2000);
+    }
+
     /**
      * @throws Exception if the test fails
      */
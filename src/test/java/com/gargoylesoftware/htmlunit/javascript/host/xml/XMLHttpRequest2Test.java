@@ -404,8 +404,6 @@ public class XMLHttpRequest2Test extends WebDriverTestCase {
      */
     @Test
     @Alerts({"in timeout", "hello"})
-    @NotYetImplemented
-    // TODO [IE]SINGLE-VS-BULK test runs when executed as single but breaks as bulk
     public void xhrDownloadInBackground() throws Exception {
         final String html = "<html><head><script>\n"
             + "var xhr = new XMLHttpRequest();\n"
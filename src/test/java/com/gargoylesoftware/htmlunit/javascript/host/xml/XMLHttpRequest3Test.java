@@ -24,6 +24,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import javax.servlet.Servlet;
 import javax.servlet.http.HttpServlet;
@@ -166,10 +168,11 @@ public class XMLHttpRequest3Test extends WebServerTestCase {
         final WebClient client = getWebClient();
         final List<String> collectedAlerts = Collections.synchronizedList(new ArrayList<String>());
         client.setAlertHandler(new CollectingAlertHandler(collectedAlerts));
+        final List<String> collectedRequests = Collections.synchronizedList(new ArrayList<String>());
         final MockWebConnection conn = new MockWebConnection() {
             @Override
             public WebResponse getResponse(final WebRequest webRequest) throws IOException {
-                collectedAlerts.add(webRequest.getUrl().toExternalForm());
+                collectedRequests.add(webRequest.getUrl().toExternalForm());
                 return super.getResponse(webRequest);
             }
         };
@@ -181,11 +184,164 @@ public class XMLHttpRequest3Test extends WebServerTestCase {
 
         assertEquals(0, client.waitForBackgroundJavaScriptStartingBefore(1000));
 
-        final String[] alerts = {URL_FIRST.toExternalForm(), "before long loop", "after long loop",
-            urlPage2.toExternalForm(), "ready state handler, content loaded: j=5000" };
+        // the request itself is done in the background, in parallel to the script
+        final String[] requests = {URL_FIRST.toExternalForm(), urlPage2.toExternalForm()};
+        assertEquals(requests, collectedRequests);
+        final String[] alerts = {"before long loop", "after long loop",
+            "ready state handler, content loaded: j=5000" };
         assertEquals(alerts, collectedAlerts);
     }
 
+    /**
+     * The network I/O of an asynchronous request is done in the background;
+     * the event loop keeps running the timers while the response is outstanding.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void timersRunWhileAsyncRequestIsLoading() throws Exception {
+        final String content = "<html><head><script>\n"
+            + "function test() {\n"
+            + "  var req = new XMLHttpRequest();\n"
+            + "  req.onreadystatechange = function() {\n"
+            + "    if (req.readyState == 4) {\n"
+            + "      alert('loaded');\n"
+            + "    }\n"
+            + "  };\n"
+            + "  req.open('GET', 'foo.xml', true);\n"
+            + "  req.send('');\n"
+            + "  setTimeout(function() { alert('timer'); }, 10);\n"
+            + "}\n"
+            + "</script></head>\n"
+            + "<body onload='test()'></body></html>";
+
+        final CountDownLatch timerDone = new CountDownLatch(1);
+        final List<String> collectedAlerts = Collections.synchronizedList(new ArrayList<String>());
+        final WebClient client = getWebClient();
+        client.setAlertHandler((page, message) -> {
+            collectedAlerts.add(message);
+            if ("timer".equals(message)) {
+                timerDone.countDown();
+            }
+        });
+        final URL urlPage2 = new URL(URL_FIRST, "foo.xml");
+        final MockWebConnection conn = new MockWebConnection() {
+            @Override
+            public WebResponse getResponse(final WebRequest webRequest) throws IOException {
+                if (urlPage2.equals(webRequest.getUrl())) {
+                    try {
+                        // the response is delayed until the timer was executed
+                        timerDone.await(DEFAULT_WAIT_TIME, TimeUnit.MILLISECONDS);
+                    }
+                    catch (final InterruptedException e) {
+                        throw new IOException(e);
+                    }
+                }
+                return super.getResponse(webRequest);
+            }
+        };
+        conn.setResponse(URL_FIRST, content);
+        conn.setResponse(urlPage2, "<foo/>\n", MimeType.TEXT_XML);
+        client.setWebConnection(conn);
+        client.getPage(URL_FIRST);
+
+        assertEquals(0, client.waitForBackgroundJavaScript(2 * DEFAULT_WAIT_TIME));
+        assertEquals(new String[] {"timer", "loaded"}, collectedAlerts);
+    }
+
+    /**
+     * Aborting an asynchronous request cancels the request done in the background.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void abortCancelsBackgroundRequest() throws Exception {
+        final String content = "<html><head><script>\n"
+            + "var req = new XMLHttpRequest();\n"
+            + "req.onreadystatechange = function() {\n"
+            + "  if (req.readyState == 4) {\n"
+            + "    alert('loaded');\n"
+            + "  }\n"
+            + "};\n"
+            + "req.open('GET', 'foo.xml', true);\n"
+            + "req.send('');\n"
+            + "</script></head><body></body></html>";
+
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        final List<String> collectedAlerts = Collections.synchronizedList(new ArrayList<String>());
+        final WebClient client = getWebClient();
+        client.setAlertHandler(new CollectingAlertHandler(collectedAlerts));
+        final URL urlPage2 = new URL(URL_FIRST, "foo.xml");
+        final MockWebConnection conn = new MockWebConnection() {
+            @Override
+            public WebResponse getResponse(final WebRequest webRequest) throws IOException {
+                if (urlPage2.equals(webRequest.getUrl())) {
+                    started.countDown();
+                    try {
+                        new CountDownLatch(1).await(DEFAULT_WAIT_TIME, TimeUnit.MILLISECONDS);
+                    }
+                    catch (final InterruptedException e) {
+                        interrupted.countDown();
+                        throw new IOException(e);
+                    }
+                }
+                return super.getResponse(webRequest);
+            }
+        };
+        conn.setResponse(URL_FIRST, content);
+        conn.setResponse(urlPage2, "<foo/>\n", MimeType.TEXT_XML);
+        client.setWebConnection(conn);
+        final HtmlPage page = client.getPage(URL_FIRST);
+
+        assertTrue(started.await(DEFAULT_WAIT_TIME, TimeUnit.MILLISECONDS));
+        page.executeJavaScript("req.abort()");
+        assertTrue(interrupted.await(DEFAULT_WAIT_TIME, TimeUnit.MILLISECONDS));
+
+        assertEquals(0, client.waitForBackgroundJavaScript(DEFAULT_WAIT_TIME));
+        assertTrue(collectedAlerts.toString(), collectedAlerts.isEmpty());
+    }
+
+    /**
+     * A request failing in the background with an error is processed like a network error,
+     * it is not done again.
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void errorInBackgroundRequest() throws Exception {
+        final String content = "<html><head><script>\n"
+            + "var req = new XMLHttpRequest();\n"
+            + "req.onreadystatechange = function() {\n"
+            + "  if (req.readyState == 4) {\n"
+            + "    alert('done ' + req.status);\n"
+            + "  }\n"
+            + "};\n"
+            + "req.open('GET', 'foo.xml', true);\n"
+            + "req.send('');\n"
+            + "</script></head><body></body></html>";
+
+        final List<String> collectedAlerts = Collections.synchronizedList(new ArrayList<String>());
+        final WebClient client = getWebClient();
+        client.setAlertHandler(new CollectingAlertHandler(collectedAlerts));
+        final URL urlPage2 = new URL(URL_FIRST, "foo.xml");
+        final MockWebConnection conn = new MockWebConnection() {
+            @Override
+            public WebResponse getResponse(final WebRequest webRequest) throws IOException {
+                final WebResponse response = super.getResponse(webRequest);
+                if (urlPage2.equals(webRequest.getUrl())) {
+                    throw new AssertionError("failing request");
+                }
+                return response;
+            }
+        };
+        conn.setResponse(URL_FIRST, content);
+        conn.setResponse(urlPage2, "<foo/>\n", MimeType.TEXT_XML);
+        client.setWebConnection(conn);
+        client.getPage(URL_FIRST);
+
+        assertEquals(0, client.waitForBackgroundJavaScript(DEFAULT_WAIT_TIME));
+        assertEquals(new String[] {"done 0"}, collectedAlerts);
+        assertEquals(2, conn.getRequestCount());
+    }
+
     /**
      * Tests that the different HTTP methods are supported.
      * @throws Exception if an error occurs
@@ -426,7 +582,7 @@ public class XMLHttpRequest3Test extends WebServerTestCase {
     }
 
     static final List<String> collectedHeaders_ = Collections.synchronizedList(new ArrayList<String>());
-    static int STATE_ = 0;
+    static volatile int STATE_ = 0;
 
     /**
      * First servlet for testNoContent().
@@ -476,6 +632,7 @@ public class XMLHttpRequest3Test extends WebServerTestCase {
         @Override
         protected void doGet(final HttpServletRequest request, final HttpServletResponse response) throws IOException {
             final String header = headers(request);
+            collectedHeaders_.add("Ajax: " + header);
             STATE_ = 1;
             try {
                 // do not return before the form request is also sent
@@ -487,7 +644,6 @@ public class XMLHttpRequest3Test extends WebServerTestCase {
                 e.printStackTrace();
             }
 
-            collectedHeaders_.add("Ajax: " + header);
             response.setContentType(MimeType.TEXT_PLAIN);
             final Writer writer = response.getWriter();
             writer.write(header);
@@ -1120,4 +1120,58 @@ public class HtmlUnitRegExpProxyTest extends WebDriverTestCase {
         // [^] matches any character in JS
         testEvaluate("'ab]cd'.replace(/[^]]/g, 'x')");
     }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    @Alerts("a-b-c")
+    public void simplePatternLiteral() throws Exception {
+        testEvaluate("'a.b.c'.replace(/\\./g, '-')");
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    @Alerts("_a_b_c_")
+    public void simplePatternSpaces() throws Exception {
+        testEvaluate("' a  b\\t\\nc '.replace(/\\s+/g, '_')");
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    @Alerts("-12_|!")
+    public void simplePatternNegatedClass() throws Exception {
+        testEvaluate("'ab-12_cd!'.match(/[^a-z]+/g).join('|')");
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    @Alerts("a|b|c|")
+    public void simplePatternSplit() throws Exception {
+        testEvaluate("'a,b;c,'.split(/[,;]/).join('|')");
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    @Alerts("3")
+    public void simplePatternSplitNonAsciiSpace() throws Exception {
+        testEvaluate("'a\\u00a0b\\u3000c'.split(/\\s/).length");
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    @Alerts("x-y-z")
+    public void simplePatternCaseInsensitive() throws Exception {
+        testEvaluate("'xAyaz'.replace(/a/gi, '-')");
+    }
 }
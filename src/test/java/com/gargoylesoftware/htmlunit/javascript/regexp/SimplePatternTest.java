@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2002-2020 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.javascript.regexp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link SimplePattern}.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public class SimplePatternTest {
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void notSimple() throws Exception {
+        assertNull(SimplePattern.compile("", ""));
+        assertNull(SimplePattern.compile("a", "i"));
+        assertNull(SimplePattern.compile("a*", ""));
+        assertNull(SimplePattern.compile("^a", ""));
+        assertNull(SimplePattern.compile("a.b", ""));
+        assertNull(SimplePattern.compile("a|b", ""));
+        assertNull(SimplePattern.compile("(a)", ""));
+        assertNull(SimplePattern.compile("\\bx", ""));
+        assertNull(SimplePattern.compile("\\1", ""));
+        assertNull(SimplePattern.compile("\\s,", ""));
+        assertNull(SimplePattern.compile("[]", ""));
+        assertNull(SimplePattern.compile("[^]", ""));
+        assertNull(SimplePattern.compile("[\\b]", ""));
+        assertNull(SimplePattern.compile("[a-\\d]", ""));
+        assertNull(SimplePattern.compile("[abc", ""));
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void literal() throws Exception {
+        assertMatches("\\.js", "", "a.js.b.js", "[1,4][6,9]");
+        assertMatches(",", "g", "a,b,,c", "[1,2][3,4][4,5]");
+        assertMatches("\\/\\-", "", "a/-b", "[1,3]");
+        assertMatches("\\t", "", "a\tb", "[1,2]");
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void charClass() throws Exception {
+        assertMatches("\\s+", "g", " a \t\nb", "[0,1][2,5]");
+        assertMatches("\\d", "", "a12", "[1,2][2,3]");
+        assertMatches("\\W+", "", "ab, c_d", "[2,4]");
+        assertMatches("[,;]", "", "a,b;c", "[1,2][3,4]");
+        assertMatches("[^a-z0-9_-]+", "", "ab-1 ,c", "[4,6]");
+        assertMatches("[a-c\\]]+", "", "xa]bcx", "[1,5]");
+        assertMatches("[-a]", "", "b-a", "[1,2][2,3]");
+        assertMatches("[\u00e4\u00f6]", "", "a\u00f6", "[1,2]");
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void spaces() throws Exception {
+        final SimplePattern pattern = SimplePattern.compile("\\s", "");
+        assertNotNull(pattern);
+
+        assertTrue(pattern.matcher("\u00a0", true).find());
+        assertFalse(pattern.matcher("\u00a0", false).find());
+        assertTrue(pattern.matcher(String.valueOf((char) 0x2028), true).find());
+
+        final SimplePattern negated = SimplePattern.compile("\\S", "");
+        assertNotNull(negated);
+        assertFalse(negated.matcher("\u00a0", true).find());
+        assertTrue(negated.matcher("\u00a0", false).find());
+    }
+
+    private static void assertMatches(final String source, final String flags,
+            final String input, final String expected) {
+        final SimplePattern pattern = SimplePattern.compile(source, flags);
+        assertNotNull(source, pattern);
+
+        final StringBuilder found = new StringBuilder();
+        final SimplePattern.SimpleMatcher matcher = pattern.matcher(input, true);
+        while (matcher.find()) {
+            found.append('[').append(matcher.start()).append(',').append(matcher.end()).append(']');
+        }
+        assertEquals(source, expected, found.toString());
+    }
+}
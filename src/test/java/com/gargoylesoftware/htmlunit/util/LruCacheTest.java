@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2002-2020 Gargoyle Software Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gargoylesoftware.htmlunit.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link LruCache}.
+ *
+ * @author <a href="mailto:agent@local">agent</a>
+ */
+public class LruCacheTest {
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void statistics() throws Exception {
+        final LruCache<String, String> cache = new LruCache<>(10);
+        assertEquals(1.0, cache.getHitRate(), 0.0001);
+
+        assertNull(cache.get("a"));
+        cache.put("a", "A");
+        assertEquals("A", cache.get("a"));
+        assertEquals("A", cache.get("a", key -> "never"));
+        assertEquals("B", cache.get("b", key -> "B"));
+
+        assertEquals(2, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+        assertEquals(0.5, cache.getHitRate(), 0.0001);
+        assertEquals(2, cache.size());
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void evictLeastRecentlyUsed() throws Exception {
+        // a single segment
+        final LruCache<String, String> cache = new LruCache<>(1, (key, value) -> value.length());
+
+        cache.put("a", "x");
+        assertEquals("x", cache.get("a"));
+        cache.put("b", "y");
+        assertNull(cache.get("a"));
+        assertEquals("y", cache.get("b"));
+        assertEquals(1, cache.getEvictionCount());
+
+        // too heavy
+        cache.put("c", "zz");
+        assertNull(cache.get("c"));
+        assertEquals(1, cache.getWeight());
+    }
+
+    /**
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void boundedWeight() throws Exception {
+        final LruCache<Integer, String> cache = new LruCache<>(160, (key, value) -> value.length());
+        for (int i = 0; i < 10_000; i++) {
+            cache.put(i, "abcd");
+        }
+        assertTrue(cache.getWeight() <= 160);
+        assertTrue(cache.getEvictionCount() >= 10_000 - 40);
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getWeight());
+    }
+}